@@ -4,6 +4,7 @@ import static org.basex.core.Text.*;
 
 import java.io.*;
 import java.net.*;
+import java.nio.channels.*;
 import java.util.*;
 
 import org.basex.core.*;
@@ -39,6 +40,8 @@ public final class BaseXServer extends Main implements Runnable {
   private StringList commands;
   /** Server socket. */
   private ServerSocket socket;
+  /** Dispatcher for idle sessions ({@code null} if each session has its own thread). */
+  private ClientDispatcher dispatcher;
   /** Start as daemon. */
   private boolean service;
 
@@ -100,7 +103,9 @@ public final class BaseXServer extends Main implements Runnable {
       // execute command-line arguments
       for(final String c : commands) execute(c);
 
-      socket = new ServerSocket();
+      // sessions can only be multiplexed if their sockets are backed by channels
+      final int workers = mprop.num(MainProp.WORKERS);
+      socket = workers > 0 ? ServerSocketChannel.open().socket() : new ServerSocket();
       // reuse address (on non-Windows machines: !Prop.WIN);
       socket.setReuseAddress(true);
       socket.bind(new InetSocketAddress(addr, port));
@@ -108,6 +113,10 @@ public final class BaseXServer extends Main implements Runnable {
       esocket.setReuseAddress(true);
       esocket.bind(new InetSocketAddress(addr, eport));
       stop = stopFile(port);
+      if(workers > 0) {
+        dispatcher = new ClientDispatcher(workers);
+        dispatcher.start();
+      }
 
       // show info when server is aborted
       context.log.writeServer(OK, SRV_STARTED);
@@ -154,7 +163,7 @@ public final class BaseXServer extends Main implements Runnable {
               if(ms - cs.last > ka) cs.quit();
             }
           }
-          final ClientListener cl = new ClientListener(s, context, this);
+          final ClientListener cl = new ClientListener(s, context, this, dispatcher);
           // start authentication timeout
           final long to = context.mprop.num(MainProp.KEEPALIVE) * 1000L;
           if(to > 0) {
@@ -164,9 +173,15 @@ public final class BaseXServer extends Main implements Runnable {
                 cl.quitAuth();
               }
             }, to);
-            auth.add(cl);
+            synchronized(auth) {
+              auth.add(cl);
+            }
           }
-          cl.start();
+          // authenticate in a separate thread: unauthenticated clients must not
+          // occupy the workers of the dispatcher
+          final Thread t = new Thread(cl);
+          t.setDaemon(true);
+          t.start();
         }
       } catch(final SocketException ex) {
         break;
@@ -192,13 +207,18 @@ public final class BaseXServer extends Main implements Runnable {
     if(!running) return;
     running = false;
 
-    for(final ClientListener cs : auth) {
+    final ClientListener[] pending;
+    synchronized(auth) {
+      pending = auth.toArray(new ClientListener[auth.size()]);
+    }
+    for(final ClientListener cs : pending) {
       remove(cs);
       cs.quitAuth();
     }
     for(final ClientListener cs : context.sessions) {
       cs.quit();
     }
+    if(dispatcher != null) dispatcher.close();
     super.quit();
 
     try {
@@ -374,7 +394,7 @@ public final class BaseXServer extends Main implements Runnable {
           final BufferInput bi = new BufferInput(es.getInputStream());
           final long id = Token.toLong(bi.readString());
           for(final ClientListener s : context.sessions) {
-            if(s.getId() == id) {
+            if(s.id() == id) {
               s.register(es);
               break;
             }
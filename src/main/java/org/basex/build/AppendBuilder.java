@@ -0,0 +1,142 @@
+package org.basex.build;
+
+import java.io.*;
+
+import org.basex.data.*;
+import org.basex.index.name.*;
+import org.basex.index.path.*;
+import org.basex.io.*;
+import org.basex.io.in.DataInput;
+import org.basex.io.out.*;
+import org.basex.io.out.DataOutput;
+
+/**
+ * This class appends documents to the end of an existing database instance.
+ * In contrast to the insertion of a temporary database instance, the nodes are
+ * directly written to the table, text and value files of the target database,
+ * and the index structures are updated in bulk after the input has been parsed.
+ * If parsing fails, all appended documents will be deleted again, and the tag and
+ * attribute names and the path summary will be restored.
+ *
+ * @author BaseX Team 2005-12, BSD License
+ * @author Christian Gruen
+ */
+public final class AppendBuilder extends Builder {
+  /** Target database. */
+  private final Data data;
+  /** Pre value of the last document node. */
+  private int doc = -1;
+
+  /**
+   * Constructor.
+   * @param d target database
+   * @param parse parser
+   */
+  public AppendBuilder(final Data d, final Parser parse) {
+    super(d.meta.name, parse, d.paths, d.nspaces);
+    data = d;
+    meta = d.meta;
+    tags = d.tagindex;
+    atts = d.atnindex;
+  }
+
+  @Override
+  public Data build() throws IOException {
+    // backup meta data that will be modified by the parser
+    final String original = meta.original, encoding = meta.encoding;
+    final long filesize = meta.filesize;
+    final int pre = meta.size, ndocs = meta.ndocs;
+    // backup index structures that will not be reverted by deleting nodes
+    final byte[] index = backup();
+
+    data.appendBegin();
+    boolean ok = false;
+    try {
+      parser.parse(this);
+      ok = true;
+    } finally {
+      close();
+      meta.original = original;
+      meta.encoding = encoding;
+      meta.filesize = filesize;
+      // assign all remaining nodes to the last document
+      if(!ok && doc != -1) data.size(doc, Data.DOC, meta.size - doc);
+      data.appendEnd(pre);
+      // delete all documents that have been appended
+      if(!ok) {
+        while(meta.size > pre) data.delete(pre);
+        meta.ndocs = ndocs;
+        restore(index);
+      }
+    }
+    return data;
+  }
+
+  /**
+   * Returns a serialized copy of the tag and attribute names and the path summary.
+   * @return serialized index structures
+   * @throws IOException I/O exception
+   */
+  private byte[] backup() throws IOException {
+    final ArrayOutput ao = new ArrayOutput();
+    final DataOutput out = new DataOutput(ao);
+    data.tagindex.write(out);
+    data.atnindex.write(out);
+    data.paths.write(out);
+    out.close();
+    return ao.toArray();
+  }
+
+  /**
+   * Restores the tag and attribute names and the path summary.
+   * @param index serialized index structures
+   * @throws IOException I/O exception
+   */
+  private void restore(final byte[] index) throws IOException {
+    final DataInput in = new DataInput(new IOContent(index));
+    try {
+      data.tagindex = new Names(in, meta);
+      data.atnindex = new Names(in, meta);
+      data.paths = new PathSummary(data, in);
+    } finally {
+      in.close();
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    parser.close();
+  }
+
+  @Override
+  protected void addDoc(final byte[] value) {
+    doc = meta.size;
+    data.doc(meta.size, 0, value);
+    data.insert(meta.size);
+  }
+
+  @Override
+  protected void addElem(final int dist, final int nm, final int asize,
+      final int uri, final boolean ne) {
+    data.elem(dist, nm, asize, asize, uri, ne);
+    data.insert(meta.size);
+  }
+
+  @Override
+  protected void addAttr(final int nm, final byte[] value, final int dist,
+      final int uri) {
+    data.attr(meta.size, dist, nm, value, uri, false);
+    data.insert(meta.size);
+  }
+
+  @Override
+  protected void addText(final byte[] value, final int dist, final byte kind) {
+    data.text(meta.size, dist, value, kind);
+    data.insert(meta.size);
+  }
+
+  @Override
+  protected void setSize(final int pre, final int size) {
+    data.size(pre, Data.ELEM, size);
+  }
+}
@@ -25,9 +25,9 @@ import org.basex.util.list.*;
  */
 public abstract class Builder extends Progress {
   /** Tree structure. */
-  final PathSummary path = new PathSummary();
+  final PathSummary path;
   /** Namespace index. */
-  final Namespaces ns = new Namespaces();
+  final Namespaces ns;
   /** Parser instance. */
   final Parser parser;
   /** Database name. */
@@ -58,8 +58,21 @@ public abstract class Builder extends Progress {
    * @param parse parser
    */
   Builder(final String nm, final Parser parse) {
+    this(nm, parse, new PathSummary(), new Namespaces());
+  }
+
+  /**
+   * Constructor, specifying existing index structures.
+   * @param nm name of database
+   * @param parse parser
+   * @param ps path summary
+   * @param n namespaces
+   */
+  Builder(final String nm, final Parser parse, final PathSummary ps, final Namespaces n) {
     parser = parse;
     name = nm;
+    path = ps;
+    ns = n;
   }
 
   // PUBLIC METHODS ===========================================================
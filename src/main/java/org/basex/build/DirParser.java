@@ -5,6 +5,7 @@ import static org.basex.data.DataText.*;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.regex.*;
 import java.util.zip.*;
 
@@ -19,12 +20,22 @@ import org.basex.util.list.*;
  * This class recursively scans files and directories and parses all
  * relevant files.
  *
+ * If {@link Prop#PARSETHREADS} is greater than 1, the documents are parsed
+ * by a pool of worker threads into main memory instances. The instances are
+ * added to the database builder in the order in which the files have been
+ * found, so the resulting database is identical to a sequential import.
+ * Documents that are larger than {@link #MAXPARALLEL}, or whose size is unknown,
+ * are parsed sequentially and streamed to the builder, as main memory instances
+ * of such documents would take too much memory.
+ *
  * @author BaseX Team 2005-12, BSD License
  * @author Christian Gruen
  */
 public final class DirParser extends Parser {
   /** Number of skipped files to log. */
   private static final int SKIPLOG = 10;
+  /** Maximum size of documents that are parsed in parallel. */
+  private static final long MAXPARALLEL = 1 << 22;
   /** Skipped files. */
   private final StringList skipped = new StringList();
   /** File pattern. */
@@ -42,6 +53,13 @@ public final class DirParser extends Parser {
   private final boolean rawParser;
   /** Database path for storing binary files. */
   private final IOFile rawPath;
+  /** Number of parser threads. */
+  private final int threads;
+
+  /** Thread pool for parsing documents ({@code null} if not used). */
+  private ExecutorService pool;
+  /** Queued documents, in input order. */
+  private final LinkedList<Doc> docs = new LinkedList<Doc>();
 
   /** Last source. */
   private IO lastSrc;
@@ -64,6 +82,7 @@ public final class DirParser extends Parser {
     archives = prop.is(Prop.ADDARCHIVES);
     addRaw = prop.is(Prop.ADDRAW);
     rawParser = prop.get(Prop.PARSER).toLowerCase(Locale.ENGLISH).equals(DataText.M_RAW);
+    threads = prop.num(Prop.PARSETHREADS);
 
     filter = !source.isDir() && !source.isArchive() ? null :
       Pattern.compile(IOFile.regex(pr.get(Prop.CREATEFILTER)));
@@ -76,7 +95,24 @@ public final class DirParser extends Parser {
   public void parse(final Builder build) throws IOException {
     build.meta.filesize = 0;
     build.meta.original = src.path();
-    parse(build, src);
+    if(threads > 1 && !rawParser) pool = Executors.newFixedThreadPool(threads);
+    try {
+      parse(build, src);
+      add(build, 0);
+    } finally {
+      if(pool != null) {
+        // cancel remaining tasks if the import was stopped or has failed
+        for(final Doc doc : docs) doc.result.cancel(true);
+        docs.clear();
+        pool.shutdown();
+        try {
+          pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch(final InterruptedException ex) {
+          Util.debug(ex);
+        }
+        pool = null;
+      }
+    }
   }
 
   /**
@@ -153,7 +189,20 @@ public final class DirParser extends Parser {
         if(rawPath != null) {
           Store.store(src.inputSource(), new IOFile(rawPath, targ + name));
         }
+      } else if(pool != null && l != -1 && l <= MAXPARALLEL) {
+        // parse input in a worker thread; streams (archive entries) are cached
+        IO in = src;
+        if(!(src instanceof IOFile)) {
+          in = new IOContent(src.read());
+          in.name(src.name());
+        }
+        add(b, threads << 1);
+        final Doc doc = new Doc(in, targ);
+        doc.result = pool.submit(doc);
+        docs.add(doc);
       } else {
+        // add queued documents first to preserve the input order
+        if(pool != null) add(b, 0);
         // store input as XML
         boolean ok = true;
         IO in = src;
@@ -186,6 +235,86 @@ public final class DirParser extends Parser {
     }
   }
 
+  /**
+   * Adds queued documents to the builder until the specified number of documents
+   * is left. Waits for documents that are still being parsed.
+   * @param b builder instance
+   * @param max maximum number of remaining documents
+   * @throws IOException I/O exception
+   */
+  private void add(final Builder b, final int max) throws IOException {
+    while(docs.size() > max) {
+      b.checkStop();
+      final Doc doc = docs.removeFirst();
+      final MemData data;
+      try {
+        data = doc.result.get();
+      } catch(final ExecutionException ex) {
+        final Throwable th = ex.getCause();
+        if(th instanceof IOException) throw (IOException) th;
+        if(th instanceof RuntimeException) throw (RuntimeException) th;
+        if(th instanceof Error) throw (Error) th;
+        throw new BaseXException((Exception) th);
+      } catch(final InterruptedException ex) {
+        throw new BaseXException(ex);
+      }
+      if(data == null) {
+        skipped.add(doc.in.path());
+      } else {
+        add(b, data);
+        if(Prop.debug && (++c & 0x3FF) == 0) Util.err(";");
+      }
+    }
+  }
+
+  /**
+   * Sends the events for the nodes of a parsed document to the builder.
+   * @param b builder instance
+   * @param data main memory instance with a single document
+   * @throws IOException I/O exception
+   */
+  private void add(final Builder b, final MemData data) throws IOException {
+    b.encoding(data.meta.encoding);
+    b.startDoc(data.text(0, true));
+    final IntList ends = new IntList();
+    final int size = data.meta.size;
+    for(int pre = 1; pre < size;) {
+      while(!ends.isEmpty() && ends.peek() == pre) {
+        ends.pop();
+        b.endElem();
+      }
+      final int k = data.kind(pre);
+      if(k == Data.ELEM) {
+        final Atts nsp = data.ns(pre);
+        for(int n = 0; n < nsp.size(); n++) b.startNS(nsp.name(n), nsp.string(n));
+        final int as = data.attSize(pre, k), s = data.size(pre, k);
+        atts.reset();
+        for(int a = pre + 1; a < pre + as; a++) {
+          atts.add(data.name(a, Data.ATTR), data.text(a, false));
+        }
+        final byte[] nm = data.name(pre, k);
+        if(s == as) {
+          b.emptyElem(nm, atts);
+        } else {
+          b.startElem(nm, atts);
+          ends.push(pre + s);
+        }
+        pre += as;
+      } else {
+        final byte[] txt = data.text(pre, true);
+        if(k == Data.TEXT) b.text(txt);
+        else if(k == Data.COMM) b.comment(txt);
+        else b.pi(txt);
+        pre++;
+      }
+    }
+    while(!ends.isEmpty()) {
+      ends.pop();
+      b.endElem();
+    }
+    b.endDoc();
+  }
+
   @Override
   public String info() {
     final TokenBuilder tb = new TokenBuilder();
@@ -219,4 +348,37 @@ public final class DirParser extends Parser {
   public void close() throws IOException {
     if(parser != null) parser.close();
   }
+
+  /**
+   * Document that is parsed by a worker thread.
+   */
+  private final class Doc implements Callable<MemData> {
+    /** Input. */
+    final IO in;
+    /** Target path. */
+    final String target;
+    /** Parsed document ({@code null} if the document was skipped). */
+    Future<MemData> result;
+
+    /**
+     * Constructor.
+     * @param i input
+     * @param t target path
+     */
+    Doc(final IO i, final String t) {
+      in = i;
+      target = t;
+    }
+
+    @Override
+    public MemData call() throws IOException {
+      try {
+        return MemBuilder.build("", Parser.singleParser(in, prop, target));
+      } catch(final IOException ex) {
+        if(!skipCorrupt) throw ex;
+        Util.debug(ex);
+        return null;
+      }
+    }
+  }
 }
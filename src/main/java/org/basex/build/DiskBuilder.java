@@ -101,6 +101,7 @@ public final class DiskBuilder extends Builder {
     ta.close();
     in.close();
     md.dbfile(DATATMP).delete();
+    if(md.compress) TableCompressedAccess.compress(md);
 
     // return database instance
     final DiskData data = new DiskData(md, tags, atts, path, ns);
@@ -5,6 +5,7 @@ import static org.basex.util.Token.*;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 import org.basex.build.*;
 import org.basex.core.*;
@@ -30,6 +31,13 @@ import org.basex.util.list.*;
  *   <li><code>format</code> specifies the XML format, which can be
  *   <code>simple</code> or <code>verbose</code>
  *   (default: <code>verbose</code>).</li>
+ *   <li><code>normalize</code> lists the positions of numeric columns, separated
+ *   by spaces (starting with 1). Integer values of these columns are normalized
+ *   (whitespaces, plus signs and leading zeros are removed), which allows the
+ *   disk builder to inline them in the table. As the original string values
+ *   will be lost (e.g., <code>007</code> will be stored as <code>7</code>),
+ *   this option should only be used for columns that are processed as numbers.
+ *   Other values, such as decimals, are stored unchanged.</li>
  * </ul>
  *
  * <p>All options are separated by commas, and the keys and values are
@@ -41,6 +49,12 @@ import org.basex.util.list.*;
  * <b>Description</b>: Use tabs as separator, choose simple XML format,
  * and indicate that the file contains no header.</p>
  *
+ * <p>The input is read in blocks of UTF-8 bytes, which are cut after the last
+ * complete record (as quotes are always balanced at the end of a record, the
+ * record boundaries can be found by counting quotes). If {@link Prop#PARSETHREADS}
+ * is greater than 1, the blocks are tokenized in parallel. The resulting records
+ * are sent to the builder in their original order.</p>
+ *
  * @author BaseX Team 2005-12, BSD License
  * @author Christian Gruen
  */
@@ -62,6 +76,8 @@ public final class CSVParser extends SingleParser {
   private static final byte[] ENTRY = token("entry");
   /** CSV column attribute. */
   private static final byte[] COLUMN = token("col");
+  /** Size of input blocks. */
+  private static final int BLOCK = 1 << 20;
 
   /** Headers. */
   private final TokenList headers = new TokenList();
@@ -71,11 +87,20 @@ public final class CSVParser extends SingleParser {
   private final String encoding;
   /** Column separator (see {@link ParserProp#SEPARATOR}). */
   private final int separator;
+  /** Columns with integers to be normalized (see {@link ParserProp#NORMALIZE}). */
+  private final BoolList normalize = new BoolList();
+
+  /** Raw input (if the input is UTF-8 encoded). */
+  private InputStream input;
+  /** Decoded input (if the input is not UTF-8 encoded). */
+  private TextInput text;
 
   /** Current row. */
   private int row;
   /** Current column. */
   private int col;
+  /** Indicates if the next field starts a new record. */
+  private boolean open = true;
 
   /**
    * Constructor.
@@ -109,56 +134,283 @@ public final class CSVParser extends SingleParser {
     if(!simple && !val.equals(FORMATS[1])) throw new BaseXException(
         INVALID_VALUE_X_X, ParserProp.FORMAT[0], val);
     encoding = props.get(ParserProp.ENCODING);
+
+    // set columns with integers to be normalized
+    val = props.get(ParserProp.NORMALIZE).trim();
+    if(!val.isEmpty()) {
+      for(final String n : val.split("\\s+")) {
+        final int i = toInt(token(n));
+        if(i <= 0) throw new BaseXException(INVALID_VALUE_X_X, ParserProp.NORMALIZE[0], n);
+        normalize.set(i - 1, true);
+      }
+    }
   }
 
   @Override
   public void parse() throws IOException {
     builder.startElem(CSV, atts);
 
+    final int threads = prop.num(Prop.PARSETHREADS);
+    final ExecutorService pool = threads > 1 ? Executors.newFixedThreadPool(threads) : null;
+    final LinkedList<Future<Records>> queue = new LinkedList<Future<Records>>();
+    try {
+      open();
+      byte[] buffer = new byte[BLOCK];
+      int size = 0;
+      boolean more = true;
+      while(more) {
+        if(buffer.length - size < 4) buffer = Arrays.copyOf(buffer, buffer.length << 1);
+        final int read = read(buffer, size);
+        more = read != -1;
+        if(more) size += read;
+
+        // find end of last complete record, or read more bytes
+        final int end = more ? end(buffer, size) : size;
+        if(end == 0 && more) continue;
+        final byte[] block = Arrays.copyOf(buffer, end);
+        size -= end;
+        System.arraycopy(buffer, end, buffer, 0, size);
+
+        final boolean last = !more;
+        if(pool == null) {
+          add(tokenize(block, last));
+        } else {
+          // tokenize block in parallel; limit number of pending blocks
+          queue.add(pool.submit(new Callable<Records>() {
+            @Override
+            public Records call() {
+              return tokenize(block, last);
+            }
+          }));
+          while(queue.size() > (last ? 0 : threads << 1)) add(queue.removeFirst());
+        }
+      }
+    } finally {
+      close();
+      if(pool != null) {
+        for(final Future<Records> f : queue) f.cancel(true);
+        pool.shutdown();
+        try {
+          pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch(final InterruptedException ex) {
+          Util.debug(ex);
+        }
+      }
+    }
+    builder.endElem();
+  }
+
+  @Override
+  public void close() throws IOException {
+    if(input != null) input.close();
+    if(text != null) text.close();
+    input = null;
+    text = null;
+  }
+
+  /**
+   * Opens the input. If the input is UTF-8 encoded, the raw bytes will be read.
+   * Otherwise, the input will be decoded and converted to UTF-8.
+   * @throws IOException I/O exception
+   */
+  private void open() throws IOException {
+    final BufferedInputStream is = new BufferedInputStream(src.inputStream(), 4);
+    is.mark(4);
+    final byte[] bom = new byte[4];
+    int b = 0;
+    for(int r; b < 4 && (r = is.read(bom, b, 4 - b)) != -1;) b += r;
+    is.reset();
+
+    // check byte order marks and encoding (see TextInput#guess)
+    final int a0 = bom[0] & 0xFF, a1 = bom[1] & 0xFF, a2 = bom[2] & 0xFF, a3 = bom[3];
+    final boolean utf16 = b > 1 && (a0 == 0xFF && a1 == 0xFE || a0 == 0xFE && a1 == 0xFF) ||
+      b == 4 && (a0 == '<' && a1 == 0 && a2 == '?' && a3 == 0 ||
+      a0 == 0 && a1 == '<' && a2 == 0 && a3 == '?');
+    if(utf16 || normEncoding(encoding) != UTF8) {
+      is.close();
+      text = new TextInput(src).encoding(encoding);
+    } else {
+      if(b > 2 && a0 == 0xEF && a1 == 0xBB && a2 == 0xBF) is.skip(3);
+      input = is;
+    }
+  }
+
+  /**
+   * Reads UTF-8 bytes into the specified buffer, which must have space for at least
+   * one character.
+   * @param buffer buffer
+   * @param off offset
+   * @return number of read bytes, or {@code -1} if the end of the input has been reached
+   * @throws IOException I/O exception
+   */
+  private int read(final byte[] buffer, final int off) throws IOException {
+    if(input != null) {
+      return input.read(buffer, off, buffer.length - off);
+    }
+    // decode input and convert characters to UTF-8
+    int o = off;
+    for(int cp; buffer.length - o >= 4 && (cp = text.read()) != -1;) {
+      if(cp <= 0x7F) {
+        buffer[o++] = (byte) cp;
+      } else if(cp <= 0x7FF) {
+        buffer[o++] = (byte) (cp >> 6 & 0x1F | 0xC0);
+        buffer[o++] = (byte) (cp & 0x3F | 0x80);
+      } else if(cp <= 0xFFFF) {
+        buffer[o++] = (byte) (cp >> 12 & 0x0F | 0xE0);
+        buffer[o++] = (byte) (cp >> 6 & 0x3F | 0x80);
+        buffer[o++] = (byte) (cp & 0x3F | 0x80);
+      } else {
+        buffer[o++] = (byte) (cp >> 18 & 0x07 | 0xF0);
+        buffer[o++] = (byte) (cp >> 12 & 0x3F | 0x80);
+        buffer[o++] = (byte) (cp >> 6 & 0x3F | 0x80);
+        buffer[o++] = (byte) (cp & 0x3F | 0x80);
+      }
+    }
+    return o == off ? -1 : o - off;
+  }
+
+  /**
+   * Returns the end of the last complete record in the specified buffer.
+   * @param buffer buffer
+   * @param size number of bytes in the buffer
+   * @return end offset, or {@code 0} if the buffer contains no complete record
+   */
+  private int end(final byte[] buffer, final int size) {
+    // records can only be split if the separator is no quote or newline
+    if(separator == '"' || separator == '\n' || separator == '\r') return 0;
+
+    boolean quoted = false;
+    int end = 0;
+    for(int i = 0; i < size; i++) {
+      final byte b = buffer[i];
+      if(b == '"') {
+        quoted ^= true;
+      } else if(!quoted && (b == '\n' || b == '\r')) {
+        if(b == '\r') {
+          // skip line feed, or wait for next byte
+          if(i + 1 == size) break;
+          if(buffer[i + 1] == '\n') i++;
+        }
+        end = i + 1;
+      }
+    }
+    return end;
+  }
+
+  /**
+   * Tokenizes the records of the specified block. Called by the worker threads.
+   * @param block block with complete records, or the last block of the input
+   * @param last last block
+   * @return records
+   */
+  Records tokenize(final byte[] block, final boolean last) {
+    final Records records = new Records();
     final TokenBuilder tb = new TokenBuilder();
-    final NewlineInput nli = new NewlineInput(src).encoding(encoding);
+    final int size = block.length;
+    boolean quoted = false;
+    for(int i = 0; i < size;) {
+      // decode character and normalize newlines
+      int ch = block[i], cl = 1;
+      if(ch == '\r') {
+        ch = '\n';
+        if(i + 1 < size && block[i + 1] == '\n') cl = 2;
+      } else if(ch < 0) {
+        cl = cl(block, i);
+        ch = utf8(block, i, cl) ? cp(block, i) : -1;
+        if(ch == -1) cl = 1;
+      }
 
-    boolean quoted = false, open = true;
-    int ch = -1;
-    while(true) {
-      if(ch == -1) ch = nli.read();
-      if(ch == -1) break;
       if(quoted) {
         if(ch == '"') {
-          ch = nli.read();
-          if(ch != '"') {
+          if(i + 1 == size || block[i + 1] != '"') {
             quoted = false;
+            i++;
             continue;
           }
+          cl = 2;
         }
-        tb.add(ch);
+        if(ch == '\n' || ch == '"') tb.add(ch);
+        else tb.add(block, i, i + cl);
       } else if(ch == separator) {
-        if(open) {
-          open();
-          open = false;
-        }
-        add(tb);
+        records.fields.add(tb.finish());
+        tb.reset();
       } else if(ch == '\n') {
-        finish(tb, open);
-        open = true;
+        records.fields.add(tb.finish());
+        records.ends.add(records.fields.size());
+        tb.reset();
       } else if(ch == '"') {
         quoted = true;
+      } else if(ch == -1 || !XMLToken.valid(ch)) {
+        tb.add('?');
       } else {
-        tb.add(XMLToken.valid(ch) ? ch : '?');
+        tb.add(block, i, i + cl);
       }
-      ch = -1;
+      i += cl;
     }
-    nli.close();
+    if(last) {
+      records.fields.add(tb.finish());
+      records.ends.add(records.fields.size());
+    }
+    return records;
+  }
 
-    finish(tb, open);
-    builder.endElem();
+  /**
+   * Checks if the specified bytes form a valid UTF-8 sequence.
+   * @param block block
+   * @param i offset
+   * @param cl expected length
+   * @return result of check
+   */
+  private static boolean utf8(final byte[] block, final int i, final int cl) {
+    if(cl == 1 || i + cl > block.length) return false;
+    for(int c = 1; c < cl; c++) if((block[i + c] & 0xC0) != 0x80) return false;
+    return true;
+  }
+
+  /**
+   * Waits for tokenized records and adds them to the builder.
+   * @param records tokenized records
+   * @throws IOException I/O exception
+   */
+  private void add(final Future<Records> records) throws IOException {
+    try {
+      add(records.get());
+    } catch(final ExecutionException ex) {
+      final Throwable th = ex.getCause();
+      if(th instanceof RuntimeException) throw (RuntimeException) th;
+      if(th instanceof Error) throw (Error) th;
+      throw new BaseXException((Exception) th);
+    } catch(final InterruptedException ex) {
+      throw new BaseXException(ex);
+    }
+  }
+
+  /**
+   * Adds tokenized records to the builder.
+   * @param records records
+   * @throws IOException I/O exception
+   */
+  private void add(final Records records) throws IOException {
+    final TokenList fields = records.fields;
+    final int rs = records.ends.size();
+    for(int r = 0, f = 0; r < rs; r++) {
+      final int e = records.ends.get(r) - 1;
+      for(; f < e; f++) {
+        if(open) {
+          openRecord();
+          open = false;
+        }
+        add(fields.get(f));
+      }
+      finish(fields.get(f++));
+    }
   }
 
   /**
    * Opens a new record.
    * @throws IOException I/O exception
    */
-  private void open() throws IOException {
+  private void openRecord() throws IOException {
     if(row == 0) {
       if(simple) builder.startElem(HEADER, atts);
     } else {
@@ -168,33 +420,32 @@ public final class CSVParser extends SingleParser {
 
   /**
    * Finishes the current record.
-   * @param tb token builder
-   * @param open open flag
+   * @param field last field
    * @throws IOException I/O exception
    */
-  private void finish(final TokenBuilder tb, final boolean open) throws IOException {
+  private void finish(final byte[] field) throws IOException {
     boolean close = !open;
-    if(open && !tb.isEmpty()) {
-      open();
+    if(open && field.length != 0) {
+      openRecord();
       close = true;
     }
-    add(tb);
+    add(field);
     if(close) {
       if(simple || row != 0) builder.endElem();
       ++row;
     }
     col = 0;
+    open = true;
   }
 
   /**
    * Adds a field.
-   * @param tb token builder
+   * @param field field
    * @throws IOException I/O exception
    */
-  private void add(final TokenBuilder tb) throws IOException {
+  private void add(final byte[] field) throws IOException {
     if(row == 0 && !simple) {
-      addHeader(tb.finish());
-      tb.reset();
+      addHeader(field);
       return;
     }
 
@@ -206,15 +457,32 @@ public final class CSVParser extends SingleParser {
       t = headers.get(col);
     }
 
-    if(!tb.isEmpty() || simple) {
+    if(field.length != 0 || simple) {
       builder.startElem(t, atts);
-      builder.text(tb.finish());
+      builder.text(col < normalize.size() && normalize.get(col) ? number(field) : field);
       builder.endElem();
-      tb.reset();
     }
     ++col;
   }
 
+  /**
+   * Normalizes an integer value.
+   * @param field field
+   * @return normalized value, or original field if it is no integer
+   */
+  private static byte[] number(final byte[] field) {
+    final byte[] v = trim(field);
+    final int vl = v.length;
+    int s = vl != 0 && (v[0] == '-' || v[0] == '+') ? 1 : 0;
+    if(s == vl) return field;
+    for(int i = s; i < vl; i++) if(!digit(v[i])) return field;
+
+    final boolean neg = v[0] == '-';
+    while(s < vl - 1 && v[s] == '0') s++;
+    final byte[] n = substring(v, s);
+    return neg && !eq(n, ZERO) ? concat(new byte[] { '-' }, n) : n;
+  }
+
   /**
    * Adds a field header.
    * @param f field name
@@ -241,4 +509,14 @@ public final class CSVParser extends SingleParser {
     // add header
     headers.add(fb);
   }
+
+  /**
+   * Tokenized records.
+   */
+  static final class Records {
+    /** Fields. */
+    final TokenList fields = new TokenList();
+    /** Offsets after the last field of each record. */
+    final IntList ends = new IntList();
+  }
 }
@@ -1,15 +1,19 @@
 package org.basex.build.file;
 
+import static org.basex.data.DataText.*;
+import static org.basex.query.util.Err.*;
+import static org.basex.util.Token.*;
+
 import java.io.*;
 
-import org.basex.build.xml.*;
+import org.basex.build.*;
 import org.basex.core.*;
 import org.basex.io.*;
 import org.basex.io.in.*;
 import org.basex.query.*;
 import org.basex.query.util.*;
-import org.basex.query.util.json.*;
-import org.basex.query.value.node.*;
+import org.basex.util.*;
+import org.basex.util.hash.*;
 
 /**
  * This class parses files in the JSON format
@@ -32,10 +36,66 @@ import org.basex.query.value.node.*;
  * <b>Description</b>: Use tabs as separator, choose simple XML format,
  * and indicate that the file contains no header.</p>
  *
+ * <p>The input is streamed, and the resulting nodes are identical to the ones
+ * created by the {@link org.basex.query.util.json.JSONConverter} and
+ * {@link org.basex.query.util.json.JsonMLConverter} classes. As the default
+ * mapping omits the {@code type} attributes of names that have the same type
+ * throughout the document, the input is read twice: the first pass only
+ * collects the types of all names.</p>
+ *
  * @author BaseX Team 2005-12, BSD License
  * @author Christian Gruen
  */
-public final class JSONParser extends XMLParser {
+public final class JSONParser extends SingleParser {
+  /** Error: invalid character. */
+  private static final String INVALID = "Invalid character: \"%\"";
+  /** Error: invalid and expected character. */
+  private static final String INVALEXP = "Char \"%\" found, % expected";
+
+  /** Type: string. */
+  private static final int STRING = 0;
+  /** Type: boolean. */
+  private static final int BOOLEAN = 1;
+  /** Type: number. */
+  private static final int NUMBER = 2;
+  /** Type: null. */
+  private static final int NULL = 3;
+  /** Type: array. */
+  private static final int ARRAY = 4;
+  /** Type: object. */
+  private static final int OBJECT = 5;
+  /** Different types. */
+  private static final int MIXED = 6;
+  /** Type names. */
+  private static final byte[][] TYPES = {
+    T_STRING, T_BOOLEAN, T_NUMBER, Token.NULL, T_ARRAY, T_OBJECT };
+
+  /** Plural. */
+  private static final byte[] S = { 's' };
+
+  /** Token builder. */
+  private final TokenBuilder tb = new TokenBuilder();
+  /** JsonML flag. */
+  private final boolean jsonml;
+  /** Encoding. */
+  private final String encoding;
+  /** Whitespace chopping. */
+  private final boolean chop;
+
+  /** Types of all names (default mapping). */
+  private final TokenIntMap types = new TokenIntMap();
+  /** Analysis pass (default mapping): no events are sent to the builder. */
+  private boolean analyze;
+
+  /** Input. */
+  private NewlineInput in;
+  /** Current character ({@code -1}: end of input). */
+  private int curr;
+  /** Current line. */
+  private int line;
+  /** Current column. */
+  private int col;
+
   /**
    * Constructor.
    * @param source document source
@@ -55,38 +115,500 @@ public final class JSONParser extends XMLParser {
    */
   public JSONParser(final IO source, final Prop pr, final String options)
       throws IOException {
-    super(toXML(source, options), pr);
+    super(source, pr);
+    // set parser properties
+    final ParserProp props = new ParserProp(options);
+    jsonml = props.is(ParserProp.JSONML);
+    encoding = props.get(ParserProp.ENCODING);
+    chop = pr.is(Prop.CHOP);
+
+    // the default mapping needs two passes: cache streams that can only be read once
+    if(!jsonml && !(source instanceof IOFile || source instanceof IOContent)) {
+      src = new IOContent(source.read());
+      src.name(source.name());
+    }
+  }
+
+  @Override
+  public void parse() throws IOException {
+    if(jsonml) {
+      open();
+      skipWS();
+      final int t = type();
+      if(t == OBJECT) errorML("% expected for %, % found", T_ARRAY, "element constructor",
+          T_OBJECT);
+      if(t != ARRAY) error(INVALEXP, curr(), "\"{\" or \"[\"");
+      consume();
+      elem();
+      finish();
+    } else {
+      // first pass: collect types of all names
+      analyze = true;
+      open();
+      root();
+      finish();
+      // second pass: send events to the builder
+      analyze = false;
+      open();
+      root();
+      finish();
+    }
+    builder.encoding(UTF8);
   }
 
+  @Override
+  public void close() throws IOException {
+    if(in != null) in.close();
+  }
+
+  // DEFAULT MAPPING ==========================================================
+
   /**
-   * Converts a JSON document to XML.
-   * @param io io reference
-   * @param options parsing options
-   * @return parser
+   * Parses the root object or array.
    * @throws IOException I/O exception
    */
-  private static IO toXML(final IO io, final String options) throws IOException {
-    // set parser properties
-    final ParserProp props = new ParserProp(options);
-    final boolean jsonml = props.is(ParserProp.JSONML);
-    final String encoding = props.get(ParserProp.ENCODING);
-
-    // parse input, using specified encoding
-    final byte[] content = new NewlineInput(io).encoding(encoding).content();
-
-    // parse input and convert to XML node
-    final ANode node;
-    try {
-      final XMLConverter conv = jsonml ?
-          new JsonMLConverter(null) : new JSONConverter(null);
-      node = conv.parse(content);
-
-      // create XML input container from serialized node
-      final IOContent xml = new IOContent(node.serialize().toArray());
-      xml.name(io.name());
-      return xml;
-    } catch(final QueryException ex) {
-      throw new BaseXException(ex.getLocalizedMessage());
+  private void root() throws IOException {
+    skipWS();
+    final int t = curr == '{' ? OBJECT : curr == '[' ? ARRAY : -1;
+    if(t == -1) error(INVALEXP, curr(), "\"{\" or \"[\"");
+
+    if(analyze) {
+      type(T_JSON, t);
+    } else {
+      atts.reset();
+      if(types.value(T_JSON) == MIXED) atts.add(T_TYPE, TYPES[t]);
+      // attach names with unique data types
+      for(int a = BOOLEAN; a <= OBJECT; a++) {
+        final TokenBuilder names = new TokenBuilder();
+        final int ts = types.size();
+        for(int i = 1; i <= ts; i++) {
+          final byte[] key = types.key(i);
+          if(types.value(key) != a) continue;
+          if(!names.isEmpty()) names.add(' ');
+          names.add(key);
+        }
+        if(!names.isEmpty()) atts.add(concat(TYPES[a], S), names.finish());
+      }
+      builder.startElem(T_JSON, atts);
+    }
+    struct(t);
+    if(!analyze) builder.endElem();
+  }
+
+  /**
+   * Parses the contents of an object or array.
+   * @param t type ({@link #OBJECT} or {@link #ARRAY})
+   * @throws IOException I/O exception
+   */
+  private void struct(final int t) throws IOException {
+    consume();
+    if(t == OBJECT) {
+      boolean first = true;
+      do {
+        final byte[] key = str();
+        if(key == null) {
+          if(!first) error(INVALEXP, curr(), '"');
+          break;
+        }
+        wsCheck(':');
+        member(convert(key), true);
+        first = false;
+      } while(wsConsume(','));
+      wsCheck('}');
+    } else {
+      boolean first = true;
+      do {
+        if(member(T_VALUE, !first)) first = false;
+      } while(wsConsume(','));
+      wsCheck(']');
+    }
+  }
+
+  /**
+   * Parses a value of an object or array.
+   * @param name element name
+   * @param mand mandatory flag
+   * @return {@code true} if a value was found
+   * @throws IOException I/O exception
+   */
+  private boolean member(final byte[] name, final boolean mand) throws IOException {
+    skipWS();
+    final int t = type();
+    if(t == -1) {
+      if(mand) error(INVALEXP, curr(), '"');
+      return false;
+    }
+
+    if(analyze) {
+      type(name, t);
+    } else {
+      atts.reset();
+      if(types.value(name) == MIXED && t != STRING) atts.add(T_TYPE, TYPES[t]);
+      builder.startElem(name, atts);
+    }
+    if(t == OBJECT || t == ARRAY) {
+      struct(t);
+    } else {
+      final byte[] v = atom(t);
+      if(!analyze && v != null) text(v);
+    }
+    if(!analyze) builder.endElem();
+    return true;
+  }
+
+  /**
+   * Registers the type of a name.
+   * @param name name
+   * @param t type
+   */
+  private void type(final byte[] name, final int t) {
+    final int o = types.value(name);
+    if(o == -1) types.add(name, t);
+    else if(o != t) types.add(name, MIXED);
+  }
+
+  /**
+   * Converts a JSON to an XML name.
+   * @param name name
+   * @return converted name
+   */
+  private static byte[] convert(final byte[] name) {
+    // convert name to valid XML representation
+    final TokenBuilder tb = new TokenBuilder();
+    for(int n = 0; n < name.length; n += cl(name, n)) {
+      int cp = cp(name, n);
+      if(cp == '_') {
+        tb.add('_').add('_');
+      } else if(n == 0 ? XMLToken.isNCStartChar(cp) : XMLToken.isNCChar(cp)) {
+        tb.add(cp);
+      } else {
+        tb.add('_');
+        final byte[] buf = new byte[4];
+        int p = buf.length;
+        do {
+          final int b = cp & 0x0F;
+          buf[--p] = (byte) (b + (b > 9 ? 0x37 : '0'));
+          cp >>>= 4;
+        } while(p != 0);
+        tb.add(buf);
+      }
+    }
+    if(tb.isEmpty()) tb.add('_');
+    return tb.finish();
+  }
+
+  // JSONML ===================================================================
+
+  /**
+   * Parses an element. The opening bracket has already been consumed.
+   * @throws IOException I/O exception
+   */
+  private void elem() throws IOException {
+    skipWS();
+    final int t = type();
+    if(t == -1) errorML("No element name specified in array");
+    if(t != STRING) errorML("% expected for %, % found", T_STRING, "element name", TYPES[t]);
+    final byte[] name = name(str());
+
+    // parse attributes
+    atts.reset();
+    boolean more = wsConsume(',');
+    if(more) {
+      skipWS();
+      if(curr == '{') {
+        consume();
+        do {
+          final byte[] key = str();
+          if(key == null) {
+            if(atts.size() != 0) error(INVALEXP, curr(), '"');
+            break;
+          }
+          wsCheck(':');
+          skipWS();
+          final int at = type();
+          if(at == -1) error(INVALEXP, curr(), '"');
+          if(at != STRING) errorML("% expected for %, % found",
+              T_STRING, "attribute value", TYPES[at]);
+          atts.add(name(key), str());
+        } while(wsConsume(','));
+        wsCheck('}');
+        more = wsConsume(',');
+      }
+    }
+    builder.startElem(name, atts);
+
+    // parse children
+    boolean txt = false;
+    while(more) {
+      skipWS();
+      final int ct = type();
+      if(ct == ARRAY) {
+        consume();
+        elem();
+        txt = false;
+      } else if(ct == STRING) {
+        if(txt) errorML("No subsequent texts allowed");
+        txt = true;
+        text(str());
+      } else if(ct == -1) {
+        error(INVALEXP, curr(), '"');
+      } else {
+        errorML("No % allowed at this stage", TYPES[ct]);
+      }
+      more = wsConsume(',');
+    }
+    wsCheck(']');
+    builder.endElem();
+  }
+
+  /**
+   * Checks the specified name.
+   * @param name name
+   * @return name
+   * @throws IOException I/O exception
+   */
+  private byte[] name(final byte[] name) throws IOException {
+    if(!XMLToken.isNCName(name)) errorML("Invalid name: \"%\"", name);
+    return name;
+  }
+
+  // TOKENIZER ================================================================
+
+  /**
+   * Opens the input.
+   * @throws IOException I/O exception
+   */
+  private void open() throws IOException {
+    close();
+    in = new NewlineInput(src).encoding(encoding);
+    line = 1;
+    col = 0;
+    consume();
+  }
+
+  /**
+   * Checks that the input has been completely parsed, and closes it.
+   * @throws IOException I/O exception
+   */
+  private void finish() throws IOException {
+    skipWS();
+    if(curr != -1) error(INVALEXP, curr(), "end of file");
+    close();
+    in = null;
+  }
+
+  /**
+   * Adds a text node.
+   * @param text text
+   * @throws IOException I/O exception
+   */
+  private void text(final byte[] text) throws IOException {
+    builder.text(chop ? trim(text) : text);
+  }
+
+  /**
+   * Returns the type of the value at the current position.
+   * @return type, or {@code -1} if no value starts at the current position
+   */
+  private int type() {
+    final int ch = curr;
+    if(digit(ch) || ch == '-') return NUMBER;
+    if(ch == '"') return STRING;
+    if(ch == '{') return OBJECT;
+    if(ch == '[') return ARRAY;
+    if(ch == 't' || ch == 'f') return BOOLEAN;
+    if(ch == 'n') return NULL;
+    return -1;
+  }
+
+  /**
+   * Parses an atomic value.
+   * @param t type
+   * @return value, or {@code null} for the null value
+   * @throws IOException I/O exception
+   */
+  private byte[] atom(final int t) throws IOException {
+    switch(t) {
+      case STRING:
+        return str();
+      case NUMBER:
+        return number();
+      case BOOLEAN:
+        if(curr == 't') {
+          for(final byte b : TRUE) check((char) b);
+          return TRUE;
+        }
+        for(final byte b : FALSE) check((char) b);
+        return FALSE;
+      default:
+        for(final byte b : Token.NULL) check((char) b);
+        return null;
+    }
+  }
+
+  /**
+   * Parses a string.
+   * @return resulting string, or {@code null} if no string was found
+   * @throws IOException I/O exception
+   */
+  private byte[] str() throws IOException {
+    if(!wsConsume('"')) return null;
+    tb.reset();
+    while(curr != -1) {
+      int ch = consume();
+      if(ch == '"') return tb.finish();
+      if(ch == '\\') {
+        ch = consume();
+        if(ch == 'u') {
+          int i = 0;
+          for(int s = 0; s < 4; s++) {
+            ch = consume();
+            i <<= 4;
+            if(ch >= '0' && ch <= '9') i += ch - 0x30;
+            else if(ch >= 'A' && ch <= 'F') i += ch - 0x37;
+            else if(ch >= 'a' && ch <= 'f') i += ch - 0x57;
+            else error(INVALID, (char) ch, "hex digit");
+          }
+          ch = i;
+        } else if(ch == 'b') {
+          ch = '\b';
+        } else if(ch == 'f') {
+          ch = '\f';
+        } else if(ch == 'n') {
+          ch = '\n';
+        } else if(ch == 'r') {
+          ch = '\r';
+        } else if(ch == 't') {
+          ch = '\t';
+        } else if("\\\"/".indexOf(ch) == -1) {
+          error(INVALID, "\\" + (char) ch);
+        }
+      }
+      tb.add(XMLToken.valid(ch) ? ch : '?');
     }
+    throw error(INVALEXP, 0, '"');
+  }
+
+  /**
+   * Parses a number.
+   * @return resulting number
+   * @throws IOException I/O exception
+   */
+  private byte[] number() throws IOException {
+    tb.reset();
+    if(curr == '-') tb.add(consume());
+
+    if(curr == '0') {
+      tb.add(consume());
+    } else {
+      digits();
+    }
+    if(curr == '.') {
+      tb.add(consume());
+      digits();
+    }
+    if(curr == 'e' || curr == 'E') {
+      tb.add(consume());
+      if(curr == '+' || curr == '-') tb.add(consume());
+      digits();
+    }
+    return tb.finish();
+  }
+
+  /**
+   * Consumes digits.
+   * @throws IOException I/O exception
+   */
+  private void digits() throws IOException {
+    if(!digit(curr)) throw error(INVALEXP, curr(), "digit");
+    do tb.add(consume()); while(digit(curr));
+  }
+
+  /**
+   * Returns the current character, or a null character at the end of the input.
+   * @return current character
+   */
+  private char curr() {
+    return curr == -1 ? 0 : (char) curr;
+  }
+
+  /**
+   * Consumes the current character.
+   * @return consumed character
+   * @throws IOException I/O exception
+   */
+  private int consume() throws IOException {
+    final int ch = curr;
+    if(ch == '\n') {
+      line++;
+      col = 0;
+    }
+    col++;
+    curr = in.read();
+    return ch;
+  }
+
+  /**
+   * Consumes leading whitespaces and the specified character.
+   * @param ch character to consume
+   * @return true if token was found
+   * @throws IOException I/O exception
+   */
+  private boolean wsConsume(final int ch) throws IOException {
+    skipWS();
+    if(curr != ch) return false;
+    consume();
+    return true;
+  }
+
+  /**
+   * Consumes consecutive whitespace characters.
+   * @throws IOException I/O exception
+   */
+  private void skipWS() throws IOException {
+    while(curr > 0 && curr <= ' ') consume();
+  }
+
+  /**
+   * Skips whitespaces, raises an error if the specified character cannot be
+   * consumed.
+   * @param ch character to be found
+   * @throws IOException I/O exception
+   */
+  private void wsCheck(final char ch) throws IOException {
+    if(!wsConsume(ch)) error(INVALEXP, curr(), "\"" + ch + '"');
+  }
+
+  /**
+   * Raises an error if the specified character cannot be consumed.
+   * @param ch character to be found
+   * @throws IOException I/O exception
+   */
+  private void check(final char ch) throws IOException {
+    if(curr != ch) error(INVALEXP, curr(), "\"" + ch + '"');
+    consume();
+  }
+
+  /**
+   * Raises a parse error with the specified message.
+   * @param msg error message
+   * @param ext error details
+   * @return build exception
+   * @throws IOException I/O exception
+   */
+  private IOException error(final String msg, final Object... ext) throws IOException {
+    throw new BaseXException(new QueryException(null, BXJS_PARSE, line, col,
+        Util.inf(msg, ext)).getLocalizedMessage());
+  }
+
+  /**
+   * Raises a JsonML error with the specified message.
+   * @param msg error message
+   * @param ext error details
+   * @throws IOException I/O exception
+   */
+  private static void errorML(final String msg, final Object... ext) throws IOException {
+    throw new BaseXException(new QueryException(null, BXJS_PARSEML,
+        Util.inf(msg, ext)).getLocalizedMessage());
   }
 }
@@ -18,6 +18,8 @@ public final class ParserProp extends AProp {
   public static final Object[] HEADER = { "header", false };
   /** Parser option: XML format. */
   public static final Object[] FORMAT = { "format", "verbose" };
+  /** Parser option: columns with integers to be normalized. */
+  public static final Object[] NORMALIZE = { "normalize", "" };
   /** Parser option: line. */
   public static final Object[] LINES = { "lines", true };
   /** Parser option: flat. */
@@ -241,6 +241,14 @@ public final class Context {
     pr.stopTimeout();
   }
 
+  /**
+   * Returns information on the current locking state.
+   * @return info string
+   */
+  public String locking() {
+    return locks.info();
+  }
+
   /**
    * Adds the specified client session.
    * @param s session to be added
@@ -1,11 +1,12 @@
 package org.basex.core;
 
-import static org.basex.core.Prop.*;
+import static org.basex.core.Text.*;
 
-import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
 import java.util.concurrent.locks.*;
 
+import org.basex.util.*;
 import org.basex.util.list.*;
 
 /**
@@ -30,10 +31,14 @@ public final class DBLocking implements Locking {
   private static final boolean FAIR = true;
 
   /** Lock for running thread counters. */
-  private final Object globalLock = new Object();
+  private final ReentrantLock globalLock = new ReentrantLock();
+  /** Signalled if no more global readers are running. */
+  private final Condition noGlobalReaders = globalLock.newCondition();
+  /** Signalled if no more local writers are running. */
+  private final Condition noLocalWriters = globalLock.newCondition();
   /** Number of running local writers. Guarded by {@code globalLock}. */
   private int localWriters;
-  /** Number of running local writers. Guarded by {@code globalLock}. */
+  /** Number of running global readers. Guarded by {@code globalLock}. */
   private int globalReaders;
   /**
    * Lock for global write locking.
@@ -43,19 +48,15 @@ public final class DBLocking implements Locking {
    */
   private final ReentrantReadWriteLock writeAll = new ReentrantReadWriteLock();
   /** Stores one lock for each object ever used for locking. */
-  private final Map<String, ReentrantReadWriteLock> locks =
-      new HashMap<String, ReentrantReadWriteLock>();
+  private final ConcurrentMap<String, ReentrantReadWriteLock> locks =
+      new ConcurrentHashMap<String, ReentrantReadWriteLock>();
   /**
-   * Currently running transactions.
-   * Used as monitor for atomizing access to {@link #queue}.
+   * Permits for running transactions. Waiting transactions are queued in FIFO order,
+   * and only the head of the queue is woken up if a transaction is finished.
    */
-  private int transactions;
-  /**
-   * Queue for transactions waiting.
-   *
-   * Used as monitor for waiting threads in queue.
-   */
-  private final Queue<Long> queue = new LinkedList<Long>();
+  private final Transactions transactions = new Transactions();
+  /** Maximum number of parallel transactions. Guarded by {@code transactions}. */
+  private int parallel;
   /**
    * Stores a list of objects each transaction has write-locked.
    * Null means lock everything, an empty array lock nothing.
@@ -68,6 +69,16 @@ public final class DBLocking implements Locking {
    */
   private final ConcurrentMap<Long, StringList> readLocked =
       new ConcurrentHashMap<Long, StringList>();
+  /** Start times of running transactions (only assigned if statistics are enabled). */
+  private final ConcurrentMap<Long, Long> started = new ConcurrentHashMap<Long, Long>();
+  /** Number of acquired locks. */
+  private final AtomicLong acquired = new AtomicLong();
+  /** Total time spent for waiting (nano seconds). */
+  private final AtomicLong waiting = new AtomicLong();
+  /** Maximum time spent for waiting (nano seconds). */
+  private final AtomicLong maxWaiting = new AtomicLong();
+  /** Total time locks have been held (nano seconds). */
+  private final AtomicLong holding = new AtomicLong();
   /** BaseX database context. */
   private final MainProp mprop;
 
@@ -85,49 +96,31 @@ public final class DBLocking implements Locking {
     if(writeLocked.containsKey(thread) || readLocked.containsKey(thread))
       throw new IllegalMonitorStateException("Thread already holds one or more locks.");
 
+    final boolean stats = mprop.is(MainProp.LOCKSTATS);
+    final long start = stats ? System.nanoTime() : 0;
+
     // Wait in queue if necessary
-    synchronized(queue) { // Guard queue and transaction, monitor for waiting in queue
-      queue.add(thread);
-      while(transactions >= Math.max(mprop.num(MainProp.PARALLEL), 1)
-          || queue.peek() != thread) {
-        try {
-          queue.wait();
-        } catch(final InterruptedException e) {
-          Thread.currentThread().interrupt();
-        }
-      }
-      final int t = transactions++;
-      assert t <= Math.max(mprop.num(MainProp.PARALLEL), 1);
-      queue.remove(thread);
-    }
+    parallel();
+    transactions.acquireUninterruptibly();
 
     // Global write lock if write StringList is not set
     if(null == write) writeAll.writeLock().lock();
     else writeAll.readLock().lock();
 
-    synchronized(globalLock) {
+    globalLock.lock();
+    try {
       // global write locking
       if(null != write && !write.isEmpty()) {
-        while(globalReaders > 0) {
-          try {
-            globalLock.wait();
-          } catch(final InterruptedException e) {
-            Thread.currentThread().interrupt();
-          }
-        }
+        while(globalReaders > 0) noGlobalReaders.awaitUninterruptibly();
         localWriters++;
       }
       // global read locking
       if(null == read) {
-        while(localWriters > 0) {
-          try {
-            globalLock.wait();
-          } catch(final InterruptedException e) {
-            Thread.currentThread().interrupt();
-          }
-        }
+        while(localWriters > 0) noLocalWriters.awaitUninterruptibly();
         globalReaders++;
       }
+    } finally {
+      globalLock.unlock();
     }
 
     // Local locking
@@ -158,6 +151,15 @@ public final class DBLocking implements Locking {
         // global write lock is possible
         if(null != write) getOrCreateLock(readObjects.get(r++)).readLock().lock();
     }
+
+    if(stats) {
+      final long time = System.nanoTime();
+      final long wait = time - start;
+      acquired.incrementAndGet();
+      waiting.addAndGet(wait);
+      for(long max; wait > (max = maxWaiting.get()) && !maxWaiting.compareAndSet(max, wait););
+      started.put(thread, time);
+    }
   }
 
   /**
@@ -203,11 +205,12 @@ public final class DBLocking implements Locking {
       writeAll.readLock().lock();
       writeAll.writeLock().unlock();
 
-      synchronized(globalLock) {
-        if(!downgrade.isEmpty())
-          localWriters++;
+      globalLock.lock();
+      try {
+        if(!downgrade.isEmpty()) localWriters++;
         globalReaders++;
-        globalLock.notifyAll();
+      } finally {
+        globalLock.unlock();
       }
     }
 
@@ -222,15 +225,12 @@ public final class DBLocking implements Locking {
    * @return lock on object
    */
   private ReentrantReadWriteLock getOrCreateLock(final String object) {
-    ReentrantReadWriteLock lock;
-    synchronized(locks) { // Make sure each object lock is a singleton
-      lock = locks.get(object);
-      if(null == lock) { // Create lock if needed
-        lock = new ReentrantReadWriteLock(FAIR);
-        locks.put(object, lock);
-      }
-    }
-    return lock;
+    final ReentrantReadWriteLock lock = locks.get(object);
+    if(null != lock) return lock;
+    // make sure each object lock is a singleton
+    final ReentrantReadWriteLock created = new ReentrantReadWriteLock(FAIR);
+    final ReentrantReadWriteLock old = locks.putIfAbsent(object, created);
+    return null != old ? old : created;
   }
 
   @Override
@@ -254,21 +254,71 @@ public final class DBLocking implements Locking {
 
     // Release global locks
     (writeAll.isWriteLocked() ? writeAll.writeLock() : writeAll.readLock()).unlock();
-    if(null != writeObjects && !writeObjects.isEmpty()) synchronized(globalLock) {
-      localWriters--;
-      globalLock.notifyAll();
-    } else if(null == readObjects) synchronized(globalLock) {
-      globalReaders--;
-      globalLock.notifyAll();
+    if(null != writeObjects && !writeObjects.isEmpty() || null == readObjects) {
+      globalLock.lock();
+      try {
+        // only wake up waiting threads if they are allowed to continue
+        if(null != writeObjects && !writeObjects.isEmpty()) {
+          if(--localWriters == 0) noLocalWriters.signalAll();
+        } else if(--globalReaders == 0) {
+          noGlobalReaders.signalAll();
+        }
+      } finally {
+        globalLock.unlock();
+      }
     }
 
+    final Long time = started.remove(thread);
+    if(null != time) holding.addAndGet(System.nanoTime() - time);
+
     // Allow another transaction to run
-    synchronized(queue) {
-      transactions--;
-      queue.notifyAll();
+    transactions.release();
+  }
+
+  /**
+   * Adjusts the number of available permits if the value of
+   * {@link MainProp#PARALLEL} has changed.
+   */
+  private void parallel() {
+    final int p = Math.max(mprop.num(MainProp.PARALLEL), 1);
+    synchronized(transactions) {
+      if(p > parallel) transactions.release(p - parallel);
+      else if(p < parallel) transactions.reducePermits(parallel - p);
+      parallel = p;
     }
   }
 
+  @Override
+  public String info() {
+    final TokenBuilder tb = new TokenBuilder();
+    final int p;
+    synchronized(transactions) {
+      p = parallel;
+    }
+    info(tb, LOCK_RUNNING, Math.max(0, p - transactions.availablePermits()));
+    info(tb, LOCK_QUEUED, transactions.getQueueLength());
+    final long acq = acquired.get();
+    if(acq != 0) {
+      info(tb, LOCK_ACQUIRED, acq);
+      info(tb, LOCK_WAIT, Performance.getTime(waiting.get(), (int) Math.min(acq,
+          Integer.MAX_VALUE)));
+      info(tb, LOCK_WAIT_MAX, Performance.getTime(maxWaiting.get(), 1));
+      info(tb, LOCK_HOLD, Performance.getTime(holding.get(), (int) Math.min(acq,
+          Integer.MAX_VALUE)));
+    }
+    return tb.toString();
+  }
+
+  /**
+   * Formats the specified input.
+   * @param tb token builder
+   * @param key key
+   * @param val value
+   */
+  private static void info(final TokenBuilder tb, final Object key, final Object val) {
+    tb.add(' ').add(key.toString()).add(COLS).add(val.toString()).add(NL);
+  }
+
   /**
    * Present current locking status. Not to be seen as a programming API but only for
    * debugging purposes.
@@ -278,8 +328,9 @@ public final class DBLocking implements Locking {
     final String ind = "| ";
     final StringBuilder sb = new StringBuilder(NL);
     sb.append("Locking" + NL);
-    sb.append(ind + "Transactions running: " + transactions + NL);
-    sb.append(ind + "Transaction queue: " + queue + NL);
+    sb.append(ind + "Transactions running: " + (parallel - transactions.availablePermits())
+        + NL);
+    sb.append(ind + "Transactions queued: " + transactions.getQueueLength() + NL);
     sb.append(ind + "Held locks by object:" + NL);
     for(final Object object : locks.keySet())
       sb.append(ind + ind + object + " -> " + locks.get(object) + NL);
@@ -292,4 +343,23 @@ public final class DBLocking implements Locking {
     return sb.toString();
   }
 
+  /**
+   * Semaphore for transactions, which allows the number of permits to be reduced.
+   */
+  private static final class Transactions extends Semaphore {
+    /** Serial version UID. */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructor.
+     */
+    Transactions() {
+      super(0, FAIR);
+    }
+
+    @Override
+    protected void reducePermits(final int reduction) {
+      super.reducePermits(reduction);
+    }
+  }
 }
@@ -55,6 +55,16 @@ public final class Datas {
     list.add(d);
   }
 
+  /**
+   * Returns the timestamp of the last update of the specified database.
+   * @param db name of the database
+   * @return timestamp, or {@code -1} if the database is not opened
+   */
+  public synchronized long time(final String db) {
+    for(final Data d : list) if(d.meta.name.equals(db)) return d.meta.time;
+    return -1;
+  }
+
   /**
    * Checks if the specified database is pinned.
    * @param db name of the database
@@ -26,4 +26,11 @@ public interface Locking {
    * @param pr progress
    */
   void release(final Progress pr);
+
+  /**
+   * Returns information on the current locking state and, if
+   * {@link MainProp#LOCKSTATS} is enabled, on waiting and holding times.
+   * @return info string
+   */
+  String info();
 }
@@ -32,6 +32,8 @@ public final class MainProp extends AProp {
   public static final Object[] LANGKEYS = { "LANGKEYS", false };
   /** Applied locking algorithm: local (database) vs. global (process) locking. */
   public static final Object[] GLOBALLOCK = { "GLOBALLOCK", false };
+  /** Collect statistics on lock waiting and holding times. */
+  public static final Object[] LOCKSTATS = { "LOCKSTATS", false };
 
   /** Comment: written to property file. */
   public static final Object[] C_CLIENT = { "Client/Server Architecture" };
@@ -64,10 +66,22 @@ public final class MainProp extends AProp {
   public static final Object[] KEEPALIVE = { "KEEPALIVE", 600 };
   /** Defines the number of parallel readers. */
   public static final Object[] PARALLEL = { "PARALLEL", 8 };
+  /**
+   * Number of worker threads for processing client requests. Idle clients will not
+   * occupy any threads. If set to 0, each client will be served by its own thread.
+   */
+  public static final Object[] WORKERS = { "WORKERS", 16 };
+  /**
+   * Maximum number of repeatedly requested queries that are cached in a parsed state
+   * per client session; deactivated if set to 0.
+   */
+  public static final Object[] QUERYCACHE = { "QUERYCACHE", 32 };
   /** Logging flag. */
   public static final Object[] LOG = { "LOG", true };
   /** Log message cut-off. */
   public static final Object[] LOGMSGMAXLEN = { "LOGMSGMAXLEN", 1000 };
+  /** Write and flush each log entry before the client request is processed. */
+  public static final Object[] LOGSYNC = { "LOGSYNC", false };
 
   /** Comment: written to property file. */
   public static final Object[] C_HTTP = { "HTTP Services" };
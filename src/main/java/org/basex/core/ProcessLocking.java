@@ -1,5 +1,7 @@
 package org.basex.core;
 
+import static org.basex.core.Text.*;
+
 import java.util.*;
 
 import org.basex.util.*;
@@ -88,4 +90,14 @@ final class ProcessLocking implements Locking {
       mutex.notifyAll();
     }
   }
+
+  @Override
+  public String info() {
+    synchronized(mutex) {
+      final TokenBuilder tb = new TokenBuilder();
+      tb.add(' ').add(LOCK_RUNNING).add(COLS).addLong(writer ? 1 : readers).add(NL);
+      tb.add(' ').add(LOCK_QUEUED).add(COLS).addLong(queue.size()).add(NL);
+      return tb.toString();
+    }
+  }
 }
@@ -84,6 +84,8 @@ public final class Prop extends AProp {
   public static final Object[] SKIPCORRUPT = { "SKIPCORRUPT", false };
   /** Flag for adding remaining files as raw files. */
   public static final Object[] ADDRAW = { "ADDRAW", false };
+  /** Number of threads for parsing documents of directories and archives, and CSV blocks. */
+  public static final Object[] PARSETHREADS = { "PARSETHREADS", 1 };
   /** Define import parser. */
   public static final Object[] PARSER = { "PARSER", "xml" };
   /** Define parser options. */
@@ -122,9 +124,23 @@ public final class Prop extends AProp {
   public static final Object[] MAXLEN = { "MAXLEN", 96 };
   /** Maximum number of name categories. */
   public static final Object[] MAXCATS = { "MAXCATS", 100 };
+  /** Maximum size of the index entry caches (in kilobytes). */
+  public static final Object[] INDEXCACHE = { "INDEXCACHE", 4096 };
+  /** Number of threads for building value indexes. */
+  public static final Object[] INDEXTHREADS = { "INDEXTHREADS", 1 };
   /** Flag for automatic index update. */
   public static final Object[] UPDINDEX = { "UPDINDEX", false };
 
+  // Storage
+
+  /** Size of the table page cache (in megabytes), shared by all opened databases;
+   *  deactivated if set to 0. */
+  public static final Object[] TABLECACHE = { "TABLECACHE", 0 };
+  /** Flag for creating databases with a compressed, read-optimized table. */
+  public static final Object[] TABLECOMPRESS = { "TABLECOMPRESS", false };
+  /** Flag for mapping texts, attribute values and index files into memory. */
+  public static final Object[] MMAP = { "MMAP", false };
+
   // Full-Text
 
   /** Flag for full-text stemming. */
@@ -150,6 +166,17 @@ public final class Prop extends AProp {
   public static final Object[] QUERYPATH = { "QUERYPATH", "" };
   /** Caches the query results. */
   public static final Object[] CACHEQUERY = { "CACHEQUERY", false };
+  /** Maximum number of results that are streamed to a client in one batch. */
+  public static final Object[] BATCHITEMS = { "BATCHITEMS", 1000 };
+  /** Maximum size of results that are streamed to a client in one batch (in kilobytes). */
+  public static final Object[] BATCHSIZE = { "BATCHSIZE", 64 };
+  /** Maximum number of tuples that are sorted in main memory (0: no limit). */
+  public static final Object[] MAXSORT = { "MAXSORT", 1000000 };
+  /** Maximum number of groups and grouped items kept in main memory (0: no limit).
+   * Items of existing groups will be added even if the limit has been reached. */
+  public static final Object[] MAXGROUP = { "MAXGROUP", 1000000 };
+  /** Number of threads for evaluating FLWOR iterations in parallel (0: sequential). */
+  public static final Object[] PARALLELFLWOR = { "PARALLELFLWOR", 0 };
   /** Forces database creation for unknown documents. */
   public static final Object[] FORCECREATE = { "FORCECREATE", false };
   /** Levenshtein default error. */
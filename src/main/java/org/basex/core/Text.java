@@ -204,6 +204,8 @@ public interface Text {
   /** Command keyword. */
   String C_TO = "TO";
   /** Command keyword. */
+  String C_INCREMENTAL = "INCREMENTAL";
+  /** Command keyword. */
   String C_QUERY = "query";
   /** Command keyword. */
   String C_PATH = "path";
@@ -229,8 +231,9 @@ public interface Text {
     CmdCreate.EVENT + '|' + CmdCreate.INDEX + '|' + CmdCreate.USER + "] [...]",
     lang("c_create1"),
     lang("c_create2") + NL +
-    LI + CmdDrop.BACKUP + " [" + C_NAME + "]:" + NL +
+    LI + CmdDrop.BACKUP + " [" + C_NAME + "] (" + C_INCREMENTAL + "):" + NL +
     "  " + lang("c_create4", C_NAME) + NL +
+    "  " + lang("c_create10", C_INCREMENTAL) + NL +
     LI + CmdCreate.DATABASE + " [" + C_NAME + "] ([" + C_INPUT + "]):"  + NL +
     "  " + lang("c_create3", C_NAME, C_INPUT) + NL +
     LI + CmdCreate.EVENT + " [" + C_NAME + "]: " + NL +
@@ -591,6 +594,8 @@ public interface Text {
   String LI_SIZE = LI + "Size: ";
   /** Index info. */
   String LI_ENTRIES = LI + "Entries: ";
+  /** Index info. */
+  String LI_CACHE = LI + "Cache: ";
 
   /** Index info. */
   String HASH = "Hash";
@@ -659,6 +664,22 @@ public interface Text {
 
   /** Show sessions. */
   String SESSIONS_X = lang("sessions_%");
+  /** Locking information. */
+  String LOCKING = lang("locking");
+  /** Query cache. */
+  String QUERY_CACHE = lang("query_cache");
+  /** Running transactions. */
+  String LOCK_RUNNING = lang("lock_running");
+  /** Queued transactions. */
+  String LOCK_QUEUED = lang("lock_queued");
+  /** Acquired locks. */
+  String LOCK_ACQUIRED = lang("lock_acquired");
+  /** Waiting time. */
+  String LOCK_WAIT = lang("lock_wait");
+  /** Maximum waiting time. */
+  String LOCK_WAIT_MAX = lang("lock_wait_max");
+  /** Holding time. */
+  String LOCK_HOLD = lang("lock_hold");
   /** Show events. */
   String EVENTS_X = lang("events_%");
   /** Show packages. */
@@ -783,6 +804,8 @@ public interface Text {
 
   /** Info on whitespace chopping. */
   String WS_CHOPPING = lang("ws_chopping");
+  /** Info on table compression. */
+  String TABLE_COMPRESSION = lang("table_compression");
   /** Info on text indexing. */
   String TEXT_INDEX = lang("text_index");
   /** Info on attribute indexing. */
@@ -1137,6 +1160,8 @@ public interface Text {
   String DATABASES = lang("databases");
   /** Backups. */
   String BACKUPS = lang("backups");
+  /** Parent backup. */
+  String BASED_ON = lang("based_on");
   /** Line number. */
   String LINE_NUMBER = lang("line_number");
 
@@ -196,7 +196,8 @@ public abstract class AQuery extends Command {
    * @return query processor
    */
   private QueryProcessor queryProcessor(final String query, final Context ctx) {
-    if(qp == null) qp = progress(new QueryProcessor(query, ctx));
+    if(qp == null) qp = progress(ctx.listener != null ? ctx.listener.cache().get(query) :
+      new QueryProcessor(query, ctx));
     return qp;
   }
 
@@ -8,7 +8,6 @@ import org.basex.build.*;
 import org.basex.core.*;
 import org.basex.core.parse.*;
 import org.basex.data.*;
-import org.basex.data.atomic.*;
 import org.basex.io.*;
 import org.basex.util.*;
 
@@ -93,40 +92,19 @@ public final class Add extends ACreate {
     parser = new DirParser(io, prop, data.meta.path);
     parser.target(target);
 
-    // create disk instances for large documents
-    // (does not work for input streams and directories)
-    final long fl = parser.src.length();
-    boolean large = false;
-    final Runtime rt = Runtime.getRuntime();
-    if(fl > rt.freeMemory() / 3) {
-      Performance.gc(prop.is(Prop.SINGLEGC) ? 1 : 2);
-      large = fl > rt.freeMemory() / 3;
-    }
-    // in main memory mode, never write to disk
-    if(prop.is(Prop.MAINMEM)) large = false;
-
-    // create random database name for disk-based creation
-    final String db = large ? context.mprop.random(data.meta.name) : name;
-    build = large ? new DiskBuilder(db, parser, context) : new MemBuilder(db, parser);
-
-    Data tmp = null;
+    // append documents directly to the database
+    if(lock && !data.startUpdate()) return error(DB_PINNED_X, data.meta.name);
+    build = new AppendBuilder(data, parser);
+    final int size = data.meta.size;
     try {
-      tmp = build.build();
-      // skip update if fragment is empty
-      if(tmp.meta.size > 1) {
-        if(lock && !data.startUpdate()) return error(DB_PINNED_X, data.meta.name);
-        data.insert(data.meta.size, -1, new DataClip(tmp));
-        context.update();
-        if(lock) data.finishUpdate();
-      }
+      build.build();
+      if(data.meta.size != size) context.update();
       // return info message
       return info(parser.info() + PATH_ADDED_X_X, name, perf);
     } catch(final IOException ex) {
       return error(Util.message(ex));
     } finally {
-      // close and drop intermediary database instance
-      if(tmp != null) tmp.close();
-      if(large) DropDB.drop(db, context);
+      if(lock) data.finishUpdate();
     }
   }
 
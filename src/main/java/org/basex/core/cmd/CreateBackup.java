@@ -19,13 +19,21 @@ import org.basex.util.list.*;
  * @author Christian Gruen
  */
 public final class CreateBackup extends Command {
-
   /**
    * Default constructor.
    * @param arg optional argument
    */
   public CreateBackup(final String arg) {
-    super(Perm.CREATE, arg);
+    this(arg, false);
+  }
+
+  /**
+   * Constructor, specifying if only the changes since the last backup are to be stored.
+   * @param arg optional argument
+   * @param incr incremental backup
+   */
+  public CreateBackup(final String arg, final boolean incr) {
+    super(Perm.CREATE, arg, incr ? C_INCREMENTAL : null);
   }
 
   @Override
@@ -61,11 +69,19 @@ public final class CreateBackup extends Command {
     final String backup = db + '-' + DateTime.format(new Date(), DateTime.DATETIME) +
         IO.ZIPSUFFIX;
     final IOFile zf = mprop.dbpath(backup);
-    final Zip zip = progress(new Zip(zf));
+    final Backup bu = progress(new Backup(zf));
+
+    // incremental backups are based on the latest backup
+    IOFile base = null;
+    if(args[1] != null) {
+      final StringList list = Databases.backupPaths(db, context);
+      if(!list.isEmpty()) base = new IOFile(list.get(0));
+      // a backup created in the same second will be overwritten
+      if(base != null && base.name().equals(zf.name())) base = null;
+    }
 
     try {
-      final IOFile path = mprop.dbpath(db);
-      zip.zip(path, path.descendants());
+      bu.create(mprop.dbpath(db), base);
       return true;
     } catch(final IOException ex) {
       Util.debug(ex);
@@ -2,11 +2,14 @@ package org.basex.core.cmd;
 
 import static org.basex.core.Text.*;
 
+import java.io.*;
+
 import org.basex.core.*;
 import org.basex.core.parse.*;
 import org.basex.core.parse.Commands.*;
 import org.basex.data.*;
 import org.basex.io.*;
+import org.basex.util.*;
 import org.basex.util.list.*;
 
 /**
@@ -59,6 +62,34 @@ public final class DropBackup extends Command {
       final String n = f.name();
       if(n.startsWith(db) && n.endsWith(IO.ZIPSUFFIX) && f.delete()) c++;
     }
+    // incremental backups cannot be restored without the backups they are based on
+    if(c != 0) c += orphans(dir);
+    return c;
+  }
+
+  /**
+   * Drops incremental backups that are based on non-existing backups.
+   * @param dir database directory
+   * @return number of dropped backups
+   */
+  private static int orphans(final IOFile dir) {
+    final StringList names = new StringList();
+    for(final IOFile f : dir.children()) {
+      final String n = f.name();
+      if(n.endsWith(IO.ZIPSUFFIX)) names.add(n);
+    }
+    // parents are checked first, as they are older than the backups based on them
+    int c = 0;
+    for(final String n : names.sort(true, true)) {
+      final IOFile f = new IOFile(dir, n);
+      try {
+        final String parent = new Backup(f).parent();
+        if(parent != null && !parent.isEmpty() &&
+            !new IOFile(dir, parent + IO.ZIPSUFFIX).exists() && f.delete()) c++;
+      } catch(final IOException ex) {
+        Util.debug(ex);
+      }
+    }
     return c;
   }
 
@@ -50,6 +50,7 @@ public final class Info extends AInfo {
       final AProp prop = context.mprop;
       tb.add(NL + MAIN_OPTIONS + NL);
       for(final String s : prop) info(tb, s, prop.get(s));
+      tb.add(NL + LOCKING + NL).add(context.locking());
     }
     final AProp prop = context.prop;
     tb.add(NL + OPTIONS + NL);
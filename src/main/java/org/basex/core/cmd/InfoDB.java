@@ -71,6 +71,7 @@ public final class InfoDB extends AInfo {
     info(tb, TIMESTAMP, DateTime.format(new Date(meta.time), DateTime.DATETIME));
     info(tb, ENCODING, meta.encoding);
     info(tb, WS_CHOPPING, Util.flag(meta.chop));
+    info(tb, TABLE_COMPRESSION, Util.flag(meta.compress));
 
     if(index) {
       tb.add(NL).addExt(header, INDEXES);
@@ -84,6 +85,7 @@ public final class InfoDB extends AInfo {
         info(tb, Prop.UPDINDEX[0], Util.flag(meta.updindex));
         info(tb, Prop.MAXCATS[0], meta.maxcats);
         info(tb, Prop.MAXLEN[0], meta.maxlen);
+        info(tb, Prop.INDEXCACHE[0], meta.indexcache);
       }
     }
     return tb.toString();
@@ -7,6 +7,7 @@ import java.io.*;
 import org.basex.core.*;
 import org.basex.data.*;
 import org.basex.index.*;
+import org.basex.index.ft.*;
 import org.basex.util.*;
 import org.basex.util.list.*;
 
@@ -122,6 +123,9 @@ public final class Optimize extends ACreate {
     optimize(IndexType.ATTRIBUTE, data, md.createattr, md.attrindex, c);
     optimize(IndexType.TEXT,      data, md.createtext, md.textindex, c);
     optimize(IndexType.FULLTEXT,  data, md.createftxt, md.ftxtindex, c);
+
+    // merge pending updates of full-text index
+    if(data.ftxindex instanceof FTIndex) ((FTIndex) data.ftxindex).merge();
   }
 
   /**
@@ -31,6 +31,7 @@ public final class ShowBackups extends Command {
     table.description = BACKUPS;
     table.header.add(NAME);
     table.header.add(SIZE);
+    table.header.add(BASED_ON);
 
     for(final IOFile f : mprop.dbpath().children()) {
       final String name = f.name();
@@ -38,12 +39,28 @@ public final class ShowBackups extends Command {
       final TokenList tl = new TokenList();
       tl.add(name);
       tl.add(f.length());
+      tl.add(parent(f));
       table.contents.add(tl);
     }
     out.println(table.sort().finish());
     return true;
   }
 
+  /**
+   * Returns the name of the backup the specified backup is based on.
+   * @param f backup file
+   * @return name, or empty string
+   */
+  private static String parent(final IOFile f) {
+    try {
+      final String parent = new Backup(f).parent();
+      return parent == null ? "" : parent;
+    } catch(final IOException ex) {
+      Util.debug(ex);
+      return "";
+    }
+  }
+
   @Override
   protected boolean databases(final StringList db) {
     return true;
@@ -1,5 +1,7 @@
 package org.basex.core.cmd;
 
+import static org.basex.core.Text.*;
+
 import java.io.*;
 
 import org.basex.core.*;
@@ -24,6 +26,9 @@ public final class ShowSessions extends Command {
   @Override
   protected boolean run() throws IOException {
     out.println(context.sessions.info());
+    out.println(NL + QUERY_CACHE + COLS + context.sessions.cacheInfo());
+    out.println(NL + LOCKING + COL);
+    out.print(context.locking());
     return true;
   }
 
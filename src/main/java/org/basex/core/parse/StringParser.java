@@ -85,7 +85,7 @@ final class StringParser extends CmdParser {
       case CREATE:
         switch(consume(CmdCreate.class, cmd)) {
           case BACKUP:
-            return new CreateBackup(glob(cmd));
+            return new CreateBackup(glob(cmd), key(C_INCREMENTAL, null));
           case DATABASE: case DB:
             return new CreateDB(name(cmd), single ? remaining(null) : string(null));
           case INDEX:
@@ -352,7 +352,7 @@ final class StringParser extends CmdParser {
     consumeWS();
     final int p = parser.ip;
     final boolean ok = (parser.consume(key) || parser.consume(
-        key.toLowerCase(Locale.ENGLISH))) && (parser.curr(0) || ws(parser.curr()));
+        key.toLowerCase(Locale.ENGLISH))) && (eoc() || ws(parser.curr()));
     if(!ok) {
       parser.ip = p;
       if(cmd != null) throw help(null, cmd);
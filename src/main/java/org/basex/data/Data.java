@@ -105,6 +105,8 @@ public abstract class Data {
   TableAccess table;
   /** ID->PRE mapping. */
   IdPreMap idmap;
+  /** ID->PRE runs, created on demand if no mapping exists (can be {@code null}). */
+  volatile IdPreRuns idruns;
   /** States if distance caching is active. */
   public boolean cache;
 
@@ -229,15 +231,29 @@ public abstract class Data {
    * @return pre value or -1 if id was not found
    */
   final int preold(final int id) {
-    // find pre value in table
-    for(int p = Math.max(0, id); p < meta.size; ++p)
-      if(id == id(p)) return p;
-    final int ps = Math.min(meta.size, id);
-    for(int p = 0; p < ps; ++p)
-      if(id == id(p)) return p;
-
-    // id not found
-    return -1;
+    // ids are unique: check if id is identical to pre value
+    if(id >= 0 && id < meta.size && id(id) == id) return id;
+    IdPreRuns runs = idruns;
+    if(runs == null) {
+      runs = idruns();
+      idruns = runs;
+    }
+    return runs.pre(id);
+  }
+
+  /**
+   * Returns the ID->PRE runs of this database.
+   * @return runs
+   */
+  IdPreRuns idruns() {
+    return new IdPreRuns(this);
+  }
+
+  /**
+   * Discards the ID->PRE runs, as the structure of the table will be changed.
+   */
+  void resetRuns() {
+    idruns = null;
   }
 
   /**
@@ -454,6 +470,35 @@ public abstract class Data {
    */
   public abstract int textLen(int pre, boolean text);
 
+  /**
+   * Compares a text (text, comment, pi) or attribute value with the specified token.
+   * @param pre pre value
+   * @param text text/attribute flag
+   * @param token token to be compared
+   * @return result of check
+   */
+  public abstract boolean textEq(int pre, boolean text, byte[] token);
+
+  /**
+   * Compares a text (text, comment, pi) or attribute value with the specified token,
+   * and returns the same result as {@link Token#diff}.
+   * @param pre pre value
+   * @param text text/attribute flag
+   * @param token token to be compared
+   * @return 0 if tokens are equal, negative if first token is smaller,
+   *   positive if first token is bigger
+   */
+  public abstract int textDiff(int pre, boolean text, byte[] token);
+
+  /**
+   * Returns the hash code of a text (text, comment, pi) or attribute value,
+   * which is identical to the {@link Token#hash} value of the text.
+   * @param pre pre value
+   * @param text text/attribute flag
+   * @return hash code
+   */
+  public abstract int textHash(int pre, boolean text);
+
   // UPDATE OPERATIONS ========================================================
 
   /**
@@ -511,6 +556,7 @@ public abstract class Data {
    */
   public final void replace(final int rpre, final DataClip clip) {
     meta.update();
+    resetRuns();
 
     final int dsize = clip.size();
     final Data data = clip.data;
@@ -602,6 +648,7 @@ public abstract class Data {
    */
   public final void delete(final int pre) {
     meta.update();
+    resetRuns();
 
     // size of the subtree to delete
     int k = kind(pre);
@@ -670,6 +717,7 @@ public abstract class Data {
    */
   public final void insert(final int ipre, final int ipar, final DataClip clip) {
     meta.update();
+    resetRuns();
 
     // update value and document indexes
     if(meta.updindex) indexBegin();
@@ -848,6 +896,33 @@ public abstract class Data {
     if(ipar != -1) nspaces.insert(ipre, dsize, newNodes);
   }
 
+  /**
+   * Prepares the database for appending nodes via {@link #insert(int)}.
+   * Texts and attribute values are directly written to the text and value
+   * stores; index updates are cached and performed by {@link #appendEnd}.
+   */
+  public final void appendBegin() {
+    resetRuns();
+    if(meta.updindex) indexBegin();
+    nspaces.setNearestRoot(nspaces.root, -1);
+  }
+
+  /**
+   * Finishes appending nodes and updates the resource index, the ID -> PRE mapping
+   * and the value indexes in bulk.
+   * @param pre pre value of the first appended node
+   */
+  public final void appendEnd(final int pre) {
+    nspaces.setRoot(nspaces.root);
+    final int dsize = meta.size - pre;
+    if(dsize != 0) {
+      meta.update();
+      resources.append(pre);
+      if(meta.updindex) idmap.insert(pre, id(pre), dsize);
+    }
+    if(meta.updindex) indexEnd();
+  }
+
   /**
    * This method updates the distance values of the specified pre value
    * and the following siblings of all ancestor-or-self nodes.
@@ -928,6 +1003,7 @@ public abstract class Data {
    * @param pre insert position
    */
   public final void insert(final int pre) {
+    resetRuns();
     table.insert(pre, buffer());
   }
 
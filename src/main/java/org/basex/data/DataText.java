@@ -13,7 +13,7 @@ public interface DataText {
 
   /** Database version; if it's modified, old database instances can't
    * be parsed anymore. */
-  String STORAGE = "7.1";
+  String STORAGE = "7.6.1";
   /** Index version; if it's modified, new indexes can't be parsed anymore
    * by older versions. */
   String ISTORAGE = "7.1";
@@ -40,6 +40,8 @@ public interface DataText {
   String DBPTHIDX = "PTHINDEX";
   /** Automatic index update. */
   String DBUPDIDX = "UPDINDEX";
+  /** Compressed table. */
+  String DBTBLCMP = "TBLCOMPRESS";
   /** Text indexing. */
   String DBTXTIDX = "TXTINDEX";
   /** Attribute indexing. */
@@ -58,6 +60,8 @@ public interface DataText {
   String DBMAXLEN = "MAXLEN";
   /** Maximum number of categories. */
   String DBMAXCATS = "MAXCATS";
+  /** Maximum size of index caches. */
+  String DBINDEXCACHE = "INDEXCACHE";
   /** Up-to-date flag. */
   String DBUPTODATE = "UPTODATE";
   /** Last (highest) id. */
@@ -66,6 +70,8 @@ public interface DataText {
   String DBPERM = "PERM";
   /** Documents. */
   String DBDOCS = "DOCS";
+  /** Document path order. */
+  String DBDOCORDER = "DOCORDER";
   /** Text indexing. */
   String DBCRTTXT = "CRTTXT";
   /** Attribute indexing. */
@@ -93,6 +99,8 @@ public interface DataText {
   String DATAINF = "inf";
   /** Database - Tokens. */
   String DATATBL = "tbl";
+  /** Database - Compressed tokens. */
+  String DATATBZ = "tbz";
   /** Database - Temporary Size References. */
   String DATATMP = "tmp";
   /** Database - Text index. */
@@ -298,4 +306,6 @@ public interface DataText {
   byte[][] TABLEKINDS = tokens("DOC ", "ELEM", "TEXT", "ATTR", "COMM", "PI  ");
   /** Database - ID->PRE mapping. */
   String DATAIDP = "idp";
+  /** Database - ID->PRE runs. */
+  String DATAIDR = "idr";
 }
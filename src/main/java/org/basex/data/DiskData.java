@@ -49,6 +49,8 @@ public final class DiskData extends Data {
   private TokenObjMap<IntList> atvs;
   /** Closed flag. */
   private boolean closed;
+  /** Indicates if the ID->PRE runs may have been written to disk. */
+  private volatile boolean runsFile;
 
   /**
    * Default constructor, called from {@link Open#open}.
@@ -74,6 +76,7 @@ public final class DiskData extends Data {
         else if(k.equals(DBPATH)) paths = new PathSummary(this, in);
         else if(k.equals(DBNS))   nspaces = new Namespaces(in);
         else if(k.equals(DBDOCS)) resources.read(in);
+        else if(k.equals(DBDOCORDER)) resources.readOrder(in);
       }
     } finally {
       in.close();
@@ -89,6 +92,7 @@ public final class DiskData extends Data {
       if(meta.attrindex) atvindex = new DiskValues(this, false);
     }
     if(meta.ftxtindex) ftxindex = new FTIndex(this);
+    runsFile = meta.dbfile(DATAIDR).exists();
     init();
   }
 
@@ -119,9 +123,11 @@ public final class DiskData extends Data {
    * @throws IOException I/O exception
    */
   public void init() throws IOException {
-    table = new TableDiskAccess(meta, false);
-    texts = new DataAccess(meta.dbfile(DATATXT));
-    values = new DataAccess(meta.dbfile(DATAATV));
+    table = meta.compress ? new TableCompressedAccess(meta, false) :
+      new TableDiskAccess(meta, false);
+    final boolean mmap = meta.prop.is(Prop.MMAP);
+    texts = new DataAccess(meta.dbfile(DATATXT), mmap);
+    values = new DataAccess(meta.dbfile(DATAATV), mmap);
   }
 
   /**
@@ -142,11 +148,25 @@ public final class DiskData extends Data {
       nspaces.write(out);
       out.writeToken(token(DBDOCS));
       resources.write(out);
+      if(resources.ordered()) {
+        out.writeToken(token(DBDOCORDER));
+        resources.writeOrder(out);
+      }
       out.write(0);
       out.close();
       if(idmap != null) idmap.write(meta.dbfile(DATAIDP));
       meta.dirty = false;
     }
+    // write ID->PRE runs that have been computed while the database was read
+    final IdPreRuns runs = idruns;
+    if(runs != null && !runsFile) {
+      try {
+        runs.write(meta.dbfile(DATAIDR));
+        runsFile = true;
+      } catch(final IOException ex) {
+        Util.debug(ex);
+      }
+    }
     // in all cases, remove updating file
     updateFile().delete();
   }
@@ -196,6 +216,29 @@ public final class DiskData extends Data {
     }
   }
 
+  @Override
+  IdPreRuns idruns() {
+    if(runsFile) {
+      try {
+        return new IdPreRuns(meta.dbfile(DATAIDR));
+      } catch(final IOException ex) {
+        Util.debug(ex);
+        runsFile = false;
+      }
+    }
+    // files are only written if the database is exclusively accessed (see write())
+    return super.idruns();
+  }
+
+  @Override
+  void resetRuns() {
+    super.resetRuns();
+    if(runsFile) {
+      meta.dbfile(DATAIDR).delete();
+      runsFile = false;
+    }
+  }
+
   @Override
   public boolean startUpdate() {
     final IOFile uf = updateFile();
@@ -214,6 +257,7 @@ public final class DiskData extends Data {
       values.flush();
       if(txtindex != null) ((DiskValues) txtindex).flush();
       if(atvindex != null) ((DiskValues) atvindex).flush();
+      if(ftxindex != null) ((FTIndex) ftxindex).flush();
     } catch(final IOException ex) {
       Util.stack(ex);
     } finally {
@@ -252,9 +296,37 @@ public final class DiskData extends Data {
     final long o = textOff(pre);
     if(num(o)) return numDigits((int) o);
     final DataAccess da = text ? texts : values;
-    final int l = da.readNum(o & IO.OFFCOMP - 1);
-    // compressed: next number contains number of compressed bytes
-    return cpr(o) ? da.readNum() : l;
+    final long p = o & IO.OFFCOMP - 1;
+    final int l = da.readNum(p);
+    // compressed: next number contains number of decompressed bytes
+    return cpr(o) ? da.readNum(p + Num.length(l)) : l;
+  }
+
+  @Override
+  public boolean textEq(final int pre, final boolean text, final byte[] token) {
+    final long o = textOff(pre);
+    if(num(o)) return eq(token((int) o), token);
+    final DataAccess da = text ? texts : values;
+    final long p = o & IO.OFFCOMP - 1;
+    return cpr(o) ? Compress.eq(da.readToken(p), token) : da.diffToken(p, token) == 0;
+  }
+
+  @Override
+  public int textDiff(final int pre, final boolean text, final byte[] token) {
+    final long o = textOff(pre);
+    if(num(o)) return diff(token((int) o), token);
+    final DataAccess da = text ? texts : values;
+    final long p = o & IO.OFFCOMP - 1;
+    return cpr(o) ? Compress.diff(da.readToken(p), token) : da.diffToken(p, token);
+  }
+
+  @Override
+  public int textHash(final int pre, final boolean text) {
+    final long o = textOff(pre);
+    if(num(o)) return hash(token((int) o));
+    final DataAccess da = text ? texts : values;
+    final long p = o & IO.OFFCOMP - 1;
+    return cpr(o) ? Compress.hash(da.readToken(p)) : da.hashToken(p);
   }
 
   /**
@@ -265,7 +337,7 @@ public final class DiskData extends Data {
    */
   private byte[] txt(final long o, final boolean text) {
     final byte[] txt = (text ? texts : values).readToken(o & IO.OFFCOMP - 1);
-    return cpr(o) ? COMP.get().unpack(txt) : txt;
+    return cpr(o) ? Compress.unpack(txt) : txt;
   }
 
   /**
@@ -307,6 +379,10 @@ public final class DiskData extends Data {
       final DiskValues index = (DiskValues) (text ? txtindex : atvindex);
       // don't index document names
       if(index != null && kind != DOC) index.replace(oldval, value, id);
+      if(kind == TEXT) {
+        final FTIndex ft = ftindex();
+        if(ft != null) ft.replace(id, value);
+      }
     }
 
     // reference to text store
@@ -382,6 +458,10 @@ public final class DiskData extends Data {
       }
       ids.add(id);
     }
+    if(meta.updindex && kind == TEXT) {
+      final FTIndex ft = ftindex();
+      if(ft != null) ft.index(id, value);
+    }
 
     // add text to text file
     // inline integer value...
@@ -397,15 +477,18 @@ public final class DiskData extends Data {
 
   @Override
   protected void indexDelete(final int pre, final int size) {
-    if(!(meta.textindex || meta.attrindex)) return;
+    final FTIndex ft = ftindex();
+    if(!(meta.textindex || meta.attrindex || ft != null)) return;
 
     // collect all keys and ids
     txts = new TokenObjMap<IntList>();
     atvs = new TokenObjMap<IntList>();
+    final IntSet ftids = new IntSet();
     final int l = pre + size;
     for(int p = pre; p < l; ++p) {
       final int k = kind(p);
       final boolean isAttr = k == ATTR;
+      if(ft != null && k == TEXT) ftids.add(id(p));
       // consider nodes which are attribute, text, comment, or proc. instruction
       if(meta.attrindex && isAttr ||
          meta.textindex && (k == TEXT || k == COMM || k == PI)) {
@@ -426,5 +509,19 @@ public final class DiskData extends Data {
     }
     if(!txts.isEmpty()) ((DiskValues) txtindex).delete(txts);
     if(!atvs.isEmpty()) ((DiskValues) atvindex).delete(atvs);
+    if(ft != null) ft.delete(ftids);
+  }
+
+  /**
+   * Returns the full-text index if it can be updated. Otherwise, the index
+   * will be invalidated.
+   * @return index or {@code null}
+   */
+  private FTIndex ftindex() {
+    if(ftxindex instanceof FTIndex && ((FTIndex) ftxindex).updatable()) {
+      return (FTIndex) ftxindex;
+    }
+    meta.ftxtindex = false;
+    return null;
   }
 }
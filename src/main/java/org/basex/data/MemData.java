@@ -108,6 +108,21 @@ public final class MemData extends Data {
     return text(pre, text).length;
   }
 
+  @Override
+  public boolean textEq(final int pre, final boolean text, final byte[] token) {
+    return Token.eq(text(pre, text), token);
+  }
+
+  @Override
+  public int textDiff(final int pre, final boolean text, final byte[] token) {
+    return Token.diff(text(pre, text), token);
+  }
+
+  @Override
+  public int textHash(final int pre, final boolean text) {
+    return Token.hash(text(pre, text));
+  }
+
   // UPDATE OPERATIONS ========================================================
 
   @Override
@@ -0,0 +1,137 @@
+package org.basex.index;
+
+import java.io.*;
+import java.util.*;
+
+import org.basex.data.*;
+import org.basex.io.*;
+import org.basex.io.in.DataInput;
+import org.basex.io.out.DataOutput;
+import org.basex.util.list.*;
+
+/**
+ * ID -> PRE lookup for databases without {@link IdPreMap}.
+ *
+ * The table is scanned once, and all nodes with consecutive pre and id values are
+ * merged into runs, which are then sorted by their first id. As ids are usually
+ * assigned in ascending order, a database will only consist of a few runs, or a
+ * single one if all ids are identical to the pre values. The runs remain valid
+ * until the structure of the table is changed.
+ *
+ * @author BaseX Team 2005-12, BSD License
+ * @author Christian Gruen
+ */
+public final class IdPreRuns {
+  /** First ids of the runs (sorted ascending). */
+  private final int[] fids;
+  /** First pre values of the runs. */
+  private final int[] fpres;
+  /** Number of nodes of the runs. */
+  private final int[] sizes;
+
+  /**
+   * Constructor, scanning the table of the specified database.
+   * @param data data reference
+   */
+  public IdPreRuns(final Data data) {
+    // create runs in pre order
+    final IntList rf = new IntList(), rp = new IntList(), rs = new IntList();
+    final int size = data.meta.size;
+    int last = -2;
+    for(int pre = 0; pre < size; pre++) {
+      final int id = data.id(pre);
+      if(id == last + 1) {
+        rs.push(rs.pop() + 1);
+      } else {
+        rf.add(id);
+        rp.add(pre);
+        rs.add(1);
+      }
+      last = id;
+    }
+
+    // sort runs by their first id
+    final int runs = rf.size();
+    final long[] order = new long[runs];
+    for(int r = 0; r < runs; r++) order[r] = (long) rf.get(r) << 32 | r;
+    Arrays.sort(order);
+    fids = new int[runs];
+    fpres = new int[runs];
+    sizes = new int[runs];
+    for(int r = 0; r < runs; r++) {
+      final int o = (int) order[r];
+      fids[r] = rf.get(o);
+      fpres[r] = rp.get(o);
+      sizes[r] = rs.get(o);
+    }
+  }
+
+  /**
+   * Constructor, reading the runs from the specified file.
+   * @param f file to read from
+   * @throws IOException I/O error while reading from the file
+   */
+  public IdPreRuns(final IOFile f) throws IOException {
+    final DataInput in = new DataInput(f);
+    try {
+      final int runs = in.readNum();
+      fids = new int[runs];
+      fpres = new int[runs];
+      sizes = new int[runs];
+      for(int r = 0, id = 0; r < runs; r++) {
+        id += in.readNum();
+        fids[r] = id;
+        fpres[r] = in.readNum();
+        sizes[r] = in.readNum();
+      }
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * Writes the runs to the specified file. First ids are delta-encoded.
+   * @param f file to write to
+   * @throws IOException I/O error while writing to the file
+   */
+  public void write(final IOFile f) throws IOException {
+    final DataOutput out = new DataOutput(f);
+    try {
+      final int runs = fids.length;
+      out.writeNum(runs);
+      for(int r = 0, id = 0; r < runs; r++) {
+        out.writeNum(fids[r] - id);
+        out.writeNum(fpres[r]);
+        out.writeNum(sizes[r]);
+        id = fids[r];
+      }
+    } finally {
+      out.close();
+    }
+  }
+
+  /**
+   * Returns the pre value of the specified id.
+   * @param id id
+   * @return pre value, or {@code -1} if the id was not found
+   */
+  public int pre(final int id) {
+    int l = 0, h = fids.length - 1;
+    while(l <= h) {
+      final int m = l + h >>> 1;
+      final int d = id - fids[m];
+      if(d < 0) h = m - 1;
+      else if(d >= sizes[m]) l = m + 1;
+      else return fpres[m] + d;
+    }
+    return -1;
+  }
+
+  /**
+   * Returns the number of runs.
+   * @return number of runs
+   */
+  public int runs() {
+    return fids.length;
+  }
+}
@@ -2,49 +2,46 @@ package org.basex.index;
 
 import static org.basex.util.Token.*;
 
-import java.lang.ref.*;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
-
-import org.basex.util.list.*;
+import org.basex.util.*;
 
 /**
  * This class caches sizes and pointers from index results.
  *
+ * The cache is bounded by a memory budget, which is estimated from the key lengths
+ * and a fixed overhead per entry. It is divided into segments, which are locked
+ * independently. Each segment evicts its least recently used entries if its share
+ * of the budget is exceeded.
+ *
  * @author BaseX Team 2005-12, BSD License
  * @author Dimitar Popov
  */
 public final class IndexCache {
-  /** Queue used to collect unused keys. */
-  private final ReferenceQueue<IndexEntry> queue = new ReferenceQueue<IndexEntry>();
-  /** Read-write lock. */
-  private final ReentrantReadWriteLock rwl = new ReentrantReadWriteLock(true);
-  /** Hash table buckets. */
-  private BucketEntry[] buckets = new BucketEntry[ElementList.CAP];
-  /** Number of entries in the cache. */
-  private int size;
+  /** Number of segments (must be 1 << n). */
+  private static final int SEGMENTS = 1 << 4;
+  /** Estimated memory overhead of a single entry (in bytes). */
+  private static final int OVERHEAD = 96;
+
+  /** Segments. */
+  private final Segment[] segments = new Segment[SEGMENTS];
+
+  /**
+   * Constructor.
+   * @param kb maximum size of the cache (in kilobytes); caching is disabled if the
+   *   value is {@code 0}
+   */
+  public IndexCache(final int kb) {
+    final long max = ((long) Math.max(0, kb) << 10) / SEGMENTS;
+    for(int s = 0; s < SEGMENTS; s++) segments[s] = new Segment(max);
+  }
 
   /**
    * Gets cached entry for the specified key.
    * @param key key
-   * @return cached entry or {@code null} if the entry is stale
+   * @return cached entry or {@code null} if the entry is not cached
    */
   public IndexEntry get(final byte[] key) {
     final int hash = hash(key);
-    rwl.readLock().lock();
-
-    try {
-      final int i = indexFor(hash, buckets.length);
-      BucketEntry e = buckets[i];
-      while(e != null) {
-        final IndexEntry entry = e.get();
-        if(entry != null && e.hash == hash && eq(entry.key, key)) return entry;
-        e = e.next;
-      }
-    } finally {
-      rwl.readLock().unlock();
-    }
-
-    return null;
+    return segment(hash).get(key, hash);
   }
 
   /**
@@ -57,34 +54,7 @@ public final class IndexCache {
    */
   public IndexEntry add(final byte[] key, final int s, final long p) {
     final int hash = hash(key);
-    rwl.writeLock().lock();
-
-    try {
-      purge();
-
-      final int i = indexFor(hash, buckets.length);
-
-      BucketEntry current = buckets[i];
-      BucketEntry prev = current;
-      while(current != null) {
-        final BucketEntry next = current.next;
-        final IndexEntry entry = current.get();
-        if(entry == null) {
-          delete(i, current, prev, next);
-        } else if(current.hash == hash && eq(entry.key, key)) {
-          update(entry, s, p);
-          return entry;
-        }
-        prev = current;
-        current = next;
-      }
-
-      final IndexEntry entry = new IndexEntry(key, s, p);
-      add(i, hash, entry);
-      return entry;
-    } finally {
-      rwl.writeLock().unlock();
-    }
+    return segment(hash).add(key, hash, s, p);
   }
 
   /**
@@ -93,148 +63,232 @@ public final class IndexCache {
    */
   public void delete(final byte[] key) {
     final int hash = hash(key);
-    rwl.writeLock().lock();
-
-    try {
-      purge();
-
-      final int i = indexFor(hash, buckets.length);
-
-      BucketEntry e = buckets[i];
-      BucketEntry prev = e;
-      while(e != null) {
-        final BucketEntry next = e.next;
-        final IndexEntry entry = e.get();
-        if(entry == null) {
-          delete(i, e, prev, next);
-        } else if(e.hash == hash && eq(entry.key, key)) {
-          delete(i, e, prev, next);
-          break;
-        }
-        prev = e;
-        e = next;
-      }
-    } finally {
-      rwl.writeLock().unlock();
-    }
+    segment(hash).delete(key, hash);
   }
 
   /**
-   * Purges stale entries from the cache.
+   * Returns the number of cached entries.
+   * @return number of entries
    */
-  private void purge() {
-    for(Object x; (x = queue.poll()) != null;) {
-      final BucketEntry e = (BucketEntry) x;
-      final int i = indexFor(e.hash, buckets.length);
-
-      BucketEntry prev = buckets[i];
-      BucketEntry p = prev;
-      while(p != null) {
-        final BucketEntry next = p.next;
-        if(p == e) {
-          delete(i, e, prev, next);
-          break;
-        }
-        prev = p;
-        p = next;
+  public int size() {
+    int size = 0;
+    for(final Segment s : segments) {
+      synchronized(s) {
+        size += s.size;
       }
     }
+    return size;
   }
 
   /**
-   * Add a new index entry to the bucket with the specified index.
-   * @param i bucket index
-   * @param hash hash of the new index key
-   * @param entry index entry
+   * Returns information on the cache usage.
+   * @return info string
    */
-  private void add(final int i, final int hash, final IndexEntry entry) {
-    buckets[i] = new BucketEntry(hash, buckets[i], entry, queue);
-    if(++size == buckets.length) rehash();
+  public String info() {
+    long size = 0, bytes = 0, hits = 0, misses = 0;
+    for(final Segment s : segments) {
+      synchronized(s) {
+        size += s.size;
+        bytes += s.bytes;
+        hits += s.hits;
+        misses += s.misses;
+      }
+    }
+    return size + " entries, " + Performance.format(bytes, true) + ", " +
+        hits + " hits, " + misses + " misses";
   }
 
   /**
-   * Update an existing index entry.
-   * @param entry index entry to update
-   * @param sz new size
-   * @param poi new pointer
+   * Returns the segment responsible for the specified hash value.
+   * @param hash hash value
+   * @return segment
    */
-  private static void update(final IndexEntry entry, final int sz, final long poi) {
-    entry.size = sz;
-    entry.pointer = poi;
+  private Segment segment(final int hash) {
+    return segments[hash * 0x9E3779B9 >>> 28 & SEGMENTS - 1];
   }
 
   /**
-   * Deletes a cached entry from the buckets with the specified index.
-   * @param i buckets index
-   * @param e cached entry to delete
-   * @param p previous cache entry
-   * @param n next cache entry
+   * Single segment of the cache. Entries are indexed in a chained hash table
+   * and linked in the order of their last access.
    */
-  private void delete(final int i, final BucketEntry e, final BucketEntry p,
-      final BucketEntry n) {
-    if(p == e) buckets[i] = n;
-    else p.next = n;
-    e.next = null;
-    --size;
-  }
+  private static final class Segment {
+    /** Maximum memory budget (in bytes). */
+    private final long max;
+    /** Sentinel of the access list: next is most, prev least recently used. */
+    private final Node list = new Node(null, 0);
+    /** Hash table buckets. */
+    private Node[] buckets = new Node[1 << 4];
+    /** Number of entries. */
+    int size;
+    /** Estimated memory consumption (in bytes). */
+    long bytes;
+    /** Number of cache hits. */
+    long hits;
+    /** Number of cache misses. */
+    long misses;
 
-  /**
-   * Resizes the hash table.
-   */
-  private void rehash() {
-    purge();
-
-    final int s = size << 1;
-    final BucketEntry[] tmp = new BucketEntry[s];
-
-    final int l = buckets.length;
-    for(int i = 0; i < l; ++i) {
-      BucketEntry e = buckets[i];
-      buckets[i] = null;
-      while(e != null) {
-        final BucketEntry next = e.next;
-        final int p = indexFor(e.hash, tmp.length);
-        e.next = tmp[p];
-        tmp[p] = e;
-        e = next;
+    /**
+     * Constructor.
+     * @param m maximum memory budget
+     */
+    Segment(final long m) {
+      max = m;
+      list.prev = list;
+      list.next = list;
+    }
+
+    /**
+     * Returns the entry for the specified key.
+     * @param key key
+     * @param hash hash value
+     * @return entry or {@code null}
+     */
+    synchronized IndexEntry get(final byte[] key, final int hash) {
+      final Node n = find(key, hash);
+      if(n == null) {
+        misses++;
+        return null;
       }
+      hits++;
+      unlink(n);
+      link(n);
+      return n.entry;
     }
-    buckets = tmp;
-  }
 
-  /**
-   * Returns buckets index for a hash code.
-   * @param h hash code
-   * @param n number of available buckets
-   * @return index of a buckets
-   */
-  private static int indexFor(final int h, final int n) {
-    return h & n - 1;
+    /**
+     * Adds or updates an entry.
+     * @param key key
+     * @param hash hash value
+     * @param s number of index hits
+     * @param p pointer to id list
+     * @return cache entry
+     */
+    synchronized IndexEntry add(final byte[] key, final int hash, final int s,
+        final long p) {
+      Node n = find(key, hash);
+      if(n != null) {
+        n.entry.size = s;
+        n.entry.pointer = p;
+        unlink(n);
+        link(n);
+        return n.entry;
+      }
+
+      final IndexEntry entry = new IndexEntry(key, s, p);
+      final long cost = OVERHEAD + key.length;
+      if(cost > max) return entry;
+
+      // evict least recently used entries
+      while(bytes + cost > max) remove(list.prev);
+
+      n = new Node(entry, hash);
+      final int i = hash & buckets.length - 1;
+      n.chain = buckets[i];
+      buckets[i] = n;
+      link(n);
+      bytes += cost;
+      if(++size > buckets.length) rehash();
+      return entry;
+    }
+
+    /**
+     * Deletes an entry.
+     * @param key key
+     * @param hash hash value
+     */
+    synchronized void delete(final byte[] key, final int hash) {
+      final Node n = find(key, hash);
+      if(n != null) remove(n);
+    }
+
+    /**
+     * Finds the node for the specified key.
+     * @param key key
+     * @param hash hash value
+     * @return node or {@code null}
+     */
+    private Node find(final byte[] key, final int hash) {
+      for(Node n = buckets[hash & buckets.length - 1]; n != null; n = n.chain) {
+        if(n.hash == hash && eq(n.entry.key, key)) return n;
+      }
+      return null;
+    }
+
+    /**
+     * Removes a node from the hash table and the access list.
+     * @param n node
+     */
+    private void remove(final Node n) {
+      final int i = n.hash & buckets.length - 1;
+      if(buckets[i] == n) {
+        buckets[i] = n.chain;
+      } else {
+        Node c = buckets[i];
+        while(c.chain != n) c = c.chain;
+        c.chain = n.chain;
+      }
+      unlink(n);
+      bytes -= OVERHEAD + n.entry.key.length;
+      size--;
+    }
+
+    /**
+     * Inserts a node at the head of the access list.
+     * @param n node
+     */
+    private void link(final Node n) {
+      n.prev = list;
+      n.next = list.next;
+      list.next.prev = n;
+      list.next = n;
+    }
+
+    /**
+     * Removes a node from the access list.
+     * @param n node
+     */
+    private static void unlink(final Node n) {
+      n.prev.next = n.next;
+      n.next.prev = n.prev;
+    }
+
+    /**
+     * Doubles the size of the hash table.
+     */
+    private void rehash() {
+      final Node[] tmp = new Node[buckets.length << 1];
+      for(Node n = list.next; n != list; n = n.next) {
+        final int i = n.hash & tmp.length - 1;
+        n.chain = tmp[i];
+        tmp[i] = n;
+      }
+      buckets = tmp;
+    }
   }
 
   /**
-   * Cache buckets entry. Used to implement a linked list of cache entries for
-   * each buckets. It also stores the hash of the current entry for better
-   * performance.
+   * Cache node, referencing an index entry.
    */
-  private static class BucketEntry extends SoftReference<IndexEntry> {
-    /** Hash code of the stored cache entry key. */
+  private static final class Node {
+    /** Index entry. */
+    final IndexEntry entry;
+    /** Hash code of the entry key. */
     final int hash;
-    /** Next buckets entry or {@code null} if the last one for this buckets. */
-    BucketEntry next;
+    /** Next node in the hash bucket. */
+    Node chain;
+    /** Previous node in the access list. */
+    Node prev;
+    /** Next node in the access list. */
+    Node next;
 
     /**
      * Constructor.
-     * @param h hash code of the cache entry key
-     * @param n next buckets entry or {@code null} if the last one
-     * @param v stored cache entry
-     * @param rq reference queue
+     * @param e index entry
+     * @param h hash code of the entry key
      */
-    public BucketEntry(final int h, final BucketEntry n, final IndexEntry v,
-        final ReferenceQueue<IndexEntry> rq) {
-      super(v, rq);
+    Node(final IndexEntry e, final int h) {
+      entry = e;
       hash = h;
-      next = n;
     }
   }
 }
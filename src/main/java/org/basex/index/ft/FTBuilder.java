@@ -72,6 +72,8 @@ public final class FTBuilder extends IndexBuilder {
       final int k = data.kind(pre);
       if(k != Data.TEXT) continue;
 
+      // updatable indexes reference node ids
+      final int id = data.meta.updindex ? data.id(pre) : pre;
       pos = -1;
       final StopWords sw = lex.ftOpt().sw;
       lex.init(data.text(pre, true));
@@ -85,13 +87,15 @@ public final class FTBuilder extends IndexBuilder {
             writeIndex(csize++);
             Performance.gc(singlegc ? 1 : 2);
           }
-          index(tok);
+          index(tok, id);
         }
       }
     }
 
     // write tokens
     write();
+    // create empty list of pending updates
+    if(data.meta.updindex) new FTUpdates().write(data.meta.dbfile(DATAFTX + 'd'));
 
     data.meta.ftxtindex = true;
     Util.memory(perf);
@@ -106,9 +110,10 @@ public final class FTBuilder extends IndexBuilder {
   /**
    * Indexes a single token.
    * @param tok token to be indexed
+   * @param id pre value or id of the text node
    */
-  void index(final byte[] tok) {
-    tree.index(tok, pre, pos, csize);
+  void index(final byte[] tok, final int id) {
+    tree.index(tok, id, pos, csize);
   }
 
   /**
@@ -175,7 +180,7 @@ public final class FTBuilder extends IndexBuilder {
    * @param lp last offset
    * @throws IOException I/O exception
    */
-  private static void writeInd(final DataOutput outX, final IntList il,
+  static void writeInd(final DataOutput outX, final IntList il,
       final int ls, final int lp) throws IOException {
 
     final int is = il.size();
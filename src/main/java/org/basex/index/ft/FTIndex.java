@@ -12,6 +12,8 @@ import org.basex.data.*;
 import org.basex.index.*;
 import org.basex.index.query.*;
 import org.basex.index.stats.*;
+import org.basex.io.*;
+import org.basex.io.out.DataOutput;
 import org.basex.io.random.*;
 import org.basex.query.ft.*;
 import org.basex.util.*;
@@ -43,15 +45,24 @@ import org.basex.util.list.*;
  *   {@code pre1/pos1, pre2/pos2, pre3/pos3, ...} [{@link Num}]</li>
  * </ul>
  *
+ * <p>If {@link MetaData#updindex} is enabled, the index references node ids instead
+ * of pre values, and it is kept up-to-date when texts are inserted, deleted or
+ * replaced. The pending updates are managed by the {@link FTUpdates} class and
+ * stored in the additional file <b>d</b>, which also indicates that the index
+ * is updatable. They are merged into the main files if they exceed a certain size,
+ * or if the database is optimized.</p>
+ *
  * @author BaseX Team 2005-12, BSD License
  * @author Christian Gruen
  */
 public final class FTIndex implements Index {
   /** Entry size. */
   private static final int ENTRY = 9;
+  /** Minimum number of pending updates that will be merged into the index. */
+  private static final int MERGE = 1 << 16;
 
   /** Cached texts. Increases used memory, but speeds up repeated queries. */
-  private final IntMap<byte[]> ctext = new IntMap<byte[]>();
+  private IntMap<byte[]> ctext;
   /** Levenshtein reference. */
   private final Levenshtein ls = new Levenshtein();
   /** Data reference. */
@@ -59,16 +70,21 @@ public final class FTIndex implements Index {
 
   /** Index storing each unique token length and pointer
    * on the first token with this length. */
-  private final DataAccess inX;
+  private DataAccess inX;
   /** Index storing each token, its data size and pointer on the data. */
-  final DataAccess inY;
+  DataAccess inY;
   /** Storing pre and pos values for each token. */
-  final DataAccess inZ;
+  DataAccess inZ;
 
   /** Cache for number of hits and data reference per token. */
-  final IndexCache cache = new IndexCache();
+  IndexCache cache;
   /** Token positions. */
-  final int[] tp;
+  int[] tp;
+
+  /** Pending updates ({@code null} if the index is not updatable). */
+  private FTUpdates updates;
+  /** Lexer for indexing updated texts (lazy instantiation). */
+  private FTLexer lexer;
 
   /**
    * Constructor, initializing the index structure.
@@ -77,11 +93,25 @@ public final class FTIndex implements Index {
    */
   public FTIndex(final Data d) throws IOException {
     data = d;
+    open();
+    final IOFile file = d.meta.dbfile(DATAFTX + 'd');
+    if(d.meta.updindex && file.exists()) updates = new FTUpdates(file);
+  }
+
+  /**
+   * Opens the index files.
+   * @throws IOException I/O Exception
+   */
+  private void open() throws IOException {
+    final Data d = data;
+    ctext = new IntMap<byte[]>();
+    cache = new IndexCache(d.meta.indexcache);
 
     // cache token length index
-    inY = new DataAccess(d.meta.dbfile(DATAFTX + 'y'));
-    inZ = new DataAccess(d.meta.dbfile(DATAFTX + 'z'));
-    inX = new DataAccess(d.meta.dbfile(DATAFTX + 'x'));
+    final boolean mmap = d.meta.prop.is(Prop.MMAP);
+    inY = new DataAccess(d.meta.dbfile(DATAFTX + 'y'), mmap);
+    inZ = new DataAccess(d.meta.dbfile(DATAFTX + 'z'), mmap);
+    inX = new DataAccess(d.meta.dbfile(DATAFTX + 'x'), mmap);
     tp = new int[d.meta.maxlen + 3];
     for(int i = 0; i < tp.length; ++i) tp[i] = -1;
     int is = inX.readNum();
@@ -113,7 +143,7 @@ public final class FTIndex implements Index {
     final FTOpt opt = ((FTLexer) it).ftOpt();
     if(opt.is(FZ) || opt.is(WC)) return Math.max(1, data.meta.size / 10);
 
-    return entry(tok).size;
+    return entry(tok).size + (updates != null ? updates.count(tok) : 0);
   }
 
   @Override
@@ -132,7 +162,11 @@ public final class FTIndex implements Index {
 
     // return cached or new result
     final IndexEntry e = entry(tok);
-    return e.size > 0 ? iter(e.pointer, e.size, inZ) : FTIndexIterator.FTEMPTY;
+    final IntList pr = new IntList(e.size);
+    final IntList ps = new IntList(e.size);
+    refs(e.pointer, e.size, pr, ps);
+    if(updates != null) updates.refs(tok, pr, ps);
+    return iter(pr, ps);
   }
 
   /**
@@ -152,6 +186,18 @@ public final class FTIndex implements Index {
   @Override
   public EntryIterator entries(final IndexEntries entries) {
     final byte[] prefix = entries.get();
+    synchronized(this) {
+      if(updates != null && updates.size() != 0) return entries(prefix);
+    }
+    return iterator(prefix);
+  }
+
+  /**
+   * Returns an iterator for all entries of the index files with the specified prefix.
+   * @param prefix prefix
+   * @return iterator
+   */
+  private EntryIterator iterator(final byte[] prefix) {
     return new EntryIterator() {
       int ti = prefix.length - 1, i, e, nr;
       boolean inner;
@@ -192,6 +238,57 @@ public final class FTIndex implements Index {
     };
   }
 
+  /**
+   * Returns an iterator for all index entries with the specified prefix,
+   * including pending updates.
+   * @param prefix prefix
+   * @return iterator
+   */
+  private EntryIterator entries(final byte[] prefix) {
+    final TokenList toks = new TokenList();
+    final IntList counts = new IntList();
+    final byte[][] ins = updates.tokens();
+    final EntryIterator ei = iterator(prefix);
+    byte[] dt = ei.next();
+    int u = 0;
+    while(true) {
+      while(u < ins.length && !startsWith(ins[u], prefix)) u++;
+      final byte[] ut = u < ins.length ? ins[u] : null;
+      if(dt == null && ut == null) break;
+      final int c = dt == null ? 1 : ut == null ? -1 : FTUpdates.compare(dt, ut);
+      final byte[] tok = c <= 0 ? dt : ut;
+      int n = updates.count(tok);
+      if(c <= 0) {
+        if(updates.deletions()) {
+          final IndexEntry e = entry(dt);
+          final IntList pr = new IntList(e.size);
+          refs(e.pointer, e.size, pr, new IntList(e.size));
+          n += pr.size();
+        } else {
+          n += ei.count();
+        }
+        dt = ei.next();
+      }
+      if(c >= 0) u++;
+      if(n == 0) continue;
+      toks.add(tok);
+      counts.add(n);
+    }
+
+    return new EntryIterator() {
+      int i = -1;
+
+      @Override
+      public byte[] next() {
+        return ++i < toks.size() ? toks.get(i) : null;
+      }
+      @Override
+      public int count() {
+        return counts.get(i);
+      }
+    };
+  }
+
   /**
    * Binary search.
    * @param token token to look for
@@ -230,6 +327,7 @@ public final class FTIndex implements Index {
       tb.addExt("- %: %" + NL, LANGUAGE, data.meta.language);
     final long l = inX.length() + inY.length() + inZ.length();
     tb.add(LI_SIZE + Performance.format(l, true) + NL);
+    tb.add(LI_CACHE + cache.info() + NL);
 
     final IndexStats stats = new IndexStats(data.meta.prop.num(Prop.MAXSTAT));
     addOccs(stats);
@@ -239,11 +337,158 @@ public final class FTIndex implements Index {
 
   @Override
   public synchronized void close() {
+    try {
+      flush();
+    } catch(final IOException ex) {
+      Util.stack(ex);
+    }
     inX.close();
     inY.close();
     inZ.close();
   }
 
+  /**
+   * Checks if the index is kept up-to-date when texts are updated.
+   * @return result of check
+   */
+  public boolean updatable() {
+    return updates != null;
+  }
+
+  /**
+   * Indexes the tokens of an inserted text.
+   * @param id id of the text node
+   * @param text text
+   */
+  public synchronized void index(final int id, final byte[] text) {
+    if(lexer == null) {
+      final FTOpt fto = new FTOpt().copy(data.meta);
+      fto.sw = new StopWords();
+      fto.sw.comp(data);
+      lexer = new FTLexer(fto);
+    }
+    final StopWords sw = lexer.ftOpt().sw;
+    lexer.init(text);
+    int pos = -1;
+    while(lexer.hasNext()) {
+      final byte[] tok = lexer.nextToken();
+      ++pos;
+      // skip too long and stopword tokens
+      if(tok.length <= data.meta.maxlen && (sw.isEmpty() || !sw.contains(tok))) {
+        updates.add(tok, id, pos);
+      }
+    }
+  }
+
+  /**
+   * Deletes the references of the specified texts.
+   * @param ids ids of the deleted text nodes
+   */
+  public synchronized void delete(final IntSet ids) {
+    updates.delete(ids);
+  }
+
+  /**
+   * Replaces the tokens of an updated text.
+   * @param id id of the text node
+   * @param text new text
+   */
+  public synchronized void replace(final int id, final byte[] text) {
+    final IntSet ids = new IntSet();
+    ids.add(id);
+    delete(ids);
+    index(id, text);
+  }
+
+  /**
+   * Writes pending updates to disk. The updates will be merged into the index
+   * if they exceed a certain size.
+   * @throws IOException I/O exception
+   */
+  public synchronized void flush() throws IOException {
+    if(updates == null || !updates.dirty()) return;
+    if(updates.size() > Math.max(MERGE, inZ.length() >>> 3)) merge();
+    else updates.write(data.meta.dbfile(DATAFTX + 'd'));
+  }
+
+  /**
+   * Merges all pending updates into the index files.
+   * @throws IOException I/O exception
+   */
+  public synchronized void merge() throws IOException {
+    if(updates == null || updates.size() == 0) return;
+
+    final String m = DATAFTX + 'm';
+    final DataOutput outX = new DataOutput(data.meta.dbfile(m + 'x'));
+    final DataOutput outY = new DataOutput(data.meta.dbfile(m + 'y'));
+    final DataOutput outZ = new DataOutput(data.meta.dbfile(m + 'z'));
+    final IntList ind = new IntList();
+    final IntList pr = new IntList();
+    final IntList ps = new IntList();
+
+    // merge existing tokens and inserted tokens in the order of the index
+    final byte[][] ins = updates.tokens();
+    int u = 0, ti = -1, i = 0, e = 0;
+    while(true) {
+      // find next entry group
+      while(i == e && ti < tp.length - 2) {
+        i = tp[++ti];
+        if(i == -1) {
+          i = e;
+          continue;
+        }
+        int c = ti + 1;
+        do e = tp[c++]; while(e == -1);
+      }
+      final byte[] dt = i < e ? inY.readBytes(i, ti) : null;
+      final byte[] ut = u < ins.length ? ins[u] : null;
+      if(dt == null && ut == null) break;
+
+      final int c = dt == null ? 1 : ut == null ? -1 : FTUpdates.compare(dt, ut);
+      pr.reset();
+      ps.reset();
+      if(c <= 0) {
+        refs(pointer(i, ti), size(i, ti), pr, ps);
+        i += ti + ENTRY;
+      }
+      if(c >= 0) updates.refs(ins[u++], pr, ps);
+      if(pr.isEmpty()) continue;
+
+      final byte[] tok = c <= 0 ? dt : ut;
+      if(ind.isEmpty() || ind.get(ind.size() - 2) < tok.length) {
+        ind.add(tok.length);
+        ind.add((int) outY.size());
+      }
+      // write token, pointer on full-text data, and data size
+      outY.writeBytes(tok);
+      outY.write5(outZ.size());
+      final int s = pr.size();
+      outY.write4(s);
+      for(int p = 0; p < s; p++) {
+        outZ.writeNum(pr.get(p));
+        outZ.writeNum(ps.get(p));
+      }
+    }
+    FTBuilder.writeInd(outX, ind, ind.isEmpty() ? 1 : ind.get(ind.size() - 2) + 1,
+        (int) outY.size());
+    outX.close();
+    outY.close();
+    outZ.close();
+
+    // replace index files
+    inX.close();
+    inY.close();
+    inZ.close();
+    for(final char f : new char[] { 'x', 'y', 'z' }) {
+      final IOFile file = data.meta.dbfile(DATAFTX + f);
+      if(!file.delete() || !data.meta.dbfile(m + f).rename(file))
+        throw new IOException("Could not replace " + file);
+    }
+    updates = new FTUpdates();
+    updates.write(data.meta.dbfile(DATAFTX + 'd'));
+    open();
+  }
+
   /**
    * Determines the pointer on a token.
    * @param token token looking for
@@ -335,11 +580,22 @@ public final class FTIndex implements Index {
       while(i < tp.length && r == -1) r = tp[i++];
       while(p < r) {
         if(ls.similar(inY.readBytes(p, s), token, k)) {
-          it = FTIndexIterator.union(iter(pointer(p, s), size(p, s), inZ), it);
+          final IntList pr = new IntList(), ps = new IntList();
+          refs(pointer(p, s), size(p, s), pr, ps);
+          it = FTIndexIterator.union(iter(pr, ps), it);
         }
         p += s + ENTRY;
       }
     }
+    // add inserted tokens
+    if(updates != null) {
+      for(final byte[] t : updates.tokens()) {
+        if(t.length < tl - k || t.length > e || !ls.similar(t, token, k)) continue;
+        final IntList pr = new IntList(), ps = new IntList();
+        updates.refs(t, pr, ps);
+        it = FTIndexIterator.union(iter(pr, ps), it);
+      }
+    }
     return it;
   }
 
@@ -368,35 +624,50 @@ public final class FTIndex implements Index {
       while(i < e) {
         final byte[] t = inY.readBytes(i, ti);
         if(!startsWith(t, pref)) break;
-        if(wc.match(t)) {
-          inZ.cursor(pointer(i, ti));
-          final int s = size(i, ti);
-          for(int d = 0; d < s; d++) {
-            pr.add(inZ.readNum());
-            ps.add(inZ.readNum());
-          }
-        }
+        if(wc.match(t)) refs(pointer(i, ti), size(i, ti), pr, ps);
         i += ti + ENTRY;
       }
     }
-    return iter(new FTCache(pr, ps));
+    // add inserted tokens
+    if(updates != null) {
+      for(final byte[] t : updates.tokens()) {
+        if(startsWith(t, pref) && wc.match(t)) updates.refs(t, pr, ps);
+      }
+    }
+    return iter(pr, ps);
   }
 
   /**
-   * Returns an iterator for an index entry.
+   * Adds the id/pos references of an index entry. References of deleted texts
+   * are skipped.
    * @param off offset on entries
    * @param size number of id/pos entries
-   * @param da data source
-   * @return iterator
+   * @param pr id values
+   * @param ps positions
    */
-  private FTIndexIterator iter(final long off, final int size, final DataAccess da) {
-    da.cursor(off);
-    final IntList pr = new IntList(size);
-    final IntList ps = new IntList(size);
+  private void refs(final long off, final int size, final IntList pr, final IntList ps) {
+    if(size == 0) return;
+    final boolean del = updates != null && updates.deletions();
+    inZ.cursor(off);
     for(int c = 0; c < size; c++) {
-      pr.add(da.readNum());
-      ps.add(da.readNum());
+      final int id = inZ.readNum(), pos = inZ.readNum();
+      if(del && updates.deleted(id)) continue;
+      pr.add(id);
+      ps.add(pos);
     }
+  }
+
+  /**
+   * Returns an iterator for the specified references. If the index is updatable,
+   * the ids are replaced with pre values.
+   * @param pr id values
+   * @param ps positions
+   * @return iterator
+   */
+  private FTIndexIterator iter(final IntList pr, final IntList ps) {
+    final int s = pr.size();
+    if(s == 0) return FTIndexIterator.FTEMPTY;
+    if(updates != null) for(int i = 0; i < s; i++) pr.set(i, data.pre(pr.get(i)));
     return iter(new FTCache(pr, ps));
   }
 
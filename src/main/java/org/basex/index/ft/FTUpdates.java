@@ -0,0 +1,225 @@
+package org.basex.index.ft;
+
+import static org.basex.util.Token.*;
+
+import java.io.*;
+import java.util.*;
+
+import org.basex.io.*;
+import org.basex.io.in.DataInput;
+import org.basex.io.out.DataOutput;
+import org.basex.util.*;
+import org.basex.util.hash.*;
+import org.basex.util.list.*;
+
+/**
+ * This class contains the pending updates of an updatable full-text index.
+ * Tokens of inserted texts are stored in main memory, along with their id/pos
+ * references. The ids of deleted texts are stored in a set; their references in
+ * the main index files will be ignored until the updates are merged into the index.
+ *
+ * The updates are stored in an additional index file with the suffix {@code d}:<br/>
+ * {@code [n, id1, ... idn, t, [token, s, id1, pos1, ... ids, poss] ...]} [{@link Num}]
+ *
+ * @author BaseX Team 2005-12, BSD License
+ * @author Christian Gruen
+ */
+final class FTUpdates {
+  /** Inserted tokens and their id/pos references. */
+  private final TokenObjMap<IntList> tokens = new TokenObjMap<IntList>();
+  /** Ids of deleted texts. */
+  private final IntSet deleted = new IntSet();
+  /** Number of id/pos references. */
+  private int refs;
+  /** Dirty flag. */
+  private boolean dirty;
+
+  /**
+   * Constructor.
+   */
+  FTUpdates() { }
+
+  /**
+   * Constructor, reading the updates from disk.
+   * @param file input file
+   * @throws IOException I/O exception
+   */
+  FTUpdates(final IOFile file) throws IOException {
+    final DataInput in = new DataInput(file);
+    try {
+      for(final int id : in.readNums()) deleted.add(id);
+      final int s = in.readNum();
+      for(int t = 0; t < s; t++) {
+        final byte[] token = in.readToken();
+        final IntList il = new IntList(in.readNums());
+        tokens.add(token, il);
+        refs += il.size() >> 1;
+      }
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * Writes the updates to disk.
+   * @param file output file
+   * @throws IOException I/O exception
+   */
+  void write(final IOFile file) throws IOException {
+    final DataOutput out = new DataOutput(file);
+    try {
+      final int ds = deleted.size();
+      out.writeNum(ds);
+      for(int i = 1; i <= ds; i++) out.writeNum(deleted.key(i));
+      final byte[][] toks = tokens();
+      out.writeNum(toks.length);
+      for(final byte[] token : toks) {
+        out.writeToken(token);
+        out.writeNums(tokens.get(token).toArray());
+      }
+    } finally {
+      out.close();
+    }
+    dirty = false;
+  }
+
+  /**
+   * Adds a token reference.
+   * @param token token
+   * @param id id of the text node
+   * @param pos position of the token
+   */
+  void add(final byte[] token, final int id, final int pos) {
+    IntList il = tokens.get(token);
+    if(il == null) {
+      il = new IntList();
+      tokens.add(token, il);
+    }
+    il.add(id);
+    il.add(pos);
+    refs++;
+    dirty = true;
+  }
+
+  /**
+   * Deletes the references of the specified texts.
+   * @param ids ids of the deleted text nodes
+   */
+  void delete(final IntSet ids) {
+    final int is = ids.size();
+    if(is == 0) return;
+    for(int i = 1; i <= is; i++) deleted.add(ids.key(i));
+
+    // remove inserted references
+    final int ts = tokens.size();
+    for(int t = 1; t <= ts; t++) {
+      final IntList il = tokens.value(t);
+      if(il == null) continue;
+      final int s = il.size();
+      final IntList nl = new IntList(s);
+      for(int i = 0; i < s; i += 2) {
+        final int id = il.get(i);
+        if(ids.contains(id)) continue;
+        nl.add(id);
+        nl.add(il.get(i + 1));
+      }
+      if(nl.size() == s) continue;
+      refs -= s - nl.size() >> 1;
+      tokens.add(tokens.key(t), nl);
+    }
+    dirty = true;
+  }
+
+  /**
+   * Checks if the references of the specified text have been deleted.
+   * @param id id of the text node
+   * @return result of check
+   */
+  boolean deleted(final int id) {
+    return deleted.contains(id);
+  }
+
+  /**
+   * Checks if texts have been deleted.
+   * @return result of check
+   */
+  boolean deletions() {
+    return deleted.size() != 0;
+  }
+
+  /**
+   * Adds the inserted references of the specified token.
+   * @param token token
+   * @param ids ids
+   * @param pos positions
+   */
+  void refs(final byte[] token, final IntList ids, final IntList pos) {
+    final IntList il = tokens.get(token);
+    if(il == null) return;
+    final int s = il.size();
+    for(int i = 0; i < s; i += 2) {
+      ids.add(il.get(i));
+      pos.add(il.get(i + 1));
+    }
+  }
+
+  /**
+   * Returns the number of inserted references of the specified token.
+   * @param token token
+   * @return number of references
+   */
+  int count(final byte[] token) {
+    final IntList il = tokens.get(token);
+    return il == null ? 0 : il.size() >> 1;
+  }
+
+  /**
+   * Returns all tokens with inserted references, sorted by their length and
+   * their lexicographical order.
+   * @return tokens
+   */
+  byte[][] tokens() {
+    final ArrayList<byte[]> list = new ArrayList<byte[]>();
+    final int ts = tokens.size();
+    for(int t = 1; t <= ts; t++) {
+      final IntList il = tokens.value(t);
+      if(il != null && !il.isEmpty()) list.add(tokens.key(t));
+    }
+    final byte[][] toks = list.toArray(new byte[list.size()][]);
+    Arrays.sort(toks, new Comparator<byte[]>() {
+      @Override
+      public int compare(final byte[] t1, final byte[] t2) {
+        return FTUpdates.compare(t1, t2);
+      }
+    });
+    return toks;
+  }
+
+  /**
+   * Compares two tokens in the order of the index: tokens are sorted by
+   * their length and their lexicographical order.
+   * @param t1 first token
+   * @param t2 second token
+   * @return result of comparison
+   */
+  static int compare(final byte[] t1, final byte[] t2) {
+    final int l = t1.length - t2.length;
+    return l != 0 ? l : diff(t1, t2);
+  }
+
+  /**
+   * Returns the number of pending updates.
+   * @return number of references and deleted texts
+   */
+  int size() {
+    return refs + deleted.size();
+  }
+
+  /**
+   * Checks if the updates need to be written to disk.
+   * @return result of check
+   */
+  boolean dirty() {
+    return dirty;
+  }
+}
@@ -53,6 +53,7 @@ public final class PathSummary implements Index {
    */
   public PathSummary(final Data d, final DataInput in) throws IOException {
     root = in.readBool() ? new PathNode(in, null) : new PathNode();
+    stack.add(root);
     data = d;
   }
 
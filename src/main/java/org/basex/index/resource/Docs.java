@@ -3,6 +3,7 @@ package org.basex.index.resource;
 import static org.basex.util.Token.*;
 
 import java.io.*;
+import java.util.*;
 
 import org.basex.core.*;
 import org.basex.data.*;
@@ -17,10 +18,13 @@ import org.basex.util.list.*;
  * <p>This data structure contains references to all document nodes in a
  * database. The document nodes are incrementally updated.</p>
  *
- * <p>If updates are performed, the path order is discarded, as its continuous
- * update would be more expensive in some cases (e.g. when bulk insertions of
- * new documents are performed). A tree structure could be introduced to
- * offer better general performance.</p>
+ * <p>The document paths are lazily sorted on first access. The sorted path order
+ * is stored in the database and incrementally updated: inserted, deleted or renamed
+ * documents will be placed at the correct position via binary search. Documents
+ * with identical paths are sorted by their position in the database. Exact and
+ * prefix lookups are performed by binary search. As paths are compared case
+ * insensitively on some systems, the order will be rebuilt if the database is
+ * opened on a system with a different case sensitivity.</p>
  *
  * @author BaseX Team 2005-12, BSD License
  * @author Christian Gruen
@@ -37,7 +41,7 @@ final class Docs {
   private TokenList pathList;
   /** Ordered path indexes (can be {@code null}).
    * This variable should always be requested via {@link #order()}. */
-  private int[] pathOrder;
+  private IntList pathOrder;
 
   /**
    * Constructor.
@@ -56,6 +60,18 @@ final class Docs {
     docList = in.readDiffs();
   }
 
+  /**
+   * Reads the path order. The order will be discarded and rebuilt on demand if it
+   * has been created with a different case sensitivity of the file system.
+   * @param in input stream
+   * @throws IOException I/O exception
+   */
+  synchronized void readOrder(final DataInput in) throws IOException {
+    final boolean cs = in.readBool();
+    final int[] order = in.readNums();
+    pathOrder = cs == Prop.CASE ? new IntList(order) : null;
+  }
+
   /**
    * Writes the document index.
    * @param out output stream
@@ -65,6 +81,24 @@ final class Docs {
     out.writeDiffs(docs());
   }
 
+  /**
+   * Writes the path order.
+   * @param out output stream
+   * @throws IOException I/O exception
+   */
+  synchronized void writeOrder(final DataOutput out) throws IOException {
+    out.writeBool(Prop.CASE);
+    out.writeNums(pathOrder.toArray());
+  }
+
+  /**
+   * Checks if the path order has been created.
+   * @return result of check
+   */
+  synchronized boolean ordered() {
+    return pathOrder != null;
+  }
+
   /**
    * Initializes the document index. Currently, will only be called if the database is
    * optimized, and the resource index will be rebuilt.
@@ -72,6 +106,7 @@ final class Docs {
   synchronized void init() {
     docList = null;
     pathList = null;
+    pathOrder = null;
     docs();
   }
 
@@ -88,7 +123,6 @@ final class Docs {
         if(k == Data.DOC) il.add(i);
         i += data.size(i, k);
       }
-      data.meta.dirty = true;
       docList = il;
     }
     return docList;
@@ -112,16 +146,34 @@ final class Docs {
   }
 
   /**
-   * Returns the document path order, and initialize the array if necessary.
+   * Returns the document path order, and initializes it if necessary.
    * @return path order
    */
-  private synchronized int[] order() {
+  private synchronized IntList order() {
     if(pathOrder == null) {
-      pathOrder = Array.createOrder(paths().toArray(), false, true);
+      pathOrder = new IntList(sort(paths().toArray()));
     }
     return pathOrder;
   }
 
+  /**
+   * Returns the order of the specified paths. Identical paths are sorted by
+   * their position. The specified array will not be modified.
+   * @param paths paths
+   * @return order
+   */
+  private static int[] sort(final byte[][] paths) {
+    final int[] order = Array.createOrder(paths.clone(), false, true);
+    final int os = order.length;
+    for(int s = 0; s < os;) {
+      int e = s + 1;
+      while(e < os && eq(paths[order[s]], paths[order[e]])) e++;
+      if(e - s > 1) Arrays.sort(order, s, e);
+      s = e;
+    }
+    return order;
+  }
+
   /**
    * Adds entries to the index and updates subsequent nodes.
    * @param pre insertion position
@@ -152,7 +204,35 @@ final class Docs {
       t[j] = normalize(clip.data.text(presA[j] - pre, true));
     }
     paths.insert(i, t);
-    pathOrder = null;
+    if(pathOrder != null) insertOrder(i, t);
+  }
+
+  /**
+   * Adds the documents that have been appended to the database.
+   * @param pre pre value of the first appended node
+   */
+  void append(final int pre) {
+    // skip update if the index has not been created yet
+    if(docList == null) return;
+
+    final IntList pres = new IntList();
+    final int size = data.meta.size;
+    for(int dpre = pre; dpre < size;) {
+      final int k = data.kind(dpre);
+      if(k == Data.DOC) pres.add(dpre);
+      dpre += data.size(dpre, k);
+    }
+
+    // add DOC nodes and paths at the end of the lists
+    final int i = docList.size(), ps = pres.size();
+    final byte[][] t = new byte[ps][];
+    for(int j = 0; j < ps; j++) {
+      final int p = pres.get(j);
+      docList.add(p);
+      t[j] = normalize(data.text(p, true));
+      if(pathList != null) pathList.add(t[j]);
+    }
+    if(pathOrder != null) insertOrder(i, t);
   }
 
   /**
@@ -171,8 +251,16 @@ final class Docs {
     docs.move(-size, i);
 
     if(!found) return;
+    if(pathOrder != null) {
+      final IntList order = pathOrder;
+      order.deleteAt(find(paths.get(i), i));
+      final int os = order.size();
+      for(int o = 0; o < os; o++) {
+        final int v = order.get(o);
+        if(v > i) order.set(o, v - 1);
+      }
+    }
     paths.delete(i);
-    pathOrder = null;
   }
 
   /**
@@ -183,8 +271,43 @@ final class Docs {
   void rename(final int pre, final byte[] value) {
     final IntList docs = docs();
     final TokenList paths = paths();
-    paths.set(docs.sortedIndexOf(pre), normalize(value));
-    pathOrder = null;
+    final int i = docs.sortedIndexOf(pre);
+    final byte[] path = normalize(value);
+    if(pathOrder != null) {
+      pathOrder.deleteAt(find(paths.get(i), i));
+      paths.set(i, path);
+      pathOrder.insert(find(path, i), new int[] { i });
+    } else {
+      paths.set(i, path);
+    }
+  }
+
+  /**
+   * Adds new paths to the path order.
+   * @param i index of the first inserted path
+   * @param t inserted paths
+   */
+  private void insertOrder(final int i, final byte[][] t) {
+    // move indexes of subsequent paths
+    final IntList order = pathOrder;
+    final int os = order.size(), tl = t.length;
+    for(int o = 0; o < os; o++) {
+      final int v = order.get(o);
+      if(v >= i) order.set(o, v + tl);
+    }
+    // merge sorted new paths with existing order
+    final int[] old = order.toArray(), merged = new int[os + tl];
+    int o = 0, m = 0;
+    for(final int n : sort(t)) {
+      final int p = find(t[n], i + n);
+      final int l = p - o;
+      System.arraycopy(old, o, merged, m, l);
+      o += l;
+      m += l;
+      merged[m++] = i + n;
+    }
+    System.arraycopy(old, o, merged, m, os - o);
+    pathOrder = new IntList(merged);
   }
 
   /**
@@ -224,47 +347,44 @@ final class Docs {
 
     // relevant paths: exact hits and prefixes
     final IntList il = new IntList();
-    /* could be optimized for future access by sorting the paths first
-     * and then accessing only the relevant paths. Sorting might slow down
-     * bulk operations like insert/delete/replace though. */
     final TokenList paths = paths();
-    for(int p = 0; p < paths.size(); p++) {
-      final byte[] b = paths.get(p);
-      if(eq(b, exct) || !exact && startsWith(b, pref)) il.add(docs.get(p));
+    final IntList order = order();
+    final int os = order.size();
+    if(exct.length != 0) {
+      for(int p = find(exct, -1); p < os; p++) {
+        final int o = order.get(p);
+        if(!eq(paths.get(o), exct)) break;
+        il.add(docs.get(o));
+      }
+    }
+    if(!exact) {
+      for(int p = find(pref, -1); p < os; p++) {
+        final int o = order.get(p);
+        if(!startsWith(paths.get(o), pref)) break;
+        il.add(docs.get(o));
+      }
     }
     return il.sort();
   }
 
   /**
-   * Returns the pre value of the document node matching the specified path.
-   * Exact match! Document paths can be sorted for faster future access or
-   * sorting can be disabled as it slows down bulk inserts/deletes/replaces.
+   * Returns the pre value of the first document node matching the specified path.
+   * Exact match!
    * @param path input path
-   * @param sort sort paths before access
-   * @return root nodes
+   * @return root node, or {@code -1}
    */
-  synchronized int doc(final String path, final boolean sort) {
+  synchronized int doc(final String path) {
     // invalid or empty path, or no documents: return -1
     final String pth = MetaData.normPath(path);
     if(pth == null || pth.isEmpty()) return -1;
 
-    // normalize paths
-    final byte[] exct = normalize(token(pth));
-
     // relevant paths: exact match
-    final IntList docs = docs();
-    final TokenList paths = paths();
-    final int ts = paths.size();
-
-    if(sort) {
-      final int[] order = order();
-      final int p = find(exct);
-      return p > -1 && p < ts && eq(paths.get(order[p]), exct) ? docs.get(order[p]) : -1;
-    }
-    for(int t = 0; t < ts; t++) {
-      if(eq(paths.get(t), exct)) return docs.get(t);
-    }
-    return -1;
+    final byte[] exct = normalize(token(pth));
+    final IntList order = order();
+    final int p = find(exct, -1);
+    if(p == order.size()) return -1;
+    final int o = order.get(p);
+    return eq(paths().get(o), exct) ? docs().get(o) : -1;
   }
 
   /**
@@ -274,8 +394,9 @@ final class Docs {
    */
   synchronized boolean isDir(final byte[] path) {
     final byte[] pa = concat(path, SLASH);
-    for(final byte[] b : paths()) if(startsWith(b, pa)) return true;
-    return false;
+    final IntList order = order();
+    final int p = find(pa, -1);
+    return p < order.size() && startsWith(paths().get(order.get(p)), pa);
   }
 
   /**
@@ -295,36 +416,37 @@ final class Docs {
     byte[] tp = concat(SLASH, token(pth));
     // if the given path is the root, don't add a trailing slash
     if(!pth.isEmpty()) tp = concat(tp, SLASH);
-    for(final byte[] to : paths()) {
-      if(startsWith(to, tp)) {
-        final byte[] toAdd = substring(to, tp.length, to.length);
-        final int i = indexOf(toAdd, SLASH);
-        // no more slashes means this must be a leaf
-        if(!dir && i == -1) tbm.add(toAdd, false);
-        else if(dir && i >= 0) tbm.add(substring(toAdd, 0, i), false);
-      }
+    final TokenList paths = paths();
+    final IntList order = order();
+    final int os = order.size();
+    for(int p = find(tp, -1); p < os; p++) {
+      final byte[] to = paths.get(order.get(p));
+      if(!startsWith(to, tp)) break;
+      final byte[] toAdd = substring(to, tp.length, to.length);
+      final int i = indexOf(toAdd, SLASH);
+      // no more slashes means this must be a leaf
+      if(!dir && i == -1) tbm.add(toAdd, false);
+      else if(dir && i >= 0) tbm.add(substring(toAdd, 0, i), false);
     }
   }
 
   /**
-   * Returns the first position matching the specified path
-   * (might equal the array size).
-   * @param v value to be found
+   * Returns the position of the specified path and index in the path order, or
+   * the position at which it would be inserted (might equal the order size).
+   * @param path path to be found
+   * @param index index of the path, or {@code -1} to find the first matching entry
    * @return position
    */
-  private int find(final byte[] v) {
+  private int find(final byte[] path, final int index) {
     // binary search
     final TokenList paths = paths();
-    final int[] po = pathOrder;
-    int l = 0, h = po.length - 1;
+    final IntList order = order();
+    int l = 0, h = order.size() - 1;
     while(l <= h) {
-      int m = l + h >>> 1;
-      final int c = diff(paths.get(po[m]), v);
-      if(c == 0) {
-        // find first entry
-        while(m > 0 && eq(paths.get(po[m - 1]), v)) --m;
-        return m;
-      }
+      final int m = l + h >>> 1, o = order.get(m);
+      int c = diff(paths.get(o), path);
+      if(c == 0) c = o - index;
+      if(c == 0) return m;
       if(c < 0) l = m + 1;
       else h = m - 1;
     }
@@ -42,6 +42,15 @@ public final class Resources implements Index {
     docs.read(in);
   }
 
+  /**
+   * Reads the order of the document paths from disk.
+   * @param in input stream
+   * @throws IOException I/O exception
+   */
+  public synchronized void readOrder(final DataInput in) throws IOException {
+    docs.readOrder(in);
+  }
+
   /**
    * Writes information on database resources to disk.
    * @param out output stream
@@ -51,6 +60,23 @@ public final class Resources implements Index {
     docs.write(out);
   }
 
+  /**
+   * Writes the order of the document paths to disk.
+   * @param out output stream
+   * @throws IOException I/O exception
+   */
+  public void writeOrder(final DataOutput out) throws IOException {
+    docs.writeOrder(out);
+  }
+
+  /**
+   * Checks if the document paths have been ordered.
+   * @return result of check
+   */
+  public boolean ordered() {
+    return docs.ordered();
+  }
+
   /**
    * Returns the {@code pre} values of all document nodes.
    * @return document nodes
@@ -73,6 +99,14 @@ public final class Resources implements Index {
     docs.insert(pre, clip);
   }
 
+  /**
+   * Adds the documents that have been appended to the database.
+   * @param pre pre value of the first appended node
+   */
+  public void append(final int pre) {
+    docs.append(pre);
+  }
+
   /**
    * Deletes the specified entry and updates subsequent nodes.
    * @param pre pre value
@@ -126,7 +160,7 @@ public final class Resources implements Index {
    * @return pre value
    */
   public int doc(final String path) {
-    return docs.doc(path, true);
+    return docs.doc(path);
   }
 
   /**
@@ -141,7 +141,9 @@ public final class Stats {
     if(t == StatsType.DOUBLE) {
       final double d = toDouble(val);
       if(Double.isNaN(d)) {
-        t = cats.size() <= meta.maxcats ? StatsType.CATEGORY : StatsType.TEXT;
+        // categories are not available if statistics have been read from disk
+        t = cats != null && cats.size() <= meta.maxcats ? StatsType.CATEGORY :
+          StatsType.TEXT;
       } else {
         if(min > d) min = d;
         if(max < d) max = d;
@@ -34,7 +34,7 @@ public class DiskValues implements Index {
   /** Data reference. */
   protected final Data data;
   /** Cached tokens. */
-  protected final IndexCache cache = new IndexCache();
+  protected final IndexCache cache;
   /** Cached texts. Increases used memory, but speeds up repeated queries. */
   protected final IntMap<byte[]> ctext = new IntMap<byte[]>();
 
@@ -64,8 +64,10 @@ public class DiskValues implements Index {
       throws IOException {
     data = d;
     text = txt;
-    idxl = new DataAccess(d.meta.dbfile(pref + 'l'));
-    idxr = new DataAccess(d.meta.dbfile(pref + 'r'));
+    cache = new IndexCache(d.meta.indexcache);
+    final boolean mmap = d.meta.prop.is(Prop.MMAP);
+    idxl = new DataAccess(d.meta.dbfile(pref + 'l'), mmap);
+    idxr = new DataAccess(d.meta.dbfile(pref + 'r'), mmap);
     size.set(idxl.read4());
   }
 
@@ -81,6 +83,7 @@ public class DiskValues implements Index {
     synchronized(monitor) {
       final long l = idxl.length() + idxr.length();
       tb.add(LI_SIZE + Performance.format(l, true) + NL);
+      tb.add(LI_CACHE + cache.info() + NL);
       final int s = size.get();
       for(int m = 0; m < s; ++m) {
         final long pos = idxr.read5(m * 5L);
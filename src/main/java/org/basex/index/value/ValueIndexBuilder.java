@@ -5,6 +5,9 @@ import static org.basex.data.DataText.*;
 import static org.basex.util.Token.*;
 
 import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
 
 import org.basex.core.*;
 import org.basex.data.*;
@@ -31,6 +34,10 @@ import org.basex.util.list.*;
  * </li>
  * </ul>
  *
+ * <p>If {@link Prop#INDEXTHREADS} is greater than 1, the pre values are partitioned
+ * into contiguous ranges, which are indexed by separate threads. Each thread writes
+ * its keys to one or more sorted temporary runs, which are finally merged.</p>
+ *
  * @author BaseX Team 2005-12, BSD License
  * @author Christian Gruen
  */
@@ -61,28 +68,33 @@ public final class ValueIndexBuilder extends IndexBuilder {
     final String f = text ? DATATXT : DATAATV;
     final int k = text ? Data.TEXT : Data.ATTR;
 
-    for(pre = 0; pre < size; ++pre) {
-      if((pre & 0x0FFF) == 0) {
-        check();
-        // check if main memory is exhausted
-        if(memFull()) {
-          write(f + csize++, false);
-          index = new IndexTree();
-          Performance.gc(singlegc ? 1 : 2);
+    final int threads = Math.min(data.meta.prop.num(Prop.INDEXTHREADS), size >>> 12);
+    if(threads > 1) {
+      parallel(threads);
+    } else {
+      for(pre = 0; pre < size; ++pre) {
+        if((pre & 0x0FFF) == 0) {
+          check();
+          // check if main memory is exhausted
+          if(memFull()) {
+            write(index, f + csize++, false);
+            index = new IndexTree();
+            Performance.gc(singlegc ? 1 : 2);
+          }
         }
+        // skip too long values
+        if(data.kind(pre) == k && data.textLen(pre, text) <= data.meta.maxlen)
+          index.index(data.text(pre, text), data.meta.updindex ? data.id(pre) : pre);
       }
-      // skip too long values
-      if(data.kind(pre) == k && data.textLen(pre, text) <= data.meta.maxlen)
-        index.index(data.text(pre, text), data.meta.updindex ? data.id(pre) : pre);
-    }
 
-    if(merge) {
-      write(f + csize++, false);
-      index = null;
-      if(!singlegc) Performance.gc(1);
-      merge();
-    } else {
-      write(f, true);
+      if(merge) {
+        write(index, f + csize++, false);
+        index = null;
+        if(!singlegc) Performance.gc(1);
+        merge();
+      } else {
+        write(index, f, true);
+      }
     }
 
     if(text) data.meta.textindex = true;
@@ -93,6 +105,103 @@ public final class ValueIndexBuilder extends IndexBuilder {
         new UpdatableDiskValues(data, text) : new DiskValues(data, text);
   }
 
+  /**
+   * Indexes the database with multiple threads and merges the resulting runs.
+   * @param threads number of threads
+   * @throws IOException I/O exception
+   */
+  private void parallel(final int threads) throws IOException {
+    final AtomicInteger runs = new AtomicInteger();
+    final AtomicInteger done = new AtomicInteger();
+    final ExecutorService pool = Executors.newFixedThreadPool(threads);
+    final ArrayList<Future<Void>> tasks = new ArrayList<Future<Void>>(threads);
+    final int range = (int) (((long) size + threads - 1) / threads);
+    for(int t = 0; t < threads; t++) {
+      final int s = t * range, e = Math.min(size, s + range);
+      tasks.add(pool.submit(new Callable<Void>() {
+        @Override
+        public Void call() throws IOException {
+          index(s, e, runs, done);
+          return null;
+        }
+      }));
+    }
+
+    try {
+      for(final Future<Void> task : tasks) {
+        try {
+          task.get();
+        } catch(final ExecutionException ex) {
+          // stop remaining threads and pass on error
+          stop();
+          final Throwable th = ex.getCause();
+          if(th instanceof IOException) throw (IOException) th;
+          if(th instanceof RuntimeException) throw (RuntimeException) th;
+          if(th instanceof Error) throw (Error) th;
+          throw new BaseXException((Exception) th);
+        } catch(final InterruptedException ex) {
+          stop();
+          throw new BaseXException(ex);
+        }
+      }
+    } finally {
+      pool.shutdown();
+      try {
+        pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+      } catch(final InterruptedException ex) {
+        Util.debug(ex);
+      }
+    }
+
+    pre = size;
+    csize = runs.get();
+    merge = true;
+    if(!singlegc) Performance.gc(1);
+    merge();
+  }
+
+  /**
+   * Indexes the specified range of pre values and writes the keys to sorted runs.
+   * Called by the worker threads.
+   * @param start first pre value
+   * @param end pre value after the last value to be indexed
+   * @param runs run counter
+   * @param done number of processed pre values
+   * @throws IOException I/O exception
+   */
+  void index(final int start, final int end, final AtomicInteger runs,
+      final AtomicInteger done) throws IOException {
+
+    final String f = text ? DATATXT : DATAATV;
+    final int k = text ? Data.TEXT : Data.ATTR;
+    final int maxlen = data.meta.maxlen;
+    final boolean updindex = data.meta.updindex;
+
+    IndexTree tree = new IndexTree();
+    for(int p = start; p < end; ++p) {
+      if((p - start & 0x0FFF) == 0 && p != start) {
+        pre = done.addAndGet(0x1000);
+        check();
+        // check if main memory is exhausted
+        final boolean full;
+        synchronized(this) {
+          full = memFull();
+        }
+        if(full) {
+          write(tree, f + runs.getAndIncrement(), false);
+          tree = new IndexTree();
+          Performance.gc(singlegc ? 1 : 2);
+        }
+      }
+      // skip too long values
+      if(data.kind(p) == k) {
+        final byte[] t = data.text(p, text);
+        if(t.length <= maxlen) tree.index(t, updindex ? data.id(p) : p);
+      }
+    }
+    write(tree, f + runs.getAndIncrement(), false);
+  }
+
   /**
    * Merges cached index files.
    * @throws IOException I/O exception
@@ -104,45 +213,37 @@ public final class ValueIndexBuilder extends IndexBuilder {
     outL.write4(0);
 
     // initialize cached index iterators
-    final IntList ml = new IntList();
     final IntList il = new IntList();
     final ValueIndexMerger[] vm = new ValueIndexMerger[csize];
     for(int i = 0; i < csize; ++i) vm[i] = new ValueIndexMerger(data, text, i);
     int sz = 0;
 
+    // organize iterators with remaining entries in a heap, ordered by their keys
+    final int[] heap = new int[csize];
+    int hs = 0;
+    for(int i = 0; i < csize; ++i) {
+      if(vm[i].values.length != 0) heap[hs++] = i;
+    }
+    for(int h = (hs >>> 1) - 1; h >= 0; --h) down(vm, heap, h, hs);
+
     // parse through all values
-    while(true) {
+    while(hs != 0) {
       checkStop();
 
-      // find first index which is not completely parsed yet
-      int min = -1;
-      while(++min < csize && vm[min].values.length == 0);
-      if(min == csize) break;
-
-      // find index entry with smallest key
-      ml.reset();
-      for(int i = min; i < csize; ++i) {
-        if(vm[i].values.length == 0) continue;
-        final int d = diff(vm[min].key, vm[i].key);
-        if(d < 0) continue;
-        if(d > 0) {
-          min = i;
-          ml.reset();
-        }
-        ml.add(i);
-      }
-
-      // parse through all values, cache and sort id values
-      final int ms = ml.size();
-      for(int m = 0; m < ms; ++m) {
-        final ValueIndexMerger t = vm[ml.get(m)];
+      // parse through all values with the smallest key, cache and sort id values
+      final byte[] key = vm[heap[0]].key;
+      do {
+        final ValueIndexMerger t = vm[heap[0]];
         final int vl = t.values.length;
         for(int l = 4, v; l < vl; l += Num.length(v)) {
           v = Num.get(t.values, l);
           il.add(v);
         }
         t.next();
-      }
+        if(t.values.length == 0) heap[0] = heap[--hs];
+        if(hs != 0) down(vm, heap, 0, hs);
+      } while(hs != 0 && eq(vm[heap[0]].key, key));
+
       // write final structure to disk
       write(outL, outR, il);
       ++sz;
@@ -159,21 +260,45 @@ public final class ValueIndexBuilder extends IndexBuilder {
   }
 
   /**
-   * Writes the current value tree to disk.
+   * Moves a heap entry down until the heap condition is satisfied.
+   * @param vm index iterators
+   * @param heap heap
+   * @param i heap position
+   * @param n heap size
+   */
+  private static void down(final ValueIndexMerger[] vm, final int[] heap, final int i,
+      final int n) {
+    final int v = heap[i];
+    int p = i;
+    while(true) {
+      int c = (p << 1) + 1;
+      if(c >= n) break;
+      if(c + 1 < n && diff(vm[heap[c + 1]].key, vm[heap[c]].key) < 0) c++;
+      if(diff(vm[heap[c]].key, vm[v].key) >= 0) break;
+      heap[p] = heap[c];
+      p = c;
+    }
+    heap[p] = v;
+  }
+
+  /**
+   * Writes a value tree to disk.
+   * @param tree value tree
    * @param name name
    * @param all writes the complete tree
    * @throws IOException I/O exception
    */
-  private void write(final String name, final boolean all) throws IOException {
+  private void write(final IndexTree tree, final String name, final boolean all)
+      throws IOException {
     // write id arrays and references
     final DataOutput outL = new DataOutput(data.meta.dbfile(name + 'l'));
     final DataOutput outR = new DataOutput(data.meta.dbfile(name + 'r'));
-    outL.write4(index.size());
+    outL.write4(tree.size());
 
     final IntList il = new IntList();
-    index.init();
-    while(index.more()) {
-      final byte[] values = index.values.get(index.next());
+    tree.init();
+    while(tree.more()) {
+      final byte[] values = tree.values.get(tree.next());
       final int vs = Num.size(values);
 
       if(all) {
@@ -195,8 +320,8 @@ public final class ValueIndexBuilder extends IndexBuilder {
     // temporarily write texts
     if(!all) {
       final DataOutput outT = new DataOutput(data.meta.dbfile(name + 't'));
-      index.init();
-      while(index.more()) outT.writeToken(index.keys.get(index.next()));
+      tree.init();
+      while(tree.more()) outT.writeToken(tree.keys.get(tree.next()));
       outT.close();
     }
   }
@@ -0,0 +1,458 @@
+package org.basex.io;
+
+import static org.basex.util.Token.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.*;
+
+import org.basex.core.*;
+import org.basex.io.in.DataInput;
+import org.basex.io.out.*;
+import org.basex.io.out.DataOutput;
+import org.basex.util.list.*;
+
+/**
+ * Creates and restores database backups.
+ *
+ * A backup is a zip archive. Besides the database files, it contains a manifest with
+ * the lengths, timestamps and block checksums of all files. A full backup contains the
+ * complete files. An incremental backup is based on an earlier backup and only contains
+ * the blocks that have changed since then. It is restored by replaying the chain of
+ * backups, starting with the full backup.
+ *
+ * @author BaseX Team 2005-12, BSD License
+ * @author Christian Gruen
+ */
+public final class Backup extends Progress {
+  /** Archive entry containing the manifest. */
+  private static final String MANIFEST = ".manifest";
+  /** Prefix of archive entries containing changed blocks. */
+  private static final String DELTA = ".delta/";
+  /** Size of the compared blocks. */
+  private static final int BLOCK = 1 << 16;
+  /** Granularity of file timestamps (ms). */
+  private static final long GRANULARITY = 2000;
+
+  /** Archive. */
+  private final IOFile archive;
+  /** CRC32 checksum. */
+  private final CRC32 crc = new CRC32();
+  /** Adler32 checksum. */
+  private final Adler32 adler = new Adler32();
+  /** Total number of files or archive entries. */
+  private int total;
+  /** Current file or archive entry. */
+  private int curr;
+
+  /**
+   * Constructor.
+   * @param file archive file
+   */
+  public Backup(final IOFile file) {
+    archive = file;
+  }
+
+  /**
+   * Returns the name of the backup this archive is based on.
+   * @return name of the parent backup, an empty string for full backups,
+   * or {@code null} if the archive contains no manifest
+   * @throws IOException I/O exception
+   */
+  public String parent() throws IOException {
+    final ZipFile zf = new ZipFile(archive.file());
+    try {
+      return parent(zf);
+    } finally {
+      zf.close();
+    }
+  }
+
+  /**
+   * Creates a backup of the specified database directory. If the specified base
+   * archive contains a manifest, only the blocks that have changed since the base
+   * backup are stored.
+   * @param root database directory
+   * @param base archive of the last backup (may be {@code null})
+   * @return {@code true} if an incremental backup was created
+   * @throws IOException I/O exception
+   */
+  public boolean create(final IOFile root, final IOFile base) throws IOException {
+    Manifest old = null;
+    if(base != null) {
+      final ZipFile zf = new ZipFile(base.file());
+      try {
+        old = manifest(zf);
+      } finally {
+        zf.close();
+      }
+      if(old != null && old.block != BLOCK) old = null;
+    }
+    final Manifest mf = new Manifest(old == null ? "" : base.dbname(),
+        System.currentTimeMillis(), BLOCK);
+
+    final StringList files = root.descendants();
+    final byte[] data = new byte[BLOCK];
+    final ZipOutputStream out = new ZipOutputStream(new BufferedOutputStream(
+        new FileOutputStream(archive.path())));
+    total = files.size();
+    curr = 0;
+    try {
+      // use simple, fast compression
+      out.setLevel(1);
+      for(final String file : files) {
+        curr++;
+        final File f = new File(root.file(), file);
+        final long len = f.length(), time = f.lastModified();
+        final long[] prev = old == null ? null : old.files.get(file);
+        if(prev != null && prev[0] == len && prev[1] == time &&
+            time < old.time - GRANULARITY) {
+          // file has not been touched since the last backup
+          mf.files.put(file, prev);
+          continue;
+        }
+
+        final long[] entry = new long[2 + (int) ((len + BLOCK - 1) / BLOCK)];
+        entry[0] = len;
+        entry[1] = time;
+        mf.files.put(file, entry);
+
+        final boolean full = old == null;
+        if(full) out.putNextEntry(new ZipEntry(root.name() + '/' + file));
+        boolean delta = false;
+        final FileInputStream in = new FileInputStream(f);
+        try {
+          for(int b = 2; b < entry.length; b++) {
+            final int n = fill(in, data, BLOCK);
+            if(n == 0) break;
+            entry[b] = checksum(data, n);
+            if(!full) {
+              // skip blocks that have not changed
+              if(prev != null && b < prev.length && prev[b] == entry[b]) continue;
+              if(!delta) {
+                out.putNextEntry(new ZipEntry(DELTA + file));
+                delta = true;
+              }
+              write4(out, b - 2);
+            }
+            out.write(data, 0, n);
+          }
+        } finally {
+          in.close();
+        }
+        if(full || delta) out.closeEntry();
+      }
+
+      out.putNextEntry(new ZipEntry(MANIFEST));
+      final DataOutput dout = new DataOutput(new BufferOutput(out));
+      mf.write(dout);
+      dout.flush();
+      out.closeEntry();
+      out.close();
+    } catch(final IOException ex) {
+      // incomplete archives must not serve as base for other backups
+      out.close();
+      archive.delete();
+      throw ex;
+    }
+    return old != null;
+  }
+
+  /**
+   * Restores the specified database directory. If the archive contains an incremental
+   * backup, all backups of its chain are replayed. The backups are replayed in a
+   * temporary directory, which replaces the database directory if all backups have
+   * been successfully applied.
+   * @param root database directory
+   * @throws IOException I/O exception
+   */
+  public void restore(final IOFile root) throws IOException {
+    // collect the chain of backups, starting with the full backup
+    final ArrayList<IOFile> chain = new ArrayList<IOFile>();
+    total = 0;
+    curr = 0;
+    for(IOFile file = archive;;) {
+      chain.add(0, file);
+      final String parent;
+      final ZipFile zf = new ZipFile(file.file());
+      try {
+        total += zf.size();
+        parent = parent(zf);
+      } finally {
+        zf.close();
+      }
+      if(parent == null || parent.isEmpty()) break;
+      // backups can only be based on older backups
+      final boolean older = parent.compareTo(file.dbname()) < 0;
+      file = new IOFile(archive.dir(), parent + IO.ZIPSUFFIX);
+      if(!older || !file.exists()) throw new FileNotFoundException(file.path());
+    }
+
+    // directories starting with a dot are ignored when databases are listed
+    final IOFile tmp = new IOFile(root.file().getParent(), '.' + root.name());
+    tmp.delete();
+    tmp.md();
+    boolean ok = false;
+    try {
+      for(final IOFile file : chain) {
+        final ZipFile zf = new ZipFile(file.file());
+        try {
+          final Manifest mf = manifest(zf);
+          if(mf == null || mf.parent.isEmpty()) {
+            unzip(zf, tmp);
+          } else {
+            apply(zf, mf, tmp);
+          }
+        } finally {
+          zf.close();
+        }
+      }
+      // replace the database directory
+      root.delete();
+      ok = tmp.rename(root);
+      if(!ok) throw new IOException("Could not rename " + tmp + " to " + root);
+    } finally {
+      if(!ok) tmp.delete();
+    }
+  }
+
+  /**
+   * Extracts the files of a full backup.
+   * @param zf archive
+   * @param root database directory
+   * @throws IOException I/O exception
+   */
+  private void unzip(final ZipFile zf, final IOFile root) throws IOException {
+    final byte[] data = new byte[IO.BLOCKSIZE];
+    for(final Enumeration<? extends ZipEntry> en = zf.entries(); en.hasMoreElements();) {
+      final ZipEntry ze = en.nextElement();
+      curr++;
+      final String name = ze.getName();
+      if(ze.isDirectory() || name.equals(MANIFEST)) continue;
+
+      // replace the name of the backed up directory
+      final IOFile trg = new IOFile(root, name.substring(name.indexOf('/') + 1));
+      trg.dir().md();
+      final InputStream in = zf.getInputStream(ze);
+      try {
+        final OutputStream out = new FileOutputStream(trg.file());
+        try {
+          for(int c; (c = in.read(data)) != -1;) out.write(data, 0, c);
+        } finally {
+          out.close();
+        }
+      } finally {
+        in.close();
+      }
+    }
+  }
+
+  /**
+   * Applies the changes of an incremental backup.
+   * @param zf archive
+   * @param mf manifest of the archive
+   * @param root database directory
+   * @throws IOException I/O exception
+   */
+  private void apply(final ZipFile zf, final Manifest mf, final IOFile root)
+      throws IOException {
+
+    // delete removed files and adjust the lengths of all others
+    for(final String file : root.descendants()) {
+      if(!mf.files.containsKey(file)) new IOFile(root, file).delete();
+    }
+    for(final Map.Entry<String, long[]> e : mf.files.entrySet()) {
+      final IOFile trg = new IOFile(root, e.getKey());
+      trg.dir().md();
+      final RandomAccessFile raf = new RandomAccessFile(trg.file(), "rw");
+      try {
+        raf.setLength(e.getValue()[0]);
+      } finally {
+        raf.close();
+      }
+    }
+
+    // write changed blocks
+    final byte[] data = new byte[mf.block];
+    for(final Enumeration<? extends ZipEntry> en = zf.entries(); en.hasMoreElements();) {
+      final ZipEntry ze = en.nextElement();
+      curr++;
+      final String name = ze.getName();
+      if(!name.startsWith(DELTA)) continue;
+
+      final String file = name.substring(DELTA.length());
+      final long[] entry = mf.files.get(file);
+      if(entry == null) throw new ZipException(name);
+      final InputStream in = zf.getInputStream(ze);
+      try {
+        final RandomAccessFile raf = new RandomAccessFile(new File(root.file(), file), "rw");
+        try {
+          for(int b; (b = read4(in)) != -1;) {
+            final long off = (long) b * mf.block;
+            final int n = (int) Math.min(mf.block, entry[0] - off);
+            if(n <= 0 || fill(in, data, n) != n) throw new ZipException(name);
+            raf.seek(off);
+            raf.write(data, 0, n);
+          }
+        } finally {
+          raf.close();
+        }
+      } finally {
+        in.close();
+      }
+    }
+  }
+
+  @Override
+  protected double prog() {
+    return (double) curr / total;
+  }
+
+  /**
+   * Computes the checksum of a block.
+   * @param data block data
+   * @param n number of bytes
+   * @return checksum
+   */
+  private long checksum(final byte[] data, final int n) {
+    crc.reset();
+    crc.update(data, 0, n);
+    adler.reset();
+    adler.update(data, 0, n);
+    return crc.getValue() << 32 | adler.getValue();
+  }
+
+  /**
+   * Returns the name of the parent backup.
+   * @param zf archive
+   * @return name, empty string, or {@code null}
+   * @throws IOException I/O exception
+   */
+  private static String parent(final ZipFile zf) throws IOException {
+    final ZipEntry ze = zf.getEntry(MANIFEST);
+    if(ze == null) return null;
+    final InputStream in = zf.getInputStream(ze);
+    try {
+      return string(new DataInput(in).readToken());
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * Returns the manifest of an archive.
+   * @param zf archive
+   * @return manifest, or {@code null}
+   * @throws IOException I/O exception
+   */
+  private static Manifest manifest(final ZipFile zf) throws IOException {
+    final ZipEntry ze = zf.getEntry(MANIFEST);
+    if(ze == null) return null;
+    final InputStream in = zf.getInputStream(ze);
+    try {
+      return new Manifest(new DataInput(in));
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * Reads bytes until the specified number of bytes is reached or the input is exhausted.
+   * @param in input stream
+   * @param data byte array
+   * @param len number of bytes to read
+   * @return number of read bytes
+   * @throws IOException I/O exception
+   */
+  private static int fill(final InputStream in, final byte[] data, final int len)
+      throws IOException {
+    int o = 0;
+    for(int c; o < len && (c = in.read(data, o, len - o)) != -1;) o += c;
+    return o;
+  }
+
+  /**
+   * Writes an integer value.
+   * @param out output stream
+   * @param v value
+   * @throws IOException I/O exception
+   */
+  private static void write4(final OutputStream out, final int v) throws IOException {
+    out.write(v >>> 24);
+    out.write(v >>> 16);
+    out.write(v >>> 8);
+    out.write(v);
+  }
+
+  /**
+   * Reads an integer value.
+   * @param in input stream
+   * @return value, or {@code -1} if the input is exhausted
+   * @throws IOException I/O exception
+   */
+  private static int read4(final InputStream in) throws IOException {
+    final int b = in.read();
+    if(b == -1) return -1;
+    int v = b;
+    for(int i = 0; i < 3; i++) {
+      final int c = in.read();
+      if(c == -1) throw new EOFException();
+      v = v << 8 | c;
+    }
+    return v;
+  }
+
+  /** Manifest of a backup. */
+  private static final class Manifest {
+    /** Name of the backup this backup is based on (empty for full backups). */
+    final String parent;
+    /** Creation time. */
+    final long time;
+    /** Block size. */
+    final int block;
+    /** Relative file paths, mapped to file lengths, timestamps and block checksums. */
+    final HashMap<String, long[]> files = new HashMap<String, long[]>();
+
+    /**
+     * Constructor.
+     * @param p name of the parent backup
+     * @param t creation time
+     * @param b block size
+     */
+    Manifest(final String p, final long t, final int b) {
+      parent = p;
+      time = t;
+      block = b;
+    }
+
+    /**
+     * Constructor, reading the manifest from the specified input.
+     * @param in input
+     * @throws IOException I/O exception
+     */
+    Manifest(final DataInput in) throws IOException {
+      parent = string(in.readToken());
+      time = in.readLongs(in.readNum())[0];
+      block = in.readNum();
+      for(int f = in.readNum(); f > 0; f--) {
+        files.put(string(in.readToken()), in.readLongs(in.readNum()));
+      }
+    }
+
+    /**
+     * Writes the manifest to the specified output.
+     * @param out output
+     * @throws IOException I/O exception
+     */
+    void write(final DataOutput out) throws IOException {
+      out.writeToken(token(parent));
+      out.writeLongs(new long[] { time });
+      out.writeNum(block);
+      out.writeNum(files.size());
+      for(final Map.Entry<String, long[]> e : files.entrySet()) {
+        out.writeToken(token(e.getKey()));
+        out.writeLongs(e.getValue());
+      }
+    }
+  }
+}
@@ -153,6 +153,14 @@ public class BufferInput extends InputStream {
     return read + bpos;
   }
 
+  /**
+   * Returns the number of bytes that have been buffered, but not read yet.
+   * @return number of buffered bytes
+   */
+  public final int buffered() {
+    return bsize - bpos;
+  }
+
   /**
    * Returns the input length (may be {@code -1}).
    * @return input length
@@ -23,6 +23,14 @@ public final class DataInput extends BufferInput {
     super(io);
   }
 
+  /**
+   * Constructor.
+   * @param is input stream
+   */
+  public DataInput(final InputStream is) {
+    super(is);
+  }
+
   /**
    * Reads a boolean value.
    * @return boolean value
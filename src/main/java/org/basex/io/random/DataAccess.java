@@ -1,6 +1,10 @@
 package org.basex.io.random;
 
 import java.io.*;
+import java.lang.reflect.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.channels.FileChannel.MapMode;
 
 import org.basex.io.*;
 import org.basex.util.*;
@@ -8,10 +12,44 @@ import org.basex.util.*;
 /**
  * This class allows positional read and write access to a database file.
  *
+ * If memory mapping is enabled, the file will be mapped into memory in segments,
+ * and read operations will be performed without synchronization. As soon as the
+ * file is modified, the segments will be released, and all operations will be
+ * performed on the local buffers again until the next call of {@link #flush}.
+ *
+ * Reads with an absolute position can be performed by concurrent threads.
+ * Sequential reads and writes share a single cursor: they must be performed by a
+ * single thread, which is ensured by the database locks, as before. Writes and
+ * {@link #close} release the mapped segments; they must not be called while other
+ * threads are reading the file.
+ *
  * @author BaseX Team 2005-12, BSD License
  * @author Christian Gruen
  */
 public final class DataAccess {
+  /** Size of a mapped segment (must be 1 << n). */
+  private static final long SEGMENT = 1L << 30;
+  /** Unsafe instance for releasing mapped segments ({@code null} before Java 9). */
+  private static final Object UNSAFE;
+  /** Method for releasing mapped segments ({@code null} before Java 9). */
+  private static final Method CLEANER;
+
+  static {
+    final Class<?> uc = Reflect.find("sun.misc.Unsafe");
+    final Method m = uc == null ? null : Reflect.method(uc, "invokeCleaner", ByteBuffer.class);
+    Object u = null;
+    if(m != null) {
+      try {
+        final Field f = uc.getDeclaredField("theUnsafe");
+        f.setAccessible(true);
+        u = f.get(null);
+      } catch(final Exception ex) {
+        Util.debug(ex);
+      }
+    }
+    UNSAFE = u;
+    CLEANER = u == null ? null : m;
+  }
   /** Buffer manager. */
   private final Buffers bm = new Buffers();
   /** Reference to the data input stream. */
@@ -23,15 +61,34 @@ public final class DataAccess {
   /** Offset. */
   private int off;
 
+  /** Flag for mapping the file into memory. */
+  private final boolean mmap;
+  /** Mapped segments ({@code null} if the file is not mapped, or if it was modified). */
+  private volatile MappedByteBuffer[] map;
+  /** Cursor of sequential reads on mapped segments (single-threaded access). */
+  private long mpos;
+
   /**
    * Constructor, initializing the file reader.
    * @param f the file to be read
    * @throws IOException I/O Exception
    */
   public DataAccess(final IOFile f) throws IOException {
+    this(f, false);
+  }
+
+  /**
+   * Constructor, initializing the file reader.
+   * @param f the file to be read
+   * @param mm map file into memory
+   * @throws IOException I/O Exception
+   */
+  public DataAccess(final IOFile f, final boolean mm) throws IOException {
     file = new RandomAccessFile(f.file(), "rw");
     len = file.length();
+    mmap = mm;
     cursor(0);
+    map();
   }
 
   /**
@@ -44,6 +101,7 @@ public final class DataAccess {
         file.setLength(len);
         changed = false;
       }
+      if(mmap && map == null) map();
     } catch(final IOException ex) {
       Util.stack(ex);
     }
@@ -54,6 +112,9 @@ public final class DataAccess {
    */
   public synchronized void close() {
     flush();
+    final MappedByteBuffer[] mb = map;
+    map = null;
+    if(mb != null) release(mb);
     try {
       file.close();
     } catch(final IOException ex) {
@@ -66,7 +127,7 @@ public final class DataAccess {
    * @return position in the file
    */
   public long cursor() {
-    return buffer(false).pos + off;
+    return map != null ? mpos : buffer(false).pos + off;
   }
 
   /**
@@ -74,6 +135,7 @@ public final class DataAccess {
    * @param l file length
    */
   synchronized void length(final long l) {
+    unmap();
     changed |= l != len;
     len = l;
   }
@@ -99,17 +161,28 @@ public final class DataAccess {
    * @param p position
    * @return integer value
    */
-  public synchronized byte read1(final long p) {
-    cursor(p);
-    return read1();
+  public byte read1(final long p) {
+    final MappedByteBuffer[] mb = map;
+    if(mb != null) {
+      mpos = p + 1;
+      return get(mb, p);
+    }
+    synchronized(this) {
+      cursor(p);
+      return (byte) read();
+    }
   }
 
   /**
    * Reads a byte value.
    * @return integer value
    */
-  public synchronized byte read1() {
-    return (byte) read();
+  public byte read1() {
+    final MappedByteBuffer[] mb = map;
+    if(mb != null) return get(mb, mpos++);
+    synchronized(this) {
+      return (byte) read();
+    }
   }
 
   /**
@@ -117,17 +190,28 @@ public final class DataAccess {
    * @param p position
    * @return integer value
    */
-  public synchronized int read4(final long p) {
-    cursor(p);
-    return read4();
+  public int read4(final long p) {
+    final MappedByteBuffer[] mb = map;
+    if(mb != null) {
+      mpos = p + 4;
+      return (int) get(mb, p, 4);
+    }
+    synchronized(this) {
+      cursor(p);
+      return read4();
+    }
   }
 
   /**
    * Reads an integer value.
    * @return integer value
    */
-  public synchronized int read4() {
-    return (read() << 24) + (read() << 16) + (read() << 8) + read();
+  public int read4() {
+    final MappedByteBuffer[] mb = map;
+    if(mb != null) return read4(mpos);
+    synchronized(this) {
+      return (read() << 24) + (read() << 16) + (read() << 8) + read();
+    }
   }
 
   /**
@@ -135,18 +219,29 @@ public final class DataAccess {
    * @param p position
    * @return long value
    */
-  public synchronized long read5(final long p) {
-    cursor(p);
-    return read5();
+  public long read5(final long p) {
+    final MappedByteBuffer[] mb = map;
+    if(mb != null) {
+      mpos = p + 5;
+      return get(mb, p, 5);
+    }
+    synchronized(this) {
+      cursor(p);
+      return read5();
+    }
   }
 
   /**
    * Reads a 5-byte value.
    * @return long value
    */
-  public synchronized long read5() {
-    return ((long) read() << 32) + ((long) read() << 24) +
-      (read() << 16) + (read() << 8) + read();
+  public long read5() {
+    final MappedByteBuffer[] mb = map;
+    if(mb != null) return read5(mpos);
+    synchronized(this) {
+      return ((long) read() << 32) + ((long) read() << 24) +
+        (read() << 16) + (read() << 8) + read();
+    }
   }
 
   /**
@@ -154,9 +249,16 @@ public final class DataAccess {
    * @param p text position
    * @return read num
    */
-  public synchronized int readNum(final long p) {
-    cursor(p);
-    return readNum();
+  public int readNum(final long p) {
+    final MappedByteBuffer[] mb = map;
+    if(mb != null) {
+      mpos = p + numLength(mb, p);
+      return num(mb, p);
+    }
+    synchronized(this) {
+      cursor(p);
+      return num();
+    }
   }
 
   /**
@@ -164,18 +266,79 @@ public final class DataAccess {
    * @param p text position
    * @return text as byte array
    */
-  public synchronized byte[] readToken(final long p) {
-    cursor(p);
-    return readToken();
+  public byte[] readToken(final long p) {
+    final MappedByteBuffer[] mb = map;
+    if(mb != null) return readBytes(p + numLength(mb, p), num(mb, p));
+    synchronized(this) {
+      cursor(p);
+      return bytes(num());
+    }
+  }
+
+  /**
+   * Compares a token on disk with the specified token, and returns the same result
+   * as {@link Token#diff}. No byte array will be created for the token on disk.
+   * @param p text position
+   * @param token token to be compared
+   * @return 0 if tokens are equal, negative if first token is smaller,
+   *   positive if first token is bigger
+   */
+  public int diffToken(final long p, final byte[] token) {
+    final int cl = token.length;
+    final MappedByteBuffer[] mb = map;
+    if(mb != null) {
+      final int tl = num(mb, p), l = Math.min(tl, cl);
+      final long s = p + numLength(mb, p);
+      for(int i = 0; i < l; i++) {
+        final int c = (get(mb, s + i) & 0xFF) - (token[i] & 0xFF);
+        if(c != 0) return c;
+      }
+      return tl - cl;
+    }
+    synchronized(this) {
+      cursor(p);
+      final int tl = num(), l = Math.min(tl, cl);
+      for(int i = 0; i < l; i++) {
+        final int c = read() - (token[i] & 0xFF);
+        if(c != 0) return c;
+      }
+      return tl - cl;
+    }
+  }
+
+  /**
+   * Calculates the hash code of a token on disk, which is identical to the
+   * {@link Token#hash} value of the token. No byte array will be created.
+   * @param p text position
+   * @return hash code
+   */
+  public int hashToken(final long p) {
+    int h = 0;
+    final MappedByteBuffer[] mb = map;
+    if(mb != null) {
+      final int l = Math.min(num(mb, p), Token.MAXLENGTH);
+      final long s = p + numLength(mb, p);
+      for(int i = 0; i < l; i++) h = (h << 5) - h + get(mb, s + i);
+      return h;
+    }
+    synchronized(this) {
+      cursor(p);
+      final int l = Math.min(num(), Token.MAXLENGTH);
+      for(int i = 0; i < l; i++) h = (h << 5) - h + (byte) read();
+      return h;
+    }
   }
 
   /**
    * Reads the next token from disk.
    * @return text as byte array
    */
-  public synchronized byte[] readToken() {
-    final int l = readNum();
-    return readBytes(l);
+  public byte[] readToken() {
+    final MappedByteBuffer[] mb = map;
+    if(mb != null) return readToken(mpos);
+    synchronized(this) {
+      return bytes(num());
+    }
   }
 
   /**
@@ -184,9 +347,28 @@ public final class DataAccess {
    * @param l length
    * @return byte array
    */
-  public synchronized byte[] readBytes(final long p, final int l) {
-    cursor(p);
-    return readBytes(l);
+  public byte[] readBytes(final long p, final int l) {
+    final MappedByteBuffer[] mb = map;
+    if(mb != null) {
+      final byte[] b = new byte[l];
+      int o = 0;
+      long ps = p;
+      while(o < l) {
+        // copy chunk from current segment
+        final ByteBuffer bb = mb[(int) (ps / SEGMENT)].duplicate();
+        bb.position((int) (ps & SEGMENT - 1));
+        final int n = Math.min(l - o, bb.remaining());
+        bb.get(b, o, n);
+        o += n;
+        ps += n;
+      }
+      mpos = ps;
+      return b;
+    }
+    synchronized(this) {
+      cursor(p);
+      return bytes(l);
+    }
   }
 
   /**
@@ -194,7 +376,20 @@ public final class DataAccess {
    * @param n length
    * @return byte array
    */
-  public synchronized byte[] readBytes(final int n) {
+  public byte[] readBytes(final int n) {
+    final MappedByteBuffer[] mb = map;
+    if(mb != null) return readBytes(mpos, n);
+    synchronized(this) {
+      return bytes(n);
+    }
+  }
+
+  /**
+   * Reads a number of bytes from the local buffers.
+   * @param n length
+   * @return byte array
+   */
+  private byte[] bytes(final int n) {
     int l = n;
     int ll = IO.BLOCKSIZE - off;
     final byte[] b = new byte[l];
@@ -218,6 +413,10 @@ public final class DataAccess {
    * @param p read position
    */
   public void cursor(final long p) {
+    if(map != null) {
+      mpos = p;
+      return;
+    }
     off = (int) (p & IO.BLOCKSIZE - 1);
     final long b = p - off;
     if(!bm.cursor(b)) return;
@@ -238,7 +437,19 @@ public final class DataAccess {
    * Reads the next compressed number and returns it as integer.
    * @return next integer
    */
-  public synchronized int readNum() {
+  public int readNum() {
+    final MappedByteBuffer[] mb = map;
+    if(mb != null) return readNum(mpos);
+    synchronized(this) {
+      return num();
+    }
+  }
+
+  /**
+   * Reads the next compressed number from the local buffers.
+   * @return next integer
+   */
+  private int num() {
     final int v = read();
     switch(v & 0xC0) {
     case 0:
@@ -258,6 +469,7 @@ public final class DataAccess {
    * @param v value to be written
    */
   public void write5(final long p, final long v) {
+    unmap();
     cursor(p);
     write((byte) (v >>> 32));
     write((byte) (v >>> 24));
@@ -272,6 +484,7 @@ public final class DataAccess {
    * @param v byte array to be appended
    */
   public void write4(final long p, final int v) {
+    unmap();
     cursor(p);
     write4(v);
   }
@@ -281,6 +494,7 @@ public final class DataAccess {
    * @param v value to be written
    */
   public void write4(final int v) {
+    unmap();
     write(v >>> 24);
     write(v >>> 16);
     write(v >>>  8);
@@ -293,6 +507,7 @@ public final class DataAccess {
    * @param v value to be written
    */
   public void writeNum(final long p, final int v) {
+    unmap();
     cursor(p);
     writeNum(v);
   }
@@ -303,6 +518,7 @@ public final class DataAccess {
    * @param v integer values
    */
   public void writeNums(final long p, final int[] v) {
+    unmap();
     cursor(p);
     writeNum(v.length);
     for(final int n : v) writeNum(n);
@@ -325,6 +541,7 @@ public final class DataAccess {
    * @param v byte array to be appended
    */
   public void writeToken(final long p, final byte[] v) {
+    unmap();
     cursor(p);
     writeToken(v, 0, v.length);
   }
@@ -336,6 +553,7 @@ public final class DataAccess {
    * @param length token length
    */
   public void writeToken(final byte[] buf, final int offset, final int length) {
+    unmap();
     writeNum(length);
 
     final int last = offset + length;
@@ -381,6 +599,7 @@ public final class DataAccess {
    * @return new offset to store text
    */
   public long free(final long pos, final int size) {
+    unmap();
     // old text size (available space)
     int os = readNum(pos) + (int) (cursor() - pos);
 
@@ -413,6 +632,112 @@ public final class DataAccess {
 
   // PRIVATE METHODS ==========================================================
 
+  /**
+   * Maps the file into memory, if memory mapping is enabled.
+   */
+  private void map() {
+    if(!mmap) return;
+    try {
+      final FileChannel fc = file.getChannel();
+      final MappedByteBuffer[] mb = new MappedByteBuffer[(int) ((len + SEGMENT - 1) / SEGMENT)];
+      for(int s = 0; s < mb.length; s++) {
+        final long p = s * SEGMENT;
+        mb[s] = fc.map(MapMode.READ_ONLY, p, Math.min(SEGMENT, len - p));
+      }
+      map = mb;
+    } catch(final IOException ex) {
+      // mapping failed: continue with local buffers
+      Util.debug(ex);
+    }
+  }
+
+  /**
+   * Releases the mapped segments, as the file is going to be modified.
+   * The cursor of the mapped segments is adopted by the local buffers.
+   */
+  private void unmap() {
+    final MappedByteBuffer[] mb = map;
+    if(mb == null) return;
+    final long p = mpos;
+    map = null;
+    release(mb);
+    cursor(p);
+  }
+
+  /**
+   * Releases the specified segments. Otherwise, segments are only released when they
+   * are garbage collected: until then, address space is occupied, and the file
+   * cannot be truncated or deleted on some platforms. The segments must not be
+   * accessed anymore by any other thread.
+   * @param mb mapped segments
+   */
+  private static void release(final MappedByteBuffer[] mb) {
+    for(final MappedByteBuffer b : mb) {
+      if(CLEANER != null) {
+        Reflect.invoke(CLEANER, UNSAFE, b);
+      } else {
+        // Java 8 and older: call the cleaner of the direct buffer
+        final Object c = Reflect.invoke(Reflect.method(b.getClass(), "cleaner"), b);
+        if(c != null) Reflect.invoke(Reflect.method(c.getClass(), "clean"), c);
+      }
+    }
+  }
+
+  /**
+   * Returns a byte from the mapped segments.
+   * @param mb mapped segments
+   * @param p position
+   * @return byte
+   */
+  private static byte get(final MappedByteBuffer[] mb, final long p) {
+    return mb[(int) (p / SEGMENT)].get((int) (p & SEGMENT - 1));
+  }
+
+  /**
+   * Returns a compressed number from the mapped segments.
+   * @param mb mapped segments
+   * @param p position
+   * @return number
+   */
+  private static int num(final MappedByteBuffer[] mb, final long p) {
+    final int v = get(mb, p) & 0xFF;
+    switch(v & 0xC0) {
+    case 0:
+      return v;
+    case 0x40:
+      return (v - 0x40 << 8) + (get(mb, p + 1) & 0xFF);
+    case 0x80:
+      return (v - 0x80 << 24) + (int) get(mb, p + 1, 3);
+    default:
+      return (int) get(mb, p + 1, 4);
+    }
+  }
+
+  /**
+   * Returns the length of a compressed number in the mapped segments.
+   * @param mb mapped segments
+   * @param p position
+   * @return number of bytes
+   */
+  private static int numLength(final MappedByteBuffer[] mb, final long p) {
+    final int v = (get(mb, p) & 0xFF) >>> 6;
+    return v == 0 ? 1 : v == 1 ? 2 : v == 2 ? 4 : 5;
+  }
+
+  /**
+   * Returns a big-endian value with the specified number of bytes from the mapped
+   * segments.
+   * @param mb mapped segments
+   * @param p position
+   * @param n number of bytes
+   * @return value
+   */
+  private static long get(final MappedByteBuffer[] mb, final long p, final int n) {
+    long v = 0;
+    for(int i = 0; i < n; i++) v = v << 8 | get(mb, p + i) & 0xFF;
+    return v;
+  }
+
   /**
    * Writes the specified block to disk.
    * @param bf buffer to write
@@ -0,0 +1,281 @@
+package org.basex.io.random;
+
+import java.util.concurrent.atomic.*;
+
+import org.basex.io.*;
+
+/**
+ * This class provides a page cache for table blocks, which is shared by all
+ * opened disk tables. The cache is divided into stripes, which are locked
+ * independently, so that concurrent readers will rarely block each other.
+ * Blocks are evicted by a simplified 2Q algorithm: new blocks are inserted into
+ * a small probationary FIFO queue and are only moved to the protected part of the
+ * cache if they are requested again. Protected blocks are evicted by a CLOCK
+ * algorithm. A scan over many blocks will thus only replace probationary blocks.
+ *
+ * @author BaseX Team 2005-12, BSD License
+ * @author Christian Gruen
+ */
+public final class TableCache {
+  /** Number of stripes (must be 1 << n). */
+  private static final int STRIPES = 1 << 5;
+  /** Shared cache instance. */
+  private static TableCache instance;
+
+  /** Table id counter. */
+  private final AtomicInteger ids = new AtomicInteger();
+  /** Stripes. */
+  private final Stripe[] stripes = new Stripe[STRIPES];
+  /** Cache size in megabytes. */
+  private final int mb;
+
+  /**
+   * Constructor.
+   * @param size cache size in megabytes
+   */
+  private TableCache(final int size) {
+    mb = size;
+    final long total = ((long) size << 20) / IO.BLOCKSIZE;
+    final int cap = (int) Math.min(Integer.MAX_VALUE >> 1, Math.max(2, total / STRIPES));
+    for(int s = 0; s < STRIPES; s++) stripes[s] = new Stripe(cap);
+  }
+
+  /**
+   * Returns the shared cache instance. A new instance will be created if the cache
+   * size has changed; tables that are still opened will keep their old reference.
+   * @param size cache size in megabytes
+   * @return cache, or {@code null} if caching is disabled
+   */
+  public static synchronized TableCache get(final int size) {
+    if(size <= 0) return null;
+    if(instance == null || instance.mb != size) instance = new TableCache(size);
+    return instance;
+  }
+
+  /**
+   * Returns a new table id. A table requests a new id whenever its contents have
+   * been changed; blocks that are cached for the old id will never be requested
+   * again and thus be evicted first.
+   * @return id
+   */
+  public int id() {
+    return ids.incrementAndGet();
+  }
+
+  /**
+   * Returns the contents of a cached block.
+   * @param table table id
+   * @param block block
+   * @return block data, or {@code null} if the block is not cached
+   */
+  public byte[] get(final int table, final int block) {
+    final long key = key(table, block);
+    return stripe(key).get(key);
+  }
+
+  /**
+   * Caches the contents of a block.
+   * @param table table id
+   * @param block block
+   * @param data block data
+   */
+  public void add(final int table, final int block, final byte[] data) {
+    final long key = key(table, block);
+    stripe(key).add(key, data);
+  }
+
+  /**
+   * Returns the key for the specified table and block.
+   * @param table table id
+   * @param block block
+   * @return key
+   */
+  private static long key(final int table, final int block) {
+    return (long) table << 32 | block & 0xFFFFFFFFL;
+  }
+
+  /**
+   * Returns the stripe responsible for the specified key.
+   * @param key key
+   * @return stripe
+   */
+  private Stripe stripe(final long key) {
+    final int h = (int) (key ^ key >>> 32) * 0x9E3779B9;
+    return stripes[h >>> 16 & STRIPES - 1];
+  }
+
+  /**
+   * Single stripe of the cache, containing a fixed number of slots.
+   * Keys are indexed in a chained hash table. Probationary slots are linked in
+   * a FIFO queue; protected slots are visited by the clock hand.
+   */
+  private static final class Stripe {
+    /** Hash buckets, pointing to the first slot (offset by 1). */
+    private final int[] buckets;
+    /** Next slot in the bucket chain (offset by 1). */
+    private final int[] next;
+    /** Keys. */
+    private final long[] keys;
+    /** Block data. */
+    private final byte[][] data;
+    /** Reference bits of protected slots. */
+    private final boolean[] refs;
+    /** Protected flags. */
+    private final boolean[] prot;
+    /** Previous slot in the probationary queue ({@code -1}: none). */
+    private final int[] qprev;
+    /** Next slot in the probationary queue ({@code -1}: none). */
+    private final int[] qnext;
+    /** Maximum number of probationary slots. */
+    private final int probMax;
+    /** Oldest probationary slot ({@code -1}: none). */
+    private int qhead = -1;
+    /** Newest probationary slot ({@code -1}: none). */
+    private int qtail = -1;
+    /** Number of probationary slots. */
+    private int probs;
+    /** Clock hand. */
+    private int hand;
+    /** Number of occupied slots. */
+    private int size;
+
+    /**
+     * Constructor.
+     * @param cap capacity
+     */
+    Stripe(final int cap) {
+      buckets = new int[Integer.highestOneBit(cap) << 1];
+      next = new int[cap];
+      keys = new long[cap];
+      data = new byte[cap][];
+      refs = new boolean[cap];
+      prot = new boolean[cap];
+      qprev = new int[cap];
+      qnext = new int[cap];
+      probMax = Math.max(1, cap >>> 2);
+    }
+
+    /**
+     * Returns the data for the specified key.
+     * @param key key
+     * @return data or {@code null}
+     */
+    synchronized byte[] get(final long key) {
+      for(int s = buckets[bucket(key)]; s != 0; s = next[s - 1]) {
+        final int slot = s - 1;
+        if(keys[slot] == key) {
+          if(prot[slot]) {
+            refs[slot] = true;
+          } else {
+            // second request: promote block to the protected part
+            dequeue(slot);
+            prot[slot] = true;
+            refs[slot] = false;
+          }
+          return data[slot];
+        }
+      }
+      return null;
+    }
+
+    /**
+     * Adds data for the specified key.
+     * @param key key
+     * @param d data
+     */
+    synchronized void add(final long key, final byte[] d) {
+      final int b = bucket(key);
+      // block may have been added by a concurrent reader
+      for(int s = buckets[b]; s != 0; s = next[s - 1]) {
+        if(keys[s - 1] == key) return;
+      }
+
+      final int slot;
+      if(size < keys.length) {
+        slot = size++;
+      } else {
+        slot = victim();
+        unlink(slot);
+      }
+      keys[slot] = key;
+      data[slot] = d;
+      refs[slot] = false;
+      prot[slot] = false;
+      enqueue(slot);
+      next[slot] = buckets[b];
+      buckets[b] = slot + 1;
+    }
+
+    /**
+     * Chooses a slot to be replaced. The oldest probationary slot is chosen if the
+     * probationary queue is full or if no protected slots exist.
+     * @return slot
+     */
+    private int victim() {
+      if(probs != 0 && (probs >= probMax || probs == keys.length)) {
+        final int slot = qhead;
+        dequeue(slot);
+        return slot;
+      }
+      // clock: skip probationary slots, skip and reset slots with reference bit
+      while(!prot[hand] || refs[hand]) {
+        refs[hand] = false;
+        hand = (hand + 1) % keys.length;
+      }
+      final int slot = hand;
+      hand = (hand + 1) % keys.length;
+      return slot;
+    }
+
+    /**
+     * Appends a slot to the probationary queue.
+     * @param slot slot
+     */
+    private void enqueue(final int slot) {
+      qprev[slot] = qtail;
+      qnext[slot] = -1;
+      if(qtail == -1) qhead = slot;
+      else qnext[qtail] = slot;
+      qtail = slot;
+      probs++;
+    }
+
+    /**
+     * Removes a slot from the probationary queue.
+     * @param slot slot
+     */
+    private void dequeue(final int slot) {
+      final int p = qprev[slot], n = qnext[slot];
+      if(p == -1) qhead = n;
+      else qnext[p] = n;
+      if(n == -1) qtail = p;
+      else qprev[n] = p;
+      probs--;
+    }
+
+    /**
+     * Removes the specified slot from its bucket chain.
+     * @param slot slot
+     */
+    private void unlink(final int slot) {
+      final int b = bucket(keys[slot]);
+      int s = buckets[b];
+      if(s == slot + 1) {
+        buckets[b] = next[slot];
+      } else {
+        while(next[s - 1] != slot + 1) s = next[s - 1];
+        next[s - 1] = next[slot];
+      }
+    }
+
+    /**
+     * Returns the bucket for the specified key.
+     * @param key key
+     * @return bucket
+     */
+    private int bucket(final long key) {
+      final int h = (int) (key ^ key >>> 32);
+      return (h ^ h >>> 16) & buckets.length - 1;
+    }
+  }
+}
@@ -0,0 +1,510 @@
+package org.basex.io.random;
+
+import static org.basex.data.DataText.*;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+
+import org.basex.core.*;
+import org.basex.data.*;
+import org.basex.io.*;
+import org.basex.io.in.DataInput;
+import org.basex.io.out.*;
+import org.basex.io.out.DataOutput;
+import org.basex.util.*;
+import org.basex.util.list.*;
+
+/**
+ * This class provides read access to a compressed table, which can be chosen via
+ * {@link Prop#TABLECOMPRESS} when a database is created.
+ *
+ * The table is divided into blocks of {@link IO#ENTRIES} nodes. The nodes of a
+ * block are stored column-wise (see {@link Data} for the bit layout):
+ * <ul>
+ * <li>The first three bytes (kind, number of attributes, name) are dictionary-coded
+ *   per block.</li>
+ * <li>Text and attribute value references are delta-encoded, distances, sizes and
+ *   ids are stored as compressed numbers (ids relative to the pre value).</li>
+ * </ul>
+ * Decompressed blocks are stored in a small local cache and, if assigned via
+ * {@link Prop#TABLECACHE}, in the shared page cache.
+ *
+ * The compressed format is read-only: when the table is modified for the first
+ * time, it is converted to the standard format, and all further operations are
+ * delegated to a {@link TableDiskAccess} instance.
+ *
+ * @author BaseX Team 2005-12, BSD License
+ * @author Christian Gruen
+ */
+public final class TableCompressedAccess extends TableAccess {
+  /** Entries per block (power of two). */
+  private static final int ENTRYPOWER = Integer.numberOfTrailingZeros(IO.ENTRIES);
+  /** Number of blocks in the local cache (must be 1 << n). */
+  private static final int LOCAL = 1 << 6;
+
+  /** File storing all blocks. */
+  private RandomAccessFile file;
+  /** File lock. */
+  private FileLock fl;
+  /** File offsets of the blocks (length: number of blocks + 1). */
+  private final long[] offsets;
+  /** Local cache with decompressed blocks. */
+  private final Block[] local = new Block[LOCAL];
+  /** Shared page cache (can be {@code null}). */
+  private final TableCache cache;
+  /** Id of the table in the shared page cache. */
+  private final int cid;
+  /** Table in the standard format ({@code null} if the table has not been modified). */
+  private volatile TableDiskAccess disk;
+
+  /**
+   * Constructor.
+   * @param md meta data
+   * @param lock exclusive access
+   * @throws IOException I/O exception
+   */
+  public TableCompressedAccess(final MetaData md, final boolean lock) throws IOException {
+    super(md);
+
+    final DataInput in = new DataInput(meta.dbfile(DATATBZ + 'i'));
+    try {
+      offsets = in.readLongs(in.readNum());
+    } finally {
+      in.close();
+    }
+
+    file = new RandomAccessFile(meta.dbfile(DATATBZ).file(), "rw");
+    lck(!lock);
+    if(fl == null) throw new BaseXException(Text.DB_PINNED_X, md.name);
+
+    cache = TableCache.get(md.prop.num(Prop.TABLECACHE));
+    cid = cache != null ? cache.id() : 0;
+  }
+
+  /**
+   * Compresses the table of the specified database, which has been written in the
+   * standard format, and deletes the original table files.
+   * @param md meta data
+   * @throws IOException I/O exception
+   */
+  public static void compress(final MetaData md) throws IOException {
+    final int size = md.size;
+    final int blocks = size + IO.ENTRIES - 1 >>> ENTRYPOWER;
+    final long[] offsets = new long[blocks + 1];
+    final byte[] entries = new byte[IO.BLOCKSIZE];
+
+    final TableDiskAccess ta = new TableDiskAccess(md, true);
+    final DataOutput out = new DataOutput(md.dbfile(DATATBZ));
+    try {
+      final ByteList bl = new ByteList();
+      for(int b = 0; b < blocks; b++) {
+        final int fpre = b << ENTRYPOWER, n = Math.min(IO.ENTRIES, size - fpre);
+        for(int i = 0; i < n; i++) {
+          for(int o = 0; o < IO.NODESIZE; o += 4) {
+            final int v = ta.read4(fpre + i, o), p = (i << IO.NODEPOWER) + o;
+            entries[p] = (byte) (v >>> 24);
+            entries[p + 1] = (byte) (v >>> 16);
+            entries[p + 2] = (byte) (v >>> 8);
+            entries[p + 3] = (byte) v;
+          }
+        }
+        bl.reset();
+        encode(entries, n, fpre, bl);
+        out.writeBytes(bl.toArray());
+        offsets[b + 1] = out.size();
+      }
+    } finally {
+      out.close();
+      ta.close();
+    }
+
+    final DataOutput oi = new DataOutput(md.dbfile(DATATBZ + 'i'));
+    try {
+      oi.writeLongs(offsets);
+    } finally {
+      oi.close();
+    }
+    md.dbfile(DATATBL).delete();
+    md.dbfile(DATATBL + 'i').delete();
+  }
+
+  @Override
+  public synchronized void flush() throws IOException {
+    if(disk != null) {
+      disk.flush();
+      delete();
+    }
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    if(disk != null) {
+      disk.close();
+      delete();
+    } else {
+      file.close();
+    }
+  }
+
+  /**
+   * Deletes the compressed table files after the table has been converted to the
+   * standard format, and after the updated meta data has been written to disk.
+   * Until then, the database can still be opened with the compressed table.
+   */
+  private void delete() {
+    if(meta.dirty || meta.compress) return;
+    meta.dbfile(DATATBZ).delete();
+    meta.dbfile(DATATBZ + 'i').delete();
+  }
+
+  @Override
+  public synchronized boolean lock(final boolean lock) {
+    if(disk != null) return disk.lock(lock);
+    try {
+      if(lock) {
+        if(lck(false)) return true;
+        if(lck(true)) return false;
+      } else {
+        if(lck(true)) return true;
+      }
+    } catch(final IOException ex) {
+      Util.stack(ex);
+    }
+    throw Util.notexpected((lock ? "Exclusive" : "Shared") +
+        " lock could not be acquired.");
+  }
+
+  /**
+   * Acquires a lock on the file. Does nothing if the correct lock has already been
+   * acquired. Otherwise, releases an existing lock.
+   * @param shared shared/exclusive lock
+   * @return success flag
+   * @throws IOException I/O exception
+   */
+  private boolean lck(final boolean shared) throws IOException {
+    if(fl != null && shared == fl.isShared()) return true;
+    if(fl != null) fl.release();
+    fl = file.getChannel().tryLock(0, Long.MAX_VALUE, shared);
+    return fl != null;
+  }
+
+  @Override
+  public int read1(final int pre, final int off) {
+    final TableDiskAccess d = disk;
+    if(d != null) return d.read1(pre, off);
+    return block(pre)[offset(pre) + off] & 0xFF;
+  }
+
+  @Override
+  public int read2(final int pre, final int off) {
+    final TableDiskAccess d = disk;
+    if(d != null) return d.read2(pre, off);
+    return TableDiskAccess.read2(block(pre), offset(pre) + off);
+  }
+
+  @Override
+  public int read4(final int pre, final int off) {
+    final TableDiskAccess d = disk;
+    if(d != null) return d.read4(pre, off);
+    return TableDiskAccess.read4(block(pre), offset(pre) + off);
+  }
+
+  @Override
+  public long read5(final int pre, final int off) {
+    final TableDiskAccess d = disk;
+    if(d != null) return d.read5(pre, off);
+    return TableDiskAccess.read5(block(pre), offset(pre) + off);
+  }
+
+  @Override
+  public void write1(final int pre, final int off, final int v) {
+    disk().write1(pre, off, v);
+  }
+
+  @Override
+  public void write2(final int pre, final int off, final int v) {
+    disk().write2(pre, off, v);
+  }
+
+  @Override
+  public void write4(final int pre, final int off, final int v) {
+    disk().write4(pre, off, v);
+  }
+
+  @Override
+  public void write5(final int pre, final int off, final long v) {
+    disk().write5(pre, off, v);
+  }
+
+  @Override
+  protected void copy(final byte[] entries, final int pre, final int last) {
+    disk().copy(entries, pre, last);
+  }
+
+  @Override
+  public void delete(final int pre, final int nr) {
+    disk().delete(pre, nr);
+  }
+
+  @Override
+  public void insert(final int pre, final byte[] entries) {
+    disk().insert(pre, entries);
+  }
+
+  // PRIVATE METHODS ==========================================================
+
+  /**
+   * Returns the offset of the specified pre value in its decompressed block.
+   * @param pre pre value
+   * @return offset
+   */
+  private static int offset(final int pre) {
+    return (pre & IO.ENTRIES - 1) << IO.NODEPOWER;
+  }
+
+  /**
+   * Returns the decompressed block containing the specified pre value.
+   * @param pre pre value
+   * @return block data
+   */
+  private byte[] block(final int pre) {
+    if(pre < 0 || pre >= meta.size) Util.notexpected(
+        "Data Access out of bounds:\n- pre value: " + pre + "\n- table size: " + meta.size);
+
+    final int b = pre >>> ENTRYPOWER, l = b & LOCAL - 1;
+    final Block lb = local[l];
+    if(lb != null && lb.block == b) return lb.data;
+
+    byte[] data = cache != null ? cache.get(cid, b) : null;
+    if(data == null) {
+      final byte[] packed = new byte[(int) (offsets[b + 1] - offsets[b])];
+      try {
+        // positional reads are thread-safe
+        final FileChannel fc = file.getChannel();
+        final ByteBuffer bb = ByteBuffer.wrap(packed);
+        while(bb.hasRemaining() && fc.read(bb, offsets[b] + bb.position()) != -1);
+      } catch(final IOException ex) {
+        // incomplete blocks must not be decoded and cached
+        throw Util.notexpected(ex);
+      }
+      data = decode(packed, b << ENTRYPOWER);
+      if(cache != null) cache.add(cid, b, data);
+    }
+    local[l] = new Block(b, data);
+    return data;
+  }
+
+  /**
+   * Converts the table to the standard format and returns the new table instance.
+   * @return table in standard format
+   */
+  private synchronized TableDiskAccess disk() {
+    if(disk != null) return disk;
+    try {
+      final DataOutput out = new DataOutput(new TableOutput(meta, DATATBL));
+      try {
+        for(int b = 0; b < offsets.length - 1; b++) {
+          final int fpre = b << ENTRYPOWER;
+          final int n = Math.min(IO.ENTRIES, meta.size - fpre) << IO.NODEPOWER;
+          final byte[] data = block(fpre);
+          for(int i = 0; i < n; i++) out.write(data[i]);
+        }
+      } finally {
+        out.close();
+      }
+      final boolean shared = fl.isShared();
+      fl.release();
+      file.close();
+      disk = new TableDiskAccess(meta, !shared);
+      // compressed files will be deleted when the meta data has been written
+      meta.compress = false;
+      meta.dirty = true;
+      return disk;
+    } catch(final IOException ex) {
+      throw Util.notexpected(ex);
+    }
+  }
+
+  /**
+   * Compresses a block.
+   * @param entries table entries
+   * @param n number of entries
+   * @param fpre pre value of the first entry
+   * @param bl byte list
+   */
+  static void encode(final byte[] entries, final int n, final int fpre,
+      final ByteList bl) {
+
+    // build dictionary of first three bytes
+    final int[] keys = new int[n], dict = new int[n];
+    int ds = 0;
+    for(int i = 0; i < n; i++) {
+      final int o = i << IO.NODEPOWER;
+      final int k = (entries[o] & 0xFF) << 16 | (entries[o + 1] & 0xFF) << 8 |
+          entries[o + 2] & 0xFF;
+      int d = 0;
+      while(d < ds && dict[d] != k) d++;
+      if(d == ds) dict[ds++] = k;
+      keys[i] = d;
+    }
+    num(n, bl);
+    num(ds, bl);
+    for(int d = 0; d < ds; d++) {
+      bl.add(dict[d] >>> 16).add(dict[d] >>> 8).add(dict[d]);
+    }
+    if(ds > 1) for(int i = 0; i < n; i++) bl.add(keys[i]);
+
+    long txt = 0, atv = 0;
+    for(int i = 0; i < n; i++) {
+      final int o = i << IO.NODEPOWER, kind = entries[o] & 0x07;
+      if(kind == Data.ELEM) {
+        bl.add(entries[o + 3]);
+        num(int4(entries, o + 4), bl);
+      } else {
+        final long ref = TableDiskAccess.read5(entries, o + 3);
+        if(kind == Data.ATTR) {
+          num(zigzag(ref - atv), bl);
+          atv = ref;
+        } else {
+          num(zigzag(ref - txt), bl);
+          txt = ref;
+        }
+      }
+      num(int4(entries, o + 8), bl);
+      num(zigzag(int4(entries, o + 12) - (long) (fpre + i)), bl);
+    }
+  }
+
+  /**
+   * Decompresses a block.
+   * @param packed compressed block
+   * @param fpre pre value of the first entry
+   * @return table entries
+   */
+  static byte[] decode(final byte[] packed, final int fpre) {
+    final int[] pos = { 0 };
+    final int n = (int) num(packed, pos), ds = (int) num(packed, pos);
+    final int[] dict = new int[ds];
+    int p = pos[0];
+    for(int d = 0; d < ds; d++, p += 3) {
+      dict[d] = (packed[p] & 0xFF) << 16 | (packed[p + 1] & 0xFF) << 8 |
+          packed[p + 2] & 0xFF;
+    }
+    final int kp = p;
+    if(ds > 1) p += n;
+    pos[0] = p;
+
+    final byte[] entries = new byte[IO.BLOCKSIZE];
+    long txt = 0, atv = 0;
+    for(int i = 0; i < n; i++) {
+      final int o = i << IO.NODEPOWER;
+      final int k = dict[ds > 1 ? packed[kp + i] & 0xFF : 0], kind = k >>> 16 & 0x07;
+      entries[o] = (byte) (k >>> 16);
+      entries[o + 1] = (byte) (k >>> 8);
+      entries[o + 2] = (byte) k;
+      if(kind == Data.ELEM) {
+        entries[o + 3] = packed[pos[0]++];
+        int4(entries, o + 4, num(packed, pos));
+      } else {
+        final long ref;
+        if(kind == Data.ATTR) {
+          ref = atv + unzigzag(num(packed, pos));
+          atv = ref;
+        } else {
+          ref = txt + unzigzag(num(packed, pos));
+          txt = ref;
+        }
+        for(int s = 0; s < 5; s++) entries[o + 3 + s] = (byte) (ref >>> (4 - s << 3));
+      }
+      int4(entries, o + 8, num(packed, pos));
+      int4(entries, o + 12, fpre + i + unzigzag(num(packed, pos)));
+    }
+    return entries;
+  }
+
+  /**
+   * Returns an unsigned four-byte integer from the specified array.
+   * @param b array
+   * @param o offset
+   * @return value
+   */
+  private static long int4(final byte[] b, final int o) {
+    return TableDiskAccess.read4(b, o) & 0xFFFFFFFFL;
+  }
+
+  /**
+   * Writes a four-byte integer to the specified array.
+   * @param b array
+   * @param o offset
+   * @param v value
+   */
+  private static void int4(final byte[] b, final int o, final long v) {
+    b[o] = (byte) (v >>> 24);
+    b[o + 1] = (byte) (v >>> 16);
+    b[o + 2] = (byte) (v >>> 8);
+    b[o + 3] = (byte) v;
+  }
+
+  /**
+   * Maps a signed value to an unsigned value with a small absolute value.
+   * @param v value
+   * @return mapped value
+   */
+  private static long zigzag(final long v) {
+    return v << 1 ^ v >> 63;
+  }
+
+  /**
+   * Reverts the mapping of {@link #zigzag(long)}.
+   * @param v mapped value
+   * @return value
+   */
+  private static long unzigzag(final long v) {
+    return v >>> 1 ^ -(v & 1);
+  }
+
+  /**
+   * Writes a compressed number, using 7 bits per byte.
+   * @param v unsigned value
+   * @param bl byte list
+   */
+  private static void num(final long v, final ByteList bl) {
+    long l = v;
+    for(; (l & ~0x7FL) != 0; l >>>= 7) bl.add((int) (l & 0x7F | 0x80));
+    bl.add((int) l);
+  }
+
+  /**
+   * Reads a compressed number.
+   * @param b array
+   * @param pos current position (will be updated)
+   * @return unsigned value
+   */
+  private static long num(final byte[] b, final int[] pos) {
+    long v = 0;
+    for(int s = 0;; s += 7) {
+      final int c = b[pos[0]++];
+      v |= (long) (c & 0x7F) << s;
+      if(c >= 0) return v;
+    }
+  }
+
+  /** Decompressed block. */
+  private static final class Block {
+    /** Block index. */
+    final int block;
+    /** Table entries. */
+    final byte[] data;
+
+    /**
+     * Constructor.
+     * @param b block index
+     * @param d table entries
+     */
+    Block(final int b, final byte[] d) {
+      block = b;
+      data = d;
+    }
+  }
+}
@@ -3,6 +3,7 @@ package org.basex.io.random;
 import static org.basex.data.DataText.*;
 
 import java.io.*;
+import java.nio.*;
 import java.nio.channels.*;
 import java.util.*;
 
@@ -16,7 +17,11 @@ import org.basex.util.*;
 /**
  * This class stores the table on disk and reads it block-wise.
  *
- * NOTE: this class is not thread-safe.
+ * If a shared {@link TableCache} has been assigned via {@link Prop#TABLECACHE},
+ * blocks will be read without synchronization as long as the table has not been
+ * modified. Otherwise, all operations are performed on the local buffers.
+ *
+ * NOTE: write operations are not thread-safe.
  *
  * @author BaseX Team 2005-12, BSD License
  * @author Christian Gruen
@@ -31,6 +36,10 @@ public final class TableDiskAccess extends TableAccess {
   private final BitArray freePages;
   /** File lock. */
   private FileLock fl;
+  /** Shared page cache (can be {@code null}). */
+  private final TableCache cache;
+  /** Id of the table in the shared page cache; {@code 0} if the table is modified. */
+  private volatile int cid;
 
   /** FirstPre values (sorted ascending; length: {@link #blocks}). */
   private int[] fpres;
@@ -82,6 +91,9 @@ public final class TableDiskAccess extends TableAccess {
     if(lock) exclusiveLock();
     else sharedLock();
     if(fl == null) throw new BaseXException(Text.DB_PINNED_X, md.name);
+
+    cache = TableCache.get(md.prop.num(Prop.TABLECACHE));
+    if(cache != null) cid = cache.id();
   }
 
   /**
@@ -91,7 +103,8 @@ public final class TableDiskAccess extends TableAccess {
    * @return result of check
    */
   public static boolean locked(final String db, final Context ctx) {
-    final IOFile table = MetaData.file(ctx.mprop.dbpath(db), DATATBL);
+    IOFile table = MetaData.file(ctx.mprop.dbpath(db), DATATBL);
+    if(!table.exists()) table = MetaData.file(ctx.mprop.dbpath(db), DATATBZ);
     if(!table.exists()) return false;
 
     try {
@@ -113,6 +126,8 @@ public final class TableDiskAccess extends TableAccess {
   @Override
   public synchronized void flush() throws IOException {
     for(final Buffer b : bm.all()) if(b.dirty) writeBlock(b);
+    // table contents are now in sync with disk: assign new cache id
+    if(cache != null && cid == 0) cid = cache.id();
     if(!dirty) return;
 
     final DataOutput out = new DataOutput(meta.dbfile(DATATBL + 'i'));
@@ -185,37 +200,60 @@ public final class TableDiskAccess extends TableAccess {
   }
 
   @Override
-  public synchronized int read1(final int pre, final int off) {
-    final int o = off + cursor(pre);
-    final byte[] b = bm.current().data;
-    return b[o] & 0xFF;
+  public int read1(final int pre, final int off) {
+    final int c = cid;
+    if(c != 0) {
+      final int p = page(pre);
+      return block(c, p)[off + (pre - fpres[p] << IO.NODEPOWER)] & 0xFF;
+    }
+    synchronized(this) {
+      final int o = off + cursor(pre);
+      return bm.current().data[o] & 0xFF;
+    }
   }
 
   @Override
-  public synchronized int read2(final int pre, final int off) {
-    final int o = off + cursor(pre);
-    final byte[] b = bm.current().data;
-    return ((b[o] & 0xFF) << 8) + (b[o + 1] & 0xFF);
+  public int read2(final int pre, final int off) {
+    final int c = cid;
+    if(c != 0) {
+      final int p = page(pre);
+      return read2(block(c, p), off + (pre - fpres[p] << IO.NODEPOWER));
+    }
+    synchronized(this) {
+      final int o = off + cursor(pre);
+      return read2(bm.current().data, o);
+    }
   }
 
   @Override
-  public synchronized int read4(final int pre, final int off) {
-    final int o = off + cursor(pre);
-    final byte[] b = bm.current().data;
-    return ((b[o] & 0xFF) << 24) + ((b[o + 1] & 0xFF) << 16) +
-      ((b[o + 2] & 0xFF) << 8) + (b[o + 3] & 0xFF);
+  public int read4(final int pre, final int off) {
+    final int c = cid;
+    if(c != 0) {
+      final int p = page(pre);
+      return read4(block(c, p), off + (pre - fpres[p] << IO.NODEPOWER));
+    }
+    synchronized(this) {
+      final int o = off + cursor(pre);
+      return read4(bm.current().data, o);
+    }
   }
 
   @Override
-  public synchronized long read5(final int pre, final int off) {
-    final int o = off + cursor(pre);
-    final byte[] b = bm.current().data;
-    return ((long) (b[o] & 0xFF) << 32) + ((long) (b[o + 1] & 0xFF) << 24) +
-      ((b[o + 2] & 0xFF) << 16) + ((b[o + 3] & 0xFF) << 8) + (b[o + 4] & 0xFF);
+  public long read5(final int pre, final int off) {
+    final int c = cid;
+    if(c != 0) {
+      final int p = page(pre);
+      return read5(block(c, p), off + (pre - fpres[p] << IO.NODEPOWER));
+    }
+    synchronized(this) {
+      final int o = off + cursor(pre);
+      return read5(bm.current().data, o);
+    }
   }
 
   @Override
   public void write1(final int pre, final int off, final int v) {
+    modified();
     final int o = off + cursor(pre);
     final Buffer bf = bm.current();
     final byte[] b = bf.data;
@@ -225,6 +263,7 @@ public final class TableDiskAccess extends TableAccess {
 
   @Override
   public void write2(final int pre, final int off, final int v) {
+    modified();
     final int o = off + cursor(pre);
     final Buffer bf = bm.current();
     final byte[] b = bf.data;
@@ -235,6 +274,7 @@ public final class TableDiskAccess extends TableAccess {
 
   @Override
   public void write4(final int pre, final int off, final int v) {
+    modified();
     final int o = off + cursor(pre);
     final Buffer bf = bm.current();
     final byte[] b = bf.data;
@@ -247,6 +287,7 @@ public final class TableDiskAccess extends TableAccess {
 
   @Override
   public void write5(final int pre, final int off, final long v) {
+    modified();
     final int o = off + cursor(pre);
     final Buffer bf = bm.current();
     final byte[] b = bf.data;
@@ -260,6 +301,7 @@ public final class TableDiskAccess extends TableAccess {
 
   @Override
   protected void copy(final byte[] entries, final int pre, final int last) {
+    modified();
     for(int o = 0, i = pre; i < last; ++i, o += IO.NODESIZE) {
       final int off = cursor(i);
       final Buffer bf = bm.current();
@@ -272,6 +314,7 @@ public final class TableDiskAccess extends TableAccess {
   public void delete(final int pre, final int nr) {
     if(nr == 0) return;
     dirty = true;
+    modified();
 
     // get first block
     cursor(pre);
@@ -347,6 +390,7 @@ public final class TableDiskAccess extends TableAccess {
     final int nnew = entries.length;
     if(nnew == 0) return;
     dirty = true;
+    modified();
 
     // number of records to be inserted
     final int nr = nnew >>> IO.NODEPOWER;
@@ -463,6 +507,91 @@ public final class TableDiskAccess extends TableAccess {
 
   // PRIVATE METHODS ==========================================================
 
+  /**
+   * Invalidates the cache id, as the table contents are going to be changed.
+   * All subsequent reads will be performed on the local buffers.
+   */
+  private void modified() {
+    if(cid != 0) cid = 0;
+  }
+
+  /**
+   * Returns the index of the page containing the specified pre value.
+   * In contrast to {@link #cursor}, no cursor variables will be changed.
+   * @param pre pre value
+   * @return page index
+   */
+  private int page(final int pre) {
+    int l = 0, h = used - 1;
+    while(l < h) {
+      final int m = l + h + 1 >>> 1;
+      if(pre < fpres[m]) h = m - 1;
+      else l = m;
+    }
+    if(pre < 0 || pre >= meta.size) Util.notexpected(
+        "Data Access out of bounds:\n- pre value: " + pre + "\n- table size: " + meta.size);
+    return l;
+  }
+
+  /**
+   * Returns the data of the specified page from the shared cache.
+   * If the page is not cached yet, it will be read from disk and added to the cache.
+   * @param c cache id
+   * @param p page index
+   * @return block data
+   */
+  private byte[] block(final int c, final int p) {
+    final int b = pages[p];
+    byte[] data = cache.get(c, b);
+    if(data == null) {
+      data = new byte[IO.BLOCKSIZE];
+      try {
+        // positional reads do not change the file pointer of the local buffers
+        final FileChannel fc = file.getChannel();
+        final ByteBuffer bb = ByteBuffer.wrap(data);
+        final long pos = (long) b * IO.BLOCKSIZE;
+        while(bb.hasRemaining() && fc.read(bb, pos + bb.position()) != -1);
+      } catch(final IOException ex) {
+        // incomplete blocks must not be cached
+        throw Util.notexpected(ex);
+      }
+      cache.add(c, b, data);
+    }
+    return data;
+  }
+
+  /**
+   * Returns a two-byte integer from the specified block.
+   * @param b block data
+   * @param o offset
+   * @return value
+   */
+  static int read2(final byte[] b, final int o) {
+    return ((b[o] & 0xFF) << 8) + (b[o + 1] & 0xFF);
+  }
+
+  /**
+   * Returns a four-byte integer from the specified block.
+   * @param b block data
+   * @param o offset
+   * @return value
+   */
+  static int read4(final byte[] b, final int o) {
+    return ((b[o] & 0xFF) << 24) + ((b[o + 1] & 0xFF) << 16) +
+      ((b[o + 2] & 0xFF) << 8) + (b[o + 3] & 0xFF);
+  }
+
+  /**
+   * Returns a five-byte long from the specified block.
+   * @param b block data
+   * @param o offset
+   * @return value
+   */
+  static long read5(final byte[] b, final int o) {
+    return ((long) (b[o] & 0xFF) << 32) + ((long) (b[o + 1] & 0xFF) << 24) +
+      ((b[o + 2] & 0xFF) << 16) + ((b[o + 3] & 0xFF) << 8) + (b[o + 4] & 0xFF);
+  }
+
   /**
    * Searches for the block containing the entry for the specified pre value.
    * Reads the block and returns its offset inside the block.
@@ -15,6 +15,7 @@ import org.basex.data.*;
 import org.basex.io.*;
 import org.basex.io.serial.*;
 import org.basex.query.expr.*;
+import org.basex.query.flwor.Group;
 import org.basex.query.func.*;
 import org.basex.query.iter.*;
 import org.basex.query.up.*;
@@ -48,10 +49,10 @@ public final class QueryContext extends Progress {
   /** Variables. */
   public final VarContext vars = new VarContext();
   /** Functions. */
-  public final UserFuncs funcs = new UserFuncs();
+  public final UserFuncs funcs;
 
   /** Query resources. */
-  public final QueryResources resource = new QueryResources(this);
+  public final QueryResources resource;
   /** Database context. */
   public final Context context;
 
@@ -104,6 +105,8 @@ public final class QueryContext extends Progress {
   public boolean leaf;
   /** Compilation flag: GFLWOR clause performs grouping. */
   public boolean grouping;
+  /** Compilation flag: group by clause of the currently compiled return clause. */
+  public Group group;
 
   /** Number of successive tail calls. */
   public int tailCalls;
@@ -140,6 +143,8 @@ public final class QueryContext extends Progress {
   private boolean evalInfo;
   /** Indicates if the query context has been closed. */
   private boolean closed;
+  /** Parent context ({@code null} if this context is not evaluated in parallel). */
+  private QueryContext parent;
 
   /**
    * Constructor.
@@ -147,6 +152,8 @@ public final class QueryContext extends Progress {
    */
   public QueryContext(final Context ctx) {
     context = ctx;
+    funcs = new UserFuncs();
+    resource = new QueryResources(this);
     nodes = ctx.current();
     inf = ctx.prop.is(Prop.QUERYINFO) || Prop.debug;
     final String path = ctx.prop.get(Prop.QUERYPATH);
@@ -156,6 +163,37 @@ public final class QueryContext extends Progress {
     sc.xquery3 = ctx.prop.is(Prop.XQUERY3);
   }
 
+  /**
+   * Constructor for a context that evaluates parts of a query in a separate thread.
+   * Static properties, functions and resources are shared with the parent context.
+   * Variables and the focus are copied, and query info is disabled.
+   * @param ctx parent query context
+   */
+  public QueryContext(final QueryContext ctx) {
+    context = ctx.context;
+    sc = ctx.sc;
+    funcs = ctx.funcs;
+    resource = ctx.resource;
+    modules = ctx.modules;
+    maxCalls = ctx.maxCalls;
+    http = ctx.http;
+    stop = ctx.stop;
+    thes = ctx.thes;
+    value = ctx.value;
+    pos = ctx.pos;
+    size = ctx.size;
+    ftOpt = ctx.ftOpt;
+    date = ctx.date;
+    dtm = ctx.dtm;
+    time = ctx.time;
+    zone = ctx.zone;
+    serProp = ctx.serProp;
+    root = ctx.root;
+    inf = false;
+    vars.init(ctx.vars);
+    parent = ctx;
+  }
+
   /**
    * Parses the specified query.
    * @param qu input query
@@ -282,6 +320,7 @@ public final class QueryContext extends Progress {
    */
   public Iter iter(final Expr e) throws QueryException {
     checkStop();
+    if(parent != null) parent.checkStop();
     return e.iter(this);
   }
 
@@ -293,9 +332,27 @@ public final class QueryContext extends Progress {
    */
   public Value value(final Expr expr) throws QueryException {
     checkStop();
+    if(parent != null) parent.checkStop();
     return expr.value(this);
   }
 
+  /**
+   * Indicates if this context evaluates parts of a query in a separate thread.
+   * @return result of check
+   */
+  public boolean forked() {
+    return parent != null;
+  }
+
+  /**
+   * Indicates if modules have been imported from files, from the repository
+   * or from Java classes. Must be called after the query has been parsed.
+   * @return result of check
+   */
+  public boolean imports() {
+    return !modParsed.isEmpty() || modules.loaded();
+  }
+
   /**
    * Returns the current data reference of the context value, or {@code null}.
    * @return data reference
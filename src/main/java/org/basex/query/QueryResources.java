@@ -39,6 +39,10 @@ public final class QueryResources {
   private String[] collName = new String[1];
   /** Number of collections. */
   private int colls;
+  /** Temporary files. */
+  private final ArrayList<IOFile> temp = new ArrayList<IOFile>();
+  /** Opened streams. */
+  private final ArrayList<Closeable> streams = new ArrayList<Closeable>();
 
   /**
    * Constructor.
@@ -70,13 +74,51 @@ public final class QueryResources {
   }
 
   /**
-   * Closes all opened data references that have not been added by the global context.
+   * Closes all registered streams and all opened data references that have not been
+   * added by the global context. Streams are closed first, as they may still access
+   * databases. Streams that are registered while other streams are closed will be
+   * closed as well.
    */
   void close() {
+    while(true) {
+      final Closeable stream;
+      synchronized(this) {
+        if(streams.isEmpty()) break;
+        stream = streams.remove(streams.size() - 1);
+      }
+      try {
+        stream.close();
+      } catch(final IOException ex) {
+        Util.debug(ex);
+      }
+    }
     for(int d = ctx.nodes != null ? 1 : 0; d < datas; d++) {
       Close.close(data[d], ctx.context);
     }
     datas = 0;
+    for(final IOFile file : temp) file.delete();
+    temp.clear();
+  }
+
+  /**
+   * Creates a temporary file, which will be deleted when the query is closed.
+   * @param prefix prefix of the file name
+   * @return file reference
+   * @throws IOException I/O exception
+   */
+  public synchronized IOFile temp(final String prefix) throws IOException {
+    final IOFile file = new IOFile(File.createTempFile(prefix, IO.BASEXSUFFIX));
+    temp.add(file);
+    return file;
+  }
+
+  /**
+   * Registers a stream or another resource, which will be closed when the query
+   * is closed.
+   * @param stream stream
+   */
+  public synchronized void add(final Closeable stream) {
+    streams.add(stream);
   }
 
   /**
@@ -86,7 +128,7 @@ public final class QueryResources {
    * @return database instance
    * @throws QueryException query exception
    */
-  public Data data(final String name, final InputInfo info) throws QueryException {
+  public synchronized Data data(final String name, final InputInfo info) throws QueryException {
     // check if a database with the same name has already been opened
     for(int d = 0; d < datas; ++d) {
       if(data[d].meta.name.equalsIgnoreCase(name)) return data[d];
@@ -110,7 +152,7 @@ public final class QueryResources {
    * @return document
    * @throws QueryException query exception
    */
-  public DBNode doc(final QueryInput qi, final InputInfo info) throws QueryException {
+  public synchronized DBNode doc(final QueryInput qi, final InputInfo info) throws QueryException {
     // check currently opened databases
     for(int d = 0; d < datas; ++d) {
       final Data dt = data[d];
@@ -147,7 +189,7 @@ public final class QueryResources {
    * @return collection
    * @throws QueryException query exception
    */
-  public Value collection(final String input, final InputInfo info)
+  public synchronized Value collection(final String input, final InputInfo info)
       throws QueryException {
 
     // merge input with base directory
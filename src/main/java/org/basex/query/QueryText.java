@@ -629,6 +629,8 @@ public interface QueryText {
   /** Query Plan. */
   byte[] TYP = token("type");
   /** Query Plan. */
+  byte[] COSTS = token("costs");
+  /** Query Plan. */
   byte[] NAM = token("name");
   /** Query Plan. */
   byte[] WHR = token("Where");
@@ -731,7 +733,17 @@ public interface QueryText {
   /** Optimization info. */
   String OPTNOINDEX = "removing path with no index results";
   /** Optimization info. */
+  String OPTSELECT = "ordering predicates by selectivity: %";
+  /** Optimization info. */
+  String OPTINDEXSET = "intersecting % index accesses";
+  /** Optimization info. */
   String OPTBIND = "binding static variable %";
   /** Optimization info. */
   String OPTCHILD = "converting % to child steps";
+  /** Optimization info. */
+  String OPTJOIN = "applying hash join to %";
+  /** Optimization info. */
+  String OPTLIMIT = "sorting only the first % results";
+  /** Optimization info. */
+  String OPTAGGR = "aggregating % while grouping";
 }
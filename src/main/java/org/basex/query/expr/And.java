@@ -111,7 +111,7 @@ public final class And extends Logical {
   @Override
   public Expr indexEquivalent(final IndexContext ic) throws QueryException {
     super.indexEquivalent(ic);
-    return new InterSect(info, expr);
+    return new IndexSet(info, ic.data, false, expr);
   }
 
   @Override
@@ -66,7 +66,7 @@ public final class Catch extends Single {
   Value value(final QueryContext ctx, final QueryException ex) throws QueryException {
     if(!find(ex.err(), ex.qname())) return null;
 
-    final int s = prepare(ctx);
+    final int s = ctx.vars.size();
     try {
       int i = 0;
       final byte[] io = ex.file() == null ? EMPTY : token(ex.file());
@@ -75,7 +75,7 @@ public final class Catch extends Single {
           Str.get(ex.getLocalizedMessage()), val == null ? Empty.SEQ : val,
           Str.get(io), Int.get(ex.line()), Int.get(ex.col()),
           Str.get(ex.getMessage().replaceAll("\r\n?", "\n")) }) {
-        vars[i++].bind(v, ctx);
+        ctx.vars.add(vars[i++].copy().bind(v, ctx));
       }
       return ctx.value(expr);
     } finally {
@@ -107,7 +107,7 @@ public final class CmpG extends Cmp {
   }
 
   /** Comparator. */
-  OpG op;
+  public OpG op;
   /** Index expression. */
   private ValueAccess[] va = {};
   /** Flag for atomic evaluation. */
@@ -320,8 +320,10 @@ public final class CmpG extends Cmp {
       if(!t.type.isStringOrUntyped() || arg.uses(Use.CTX) || arg.uses(Use.NDT))
         return false;
 
-      ic.addCosts(ic.data.meta.size / 10);
-      va = Array.add(va, new ValueAccess(info, arg, ind, ic));
+      final ValueAccess v = new ValueAccess(info, arg, ind, ic);
+      v.costs = ic.equality(expr[0], text);
+      ic.addCosts(v.costs);
+      va = Array.add(va, v);
       return true;
     }
 
@@ -332,11 +334,14 @@ public final class CmpG extends Cmp {
     while((it = ir.next()) != null) {
       if(!it.type.isStringOrUntyped()) return false;
 
-      final int is = ic.data.count(new StringToken(ind, it.string(info)));
+      final byte[] tok = it.string(info);
+      final int is = ic.data.count(new StringToken(ind, tok));
       // add only expressions that yield results
       if(is != 0) {
-        va = Array.add(va, new ValueAccess(info, it, ind, ic));
-        ic.addCosts(is);
+        final ValueAccess v = new ValueAccess(info, it, ind, ic);
+        v.costs = ic.equality(expr[0], text, tok, is);
+        va = Array.add(va, v);
+        ic.addCosts(v.costs);
       }
     }
     return true;
@@ -3,13 +3,11 @@ package org.basex.query.expr;
 import static org.basex.query.QueryText.*;
 
 import org.basex.index.*;
-import org.basex.index.name.*;
 import org.basex.index.query.*;
 import org.basex.index.stats.*;
 import org.basex.query.*;
 import org.basex.query.iter.*;
 import org.basex.query.path.*;
-import org.basex.query.path.Test.Mode;
 import org.basex.query.util.*;
 import org.basex.query.value.item.*;
 import org.basex.query.value.item.ANum;
@@ -136,8 +134,7 @@ public final class CmpR extends Single {
     // estimate costs for range access; all values out of range: no results
     rt = new NumericRange(text ? IndexType.TEXT : IndexType.ATTRIBUTE,
         Math.max(min, key.min), Math.min(max, key.max));
-    ic.costs(rt.min > rt.max || rt.max < key.min || rt.min > key.max ? 0 :
-      Math.max(1, ic.data.meta.size / 5));
+    ic.costs(costs(key));
 
     // use index if costs are zero, or if min/max is not infinite
     return ic.costs() == 0 || min != Double.NEGATIVE_INFINITY &&
@@ -148,37 +145,38 @@ public final class CmpR extends Single {
   public Expr indexEquivalent(final IndexContext ic) {
     final boolean text = rt.type() == IndexType.TEXT;
     ic.ctx.compInfo(OPTRNGINDEX);
-    return ic.invert(expr, new RangeAccess(info, rt, ic), text);
+    final RangeAccess ra = new RangeAccess(info, rt, ic);
+    ra.costs = ic.costs();
+    return ic.invert(expr, ra, text);
   }
 
   /**
-   * Retrieves the statistics key for the tag/attribute name.
+   * Retrieves the numeric statistics key for the tag/attribute name.
    * @param ic index context
    * @param text text flag
    * @return key
    */
   private Stats key(final IndexContext ic, final boolean text) {
-    // statistics are not up-to-date
-    if(!ic.data.meta.uptodate || ic.data.nspaces.size() != 0) return null;
-
-    final AxisPath path = (AxisPath) expr;
-    final int st = path.steps.length;
-
-    final AxisStep step;
-    if(text) {
-      step = st == 1 ? ic.step : path.step(st - 2);
-      if(!(step.test.mode == Mode.NAME)) return null;
-    } else {
-      step = path.step(st - 1);
-      if(!step.simple(Axis.ATTR, true)) return null;
-    }
-
-    final Names names = text ? ic.data.tagindex : ic.data.atnindex;
-    final Stats key = names.stat(names.id(((NameTest) step.test).ln));
+    final Stats key = ic.stats(expr, text);
     return key == null || key.type == StatsType.INTEGER ||
         key.type == StatsType.DOUBLE ? key : null;
   }
 
+  /**
+   * Estimates the number of results of the range access,
+   * assuming a uniform distribution of the values.
+   * @param key statistics key
+   * @return estimated number of results
+   */
+  private int costs(final Stats key) {
+    final double mn = Math.max(min, key.min), mx = Math.min(max, key.max);
+    // all values out of range: no results
+    if(mn > mx) return 0;
+    final double i = key.type == StatsType.INTEGER ? 1 : 0, w = key.max - key.min + i;
+    final double r = w == 0 ? 1 : (mx - mn + i) / w;
+    return Math.max(1, (int) Math.min(key.count, Math.ceil(key.count * r)));
+  }
+
   @Override
   public void plan(final FElem plan) {
     addPlan(plan, planElem(MIN, min, MAX, max), expr);
@@ -5,6 +5,7 @@ import static org.basex.query.util.Err.*;
 
 import org.basex.index.*;
 import org.basex.index.query.*;
+import org.basex.index.stats.*;
 import org.basex.query.*;
 import org.basex.query.iter.*;
 import org.basex.query.path.*;
@@ -98,7 +99,15 @@ public final class CmpSR extends Single {
    */
   private boolean eval(final Item it) throws QueryException {
     if(!it.type.isStringOrUntyped()) XPTYPECMP.thrw(info, it.type, AtomType.STR);
-    final byte[] s = it.string(info);
+    return eval(it.string(info));
+  }
+
+  /**
+   * Checks if the specified string is included in the range.
+   * @param s string
+   * @return result of check
+   */
+  private boolean eval(final byte[] s) {
     final int mn = min == null ? 1 : Token.diff(s, min);
     final int mx = max == null ? -1 : Token.diff(s, max);
     return (mni ? mn >= 0 : mn > 0) && (mxi ? mx <= 0 : mx < 0);
@@ -143,15 +152,35 @@ public final class CmpSR extends Single {
 
     // create range access
     rt = new StringRange(text ? IndexType.TEXT : IndexType.ATTRIBUTE, min, mni, max, mxi);
-    ic.costs(Math.max(1, ic.data.meta.size / 10));
+    ic.costs(costs(ic.stats(expr, text), ic));
     return true;
   }
 
+  /**
+   * Estimates the number of results of the range access.
+   * @param key statistics key (may be {@code null})
+   * @param ic index context
+   * @return estimated number of results
+   */
+  private int costs(final Stats key, final IndexContext ic) {
+    if(key == null) return Math.max(1, ic.data.meta.size / 10);
+    if(key.type == StatsType.CATEGORY) {
+      // count the occurrences of all categories in the range
+      int c = 0;
+      for(final byte[] v : key.cats) if(eval(v)) c += key.cats.value(v);
+      // whitespaces are not part of the statistics; never report zero results
+      return Math.max(1, c);
+    }
+    return Math.max(1, key.count / 10);
+  }
+
   @Override
   public Expr indexEquivalent(final IndexContext ic) {
     final boolean text = rt.type() == IndexType.TEXT;
     ic.ctx.compInfo(OPTSRNGINDEX);
-    return ic.invert(expr, new StringRangeAccess(info, rt, ic), text);
+    final StringRangeAccess sa = new StringRangeAccess(info, rt, ic);
+    sa.costs = ic.costs();
+    return ic.invert(expr, sa, text);
   }
 
   @Override
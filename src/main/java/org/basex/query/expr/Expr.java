@@ -26,6 +26,7 @@ public abstract class Expr extends ExprInfo {
   public enum Use {
     /** Creates new fragments. Example: node constructor. */ CNS,
     /** Depends on context. Example: context node. */        CTX,
+    /** Full-text evaluation. Example: contains text. */     FTX,
     /** Non-deterministic. Example: random(). */             NDT,
     /** Context position. Example: position(). */            POS,
     /** Performs updates. Example: insert expression. */     UPD,
@@ -1,6 +1,7 @@
 package org.basex.query.expr;
 
 import org.basex.query.*;
+import org.basex.query.flwor.*;
 import org.basex.query.iter.*;
 import org.basex.query.path.*;
 import org.basex.query.util.*;
@@ -105,7 +106,10 @@ public class Filter extends Preds {
     }
 
     // iterator for simple numeric predicate
-    return off || useIterator() ? new IterPosFilter(this, off) : this;
+    final boolean iter = off || useIterator();
+    // only the first results of an ordered flwor expression will be requested
+    if(pos != null && root instanceof GFLWOR) ((GFLWOR) root).limit(pos.max, ctx);
+    return iter ? new IterPosFilter(this, off) : this;
   }
 
   @Override
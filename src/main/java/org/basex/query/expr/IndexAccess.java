@@ -1,10 +1,15 @@
 package org.basex.query.expr;
 
+import static org.basex.query.QueryText.*;
+
+import org.basex.index.query.*;
 import org.basex.query.*;
 import org.basex.query.iter.*;
 import org.basex.query.util.*;
+import org.basex.query.value.node.*;
 import org.basex.query.value.type.*;
 import org.basex.util.*;
+import org.basex.util.list.*;
 
 /**
  * This abstract class retrieves values from an index.
@@ -15,6 +20,8 @@ import org.basex.util.*;
 public abstract class IndexAccess extends Simple {
   /** Index context. */
   final IndexContext ictx;
+  /** Estimated number of results ({@code -1}: unknown). */
+  int costs = -1;
 
   /**
    * Constructor.
@@ -30,6 +37,32 @@ public abstract class IndexAccess extends Simple {
   @Override
   public abstract NodeIter iter(final QueryContext ctx) throws QueryException;
 
+  /**
+   * Returns the pre values of the index results in ascending order.
+   * @param ctx query context
+   * @return pre values
+   * @throws QueryException query exception
+   */
+  abstract IntList pres(final QueryContext ctx) throws QueryException;
+
+  /**
+   * Returns the pre values of the specified index iterator.
+   * @param ii index iterator
+   * @return pre values
+   */
+  static IntList pres(final IndexIterator ii) {
+    final IntList il = new IntList();
+    while(ii.more()) il.add(ii.next());
+    return il;
+  }
+
+  @Override
+  protected FElem planElem(final Object... atts) {
+    final FElem el = super.planElem(atts);
+    if(costs != -1) el.add(planAttr(COSTS, costs));
+    return el;
+  }
+
   @Override
   public final boolean iterable() {
     return ictx.iterable;
@@ -0,0 +1,216 @@
+package org.basex.query.expr;
+
+import static org.basex.query.QueryText.*;
+
+import org.basex.data.*;
+import org.basex.query.*;
+import org.basex.query.iter.*;
+import org.basex.query.path.*;
+import org.basex.query.value.item.*;
+import org.basex.query.value.node.*;
+import org.basex.query.value.type.*;
+import org.basex.util.*;
+import org.basex.util.list.*;
+
+/**
+ * Intersection or union of index accesses that refer to the same database.
+ * The results are combined as sorted lists of pre values, and database nodes
+ * are only created for the final results:
+ * <ul>
+ * <li>If an operand is an index access, or an index access followed by
+ *   {@code self} and {@code parent} steps without predicates (which is the
+ *   case for most inverted paths), its pre values are computed without
+ *   creating intermediate nodes.</li>
+ * <li>Lists are intersected by iterating the smaller list and galloping
+ *   through the larger one. Intersections are stopped as soon as an
+ *   intermediate result is empty.</li>
+ * </ul>
+ *
+ * @author BaseX Team 2005-12, BSD License
+ * @author Christian Gruen
+ */
+public final class IndexSet extends Arr {
+  /** Data reference. */
+  private final Data data;
+  /** Union flag (otherwise, the results are intersected). */
+  private final boolean union;
+
+  /**
+   * Constructor.
+   * @param ii input info
+   * @param d data reference
+   * @param u union flag
+   * @param e index accesses
+   */
+  public IndexSet(final InputInfo ii, final Data d, final boolean u,
+      final Expr... e) {
+    super(ii, e);
+    data = d;
+    union = u;
+    type = SeqType.NOD_ZM;
+  }
+
+  @Override
+  public NodeIter iter(final QueryContext ctx) throws QueryException {
+    IntList pres = pres(expr[0], ctx);
+    for(int e = 1; e < expr.length; e++) {
+      if(!union && pres.size() == 0) break;
+      final IntList il = pres(expr[e], ctx);
+      pres = union ? union(pres, il) : intersect(pres, il);
+    }
+
+    final int[] ps = pres.toArray();
+    return new NodeIter() {
+      int p;
+      @Override
+      public ANode next() {
+        if(p == ps.length) return null;
+        final int pre = ps[p++];
+        return new DBNode(data, pre, data.kind(pre));
+      }
+    };
+  }
+
+  @Override
+  public boolean iterable() {
+    return true;
+  }
+
+  /**
+   * Returns the sorted pre values of the specified operand.
+   * @param ex operand
+   * @param ctx query context
+   * @return pre values
+   * @throws QueryException query exception
+   */
+  private IntList pres(final Expr ex, final QueryContext ctx) throws QueryException {
+    if(ex instanceof IndexAccess) return ((IndexAccess) ex).pres(ctx);
+
+    if(ex instanceof AxisPath) {
+      final AxisPath path = (AxisPath) ex;
+      if(path.root instanceof IndexAccess && simple(path)) {
+        IntList pres = ((IndexAccess) path.root).pres(ctx);
+        // single node instance, which is used for testing the steps
+        final DBNode node = new DBNode(data);
+        boolean sort = false;
+        for(final Expr s : path.steps) {
+          final AxisStep step = (AxisStep) s;
+          final boolean par = step.axis == Axis.PARENT;
+          final IntList il = new IntList(pres.size());
+          final int ps = pres.size();
+          for(int i = 0; i < ps; i++) {
+            int pre = pres.get(i);
+            if(par) {
+              pre = data.parent(pre, data.kind(pre));
+              if(pre == -1) continue;
+            }
+            node.set(pre, data.kind(pre));
+            if(step.test.eq(node)) il.add(pre);
+          }
+          pres = il;
+          sort |= par;
+        }
+        return sort ? distinct(pres.sort()) : pres;
+      }
+    }
+
+    // evaluate other expressions
+    final IntList pres = new IntList();
+    final Iter ir = ctx.iter(ex);
+    for(Item it; (it = ir.next()) != null;) pres.add(((DBNode) checkNode(it)).pre);
+    return ex.iterable() ? pres : distinct(pres.sort());
+  }
+
+  /**
+   * Checks if the steps of the specified path can be evaluated without creating nodes.
+   * @param path path
+   * @return result of check
+   */
+  private static boolean simple(final AxisPath path) {
+    for(final Expr s : path.steps) {
+      if(!(s instanceof AxisStep)) return false;
+      final AxisStep step = (AxisStep) s;
+      if(step.preds.length != 0 || step.axis != Axis.SELF &&
+          step.axis != Axis.PARENT) return false;
+    }
+    return true;
+  }
+
+  /**
+   * Intersects two sorted lists.
+   * @param l1 first list
+   * @param l2 second list
+   * @return resulting list
+   */
+  static IntList intersect(final IntList l1, final IntList l2) {
+    // iterate through the smaller list
+    final IntList sm = l1.size() <= l2.size() ? l1 : l2, lg = sm == l1 ? l2 : l1;
+    final int ss = sm.size(), ls = lg.size();
+    final IntList il = new IntList(ss);
+
+    int lo = 0;
+    for(int i = 0; i < ss && lo < ls; i++) {
+      final int v = sm.get(i);
+      // galloping: find an upper bound with exponentially growing steps...
+      int hi = lo;
+      for(int d = 1; hi < ls && lg.get(hi) < v; d <<= 1) {
+        lo = hi + 1;
+        hi += d;
+      }
+      // ...and find the first value that is not smaller via binary search
+      for(int h = Math.min(hi, ls); lo < h;) {
+        final int m = lo + h >>> 1;
+        if(lg.get(m) < v) lo = m + 1;
+        else h = m;
+      }
+      if(lo < ls && lg.get(lo) == v) il.add(v);
+    }
+    return il;
+  }
+
+  /**
+   * Merges two sorted lists.
+   * @param l1 first list
+   * @param l2 second list
+   * @return resulting list
+   */
+  static IntList union(final IntList l1, final IntList l2) {
+    final int s1 = l1.size(), s2 = l2.size();
+    final IntList il = new IntList(s1 + s2);
+    int i1 = 0, i2 = 0;
+    while(i1 < s1 && i2 < s2) {
+      final int v1 = l1.get(i1), v2 = l2.get(i2);
+      if(v1 <= v2) i1++;
+      if(v2 <= v1) i2++;
+      il.add(Math.min(v1, v2));
+    }
+    while(i1 < s1) il.add(l1.get(i1++));
+    while(i2 < s2) il.add(l2.get(i2++));
+    return il;
+  }
+
+  /**
+   * Removes duplicates from the specified sorted list.
+   * @param il sorted list
+   * @return distinct values
+   */
+  static IntList distinct(final IntList il) {
+    final int s = il.size();
+    final IntList nl = new IntList(s);
+    for(int i = 0; i < s; i++) {
+      final int p = il.get(i);
+      if(nl.isEmpty() || nl.peek() != p) nl.add(p);
+    }
+    return nl;
+  }
+
+  @Override
+  public void plan(final FElem plan) {
+    addPlan(plan, planElem(OP, union ? UNION : INTERSECT), expr);
+  }
+
+  @Override
+  public String toString() {
+    return PAR1 + toString(' ' + (union ? UNION : INTERSECT) + ' ') + PAR2;
+  }
+}
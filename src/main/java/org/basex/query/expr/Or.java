@@ -91,7 +91,7 @@ public final class Or extends Logical {
   @Override
   public Expr indexEquivalent(final IndexContext ic) throws QueryException {
     super.indexEquivalent(ic);
-    return new Union(info, expr);
+    return new IndexSet(info, ic.data, true, expr);
   }
 
   @Override
@@ -12,6 +12,7 @@ import org.basex.query.iter.*;
 import org.basex.query.util.*;
 import org.basex.query.value.node.*;
 import org.basex.util.*;
+import org.basex.util.list.*;
 
 /**
  * This index class retrieves range values from the index.
@@ -48,6 +49,11 @@ public final class RangeAccess extends IndexAccess {
     };
   }
 
+  @Override
+  IntList pres(final QueryContext ctx) {
+    return pres(ictx.data.iter(ind));
+  }
+
   @Override
   public void plan(final FElem plan) {
     addPlan(plan, planElem(DATA, ictx.data.meta.name,
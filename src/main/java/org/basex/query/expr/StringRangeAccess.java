@@ -12,6 +12,7 @@ import org.basex.query.util.*;
 import org.basex.query.value.item.*;
 import org.basex.query.value.node.*;
 import org.basex.util.*;
+import org.basex.util.list.*;
 
 /**
  * This index class retrieves ranges from a value index.
@@ -38,12 +39,8 @@ public final class StringRangeAccess extends IndexAccess {
   @Override
   public AxisIter iter(final QueryContext ctx) {
     final Data data = ictx.data;
-    final boolean text = sr.type == IndexType.TEXT;
-    final byte kind = text ? Data.TEXT : Data.ATTR;
-    final int ml = data.meta.maxlen;
-    final IndexIterator ii = sr.min.length <= ml && sr.max.length <= ml &&
-        (text ? data.meta.textindex : data.meta.attrindex) ? data.iter(sr) : scan();
-
+    final byte kind = sr.type == IndexType.TEXT ? Data.TEXT : Data.ATTR;
+    final IndexIterator ii = ids();
     return new AxisIter() {
       @Override
       public ANode next() {
@@ -52,6 +49,23 @@ public final class StringRangeAccess extends IndexAccess {
     };
   }
 
+  @Override
+  IntList pres(final QueryContext ctx) {
+    return pres(ids());
+  }
+
+  /**
+   * Returns an iterator on the index results.
+   * @return iterator
+   */
+  private IndexIterator ids() {
+    final Data data = ictx.data;
+    final boolean text = sr.type == IndexType.TEXT;
+    final int ml = data.meta.maxlen;
+    return sr.min.length <= ml && sr.max.length <= ml &&
+        (text ? data.meta.textindex : data.meta.attrindex) ? data.iter(sr) : scan();
+  }
+
   /**
    * Returns scan-based iterator.
    * @return node iterator
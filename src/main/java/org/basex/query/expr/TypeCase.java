@@ -74,7 +74,7 @@ public final class TypeCase extends Single {
     if(var.name == null) return ctx.iter(expr);
 
     final int s = ctx.vars.size();
-    ctx.vars.add(var.bind(seq, ctx).copy());
+    ctx.vars.add(var.copy().bind(seq, ctx));
     try {
       return ctx.value(expr).iter();
     } finally {
@@ -56,6 +56,23 @@ public final class ValueAccess extends IndexAccess {
       new Union(info, expr).eval(iter);
   }
 
+  @Override
+  IntList pres(final QueryContext ctx) throws QueryException {
+    IntList pres = null;
+    final Iter ir = ctx.iter(expr);
+    for(Item it; (it = ir.next()) != null;) {
+      final IntList il = pres(ids(it.string(info)));
+      if(pres == null) {
+        pres = il;
+      } else {
+        // merge results of multiple terms
+        for(int i = 0; i < il.size(); i++) pres.add(il.get(i));
+        pres = IndexSet.distinct(pres.sort());
+      }
+    }
+    return pres == null ? new IntList(0) : pres;
+  }
+
   /**
    * Returns an index iterator.
    * @param term term to be found
@@ -63,13 +80,7 @@ public final class ValueAccess extends IndexAccess {
    */
   private AxisIter index(final byte[] term) {
     final Data data = ictx.data;
-
-    // access index if term is not too long, and if index exists.
-    // otherwise, scan data sequentially
-    final IndexIterator ii = term.length <= data.meta.maxlen &&
-      (itype == IndexType.TEXT ? data.meta.textindex : data.meta.attrindex) ?
-      data.iter(new StringToken(itype, term)) : scan(term);
-
+    final IndexIterator ii = ids(term);
     return new AxisIter() {
       final byte kind = itype == IndexType.TEXT ? Data.TEXT : Data.ATTR;
 
@@ -80,6 +91,20 @@ public final class ValueAccess extends IndexAccess {
     };
   }
 
+  /**
+   * Returns an iterator on the index results.
+   * @param term term to be found
+   * @return iterator
+   */
+  private IndexIterator ids(final byte[] term) {
+    final Data data = ictx.data;
+    // access index if term is not too long, and if index exists.
+    // otherwise, scan data sequentially
+    return term.length <= data.meta.maxlen &&
+      (itype == IndexType.TEXT ? data.meta.textindex : data.meta.attrindex) ?
+      data.iter(new StringToken(itype, term)) : scan(term);
+  }
+
   /**
    * Returns scan-based iterator.
    * @param val value to be found
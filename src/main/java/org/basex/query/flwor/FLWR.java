@@ -2,20 +2,55 @@ package org.basex.query.flwor;
 
 import static org.basex.query.QueryText.*;
 
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.basex.core.*;
 import org.basex.query.*;
 import org.basex.query.expr.*;
 import org.basex.query.iter.*;
 import org.basex.query.util.*;
+import org.basex.query.value.*;
 import org.basex.query.value.item.*;
+import org.basex.query.value.seq.*;
 import org.basex.util.*;
 
 /**
  * FLWR clause.
  *
+ * If {@link Prop#PARALLELFLWOR} is set to more than one thread, and if the first clause
+ * is a for clause without positional or score variables, the items of this
+ * clause are split into chunks, and the remaining clauses are evaluated for
+ * each chunk in a separate thread. Expressions that perform updates, that are
+ * non-deterministic or that contain full-text expressions are always evaluated
+ * sequentially. The results are returned in their original order.
+ *
+ * The threads are taken from a pool that is shared by all queries, and that
+ * grows to the largest number of requested threads. Only a limited number of
+ * chunks is evaluated in advance of the chunk that is currently returned.
+ *
  * @author BaseX Team 2005-12, BSD License
  * @author Christian Gruen
  */
 public final class FLWR extends GFLWOR {
+  /** Maximum number of items of a chunk that is evaluated in parallel. */
+  private static final long CHUNK = 1 << 12;
+  /** Threads for evaluating chunks in parallel, shared by all queries. */
+  private static final ThreadPoolExecutor POOL = new ThreadPoolExecutor(1, 1,
+      60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+        @Override
+        public Thread newThread(final Runnable r) {
+          final Thread t = new Thread(r);
+          t.setDaemon(true);
+          return t;
+        }
+      });
+
+  static {
+    POOL.allowCoreThreadTimeOut(true);
+  }
+
   /**
    * Constructor.
    * @param f variable inputs
@@ -44,7 +79,14 @@ public final class FLWR extends GFLWOR {
   }
 
   @Override
-  public Iter iter(final QueryContext ctx) {
+  public Iter iter(final QueryContext ctx) throws QueryException {
+    final int threads = ctx.context.prop.num(Prop.PARALLELFLWOR);
+    if(threads > 1 && !ctx.forked() && fl[0] instanceof For &&
+        ((For) fl[0]).independent() && !uses(Use.UPD) && !uses(Use.NDT) &&
+        !uses(Use.FTX)) {
+      return parallel(ctx, threads);
+    }
+
     return new Iter() {
       private Iter[] iter;
       private Iter rtrn;
@@ -96,6 +138,215 @@ public final class FLWR extends GFLWOR {
     };
   }
 
+  /**
+   * Evaluates the clauses in parallel.
+   * @param ctx query context
+   * @param threads maximum number of threads
+   * @return iterator
+   * @throws QueryException query exception
+   */
+  private Iter parallel(final QueryContext ctx, final int threads)
+      throws QueryException {
+
+    final Value input = ctx.value(fl[0].expr);
+    final long is = input.size();
+    // create more chunks than threads to balance the workload, and limit the
+    // chunk size to reduce the number of results that are cached at the same time
+    final long cs = Math.max(1, Math.min(CHUNK, is / (threads * 4L)));
+    final int chunks = (int) ((is + cs - 1) / cs);
+    if(chunks < 2) return evaluate(input, new QueryContext(ctx)).iter();
+
+    final Parallel par = new Parallel((Seq) input, cs, chunks,
+        Math.min(threads, chunks), ctx);
+    // stop running threads if the iterator is not completely consumed
+    ctx.resource.add(par);
+    par.schedule();
+    return par;
+  }
+
+  /**
+   * Returns the shared thread pool, which will be resized to the specified
+   * number of threads if it is currently smaller.
+   * @param threads number of threads
+   * @return thread pool
+   */
+  private static synchronized ThreadPoolExecutor pool(final int threads) {
+    if(POOL.getMaximumPoolSize() < threads) {
+      POOL.setMaximumPoolSize(threads);
+      POOL.setCorePoolSize(threads);
+    }
+    return POOL;
+  }
+
+  /**
+   * Sequentially evaluates the clauses for some items of the first clause.
+   * @param items items to be bound to the first clause
+   * @param qc query context
+   * @return resulting value
+   * @throws QueryException query exception
+   */
+  Value evaluate(final Value items, final QueryContext qc) throws QueryException {
+    final ForLet[] f = fl.clone();
+    f[0] = new For(info, items, fl[0].var);
+    return qc.value(new FLWR(f, where, ret, info));
+  }
+
+  /**
+   * Iterator that evaluates chunks of the first clause in parallel threads and
+   * returns the results in their original order. Chunks are only evaluated if
+   * they are close to the chunk that is currently returned.
+   */
+  private final class Parallel extends Iter implements Closeable, Runnable {
+    /** Items of the first clause. */
+    private final Seq input;
+    /** Chunk size. */
+    private final long size;
+    /** Results of the evaluated chunks ({@code null} if not available). */
+    private final Value[] results;
+    /** Maximum number of threads. */
+    private final int threads;
+    /** Parent query context. */
+    private final QueryContext ctx;
+    /** Query contexts of the running threads. */
+    private final ArrayList<QueryContext> forks = new ArrayList<QueryContext>();
+    /** Index of the next chunk to be evaluated. */
+    private int next;
+    /** Index of the next chunk to be returned. */
+    private int pos;
+    /** Number of running threads. */
+    private int active;
+    /** First error raised by a thread. */
+    private Throwable error;
+    /** Indicates if the iterator has been closed. */
+    private boolean closed;
+    /** Iterator of the current chunk. */
+    private Iter iter;
+
+    /**
+     * Constructor.
+     * @param in items of the first clause
+     * @param cs chunk size
+     * @param chunks number of chunks
+     * @param th maximum number of threads
+     * @param c parent query context
+     */
+    Parallel(final Seq in, final long cs, final int chunks, final int th,
+        final QueryContext c) {
+      input = in;
+      size = cs;
+      results = new Value[chunks];
+      threads = th;
+      ctx = c;
+    }
+
+    @Override
+    public Item next() throws QueryException {
+      while(true) {
+        if(iter != null) {
+          final Item it = iter.next();
+          if(it != null) return it;
+          iter = null;
+        }
+        final Value v;
+        synchronized(this) {
+          if(pos == results.length) return null;
+          while(results[pos] == null && error == null) {
+            try {
+              wait();
+            } catch(final InterruptedException ex) {
+              close();
+              throw new ProgressException();
+            }
+          }
+          if(error != null) {
+            // stop remaining threads and pass on error
+            close();
+            if(error instanceof QueryException) throw (QueryException) error;
+            if(error instanceof RuntimeException) throw (RuntimeException) error;
+            if(error instanceof Error) throw (Error) error;
+            throw Util.notexpected(error);
+          }
+          v = results[pos];
+          results[pos++] = null;
+          schedule();
+        }
+        iter = v.iter();
+      }
+    }
+
+    /**
+     * Starts new threads if chunks are waiting for evaluation.
+     */
+    synchronized void schedule() {
+      while(active < threads && ready()) {
+        active++;
+        pool(threads).execute(this);
+      }
+    }
+
+    /**
+     * Checks if the next chunk can be evaluated.
+     * @return result of check
+     */
+    private boolean ready() {
+      return !closed && error == null && next < results.length &&
+          next < pos + threads * 2;
+    }
+
+    @Override
+    public void run() {
+      final QueryContext qc = new QueryContext(ctx);
+      synchronized(this) {
+        forks.add(qc);
+      }
+      try {
+        while(true) {
+          final int c;
+          synchronized(this) {
+            if(!ready()) return;
+            c = next++;
+          }
+          final long s = c * size;
+          final Value v = evaluate(input.sub(s, Math.min(size, input.size() - s)), qc);
+          synchronized(this) {
+            results[c] = v;
+            notifyAll();
+          }
+        }
+      } catch(final Throwable th) {
+        synchronized(this) {
+          if(error == null) error = th;
+          notifyAll();
+        }
+      } finally {
+        synchronized(this) {
+          forks.remove(qc);
+          active--;
+          notifyAll();
+        }
+      }
+    }
+
+    /**
+     * Stops all running threads and waits until they have finished,
+     * as resources may be closed afterwards.
+     */
+    @Override
+    public synchronized void close() {
+      closed = true;
+      for(final QueryContext qc : forks) qc.stop();
+      while(active > 0) {
+        try {
+          wait();
+        } catch(final InterruptedException ex) {
+          Util.debug(ex);
+          Thread.currentThread().interrupt();
+          break;
+        }
+      }
+    }
+  }
+
   @Override
   public Expr markTailCalls() {
     for(final ForLet f : fl) if(f instanceof For) return this;
@@ -11,6 +11,7 @@ import org.basex.query.value.node.*;
 import org.basex.query.value.type.*;
 import org.basex.query.value.type.SeqType.Occ;
 import org.basex.util.*;
+import org.basex.util.list.*;
 
 /**
  * For clause.
@@ -23,6 +24,8 @@ public final class For extends ForLet {
   final Var pos;
   /** Full-text score. */
   final Var score;
+  /** Hash join ({@code null} if the items are not joined with outer clauses). */
+  private HashJoin join;
 
   /**
    * Constructor.
@@ -77,6 +80,8 @@ public final class For extends ForLet {
       private int vs;
       /** Iterator flag. */
       private Iter ir;
+      /** Hash table of a join (built with the first iteration). */
+      private HashJoin.Table table;
       /** Counter. */
       private int c;
 
@@ -91,7 +96,7 @@ public final class For extends ForLet {
 
       @Override
       public long size() {
-        return expr.size();
+        return join != null ? -1 : expr.size();
       }
 
       @Override
@@ -118,7 +123,12 @@ public final class For extends ForLet {
       private void init() throws QueryException {
         if(ir == null) {
           vs = ctx.vars.size();
-          ir = ctx.iter(expr);
+          if(join != null) {
+            if(table == null) table = join.table(ctx.value(expr), ctx);
+            ir = join.iter(table, ctx);
+          } else {
+            ir = ctx.iter(expr);
+          }
           ctx.vars.add(v);
           if(p != null) ctx.vars.add(p);
           if(s != null) ctx.vars.add(s);
@@ -141,11 +151,56 @@ public final class For extends ForLet {
     };
   }
 
+  /**
+   * Evaluates the clause as hash join.
+   * @param input input items, excluding the join predicate
+   * @param hj hash join
+   */
+  void join(final Expr input, final HashJoin hj) {
+    expr = input;
+    join = hj;
+    size = -1;
+  }
+
+  @Override
+  public boolean uses(final Use u) {
+    return super.uses(u) || join != null && join.probe.uses(u);
+  }
+
+  @Override
+  public int count(final Var v) {
+    return super.count(v) + (join != null ? join.probe.count(v) : 0);
+  }
+
+  @Override
+  public boolean removable(final Var v) {
+    return super.removable(v) && (join == null || join.probe.removable(v));
+  }
+
+  @Override
+  public Expr remove(final Var v) {
+    if(join != null) join.probe = join.probe.remove(v);
+    return super.remove(v);
+  }
+
+  @Override
+  public boolean databases(final StringList db) {
+    return super.databases(db) && (join == null || join.probe.databases(db));
+  }
+
   @Override
   boolean simple(final boolean one) {
     return pos == null && score == null && (!one || type.one() || size == 1);
   }
 
+  /**
+   * Checks if the items of this clause can be evaluated independently.
+   * @return result of check
+   */
+  boolean independent() {
+    return simple(false) && join == null;
+  }
+
   @Override
   public boolean declares(final Var v) {
     return var.is(v) || pos != null && pos.is(v) || score != null && score.is(v);
@@ -163,7 +218,9 @@ public final class For extends ForLet {
 
   @Override
   public void plan(final FElem plan) {
-    addPlan(plan, planElem(VAR, var, POS, pos, SCORE, score), expr);
+    final FElem el = planElem(VAR, var, POS, pos, SCORE, score);
+    addPlan(plan, el, expr);
+    if(join != null) join.plan(el);
   }
 
   @Override
@@ -171,6 +228,8 @@ public final class For extends ForLet {
     final StringBuilder sb = new StringBuilder(FOR + ' ' + var + ' ');
     if(pos != null) sb.append(AT + ' ' + pos + ' ');
     if(score != null) sb.append(SCORE + ' ' + score + ' ');
-    return sb.append(IN + ' ' + expr).toString();
+    sb.append(IN + ' ' + expr);
+    if(join != null) sb.append('[').append(join).append(']');
+    return sb.toString();
   }
 }
@@ -71,17 +71,17 @@ public abstract class ForLet extends Single {
    * @return total number of occurrences
    */
   final int count(final ForLet fl) {
-    int c = expr.count(fl.var);
+    int c = count(fl.var);
     if(fl instanceof For) {
       final For f = (For) fl;
-      if(f.pos != null) c += expr.count(f.pos);
-      if(f.score != null) c += expr.count(f.score);
+      if(f.pos != null) c += count(f.pos);
+      if(f.score != null) c += count(f.score);
     }
     return c;
   }
 
   @Override
-  public final boolean uses(final Use u) {
+  public boolean uses(final Use u) {
     return u == Use.VAR || super.uses(u);
   }
 
@@ -112,11 +112,17 @@ public class GFLWOR extends ParseExpr {
       }
     }
 
-    if(group != null) group.compile(ctx);
+    final Group cg = ctx.group;
+    if(group != null) {
+      group.compile(ctx);
+      ctx.group = group;
+    }
     if(order != null) order.compile(ctx);
     ret = ret.compile(ctx);
     ctx.vars.size(vs);
     ctx.grouping = grp;
+    ctx.group = cg;
+    if(group != null) group.cache(order, ret);
 
     // remove FLWOR expression if WHERE clause always returns false
     if(empty) {
@@ -158,6 +164,9 @@ public class GFLWOR extends ParseExpr {
       }
     }
 
+    // evaluate comparisons with outer clauses as hash joins
+    compJoin(ctx);
+
     // compute number of results to speed up count() operations
     if(where == null && group == null) {
       size = ret.size();
@@ -287,6 +296,81 @@ public class GFLWOR extends ParseExpr {
     where = null;
   }
 
+  /**
+   * Rewrites for clauses to hash joins. A clause will be rewritten if its last
+   * predicate is an equality comparison between the items of the clause and the
+   * variables of the outer clauses, and if the remaining expression only depends on
+   * clauses that are evaluated once (i.e., on let clauses preceding the first for
+   * clause). Predicates that can be evaluated via the index have
+   * already been rewritten at this stage. Example:
+   * {@code for $a in $A for $b in $B[@ref = $a/@id]}
+   * @param ctx query context
+   */
+  private void compJoin(final QueryContext ctx) {
+    int first = 0;
+    while(first < fl.length && !(fl[first] instanceof For)) first++;
+    for(int f = first + 1; f < fl.length; f++) {
+      if(!(fl[f] instanceof For)) continue;
+      final For fr = (For) fl[f];
+
+      // retrieve predicates of filter or last location step
+      final Expr ex = fr.expr;
+      final AxisStep step;
+      final Expr[] preds;
+      if(ex instanceof Filter) {
+        step = null;
+        preds = ((Filter) ex).preds;
+      } else if(ex instanceof AxisPath) {
+        final AxisPath path = (AxisPath) ex;
+        step = path.step(path.steps.length - 1);
+        preds = step.preds;
+      } else {
+        continue;
+      }
+      if(preds.length == 0) continue;
+      final HashJoin join = HashJoin.get(preds[preds.length - 1], ex.type().type, info);
+      if(join == null) continue;
+
+      // create input expression without join predicate
+      final Expr[] prds = Arrays.copyOf(preds, preds.length - 1);
+      final Expr input;
+      if(step == null) {
+        final Expr root = ((Filter) ex).root;
+        input = prds.length == 0 ? root : new Filter(info, root, prds);
+      } else {
+        final AxisPath path = (AxisPath) ex;
+        final Expr[] steps = path.steps.clone();
+        final AxisStep st = AxisStep.get(step);
+        st.preds = prds;
+        steps[steps.length - 1] = st;
+        input = Path.get(path.info, path.root, steps);
+      }
+
+      // input must be independent of outer iterations, and must not create new nodes
+      boolean dep = input.uses(Use.NDT) || input.uses(Use.CNS);
+      for(int o = first; o < f && !dep; o++) {
+        for(final Var v : fl[o].vars()) dep |= input.count(v) != 0;
+      }
+      if(dep) continue;
+
+      ctx.compInfo(OPTJOIN, fr.var);
+      fr.join(input, join);
+    }
+  }
+
+  /**
+   * Indicates that only the first results of this expression will be requested.
+   * If the tuples are ordered, all tuples beyond this limit can be discarded.
+   * @param n maximum number of requested results
+   * @param ctx query context
+   */
+  public final void limit(final long n, final QueryContext ctx) {
+    // each tuple must yield at least one result
+    if(order == null || ret.type().mayBeZero() || n >= order.limit) return;
+    ctx.compInfo(OPTLIMIT, n);
+    order.limit = n;
+  }
+
   @Override
   public Iter iter(final QueryContext ctx) throws QueryException {
     final Iter[] iter = new Iter[fl.length];
@@ -294,21 +378,15 @@ public class GFLWOR extends ParseExpr {
     for(int f = 0; f < fl.length; ++f) iter[f] = ctx.iter(fl[f]);
 
     // evaluate pre grouping tuples
-    ArrayList<Item[]> keys = null;
-    ValueList vals = null;
-    if(order != null) {
-      keys = new ArrayList<Item[]>();
-      vals = new ValueList();
-    }
-    if(group != null) group.init(order);
-    iter(ctx, iter, 0, keys, vals);
+    final Tuples tuples = order != null ? order.tuples(ctx) : null;
+    final GroupPartition gp = group != null ? group.init(order, ctx) : null;
+    iter(ctx, iter, 0, tuples, gp);
     ctx.vars.size(vs);
 
     for(final ForLet f : fl) ctx.vars.add(f.var);
 
     // order != null, otherwise it would have been handled in group
-    final Iter ir = group != null ?
-        group.gp.ret(ctx, ret, keys, vals) : ctx.iter(order.set(keys, vals));
+    final Iter ir = gp != null ? gp.ret(ctx, ret, tuples) : tuples.iter();
     ctx.vars.size(vs);
     return ir;
   }
@@ -318,23 +396,23 @@ public class GFLWOR extends ParseExpr {
    * @param ctx query context
    * @param it iterator
    * @param p variable position
-   * @param ks sort keys
-   * @param vs values to sort
+   * @param tuples tuples to sort
+   * @param gp grouping partition ({@code null} if the tuples are not grouped)
    * @throws QueryException query exception
    */
   private void iter(final QueryContext ctx, final Iter[] it, final int p,
-      final ArrayList<Item[]> ks, final ValueList vs) throws QueryException {
+      final Tuples tuples, final GroupPartition gp) throws QueryException {
 
     final boolean more = p + 1 != fl.length;
     while(it[p].next() != null) {
       if(more) {
-        iter(ctx, it, p + 1, ks, vs);
+        iter(ctx, it, p + 1, tuples, gp);
       } else if(where == null || where.ebv(ctx, info).bool(info)) {
-        if(group != null) {
-          group.gp.add(ctx);
+        if(gp != null) {
+          gp.add(ctx);
         } else if(order != null) {
           // order by will be handled in group by otherwise
-          order.add(ctx, ret, ks, vs);
+          order.add(ctx, ret, tuples);
         }
       }
     }
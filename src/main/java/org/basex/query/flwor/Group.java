@@ -2,11 +2,17 @@ package org.basex.query.flwor;
 
 import static org.basex.query.QueryText.*;
 
+import java.util.*;
+
 import org.basex.query.*;
 import org.basex.query.expr.*;
+import org.basex.query.func.*;
 import org.basex.query.iter.*;
 import org.basex.query.util.*;
+import org.basex.query.value.*;
+import org.basex.query.value.item.*;
 import org.basex.query.value.node.*;
+import org.basex.query.value.seq.*;
 import org.basex.query.value.type.*;
 import org.basex.util.*;
 import org.basex.util.list.*;
@@ -22,8 +28,10 @@ public final class Group extends ParseExpr {
   private final GroupSpec[] groupby;
   /** Non-grouping variables. */
   private final Var[][] nongroup;
-  /** Grouping partition. **/
-  GroupPartition gp;
+  /** Aggregates of non-grouping variables. */
+  Aggregate[] aggrs = {};
+  /** Flags for caching the values of non-grouping variables. */
+  boolean[] cache;
 
   /**
    * Constructor.
@@ -35,14 +43,64 @@ public final class Group extends ParseExpr {
     super(ii);
     groupby = gb;
     nongroup = ng;
+    cache = new boolean[ng[0].length];
+    Arrays.fill(cache, true);
   }
 
   /**
-   * Initializes the grouping partition.
+   * Creates a new grouping partition.
    * @param ob order by specifier
+   * @param ctx query context
+   * @return grouping partition
+   */
+  GroupPartition init(final Order ob, final QueryContext ctx) {
+    return new GroupPartition(this, groupby, nongroup, ob, ctx);
+  }
+
+  /**
+   * Computes an aggregate function of a non-grouping variable while the tuples
+   * are grouped. The result will be bound to a new variable with the same name,
+   * which is returned by this function.
+   * @param func aggregate function
+   * @param sig function signature (count, sum, min, max, avg)
+   * @param v variable of the function argument
+   * @param ctx query context
+   * @return variable, or {@code null} if the variable is no non-grouping variable
+   */
+  public Var aggregate(final FNAggr func, final Function sig, final Var v,
+      final QueryContext ctx) {
+    final Var[] ng = nongroup[1];
+    int n = -1;
+    for(int i = 0; i < ng.length && n == -1; i++) if(ng[i].is(v)) n = i;
+    if(n == -1) return null;
+
+    // reuse existing aggregates
+    Var res = null;
+    for(final Aggregate a : aggrs) if(a.var == n && a.sig == sig) res = a.result;
+    if(res == null) {
+      // the new variable gets the name of the original variable, which will be
+      // shown in error messages and in the string representation of the query
+      res = Var.create(ctx, info, ng[n].name, null, null);
+      res.ret = sig == Function.COUNT ? SeqType.ITR : SeqType.ITEM_ZO;
+      aggrs = Array.add(aggrs, new Aggregate(n, func, sig, res));
+    }
+    ctx.vars.add(res);
+    return res;
+  }
+
+  /**
+   * Determines the non-grouping variables whose values need to be cached.
+   * A variable is not cached if it is not referenced by the specified expressions,
+   * or if all references have been replaced by aggregates.
+   * @param ex expressions that are evaluated after grouping
    */
-  void init(final Order ob) {
-    gp = new GroupPartition(groupby, nongroup, ob, info);
+  void cache(final Expr... ex) {
+    final Var[] ng = nongroup[1];
+    for(int i = 0; i < ng.length; i++) {
+      int c = 0;
+      for(final Expr e : ex) if(e != null) c += e.count(ng[i]);
+      cache[i] = c != 0;
+    }
   }
 
   @Override
@@ -102,7 +160,9 @@ public final class Group extends ParseExpr {
 
   @Override
   public void plan(final FElem plan) {
-    addPlan(plan, planElem(), groupby);
+    final FElem el = planElem();
+    for(final Aggregate a : aggrs) a.result.plan(el);
+    addPlan(plan, el, groupby);
   }
 
   @Override
@@ -110,4 +170,71 @@ public final class Group extends ParseExpr {
     return new TokenBuilder(' ' + GROUP + ' ' + BY + ' ').
       addSep(groupby, SEP).toString();
   }
+
+  /**
+   * Aggregate function of a non-grouping variable.
+   */
+  static final class Aggregate {
+    /** Index of the non-grouping variable. */
+    final int var;
+    /** Aggregate function. */
+    final FNAggr func;
+    /** Function signature. */
+    final Function sig;
+    /** Variable, which is bound to the result. */
+    final Var result;
+
+    /**
+     * Constructor.
+     * @param v index of the non-grouping variable
+     * @param f aggregate function
+     * @param s function signature
+     * @param r result variable
+     */
+    Aggregate(final int v, final FNAggr f, final Function s, final Var r) {
+      var = v;
+      func = f;
+      sig = s;
+      result = r;
+    }
+
+    /**
+     * Adds the items of the specified value to the aggregated result.
+     * As the aggregate may never be evaluated, the first error is stored in the
+     * group, and it is raised by {@link #value}.
+     * @param gn group
+     * @param a index of the aggregate
+     * @param v value
+     * @param ctx query context
+     */
+    void add(final GroupNode gn, final int a, final Value v, final QueryContext ctx) {
+      if(gn.errors[a] != null) return;
+      final long vs = v.size();
+      if(sig != Function.COUNT) {
+        try {
+          for(long i = 0; i < vs; i++) {
+            gn.aggr[a] = func.add(gn.aggr[a], v.itemAt(i), ctx);
+          }
+        } catch(final QueryException ex) {
+          gn.errors[a] = ex;
+        }
+      }
+      gn.counts[a] += vs;
+    }
+
+    /**
+     * Returns the aggregated result.
+     * @param gn group
+     * @param a index of the aggregate
+     * @return result
+     * @throws QueryException query exception
+     */
+    Value value(final GroupNode gn, final int a) throws QueryException {
+      if(gn.errors[a] != null) throw gn.errors[a];
+      final Item it = gn.aggr[a];
+      if(sig == Function.COUNT) return Int.get(gn.counts[a]);
+      if(it == null) return Empty.SEQ;
+      return sig == Function.AVG ? Calc.DIV.ev(func.info, it, Int.get(gn.counts[a])) : it;
+    }
+  }
 }
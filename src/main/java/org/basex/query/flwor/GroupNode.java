@@ -1,6 +1,7 @@
 package org.basex.query.flwor;
 
 import org.basex.query.*;
+import org.basex.query.iter.*;
 import org.basex.query.value.*;
 import org.basex.query.value.item.*;
 import org.basex.util.*;
@@ -16,6 +17,14 @@ final class GroupNode {
   private final int hash;
   /** List of grouping values. */
   final Value[] vals;
+  /** Cached values of the non-grouping variables. */
+  ValueBuilder[] items;
+  /** Aggregated results. */
+  Item[] aggr;
+  /** Number of aggregated items. */
+  long[] counts;
+  /** Errors raised while aggregating items ({@code null} if no error occurred). */
+  QueryException[] errors;
 
   /**
    * Creates a group node.
@@ -2,10 +2,17 @@ package org.basex.query.flwor;
 
 import static org.basex.query.util.Err.*;
 
+import java.io.*;
 import java.util.*;
 
+import org.basex.core.*;
+import org.basex.io.*;
+import org.basex.io.in.DataInput;
+import org.basex.io.out.DataOutput;
 import org.basex.query.*;
 import org.basex.query.expr.*;
+import org.basex.query.flwor.Group.Aggregate;
+import org.basex.query.func.*;
 import org.basex.query.iter.*;
 import org.basex.query.util.*;
 import org.basex.query.value.*;
@@ -17,137 +24,315 @@ import org.basex.util.list.*;
 /**
  * Stores the grouping for a group by clause.
  *
+ * If the number of groups and cached items exceeds {@link Prop#MAXGROUP}, the
+ * tuples of all new groups are partitioned by the hash value of their grouping
+ * keys and written to temporary files. After the input has been consumed, the
+ * partitions are grouped one by one. Tuples with items that are not supported
+ * by {@link Spill} are always grouped in main memory.
+ *
+ * The limit only applies to the creation of new groups: items of groups that
+ * already reside in main memory will still be added to these groups, as the
+ * values of all non-grouping variables need to be materialized anyway when
+ * the return clause is evaluated. Hence, memory consumption is not bounded
+ * if a small number of groups contains a large number of cached items.
+ *
+ * Aggregate functions of non-grouping variables (see {@link Group#aggregate})
+ * are computed incrementally; the values of such variables are not cached.
+ *
  * @author BaseX Team 2005-12, BSD License
  * @author Michael Seiferle
  */
 final class GroupPartition {
+  /** Number of partitions on disk. */
+  private static final int PARTITIONS = 16;
+
   /** Input information. */
   private final InputInfo info;
   /** Order by specifier. */
   private final Order order;
+  /** Query context. */
+  private final QueryContext ctx;
 
   /** Grouping variables. */
   private final GroupSpec[] gv;
   /** Non-grouping variables. */
   private final Var[][] ngv;
+  /** Flags for caching the values of non-grouping variables. */
+  private final boolean[] cache;
+  /** Flags for evaluating non-grouping variables. */
+  private final boolean[] eval;
+  /** Aggregates of non-grouping variables. */
+  private final Aggregate[] aggrs;
 
-  /** Group partitioning. */
-  private final ArrayList<GroupNode> part = new ArrayList<GroupNode>();
-  /** Resulting sequence for non-grouping variables. */
-  private final ArrayList<ValueBuilder[]> items;
-  /** HashValue, position (with overflow bucket). */
-  private final IntMap<IntList> hashes = new IntMap<IntList>();
+  /** Groups in main memory. */
+  private final Groups groups = new Groups();
+  /** Maximum number of groups and cached items in main memory (0: no limit). */
+  private final int max;
+  /** Number of groups and cached items in main memory. */
+  private long size;
+
+  /** Partitions on disk ({@code null} if no tuples have been written). */
+  private IOFile[] files;
+  /** Output streams of the partitions. */
+  private DataOutput[] outs;
+  /** Number of tuples of the partitions. */
+  private int[] sizes;
+  /** Serialization of the tuples on disk. */
+  private Spill spill;
 
   /**
    * Sets up an empty partitioning.
    * Sets up the ordering scheme.
+   * @param group group by clause
    * @param groupby grouping variables
    * @param ng non-grouping variables
    * @param ob order by specifier
-   * @param ii input info
+   * @param c query context
    */
-  GroupPartition(final GroupSpec[] groupby, final Var[][] ng, final Order ob,
-      final InputInfo ii) {
+  GroupPartition(final Group group, final GroupSpec[] groupby, final Var[][] ng,
+      final Order ob, final QueryContext c) {
     gv = groupby;
     ngv = ng;
     order = ob;
-    items = ngv[0].length != 0 ? new ArrayList<ValueBuilder[]>() : null;
-    info = ii;
+    ctx = c;
+    info = group.info;
+    cache = group.cache;
+    aggrs = group.aggrs;
+    eval = cache.clone();
+    for(final Aggregate a : aggrs) eval[a.var] = true;
+    max = Math.max(0, c.context.prop.num(Prop.MAXGROUP));
   }
 
   /**
    * Adds the current grouping variable binding to the partitioning scheme.
    * Then the resulting non-grouping variable item sequence is built for each
    * candidate.
-   * Searches the known partition hashes {@link GroupPartition#hashes} for
-   * potential matches and checks them for equivalence.
+   * Searches the known partition hashes for potential matches and checks them
+   * for equivalence.
    * The GroupNode candidate is ignored if it exists otherwise added to the
    * partitioning scheme.
-   * @param ctx QueryContext
+   * @param qc QueryContext
    * @throws QueryException exception
    */
-  void add(final QueryContext ctx) throws QueryException  {
+  void add(final QueryContext qc) throws QueryException  {
     final int gl = gv.length;
-    final Value[] vals = new Value[gl];
+    final Value[] keys = new Value[gl];
     for(int i = 0; i < gl; i++) {
-      final Value val = ctx.value(gv[i]);
+      final Value val = qc.value(gv[i]);
       if(val.size() > 1) XGRP.thrw(info);
-      vals[i] = val;
+      keys[i] = val;
     }
 
-    final GroupNode gn = new GroupNode(info, vals);
-    final int h = gn.hash();
-    final IntList ps = hashes.get(h);
-    int p = -1;
-    if(ps != null) {
-      for(int i = 0; i < ps.size(); ++i) {
-        final int pp = ps.get(i);
-        if(gn.eq(part.get(pp))) {
-          p = pp;
-          break;
-        }
-      }
+    final int ngl = ngv[0].length;
+    final Value[] vals = new Value[ngl];
+    for(int i = 0; i < ngl; ++i) {
+      if(eval[i]) vals[i] = qc.value(qc.vars.get(ngv[0][i]));
     }
-    if(p < 0) {
-      p = part.size();
-      part.add(gn);
 
-      IntList pos = hashes.get(h);
-      if(pos == null) {
-        pos = new IntList(1);
-        hashes.add(h, pos);
+    final GroupNode gn = new GroupNode(info, keys);
+    GroupNode g = groups.get(gn);
+    if(g == null) {
+      if(max != 0 && size >= max && spillable(keys, vals)) {
+        write(gn.hash(), keys, vals);
+        return;
       }
-      pos.add(p);
+      g = groups.add(gn);
+      size++;
     }
+    add(g, vals);
+  }
 
-    final int ngl = ngv[0].length;
-
-    // no non-grouping variables exist
-    if(ngl == 0) return;
+  /**
+   * Adds the values of the non-grouping variables to the specified group.
+   * @param gn group
+   * @param vals values
+   * @throws QueryException query exception
+   */
+  private void add(final GroupNode gn, final Value[] vals) throws QueryException {
+    for(int i = 0; i < vals.length; ++i) {
+      if(!cache[i]) continue;
+      gn.items[i].add(vals[i]);
+      size += vals[i].size();
+    }
+    for(int a = 0; a < aggrs.length; a++) aggrs[a].add(gn, a, vals[aggrs[a].var], ctx);
+  }
 
-    // adds the current non-grouping variable bindings to the p-th partition.
-    if(p == items.size()) items.add(new ValueBuilder[ngl]);
-    final ValueBuilder[] sq = items.get(p);
+  /**
+   * Checks if the specified tuple can be written to disk.
+   * @param keys grouping keys
+   * @param vals values of the non-grouping variables
+   * @return result of check
+   */
+  private static boolean spillable(final Value[] keys, final Value[] vals) {
+    for(final Value v : keys) if(!Spill.supported(v)) return false;
+    for(final Value v : vals) if(v != null && !Spill.supported(v)) return false;
+    return true;
+  }
 
-    for(int i = 0; i < ngl; ++i) {
-      ValueBuilder vb = sq[i];
-      final Value result = ctx.value(ctx.vars.get(ngv[0][i]));
-      if(vb == null) {
-        vb = new ValueBuilder();
-        sq[i] = vb;
+  /**
+   * Writes a tuple to the partition that is assigned to its hash value.
+   * @param hash hash value
+   * @param keys grouping keys
+   * @param vals values of the non-grouping variables
+   * @throws QueryException query exception
+   */
+  private void write(final int hash, final Value[] keys, final Value[] vals)
+      throws QueryException {
+    if(files == null) {
+      files = new IOFile[PARTITIONS];
+      outs = new DataOutput[PARTITIONS];
+      sizes = new int[PARTITIONS];
+      spill = new Spill(info);
+    }
+    final int p = hash & PARTITIONS - 1;
+    try {
+      if(outs[p] == null) {
+        files[p] = ctx.resource.temp("group");
+        outs[p] = new DataOutput(files[p]);
       }
-      vb.add(result);
+      for(final Value v : keys) spill.write(v, outs[p]);
+      for(final Value v : vals) if(v != null) spill.write(v, outs[p]);
+    } catch(final IOException ex) {
+      IOERR.thrw(info, ex);
     }
+    sizes[p]++;
   }
 
   /**
    * Returns grouped variables.
-   * @param ctx query context
+   * @param qc query context
    * @param ret return expression
-   * @param ks key list
-   * @param vs value list
+   * @param tuples tuples to sort
    * @return iterator on the result set
    * @throws QueryException query exception
    */
-  Iter ret(final QueryContext ctx, final Expr ret, final ArrayList<Item[]> ks,
-      final ValueList vs) throws QueryException {
+  Iter ret(final QueryContext qc, final Expr ret, final Tuples tuples)
+      throws QueryException {
     final ValueBuilder vb = new ValueBuilder();
 
-    for(int i = 0; i < part.size(); ++i) {
-      final GroupNode gn = part.get(i);
-      for(int j = 0; j < gv.length; ++j)
-        ctx.vars.add(gv[j].var.copy().bind(gn.vals[j], ctx));
+    // group the tuples on disk
+    if(files != null) {
+      for(int p = 0; p < PARTITIONS; p++) {
+        if(files[p] == null) continue;
+        final Groups part = new Groups();
+        try {
+          outs[p].close();
+          final DataInput in = new DataInput(files[p]);
+          try {
+            for(int t = 0; t < sizes[p]; t++) {
+              final Value[] keys = new Value[gv.length];
+              for(int i = 0; i < keys.length; i++) keys[i] = spill.readValue(in);
+              final Value[] vals = new Value[eval.length];
+              for(int i = 0; i < vals.length; i++) {
+                if(eval[i]) vals[i] = spill.readValue(in);
+              }
+              // groups in main memory may have been created after the first tuple
+              // of the same group has been written to disk
+              final GroupNode gn = new GroupNode(info, keys);
+              GroupNode g = groups.get(gn);
+              if(g == null) {
+                g = part.get(gn);
+                if(g == null) g = part.add(gn);
+              }
+              add(g, vals);
+            }
+          } finally {
+            in.close();
+          }
+        } catch(final IOException ex) {
+          IOERR.thrw(info, ex);
+        }
+        files[p].delete();
+        for(final GroupNode gn : part.list) ret(qc, gn, ret, tuples, vb);
+      }
+    }
+    for(final GroupNode gn : groups.list) ret(qc, gn, ret, tuples, vb);
+    return order != null ? tuples.iter() : vb;
+  }
+
+  /**
+   * Evaluates the return clause for the specified group.
+   * @param qc query context
+   * @param gn group
+   * @param ret return expression
+   * @param tuples tuples to sort
+   * @param vb value builder
+   * @throws QueryException query exception
+   */
+  private void ret(final QueryContext qc, final GroupNode gn, final Expr ret,
+      final Tuples tuples, final ValueBuilder vb) throws QueryException {
 
-      if(items != null) {
-        final ValueBuilder[] ii = items.get(i);
-        for(int j = 0; j < ii.length; ++j) {
-          ctx.vars.add(ngv[1][j].copy().bind(ii[j].value(), ctx));
+    final int vs = qc.vars.size();
+    for(int j = 0; j < gv.length; ++j)
+      qc.vars.add(gv[j].var.copy().bind(gn.vals[j], qc));
+    for(int j = 0; j < cache.length; ++j) {
+      if(cache[j]) qc.vars.add(ngv[1][j].copy().bind(gn.items[j].value(), qc));
+    }
+    for(int a = 0; a < aggrs.length; a++) {
+      final Var v = aggrs[a].result.copy();
+      try {
+        v.bind(aggrs[a].value(gn, a), qc);
+      } catch(final QueryException ex) {
+        // raise error only if the variable is referenced
+        v.bind(FNInfo.error(ex, info), qc);
+      }
+      qc.vars.add(v);
+    }
+    if(order != null) {
+      order.add(qc, ret, tuples);
+    } else vb.add(qc.value(ret));
+    qc.vars.size(vs);
+  }
+
+  /**
+   * Hash table of groups.
+   */
+  private final class Groups {
+    /** Groups. */
+    final ArrayList<GroupNode> list = new ArrayList<GroupNode>();
+    /** HashValue, position (with overflow bucket). */
+    private final IntMap<IntList> hashes = new IntMap<IntList>();
+
+    /**
+     * Returns the group that is equal to the specified group.
+     * @param gn group
+     * @return group or {@code null}
+     * @throws QueryException query exception
+     */
+    GroupNode get(final GroupNode gn) throws QueryException {
+      final IntList ps = hashes.get(gn.hash());
+      if(ps != null) {
+        for(int i = 0; i < ps.size(); ++i) {
+          final GroupNode g = list.get(ps.get(i));
+          if(gn.eq(g)) return g;
         }
       }
-      if(order != null) {
-        order.add(ctx, ret, ks, vs);
-      } else vb.add(ctx.value(ret));
+      return null;
+    }
+
+    /**
+     * Adds a new group.
+     * @param gn group
+     * @return group
+     */
+    GroupNode add(final GroupNode gn) {
+      final int h = gn.hash();
+      IntList pos = hashes.get(h);
+      if(pos == null) {
+        pos = new IntList(1);
+        hashes.add(h, pos);
+      }
+      pos.add(list.size());
+      list.add(gn);
+
+      gn.items = new ValueBuilder[cache.length];
+      for(int i = 0; i < cache.length; i++) {
+        if(cache[i]) gn.items[i] = new ValueBuilder();
+      }
+      gn.aggr = new Item[aggrs.length];
+      gn.counts = new long[aggrs.length];
+      gn.errors = new QueryException[aggrs.length];
+      return gn;
     }
-    return order != null ? ctx.iter(order.set(ks, vs)) : vb;
   }
 }
@@ -0,0 +1,236 @@
+package org.basex.query.flwor;
+
+import org.basex.data.*;
+import org.basex.query.*;
+import org.basex.query.expr.*;
+import org.basex.query.expr.CmpG.OpG;
+import org.basex.query.expr.Expr.Use;
+import org.basex.query.iter.*;
+import org.basex.query.value.*;
+import org.basex.query.value.item.*;
+import org.basex.query.value.node.*;
+import org.basex.query.value.seq.*;
+import org.basex.query.value.type.*;
+import org.basex.util.*;
+import org.basex.util.hash.*;
+import org.basex.util.list.*;
+
+/**
+ * Hash join of a for clause. A general comparison that compares the items of the
+ * clause with the variables of outer clauses is evaluated as follows:
+ * <ul>
+ * <li>the comparison keys of all items are evaluated once, and the positions of
+ *   the items are stored in a hash table (build phase)</li>
+ * <li>for each iteration of the outer clauses, the keys of the other operand are
+ *   looked up in the table, and the matching items are returned in their original
+ *   order (probe phase)</li>
+ * </ul>
+ * Joins are only applied if both operands yield either strings, untyped values
+ * and nodes, or integers. In both cases, type promotion yields the same result as
+ * a comparison of the string or integer values, and no type errors can occur.
+ *
+ * @author BaseX Team 2005-12, BSD License
+ * @author Christian Gruen
+ */
+final class HashJoin extends ExprInfo {
+  /** Key expression, evaluated with the items of the clause as context. */
+  private final Expr key;
+  /** Probe expression, evaluated for each iteration of the outer clauses. */
+  Expr probe;
+  /** Flag for comparing integers (otherwise, strings are compared). */
+  private final boolean itr;
+  /** Input info. */
+  private final InputInfo info;
+
+  /**
+   * Constructor.
+   * @param k key expression
+   * @param p probe expression
+   * @param i flag for comparing integers
+   * @param ii input info
+   */
+  private HashJoin(final Expr k, final Expr p, final boolean i, final InputInfo ii) {
+    key = k;
+    probe = p;
+    itr = i;
+    info = ii;
+  }
+
+  /**
+   * Returns a hash join for the specified predicate, or {@code null} if the
+   * predicate is no equality comparison between a context-dependent key and a
+   * context-independent probe expression.
+   * @param pred predicate
+   * @param it type of the items of the clause
+   * @param ii input info
+   * @return hash join or {@code null}
+   */
+  static HashJoin get(final Expr pred, final Type it, final InputInfo ii) {
+    if(!(pred instanceof CmpG) || ((CmpG) pred).op != OpG.EQ) return null;
+
+    final Expr[] ex = ((CmpG) pred).expr;
+    for(int e = 0; e < 2; e++) {
+      final Expr k = ex[e], p = ex[e ^ 1];
+      if(!k.uses(Use.CTX) || k.uses(Use.VAR) || k.uses(Use.POS) || k.uses(Use.NDT) ||
+          p.uses(Use.CTX) || p.uses(Use.POS) || p.uses(Use.NDT)) continue;
+
+      final Type kt = k instanceof Context ? it : k.type().type, pt = p.type().type;
+      if(string(kt) && string(pt)) return new HashJoin(k, p, false, ii);
+      if(kt.instanceOf(AtomType.ITR) && pt.instanceOf(AtomType.ITR))
+        return new HashJoin(k, p, true, ii);
+    }
+    return null;
+  }
+
+  /**
+   * Checks if the specified type yields strings or untyped values when being atomized.
+   * @param t type
+   * @return result of check
+   */
+  private static boolean string(final Type t) {
+    return t.isNode() || t.isStringOrUntyped();
+  }
+
+  /**
+   * Builds the hash table for the specified items.
+   * @param input input items
+   * @param ctx query context
+   * @return hash table
+   * @throws QueryException query exception
+   */
+  Table table(final Value input, final QueryContext ctx) throws QueryException {
+    final TokenObjMap<IntList> map = new TokenObjMap<IntList>();
+    final Value cv = ctx.value;
+    final long cs = ctx.size;
+    final long cp = ctx.pos;
+    try {
+      final long is = input.size();
+      ctx.size = is;
+      ctx.pos = 1;
+      for(int i = 0; i < is; i++) {
+        ctx.value = input.itemAt(i);
+        final Iter ir = ctx.iter(key);
+        for(Item it; (it = ir.next()) != null;) {
+          final byte[] k = token(it);
+          IntList il = map.get(k);
+          if(il == null) {
+            il = new IntList(1);
+            map.add(k, il);
+          }
+          // skip duplicate keys of the same item
+          if(il.isEmpty() || il.peek() != i) il.add(i);
+        }
+        ctx.pos++;
+      }
+    } finally {
+      ctx.value = cv;
+      ctx.size = cs;
+      ctx.pos = cp;
+    }
+    return new Table(input, map);
+  }
+
+  /**
+   * Returns an iterator on all items of the table that match the current probe keys.
+   * @param table hash table
+   * @param ctx query context
+   * @return iterator
+   * @throws QueryException query exception
+   */
+  Iter iter(final Table table, final QueryContext ctx) throws QueryException {
+    IntList pos = null;
+    boolean sort = false;
+    final Iter ir = ctx.iter(probe);
+    for(Item it; (it = ir.next()) != null;) {
+      final IntList il = table.map.get(token(it));
+      if(il == null) continue;
+      if(pos == null) {
+        pos = il;
+      } else {
+        // merge positions of multiple keys
+        if(!sort) pos = new IntList(pos.toArray());
+        for(final int p : il.toArray()) pos.add(p);
+        sort = true;
+      }
+    }
+    if(pos == null) return Empty.ITER;
+
+    final int[] ps = sort ? distinct(pos.sort()) : pos.toArray();
+    final Value input = table.input;
+    return new Iter() {
+      int p;
+      @Override
+      public Item next() {
+        return p < ps.length ? input.itemAt(ps[p++]) : null;
+      }
+      @Override
+      public Item get(final long i) {
+        return input.itemAt(ps[(int) i]);
+      }
+      @Override
+      public long size() {
+        return ps.length;
+      }
+      @Override
+      public boolean reset() {
+        p = 0;
+        return true;
+      }
+    };
+  }
+
+  /**
+   * Removes duplicates from the specified sorted list.
+   * @param il sorted list
+   * @return distinct values
+   */
+  private static int[] distinct(final IntList il) {
+    final int s = il.size();
+    final IntList nl = new IntList(s);
+    for(int i = 0; i < s; i++) {
+      final int p = il.get(i);
+      if(nl.isEmpty() || nl.peek() != p) nl.add(p);
+    }
+    return nl.toArray();
+  }
+
+  /**
+   * Returns the comparison key of the specified item.
+   * @param it item
+   * @return key
+   * @throws QueryException query exception
+   */
+  private byte[] token(final Item it) throws QueryException {
+    return itr ? Token.token(it.itr(info)) : it.string(info);
+  }
+
+  @Override
+  public void plan(final FElem plan) {
+    addPlan(plan, planElem(), key, probe);
+  }
+
+  @Override
+  public String toString() {
+    return key + " " + OpG.EQ + ' ' + probe;
+  }
+
+  /**
+   * Hash table of a join, containing the input items and the positions of all keys.
+   */
+  static final class Table {
+    /** Input items. */
+    final Value input;
+    /** Positions of the keys. */
+    final TokenObjMap<IntList> map;
+
+    /**
+     * Constructor.
+     * @param in input items
+     * @param m positions of the keys
+     */
+    Table(final Value in, final TokenObjMap<IntList> m) {
+      input = in;
+      map = m;
+    }
+  }
+}
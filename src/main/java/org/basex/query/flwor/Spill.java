@@ -0,0 +1,182 @@
+package org.basex.query.flwor;
+
+import java.io.*;
+import java.math.*;
+import java.util.*;
+
+import org.basex.data.*;
+import org.basex.io.in.DataInput;
+import org.basex.io.out.DataOutput;
+import org.basex.query.*;
+import org.basex.query.value.*;
+import org.basex.query.value.item.*;
+import org.basex.query.value.node.*;
+import org.basex.query.value.seq.*;
+import org.basex.query.value.type.*;
+import org.basex.util.*;
+
+/**
+ * Writes and reads the items of tuples that are temporarily moved to disk.
+ * Only strings, untyped values, integers, doubles, decimals, booleans and
+ * database nodes are supported. The data references of database nodes are kept
+ * in main memory.
+ *
+ * @author BaseX Team 2005-12, BSD License
+ * @author Christian Gruen
+ */
+final class Spill {
+  /** Types of the items that can be written to disk. */
+  private static final Type[] TYPES = { AtomType.STR, AtomType.ATM, AtomType.ITR,
+    AtomType.DBL, AtomType.DEC, AtomType.BLN };
+  /** Type id of {@code null} references. */
+  private static final int NULL = 0;
+  /** Type id of database nodes. */
+  private static final int NODE = 7;
+
+  /** Data references of the database nodes that have been written to disk. */
+  private final ArrayList<Data> data = new ArrayList<Data>();
+  /** Input info. */
+  private final InputInfo info;
+
+  /**
+   * Constructor.
+   * @param ii input info
+   */
+  Spill(final InputInfo ii) {
+    info = ii;
+  }
+
+  /**
+   * Checks if the specified item can be written to disk.
+   * @param it item (may be {@code null})
+   * @return result of check
+   */
+  static boolean supported(final Item it) {
+    return type(it) != -1;
+  }
+
+  /**
+   * Checks if all items of the specified value can be written to disk.
+   * @param v value
+   * @return result of check
+   */
+  static boolean supported(final Value v) {
+    final long vs = v.size();
+    for(long i = 0; i < vs; i++) if(!supported(v.itemAt(i))) return false;
+    return true;
+  }
+
+  /**
+   * Returns the id of the type of the specified item.
+   * @param it item (may be {@code null})
+   * @return type id, or {@code -1} if the item cannot be written to disk
+   */
+  private static int type(final Item it) {
+    if(it == null) return NULL;
+    if(it.getClass() == DBNode.class) return it.score == null ? NODE : -1;
+    for(int t = 0; t < TYPES.length; t++) if(it.type == TYPES[t]) return t + 1;
+    return -1;
+  }
+
+  /**
+   * Writes an item.
+   * @param it item (may be {@code null})
+   * @param out output stream
+   * @throws IOException I/O exception
+   * @throws QueryException query exception
+   */
+  void write(final Item it, final DataOutput out) throws IOException, QueryException {
+    final int t = type(it);
+    out.write1(t);
+    if(t == NODE) {
+      final DBNode n = (DBNode) it;
+      int d = data.indexOf(n.data);
+      if(d == -1) {
+        d = data.size();
+        data.add(n.data);
+      }
+      out.writeNum(d);
+      out.writeNum(n.pre);
+    } else if(t == 3) {
+      write8(it.itr(info), out);
+    } else if(t == 4) {
+      write8(Double.doubleToRawLongBits(it.dbl(info)), out);
+    } else if(t == 5) {
+      out.writeToken(Token.token(it.dec(info).toString()));
+    } else if(t == 6) {
+      out.writeBool(it.bool(info));
+    } else if(t != NULL) {
+      out.writeToken(it.string(info));
+    }
+  }
+
+  /**
+   * Writes all items of a value.
+   * @param v value
+   * @param out output stream
+   * @throws IOException I/O exception
+   * @throws QueryException query exception
+   */
+  void write(final Value v, final DataOutput out) throws IOException, QueryException {
+    final long vs = v.size();
+    out.writeNum((int) vs);
+    for(long i = 0; i < vs; i++) write(v.itemAt(i), out);
+  }
+
+  /**
+   * Reads an item.
+   * @param in input stream
+   * @return item (may be {@code null})
+   * @throws IOException I/O exception
+   */
+  Item read(final DataInput in) throws IOException {
+    switch(in.read()) {
+      case 1:  return Str.get(in.readToken());
+      case 2:  return new Atm(in.readToken());
+      case 3:  return Int.get(read8(in));
+      case 4:  return Dbl.get(Double.longBitsToDouble(read8(in)));
+      case 5:  return Dec.get(new BigDecimal(Token.string(in.readToken())));
+      case 6:  return Bln.get(in.readBool());
+      case NODE:
+        final Data d = data.get(in.readNum());
+        return new DBNode(d, in.readNum());
+      default: return null;
+    }
+  }
+
+  /**
+   * Reads a value.
+   * @param in input stream
+   * @return value
+   * @throws IOException I/O exception
+   */
+  Value readValue(final DataInput in) throws IOException {
+    final int vs = in.readNum();
+    final Item[] v = new Item[vs];
+    for(int i = 0; i < vs; i++) v[i] = read(in);
+    return Seq.get(v, vs);
+  }
+
+  /**
+   * Writes a long value.
+   * @param v value
+   * @param out output stream
+   * @throws IOException I/O exception
+   */
+  private static void write8(final long v, final DataOutput out) throws IOException {
+    out.write4((int) (v >>> 32));
+    out.write4((int) v);
+  }
+
+  /**
+   * Reads a long value.
+   * @param in input stream
+   * @return value
+   * @throws IOException I/O exception
+   */
+  private static long read8(final DataInput in) throws IOException {
+    long v = 0;
+    for(int i = 0; i < 8; i++) v = v << 8 | in.read() & 0xFF;
+    return v;
+  }
+}
@@ -0,0 +1,415 @@
+package org.basex.query.flwor;
+
+import static org.basex.query.util.Err.*;
+
+import java.io.*;
+import java.util.*;
+
+import org.basex.core.*;
+import org.basex.io.*;
+import org.basex.io.in.DataInput;
+import org.basex.io.out.DataOutput;
+import org.basex.query.*;
+import org.basex.query.iter.*;
+import org.basex.query.util.*;
+import org.basex.query.value.*;
+import org.basex.query.value.item.*;
+import org.basex.util.*;
+import org.basex.util.list.*;
+
+/**
+ * Container for the tuples of an order by clause, consisting of sort keys and values.
+ *
+ * <ul>
+ * <li>If only the first results of the clause will be requested
+ *   (see {@link GFLWOR#limit(long, QueryContext)}), the tuples are regularly sorted, and all
+ *   tuples beyond the limit are discarded (top-k sort).</li>
+ * <li>If the number of tuples exceeds {@link Prop#MAXSORT}, the tuples are sorted
+ *   and written to a temporary file. The resulting runs are merged when the
+ *   tuples are returned (external merge sort). If a tuple contains items that
+ *   are not supported by {@link Spill}, all tuples are kept in main memory.</li>
+ * </ul>
+ *
+ * @author BaseX Team 2005-12, BSD License
+ * @author Christian Gruen
+ */
+final class Tuples {
+  /** Order expression. */
+  private final Order order;
+  /** Query context. */
+  private final QueryContext ctx;
+  /** Maximum number of tuples kept in main memory (0: no limit). */
+  private final int max;
+  /** Number of tuples that will be requested. */
+  private final int limit;
+
+  /** Sort keys of the tuples in main memory. */
+  private ArrayList<Item[]> keys = new ArrayList<Item[]>();
+  /** Values of the tuples in main memory. */
+  private ValueList values = new ValueList();
+  /** Indicates if the tuples in main memory can be written to disk. */
+  private boolean spillable = true;
+  /** Total number of added tuples. */
+  private int count;
+
+  /** Sorted runs on disk ({@code null} if no tuples have been written). */
+  private ArrayList<IOFile> runs;
+  /** Number of tuples of the runs. */
+  private IntList sizes;
+  /** Serialization of the tuples on disk. */
+  private Spill spill;
+
+  /**
+   * Constructor.
+   * @param o order expression
+   * @param c query context
+   */
+  Tuples(final Order o, final QueryContext c) {
+    order = o;
+    ctx = c;
+    max = Math.max(0, c.context.prop.num(Prop.MAXSORT));
+    limit = (int) Math.min(o.limit, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Returns the number of added tuples.
+   * @return number of tuples
+   */
+  int count() {
+    return count;
+  }
+
+  /**
+   * Adds a tuple.
+   * @param k sort keys
+   * @param v value
+   * @throws QueryException query exception
+   */
+  void add(final Item[] k, final Value v) throws QueryException {
+    keys.add(k);
+    values.add(v);
+    count++;
+    if(spillable) spillable = spillable(k, v);
+
+    final int s = keys.size();
+    if(s >= (long) limit << 1) {
+      prune();
+    } else if(max != 0 && s >= max && spillable) {
+      write();
+    }
+  }
+
+  /**
+   * Returns an iterator on the sorted values.
+   * @return iterator
+   * @throws QueryException query exception
+   */
+  Iter iter() throws QueryException {
+    final int[] o = sort();
+    if(runs == null) {
+      return new TupleIter() {
+        int p;
+        @Override
+        Value nextValue() {
+          return p < o.length ? values.get(o[p++]) : null;
+        }
+      };
+    }
+
+    // merge sorted runs
+    final MinHeap<Item[], Run> heap = new MinHeap<Item[], Run>(runs.size() + 1,
+        new Comparator<Item[]>() {
+      @Override
+      public int compare(final Item[] k1, final Item[] k2) {
+        try {
+          return order.diff(k1, k2);
+        } catch(final QueryException ex) {
+          throw new QueryRTException(ex);
+        }
+      }
+    });
+    try {
+      final Run mem = new Run() {
+        int p;
+        @Override
+        boolean next() {
+          if(p == o.length) return false;
+          key = keys.get(o[p]);
+          value = values.get(o[p++]);
+          return true;
+        }
+      };
+      if(mem.next()) heap.insert(mem.key, mem);
+      for(int r = 0; r < runs.size(); r++) {
+        final Run run = new FileRun(runs.get(r), sizes.get(r));
+        if(run.next()) heap.insert(run.key, run);
+      }
+    } catch(final QueryRTException ex) {
+      throw ex.wrapped();
+    } catch(final IOException ex) {
+      IOERR.thrw(order.info, ex);
+    }
+
+    return new TupleIter() {
+      @Override
+      Value nextValue() throws QueryException {
+        if(heap.isEmpty()) return null;
+        try {
+          final Run run = heap.removeMin();
+          final Value v = run.value;
+          if(run.next()) heap.insert(run.key, run);
+          return v;
+        } catch(final QueryRTException ex) {
+          throw ex.wrapped();
+        } catch(final IOException ex) {
+          throw IOERR.thrw(order.info, ex);
+        }
+      }
+    };
+  }
+
+  /**
+   * Sorts the tuples in main memory and discards all tuples beyond the limit.
+   * @throws QueryException query exception
+   */
+  private void prune() throws QueryException {
+    final int[] o = sort();
+    final ArrayList<Item[]> ks = new ArrayList<Item[]>(limit);
+    final ValueList vs = new ValueList();
+    for(int i = 0; i < limit; i++) {
+      ks.add(keys.get(o[i]));
+      vs.add(values.get(o[i]));
+    }
+    keys = ks;
+    values = vs;
+  }
+
+  /**
+   * Sorts the tuples in main memory and writes them to a new run.
+   * @throws QueryException query exception
+   */
+  private void write() throws QueryException {
+    final int[] o = sort();
+    if(runs == null) {
+      runs = new ArrayList<IOFile>();
+      sizes = new IntList();
+      spill = new Spill(order.info);
+    }
+    try {
+      final IOFile file = ctx.resource.temp("sort");
+      final DataOutput out = new DataOutput(file);
+      try {
+        for(final int i : o) {
+          for(final Item it : keys.get(i)) spill.write(it, out);
+          spill.write(values.get(i), out);
+        }
+      } finally {
+        out.close();
+      }
+      runs.add(file);
+      sizes.add(o.length);
+    } catch(final IOException ex) {
+      IOERR.thrw(order.info, ex);
+    }
+    keys = new ArrayList<Item[]>();
+    values = new ValueList();
+  }
+
+  /**
+   * Checks if the specified tuple can be written to disk.
+   * @param k sort keys
+   * @param v value
+   * @return result of check
+   */
+  private static boolean spillable(final Item[] k, final Value v) {
+    for(final Item it : k) if(!Spill.supported(it)) return false;
+    return Spill.supported(v);
+  }
+
+  /**
+   * Returns the positions of the tuples in main memory in sorted order.
+   * @return positions
+   * @throws QueryException query exception
+   */
+  private int[] sort() throws QueryException {
+    final int s = keys.size();
+    final int[] o = new int[s];
+    for(int i = 0; i < s; ++i) o[i] = i;
+    sort(o, 0, s);
+    return o;
+  }
+
+  /**
+   * Recursively sorts the specified items.
+   * The algorithm is derived from {@link Arrays#sort(int[])}.
+   * @param o order array
+   * @param s start position
+   * @param e end position
+   * @throws QueryException query exception
+   */
+  private void sort(final int[] o, final int s, final int e) throws QueryException {
+    if(e < 7) {
+      for(int i = s; i < e + s; ++i)
+        for(int j = i; j > s && d(o, j - 1, j) > 0; j--) Array.swap(o, j, j - 1);
+      return;
+    }
+
+    int m = s + (e >> 1);
+    if(e > 7) {
+      int l = s;
+      int n = s + e - 1;
+      if(e > 40) {
+        final int k = e >>> 3;
+        l = m(o, l, l + k, l + (k << 1));
+        m = m(o, m - k, m, m + k);
+        n = m(o, n - (k << 1), n - k, n);
+      }
+      m = m(o, l, m, n);
+    }
+
+    final Item[] im = keys.get(o[m]);
+
+    int a = s, b = a, c = s + e - 1, d = c;
+    while(true) {
+      while(b <= c) {
+        final int h = order.diff(keys.get(o[b]), im);
+        if(h > 0) break;
+        if(h == 0) Array.swap(o, a++, b);
+        ++b;
+      }
+      while(c >= b) {
+        final int h = order.diff(keys.get(o[c]), im);
+        if(h < 0) break;
+        if(h == 0) Array.swap(o, c, d--);
+        --c;
+      }
+      if(b > c) break;
+      Array.swap(o, b++, c--);
+    }
+
+    int k;
+    final int n = s + e;
+    k = Math.min(a - s, b - a);
+    Array.swap(o, s, b - k, k);
+    k = Math.min(d - c, n - d - 1);
+    Array.swap(o, b, n - k, k);
+
+    if((k = b - a) > 1) sort(o, s, k);
+    if((k = d - c) > 1) sort(o, n - k, k);
+  }
+
+  /**
+   * Returns the difference of two entries (part of QuickSort).
+   * @param o order array
+   * @param a first position
+   * @param b second position
+   * @return result
+   * @throws QueryException query exception
+   */
+  private int d(final int[] o, final int a, final int b) throws QueryException {
+    return order.diff(keys.get(o[a]), keys.get(o[b]));
+  }
+
+  /**
+   * Returns the index of the median of the three indexed integers.
+   * @param o order array
+   * @param a first offset
+   * @param b second offset
+   * @param c thirst offset
+   * @return median
+   * @throws QueryException query exception
+   */
+  private int m(final int[] o, final int a, final int b, final int c)
+      throws QueryException {
+    final Item[] ka = keys.get(o[a]), kb = keys.get(o[b]), kc = keys.get(o[c]);
+    return order.diff(ka, kb) < 0 ?
+        order.diff(kb, kc) < 0 ? b : order.diff(ka, kc) < 0 ? c : a :
+        order.diff(kb, kc) > 0 ? b : order.diff(ka, kc) > 0 ? c : a;
+  }
+
+  /**
+   * Iterator on the items of the sorted values.
+   */
+  private abstract static class TupleIter extends Iter {
+    /** Iterator on the current value. */
+    private Iter ir;
+
+    @Override
+    public final Item next() throws QueryException {
+      while(true) {
+        if(ir != null) {
+          final Item it = ir.next();
+          if(it != null) return it;
+        }
+        final Value v = nextValue();
+        if(v == null) return null;
+        ir = v.iter();
+      }
+    }
+
+    /**
+     * Returns the next value.
+     * @return value, or {@code null} if all values have been returned
+     * @throws QueryException query exception
+     */
+    abstract Value nextValue() throws QueryException;
+  }
+
+  /**
+   * Sorted run of tuples.
+   */
+  private abstract static class Run {
+    /** Sort keys of the current tuple. */
+    Item[] key;
+    /** Value of the current tuple. */
+    Value value;
+
+    /**
+     * Moves to the next tuple.
+     * @return {@code false} if all tuples have been returned
+     * @throws IOException I/O exception
+     */
+    abstract boolean next() throws IOException;
+  }
+
+  /**
+   * Sorted run of tuples that has been written to disk. The input stream is
+   * registered with the query resources, so it will be closed if the iterator
+   * is not exhausted.
+   */
+  private final class FileRun extends Run {
+    /** File. */
+    private final IOFile file;
+    /** Input stream. */
+    private final DataInput in;
+    /** Number of remaining tuples. */
+    private int left;
+
+    /**
+     * Constructor.
+     * @param f file
+     * @param s number of tuples
+     * @throws IOException I/O exception
+     */
+    FileRun(final IOFile f, final int s) throws IOException {
+      file = f;
+      in = new DataInput(f);
+      ctx.resource.add(in);
+      left = s;
+    }
+
+    @Override
+    boolean next() throws IOException {
+      if(left-- == 0) {
+        in.close();
+        file.delete();
+        return false;
+      }
+      final Item[] k = new Item[order.ob.length];
+      for(int i = 0; i < k.length; i++) k[i] = spill.read(in);
+      key = k;
+      value = spill.readValue(in);
+      return true;
+    }
+  }
+}
@@ -109,7 +109,7 @@ public class FTContains extends ParseExpr {
 
   @Override
   public final boolean uses(final Use u) {
-    return expr.uses(u) || ftexpr.uses(u);
+    return u == Use.FTX || expr.uses(u) || ftexpr.uses(u);
   }
 
   @Override
@@ -59,7 +59,7 @@ public final class FTIndexAccess extends Simple {
 
   @Override
   public boolean uses(final Use u) {
-    return ftexpr.uses(u);
+    return u == Use.FTX || ftexpr.uses(u);
   }
 
   @Override
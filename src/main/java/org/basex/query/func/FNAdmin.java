@@ -78,6 +78,7 @@ public final class FNAdmin extends StandardFunc {
    */
   private Iter logs(final QueryContext ctx) throws QueryException {
     final ValueBuilder vb = new ValueBuilder();
+    ctx.context.log.flush();
     if(expr.length == 0) {
       // return list of all log files
       for(final IOFile f : ctx.context.log.files()) {
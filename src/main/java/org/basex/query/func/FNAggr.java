@@ -1,5 +1,6 @@
 package org.basex.query.func;
 
+import static org.basex.query.QueryText.*;
 import static org.basex.query.util.Err.*;
 import static org.basex.query.value.type.AtomType.*;
 
@@ -7,7 +8,9 @@ import org.basex.query.*;
 import org.basex.query.expr.*;
 import org.basex.query.expr.CmpV.OpV;
 import org.basex.query.iter.*;
+import org.basex.query.util.*;
 import org.basex.query.value.item.*;
+import org.basex.query.value.seq.*;
 import org.basex.query.value.type.*;
 import org.basex.util.*;
 
@@ -59,6 +62,19 @@ public final class FNAggr extends StandardFunc {
 
   @Override
   public Expr comp(final QueryContext ctx) throws QueryException {
+    // aggregate non-grouping variables while the tuples are grouped
+    if(ctx.group != null && expr[0] instanceof VarRef &&
+        (expr.length == 1 || sig == Function.SUM || expr[1].isValue())) {
+      final Var v = ctx.group.aggregate(this, sig, ((VarRef) expr[0]).var, ctx);
+      if(v != null) {
+        ctx.compInfo(OPTAGGR, this);
+        // the aggregate of a single item (sum, min, max, avg) yields the item itself
+        final Expr ref = new VarRef(info, v).compile(ctx);
+        if(sig == Function.COUNT) return ref;
+        expr[0] = ref;
+      }
+    }
+
     final Expr e = expr[0];
     final long c = e.size();
     if(c < 0 || e.uses(Use.NDT)) return this;
@@ -70,6 +86,28 @@ public final class FNAggr extends StandardFunc {
     }
   }
 
+  /**
+   * Adds an item to the aggregated result of the previous items.
+   * The result of {@code count} and the final division of {@code avg} will be
+   * computed by the caller.
+   * @param rs aggregated result of the previous items ({@code null} for the first item)
+   * @param it item to be added
+   * @param ctx query context
+   * @return new aggregated result
+   * @throws QueryException query exception
+   */
+  public Item add(final Item rs, final Item it, final QueryContext ctx)
+      throws QueryException {
+    switch(sig) {
+      case MIN:
+      case MAX:
+        final Iter ir = rs == null ? it.iter() : Seq.get(new Item[] { rs, it }, 2).iter();
+        return minmax(ir, sig == Function.MIN ? OpV.GT : OpV.LT, ctx);
+      default:
+        return rs == null ? sum(Empty.ITER, it, false) : sum(it.iter(), rs, false);
+    }
+  }
+
   /**
    * Sums up the specified item(s).
    * @param iter iterator
@@ -267,7 +267,8 @@ public final class FNFt extends StandardFunc {
   @Override
   public boolean uses(final Use u) {
     // skip evaluation at compile time
-    return u == Use.CTX && oneOf(sig, _FT_SEARCH, _FT_TOKENS) || super.uses(u);
+    return u == Use.CTX && oneOf(sig, _FT_SEARCH, _FT_TOKENS) || u == Use.FTX ||
+        super.uses(u);
   }
 
   @Override
@@ -10,6 +10,7 @@ import org.basex.index.stats.*;
 import org.basex.query.*;
 import org.basex.query.expr.CmpV.OpV;
 import org.basex.query.expr.*;
+import org.basex.query.flwor.*;
 import org.basex.query.iter.*;
 import org.basex.query.path.*;
 import org.basex.query.util.*;
@@ -144,6 +145,12 @@ public final class FNSeq extends StandardFunc {
       return cmpDist(ctx);
     }
 
+    // only the first results of an ordered flwor expression will be requested
+    if(expr[0] instanceof GFLWOR) {
+      final long l = limit(ctx);
+      if(l > 0) ((GFLWOR) expr[0]).limit(l, ctx);
+    }
+
     // all other types will return existing types
     Occ o = Occ.ZERO_MORE;
     // at most one returned item
@@ -156,6 +163,22 @@ public final class FNSeq extends StandardFunc {
     return this;
   }
 
+  /**
+   * Returns the number of results of the first argument that will be requested
+   * by this function.
+   * @param ctx query context
+   * @return number of results, or {@code -1} if it cannot be statically determined
+   * @throws QueryException query exception
+   */
+  private long limit(final QueryContext ctx) throws QueryException {
+    if(sig == Function.HEAD) return 1;
+    if(sig != Function.SUBSEQUENCE || expr.length < 3 ||
+        !(expr[1] instanceof ANum) || !(expr[2] instanceof ANum)) return -1;
+    final double s = checkDbl(expr[1], ctx), l = checkDbl(expr[2], ctx);
+    return Double.isNaN(s) || Double.isNaN(l) || Double.isInfinite(l) ? -1 :
+      StrictMath.round(s) + StrictMath.round(l) - 1;
+  }
+
   /**
    * Pre-evaluates distinct-values() function, utilizing database statistics.
    * @param ctx query context
@@ -72,9 +72,10 @@ public abstract class UserFuncCall extends Arr {
   Var[] args(final QueryContext ctx) throws QueryException {
     final int al = expr.length;
     final Var[] args = new Var[al];
-    // evaluate arguments
+    // evaluate arguments; copies are bound, as functions may be called by
+    // parallel threads
     for(int a = 0; a < al; ++a)
-      args[a] = func.args[a].bind(expr[a].value(ctx), ctx).copy();
+      args[a] = func.args[a].copy().bind(expr[a].value(ctx), ctx);
     return args;
   }
 
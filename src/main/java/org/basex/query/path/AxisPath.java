@@ -27,6 +27,8 @@ import org.basex.util.*;
  * @author Christian Gruen
  */
 public class AxisPath extends Path {
+  /** Maximum ratio between the costs of index accesses that will be intersected. */
+  private static final int COSTRATIO = 32;
   /** Flag for result caching. */
   private boolean cache;
   /** Cached result. */
@@ -139,6 +141,8 @@ public class AxisPath extends Path {
 
     // cache index access costs
     IndexContext ics = null;
+    // index contexts of the predicates of the cheapest step
+    IndexContext[] icmin = null;
     // cheapest predicate and step
     int pmin = 0;
     int smin = 0;
@@ -152,13 +156,15 @@ public class AxisPath extends Path {
       // check if resulting index path will be duplicate free
       final boolean i = pathNodes(data, s) != null;
 
-      // choose cheapest index access
-      for(int p = 0; p < stp.preds.length; ++p) {
-        final IndexContext ic = new IndexContext(ctx, data, stp, i);
-        if(!stp.preds[p].indexAccessible(ic)) continue;
+      // estimate costs of all predicates
+      final int pl = stp.preds.length;
+      final IndexContext[] ic = new IndexContext[pl];
+      for(int p = 0; p < pl; ++p) {
+        final IndexContext c = new IndexContext(ctx, data, stp, i);
+        if(!stp.preds[p].indexAccessible(c)) continue;
 
-        if(ic.costs() == 0) {
-          if(ic.not) {
+        if(c.costs() == 0) {
+          if(c.not) {
             // not operator... accept all results
             stp.preds[p] = Bln.TRUE;
             continue;
@@ -167,8 +173,16 @@ public class AxisPath extends Path {
           ctx.compInfo(OPTNOINDEX, this);
           return Empty.SEQ;
         }
-        if(ics == null || ics.costs() > ic.costs()) {
-          ics = ic;
+        ic[p] = c;
+      }
+      order(stp, ic, ctx);
+
+      // choose cheapest index access
+      for(int p = 0; p < pl; ++p) {
+        if(ic[p] == null) continue;
+        if(ics == null || ics.costs() > ic[p].costs()) {
+          ics = ic[p];
+          icmin = ic;
           pmin = p;
           smin = s;
         }
@@ -180,7 +194,7 @@ public class AxisPath extends Path {
 
     // replace expressions for index access
     final AxisStep stp = step(smin);
-    final Expr ie = stp.preds[pmin].indexEquivalent(ics);
+    Expr ie = stp.preds[pmin].indexEquivalent(ics);
 
     if(ics.seq) {
       // sequential evaluation; do not invert path
@@ -189,11 +203,22 @@ public class AxisPath extends Path {
       // inverted path, which will be represented as predicate
       AxisStep[] invSteps = {};
 
-      // collect remaining predicates
-      final Expr[] newPreds = new Expr[stp.preds.length - 1];
-      int c = 0;
+      // intersect index accesses of other predicates with similar costs,
+      // and collect remaining predicates
+      Expr[] ies = { ie };
+      Expr[] newPreds = {};
       for(int p = 0; p != stp.preds.length; ++p) {
-        if(p != pmin) newPreds[c++] = stp.preds[p];
+        if(p == pmin) continue;
+        final IndexContext ic = icmin[p];
+        if(ic != null && !ic.seq && ic.costs() / COSTRATIO <= ics.costs()) {
+          ies = Array.add(ies, stp.preds[p].indexEquivalent(ic));
+        } else {
+          newPreds = Array.add(newPreds, stp.preds[p]);
+        }
+      }
+      if(ies.length > 1) {
+        ctx.compInfo(OPTINDEXSET, ies.length);
+        ie = new IndexSet(info, data, false, ies);
       }
 
       // check if path before index step needs to be inverted and traversed
@@ -271,26 +296,30 @@ public class AxisPath extends Path {
     try {
       /* cache values if:
        * - caching is desirable
+       * - the code is not evaluated in parallel
        * - the code is called for the first time
        * - the value has changed and the underlying node is not the same
        */
-      if(!cache || citer == null || lvalue != r && !(r instanceof ANode &&
+      final boolean c = cache && !ctx.forked();
+      if(!c || citer == null || lvalue != r && !(r instanceof ANode &&
           lvalue instanceof ANode && ((ANode) lvalue).is((ANode) r))) {
-        lvalue = r;
-        citer = new NodeSeqBuilder().check();
+        final NodeSeqBuilder nb = new NodeSeqBuilder().check();
         if(r != null) {
           final Iter ir = ctx.iter(r);
           for(Item it; (it = ir.next()) != null;) {
             // ensure that root only returns nodes
             if(root != null && !(it instanceof ANode)) PATHNODE.thrw(info, it.type);
             ctx.value = it;
-            iter(0, citer, ctx);
+            iter(0, nb, ctx);
           }
         } else {
           ctx.value = null;
-          iter(0, citer, ctx);
+          iter(0, nb, ctx);
         }
-        citer.sort();
+        nb.sort();
+        if(!c) return nb;
+        lvalue = r;
+        citer = nb;
       } else {
         citer.reset();
       }
@@ -302,6 +331,48 @@ public class AxisPath extends Path {
     }
   }
 
+  /**
+   * Orders the predicates of a step by their estimated selectivity.
+   * Predicates that cannot be rewritten for index access are evaluated last.
+   * The predicates will only be reordered if they are independent from each other,
+   * i.e., if the path contains no positional predicates and if no predicate is
+   * non-deterministic.
+   * @param step step
+   * @param ic index contexts of the predicates ({@code null} entries: no index access)
+   * @param ctx query context
+   */
+  private static void order(final AxisStep step, final IndexContext[] ic,
+      final QueryContext ctx) {
+
+    final Expr[] preds = step.preds;
+    final int pl = preds.length;
+    for(final Expr p : preds) if(p.uses(Use.NDT)) return;
+
+    // stable insertion sort, starting with the most selective predicate
+    boolean sorted = true;
+    for(int p = 1; p < pl; ++p) {
+      for(int q = p; q > 0 && costs(ic[q - 1]) > costs(ic[q]); --q) {
+        final Expr e = preds[q];
+        preds[q] = preds[q - 1];
+        preds[q - 1] = e;
+        final IndexContext c = ic[q];
+        ic[q] = ic[q - 1];
+        ic[q - 1] = c;
+        sorted = false;
+      }
+    }
+    if(!sorted) ctx.compInfo(OPTSELECT, step);
+  }
+
+  /**
+   * Returns the estimated costs of a predicate.
+   * @param ic index context ({@code null}: no index access)
+   * @return costs
+   */
+  private static long costs(final IndexContext ic) {
+    return ic == null ? Long.MAX_VALUE : ic.costs();
+  }
+
   /**
    * Recursive step iterator.
    * @param l current step
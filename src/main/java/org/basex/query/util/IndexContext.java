@@ -1,9 +1,12 @@
 package org.basex.query.util;
 
 import org.basex.data.*;
+import org.basex.index.name.*;
+import org.basex.index.stats.*;
 import org.basex.query.*;
 import org.basex.query.expr.*;
 import org.basex.query.path.*;
+import org.basex.query.path.Test.Mode;
 import org.basex.util.*;
 
 /**
@@ -77,6 +80,66 @@ public final class IndexContext {
     return path;
   }
 
+  /**
+   * Returns the statistics of the element or attribute whose values are
+   * addressed by the specified expression.
+   * @param ex expression (text or attribute step)
+   * @param text text flag
+   * @return statistics, or {@code null} if no up-to-date statistics exist
+   */
+  public Stats stats(final Expr ex, final boolean text) {
+    // statistics are not up-to-date
+    if(!(ex instanceof AxisPath) || !data.meta.uptodate || data.nspaces.size() != 0)
+      return null;
+
+    final AxisPath path = (AxisPath) ex;
+    final int st = path.steps.length;
+    final AxisStep s;
+    if(text) {
+      s = st == 1 ? step : path.step(st - 2);
+      if(s.test.mode != Mode.NAME) return null;
+    } else {
+      s = path.step(st - 1);
+      if(!s.simple(Axis.ATTR, true)) return null;
+    }
+
+    final Names names = text ? data.tagindex : data.atnindex;
+    return names.stat(names.id(((NameTest) s.test).ln));
+  }
+
+  /**
+   * Estimates the number of results of an equality comparison with a value
+   * that is not statically known.
+   * @param ex expression (text or attribute step)
+   * @param text text flag
+   * @return estimated number of results
+   */
+  public int equality(final Expr ex, final boolean text) {
+    final Stats st = stats(ex, text);
+    if(st == null) return Math.max(1, data.meta.size / 10);
+    // distinct values: assume uniform distribution
+    final int cs = st.type == StatsType.CATEGORY ? st.cats.size() : 10;
+    return Math.max(1, st.count / Math.max(1, cs));
+  }
+
+  /**
+   * Estimates the number of results of an equality comparison with a value
+   * that is statically known.
+   * @param ex expression (text or attribute step)
+   * @param text text flag
+   * @param value value
+   * @param count number of index entries for the value
+   * @return estimated number of results
+   */
+  public int equality(final Expr ex, final boolean text, final byte[] value,
+      final int count) {
+    // the index entries of all element and attribute names are counted:
+    // use the number of occurrences of the value for the addressed name
+    final Stats st = stats(ex, text);
+    return st == null || st.type != StatsType.CATEGORY ? count :
+      Math.max(1, Math.min(count, st.cats.value(value)));
+  }
+
   /**
    * Adds the estimated costs.
    * @param c cost to be added
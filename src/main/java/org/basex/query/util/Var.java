@@ -38,8 +38,8 @@ public final class Var extends ParseExpr {
   private final StaticContext sc;
   /** Variable ID. */
   private final int id;
-  /** Bound value. */
-  private Value value;
+  /** Bound value (may be lazily assigned by parallel threads). */
+  private volatile Value value;
   /** Bound expression. */
   private Expr expr;
 
@@ -153,17 +153,24 @@ public final class Var extends ParseExpr {
 
   @Override
   public Value value(final QueryContext ctx) throws QueryException {
-    if(value == null) {
-      if(expr == null) VAREMPTY.thrw(info, this);
-      final StaticContext s = ctx.sc;
-      ctx.sc = sc;
-      try {
-        value = cast(ctx.value(expr.compile(ctx)), ctx);
-      } finally {
-        ctx.sc = s;
+    Value v = value;
+    if(v == null) {
+      synchronized(this) {
+        v = value;
+        if(v == null) {
+          if(expr == null) VAREMPTY.thrw(info, this);
+          final StaticContext s = ctx.sc;
+          ctx.sc = sc;
+          try {
+            v = cast(ctx.value(expr.compile(ctx)), ctx);
+            value = v;
+          } finally {
+            ctx.sc = s;
+          }
+        }
       }
     }
-    return value;
+    return v;
   }
 
   /**
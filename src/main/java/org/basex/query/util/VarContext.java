@@ -44,6 +44,15 @@ public final class VarContext extends ExprInfo {
     return vl;
   }
 
+  /**
+   * Adds the global and local variables of the specified context.
+   * @param vc variable context
+   */
+  public void init(final VarContext vc) {
+    for(int v = 0; v < vc.global.size; v++) global.add(vc.global.vars[v]);
+    for(int v = 0; v < vc.local.size; v++) local.add(vc.local.vars[v]);
+  }
+
   /**
    * Resets the local variables to the specified instance.
    * @param l local variables
@@ -43,6 +43,14 @@ public final class ModuleLoader {
     context = ctx;
   }
 
+  /**
+   * Indicates if Java classes or jar files have been loaded.
+   * @return result of check
+   */
+  public boolean loaded() {
+    return javaModules != null || loader != LOADER || !urls.isEmpty();
+  }
+
   /**
    * Closes opened jar files.
    */
@@ -1,5 +1,7 @@
 package org.basex.query.value.node;
 
+import java.util.concurrent.atomic.*;
+
 import org.basex.api.dom.*;
 import org.basex.core.*;
 import org.basex.data.*;
@@ -24,9 +26,9 @@ public abstract class ANode extends Item {
   /** Static node counter. */
   // [CG] XQuery, node id: move to query context to reduce chance of overflow, or
   // move to FNode to reduce memory usage of DBNode instances
-  private static int sid;
+  private static final AtomicInteger SID = new AtomicInteger();
   /** Unique node id. */
-  public final int id = ++sid;
+  public final int id = SID.incrementAndGet();
 
   /** Cached string value. */
   byte[] val;
@@ -58,12 +60,12 @@ public abstract class ANode extends Item {
   public abstract byte[] string();
 
   @Override
-  public final boolean eq(final InputInfo ii, final Item it) throws QueryException {
+  public boolean eq(final InputInfo ii, final Item it) throws QueryException {
     return it.type.isUntyped() ? Token.eq(string(), it.string(ii)) : it.eq(ii, this);
   }
 
   @Override
-  public final int diff(final InputInfo ii, final Item it) throws QueryException {
+  public int diff(final InputInfo ii, final Item it) throws QueryException {
     return it.type.isUntyped() ? Token.diff(string(), it.string(ii)) : -it.diff(ii, this);
   }
 
@@ -136,6 +136,36 @@ public class DBNode extends ANode {
     return Dbl.parse(data.atom(pre), ii);
   }
 
+  @Override
+  public final boolean eq(final InputInfo ii, final Item it) throws QueryException {
+    return direct(it) ? data.textEq(pre, type != NodeType.ATT, it.string(ii)) :
+      super.eq(ii, it);
+  }
+
+  @Override
+  public final int diff(final InputInfo ii, final Item it) throws QueryException {
+    return direct(it) ? data.textDiff(pre, type != NodeType.ATT, it.string(ii)) :
+      super.diff(ii, it);
+  }
+
+  @Override
+  public final int hash(final InputInfo ii) throws QueryException {
+    return direct(null) ? data.textHash(pre, type != NodeType.ATT) : super.hash(ii);
+  }
+
+  /**
+   * Checks if the value of this node can be compared with the specified item
+   * without being materialized. This is the case if the node is a text, comment or
+   * attribute node whose value has not been requested yet, and if the item is
+   * a string or untyped atomic value.
+   * @param it item to be compared ({@code null} if a hash value is requested)
+   * @return result of check
+   */
+  private boolean direct(final Item it) {
+    return val == null && (type == NodeType.TXT || type == NodeType.COM ||
+        type == NodeType.ATT) && (it == null || it instanceof AStr || it instanceof Atm);
+  }
+
   @Override
   public final byte[] name() {
     final NodeType t = nodeType();
@@ -0,0 +1,91 @@
+package org.basex.server;
+
+import java.io.*;
+
+import org.basex.io.in.*;
+
+/**
+ * This class is used for streaming query results to a client in batches.
+ * The stream is flushed after each result and its terminating byte have been written;
+ * the flushes will only be passed on to the underlying stream if the specified number
+ * of results or bytes has been reached. If the client does not consume the results
+ * fast enough, the server will be blocked by the socket stream.
+ * Whenever a batch has been sent, it is checked if the client has canceled the streaming.
+ *
+ * @author BaseX Team 2005-12, BSD License
+ * @author Christian Gruen
+ */
+final class BatchOutput extends OutputStream {
+  /** Output stream. */
+  private final OutputStream os;
+  /** Buffered client input. */
+  private final BufferInput in;
+  /** Socket input. */
+  private final InputStream sin;
+  /** Maximum number of results per batch. */
+  private final int items;
+  /** Maximum number of bytes per batch. */
+  private final long bytes;
+  /** Number of results of the current batch. */
+  private int ic;
+  /** Number of bytes of the current batch. */
+  private long bc;
+  /** Indicates if the client has canceled the streaming. */
+  private boolean canceled;
+
+  /**
+   * Constructor.
+   * @param out output stream
+   * @param bi buffered client input
+   * @param is socket input
+   * @param it maximum number of results per batch
+   * @param kb maximum size of a batch (in kilobytes)
+   */
+  BatchOutput(final OutputStream out, final BufferInput bi, final InputStream is,
+      final int it, final int kb) {
+    os = out;
+    in = bi;
+    sin = is;
+    items = Math.max(1, it);
+    bytes = (long) Math.max(1, kb) << 10;
+  }
+
+  @Override
+  public void write(final int b) throws IOException {
+    os.write(b);
+    bc++;
+  }
+
+  @Override
+  public void write(final byte[] b, final int o, final int l) throws IOException {
+    os.write(b, o, l);
+    bc += l;
+  }
+
+  @Override
+  public void flush() throws IOException {
+    if(++ic < items && bc < bytes) return;
+    os.flush();
+    ic = 0;
+    bc = 0;
+    // while results are streamed, the client will only send cancel commands
+    if(!canceled && (in.buffered() != 0 || sin.available() != 0)) {
+      if(in.read() != ServerCmd.CANCEL.code) throw new IOException("Unexpected command.");
+      in.readString();
+      canceled = true;
+    }
+  }
+
+  /**
+   * Indicates if the client has canceled the streaming of results.
+   * @return result of check
+   */
+  boolean canceled() {
+    return canceled;
+  }
+
+  @Override
+  public void close() throws IOException {
+    os.flush();
+  }
+}
@@ -0,0 +1,129 @@
+package org.basex.server;
+
+import java.io.*;
+import java.nio.channels.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.basex.util.*;
+
+/**
+ * Multiplexes idle client sessions in the client-server architecture.
+ *
+ * Authenticated sessions are registered with a selector while they wait for the next
+ * request. As soon as new input arrives, the session is removed from the selector, its
+ * channel is switched back to blocking mode, and the request is processed by one of a
+ * fixed number of worker threads. As a result, idle sessions do not occupy any threads,
+ * and the existing stream-based protocol does not need to be changed.
+ * Clients are authenticated by their own threads before they are registered, so that
+ * connections without login data cannot block the worker threads.
+ *
+ * @author BaseX Team 2005-12, BSD License
+ * @author Christian Gruen
+ */
+public final class ClientDispatcher extends Thread {
+  /** Selector for idle sessions. */
+  private final Selector selector;
+  /** Worker threads. */
+  private final ExecutorService workers;
+  /** Sessions to be registered with the selector. */
+  private final Queue<ClientListener> pending =
+      new ConcurrentLinkedQueue<ClientListener>();
+  /** Running flag. */
+  private volatile boolean running = true;
+
+  /**
+   * Constructor.
+   * @param threads number of worker threads
+   * @throws IOException I/O exception
+   */
+  public ClientDispatcher(final int threads) throws IOException {
+    selector = Selector.open();
+    workers = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+      @Override
+      public Thread newThread(final Runnable r) {
+        final Thread t = new Thread(r);
+        t.setDaemon(true);
+        return t;
+      }
+    });
+    setDaemon(true);
+  }
+
+  /**
+   * Adds a session to the selector. Must be called by the thread that processed
+   * the last request of the session.
+   * @param client client session
+   */
+  void register(final ClientListener client) {
+    pending.add(client);
+    selector.wakeup();
+  }
+
+  /**
+   * Stops the dispatcher and all worker threads.
+   */
+  public void close() {
+    running = false;
+    workers.shutdownNow();
+    try {
+      selector.close();
+    } catch(final IOException ex) {
+      Util.debug(ex);
+    }
+  }
+
+  @Override
+  public void run() {
+    final ArrayList<SelectionKey> ready = new ArrayList<SelectionKey>();
+    while(running) {
+      try {
+        selector.select();
+
+        // register idle sessions
+        for(ClientListener cl; (cl = pending.poll()) != null;) {
+          final SocketChannel ch = cl.channel();
+          try {
+            ch.configureBlocking(false);
+            ch.register(selector, SelectionKey.OP_READ, cl);
+          } catch(final IOException ex) {
+            // channel has been closed in the meantime
+            cl.quit();
+          }
+        }
+
+        // remove sessions with new input from the selector
+        final Set<SelectionKey> keys = selector.selectedKeys();
+        if(keys.isEmpty()) continue;
+        ready.addAll(keys);
+        keys.clear();
+        for(final SelectionKey key : ready) key.cancel();
+        selector.selectNow();
+
+        // process requests
+        for(final SelectionKey key : ready) {
+          final ClientListener cl = (ClientListener) key.attachment();
+          try {
+            key.channel().configureBlocking(true);
+            workers.execute(new Runnable() {
+              @Override
+              public void run() {
+                cl.serve();
+              }
+            });
+          } catch(final IOException ex) {
+            cl.quit();
+          }
+        }
+        ready.clear();
+      } catch(final ClosedSelectorException ex) {
+        break;
+      } catch(final RejectedExecutionException ex) {
+        break;
+      } catch(final IOException ex) {
+        Util.stack(ex);
+        break;
+      }
+    }
+  }
+}
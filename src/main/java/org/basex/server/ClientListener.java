@@ -5,7 +5,9 @@ import static org.basex.util.Token.*;
 
 import java.io.*;
 import java.net.*;
+import java.nio.channels.*;
 import java.util.*;
+import java.util.concurrent.atomic.*;
 
 import org.basex.*;
 import org.basex.core.*;
@@ -24,7 +26,9 @@ import org.basex.util.list.*;
  * @author Andreas Weiler
  * @author Christian Gruen
  */
-public final class ClientListener extends Thread {
+public final class ClientListener implements Runnable {
+  /** Session id counter. */
+  private static final AtomicLong IDS = new AtomicLong();
   /** Timer for authentication time out. */
   public final Timer auth = new Timer();
   /** Timestamp of last interaction. */
@@ -33,6 +37,8 @@ public final class ClientListener extends Thread {
   /** Active queries. */
   private final HashMap<String, QueryListener> queries =
     new HashMap<String, QueryListener>();
+  /** Parsed queries. */
+  private final QueryCache cache;
   /** Performance measurement. */
   private final Performance perf = new Performance();
   /** Database context. */
@@ -41,6 +47,10 @@ public final class ClientListener extends Thread {
   private final BaseXServer server;
   /** Socket reference. */
   private final Socket socket;
+  /** Dispatcher for idle sessions ({@code null} if the session has its own thread). */
+  private final ClientDispatcher dispatcher;
+  /** Session id. */
+  private final long sid = IDS.incrementAndGet();
 
   /** Socket for events. */
   private Socket esocket;
@@ -64,102 +74,152 @@ public final class ClientListener extends Thread {
    * @param s socket
    * @param c database context
    * @param srv server reference
+   * @param disp dispatcher for idle sessions (may be {@code null})
    */
-  public ClientListener(final Socket s, final Context c, final BaseXServer srv) {
+  public ClientListener(final Socket s, final Context c, final BaseXServer srv,
+      final ClientDispatcher disp) {
     context = new Context(c, this);
+    cache = new QueryCache(context);
     socket = s;
     server = srv;
+    dispatcher = disp;
     last = System.currentTimeMillis();
-    setDaemon(true);
   }
 
+  /**
+   * Authenticates the client. If a dispatcher is assigned, the session will be
+   * passed on after successful authentication, and the current thread will be
+   * released. Otherwise, all requests will be processed by the current thread.
+   */
   @Override
   public void run() {
     if(!authenticate()) return;
+    if(dispatcher != null) {
+      dispatcher.register(this);
+    } else {
+      while(running) {
+        process();
+        if(running && in.buffered() == 0) cache.prepare();
+      }
+    }
+  }
 
+  /**
+   * Processes all buffered requests, and passes on the session to the dispatcher.
+   * Called by the dispatcher if new input is available.
+   */
+  void serve() {
+    do process(); while(running && in.buffered() != 0);
+    if(running) {
+      cache.prepare();
+      dispatcher.register(this);
+    }
+  }
+
+  /**
+   * Returns the cache for parsed queries.
+   * @return query cache
+   */
+  public QueryCache cache() {
+    return cache;
+  }
+
+  /**
+   * Returns the socket channel.
+   * @return channel
+   */
+  SocketChannel channel() {
+    return socket.getChannel();
+  }
+
+  /**
+   * Processes a single request.
+   */
+  private void process() {
     ServerCmd sc;
     String cmd;
     try {
-      while(running) {
-        command = null;
-        try {
-          final int b = in.read();
-          if(b == -1) {
-            // end of stream: exit session
-            quit();
-            break;
-          }
-
-          last = System.currentTimeMillis();
-          perf.time();
-          sc = ServerCmd.get(b);
-          cmd = null;
-          if(sc == ServerCmd.CREATE) {
-            create();
-          } else if(sc == ServerCmd.ADD) {
-            add();
-          } else if(sc == ServerCmd.WATCH) {
-            watch();
-          } else if(sc == ServerCmd.UNWATCH) {
-            unwatch();
-          } else if(sc == ServerCmd.REPLACE) {
-            replace();
-          } else if(sc == ServerCmd.STORE) {
-            store();
-          } else if(sc != ServerCmd.COMMAND) {
-            query(sc);
-          } else {
-            // database command
-            cmd = new ByteList().add(b).add(in.readBytes()).toString();
-          }
-        } catch(final IOException ex) {
-          // this exception may be thrown if a session is stopped
+      command = null;
+      try {
+        final int b = in.read();
+        if(b == -1) {
+          // end of stream: exit session
           quit();
-          break;
-        }
-        if(sc != ServerCmd.COMMAND) continue;
-
-        // parse input and create command instance
-        try {
-          command = new CommandParser(cmd, context).parseSingle();
-          log(command, null);
-        } catch(final QueryException ex) {
-          // log invalid command
-          final String msg = ex.getMessage();
-          log(cmd, null);
-          log(msg, false);
-          // send 0 to mark end of potential result
-          out.write(0);
-          // send {INFO}0
-          out.writeString(msg);
-          // send 1 to mark error
-          send(false);
-          continue;
+          return;
         }
 
-        // execute command and send {RESULT}
-        boolean ok = true;
-        String info;
-        try {
-          // run command
-          command.execute(context, new EncodingOutput(out));
-          info = command.info();
-        } catch(final BaseXException ex) {
-          ok = false;
-          info = ex.getMessage();
-          if(info.startsWith(INTERRUPTED)) info = TIMEOUT_EXCEEDED;
+        last = System.currentTimeMillis();
+        perf.time();
+        sc = ServerCmd.get(b);
+        cmd = null;
+        if(sc == ServerCmd.CREATE) {
+          create();
+        } else if(sc == ServerCmd.ADD) {
+          add();
+        } else if(sc == ServerCmd.WATCH) {
+          watch();
+        } else if(sc == ServerCmd.UNWATCH) {
+          unwatch();
+        } else if(sc == ServerCmd.REPLACE) {
+          replace();
+        } else if(sc == ServerCmd.STORE) {
+          store();
+        } else if(sc == ServerCmd.CANCEL) {
+          // all results have already been sent: ignore command
+          in.readString();
+        } else if(sc != ServerCmd.COMMAND) {
+          query(sc);
+        } else {
+          // database command
+          cmd = new ByteList().add(b).add(in.readBytes()).toString();
         }
-
-        // send 0 to mark end of result
+      } catch(final IOException ex) {
+        // this exception may be thrown if a session is stopped
+        quit();
+        return;
+      }
+      if(sc != ServerCmd.COMMAND) return;
+
+      // parse input and create command instance
+      try {
+        command = new CommandParser(cmd, context).parseSingle();
+        log(command, null);
+      } catch(final QueryException ex) {
+        // log invalid command
+        final String msg = ex.getMessage();
+        log(cmd, null);
+        log(msg, false);
+        // send 0 to mark end of potential result
         out.write(0);
-        // send info
-        info(info, ok);
+        // send {INFO}0
+        out.writeString(msg);
+        // send 1 to mark error
+        send(false);
+        return;
+      }
 
-        // stop console
-        if(command instanceof Exit) {
-          command = null;
-          quit();
-        }
+      // execute command and send {RESULT}
+      boolean ok = true;
+      String info;
+      try {
+        // run command
+        command.execute(context, new EncodingOutput(out));
+        info = command.info();
+      } catch(final BaseXException ex) {
+        ok = false;
+        info = ex.getMessage();
+        if(info.startsWith(INTERRUPTED)) info = TIMEOUT_EXCEEDED;
+      }
+
+      // send 0 to mark end of result
+      out.write(0);
+      // send info
+      info(info, ok);
+
+      // stop console
+      if(command instanceof Exit) {
+        command = null;
+        quit();
       }
     } catch(final IOException ex) {
       log(ex, false);
@@ -240,6 +300,7 @@ public final class ClientListener extends Thread {
       do Performance.sleep(50); while(command != null);
     }
     context.delete(this);
+    cache.close();
 
     try {
       new Close().run(context);
@@ -255,6 +316,14 @@ public final class ClientListener extends Thread {
     }
   }
 
+  /**
+   * Returns the id of this session.
+   * @return id
+   */
+  public long id() {
+    return sid;
+  }
+
   /**
    * Returns the context of this session.
    * @return user reference
@@ -401,7 +470,7 @@ public final class ClientListener extends Thread {
     // initialize server-based event handling
     if(!events) {
       out.writeString(Integer.toString(context.mprop.num(MainProp.EVENTPORT)));
-      out.writeString(Long.toString(getId()));
+      out.writeString(Long.toString(sid));
       out.flush();
       events = true;
     }
@@ -485,6 +554,10 @@ public final class ClientListener extends Thread {
           if(!typ.isEmpty()) info.append(" as ").append(typ);
         } else if(sc == ServerCmd.ITER) {
           qp.execute(true, out, true, false);
+        } else if(sc == ServerCmd.STREAM) {
+          final Prop prop = context.prop;
+          qp.execute(true, new BatchOutput(out, in, socket.getInputStream(),
+              prop.num(Prop.BATCHITEMS), prop.num(Prop.BATCHSIZE)), true, false);
         } else if(sc == ServerCmd.EXEC) {
           qp.execute(false, out, true, false);
         } else if(sc == ServerCmd.FULL) {
@@ -10,14 +10,28 @@ import org.basex.io.in.*;
  * client/server architecture. All sent data is received by the
  * {@link ClientListener} and interpreted by the {@link QueryListener}.
  *
+ * Results are streamed by the server in batches. They are read step by step, and
+ * only the results that have already been received are prefetched. If another
+ * command is sent to the server, the remaining results will be cached first.
+ * If the query is closed before all results have been read, the server is told to
+ * stop the evaluation.
+ *
  * @author BaseX Team 2005-12, BSD License
  * @author Christian Gruen
  */
 public class ClientQuery extends Query {
+  /** Maximum number of prefetched results. */
+  private static final int ITEMS = 1 << 10;
+  /** Maximum size of prefetched results. */
+  private static final int BYTES = 1 << 16;
   /** Client session. */
   protected final ClientSession cs;
   /** Query id. */
   protected final String id;
+  /** Input of the streamed results ({@code null} if no results are pending). */
+  private BufferInput input;
+  /** Error message of the streamed results ({@code null} if no error occurred). */
+  private String error;
 
   /**
    * Standard constructor.
@@ -66,16 +80,74 @@ public class ClientQuery extends Query {
 
   @Override
   public void close() throws IOException {
+    if(input != null) {
+      // stop the server from sending further results, and skip the pending ones
+      cs.sout.write(ServerCmd.CANCEL.code);
+      cs.send(id);
+      cs.sout.flush();
+      for(int t; (t = input.read()) > 0;) {
+        final DecodingInput di = new DecodingInput(input);
+        while(di.read() != -1);
+      }
+      done();
+    }
+    cache = null;
+    types = null;
+    partial = false;
+    error = null;
     cs.exec(ServerCmd.CLOSE, id, null);
   }
 
   @Override
   protected void cache() throws IOException {
-    cs.sout.write(ServerCmd.ITER.code);
-    cs.send(id);
-    cs.sout.flush();
-    final BufferInput bi = new BufferInput(cs.sin);
-    cache(bi);
-    if(!ClientSession.ok(bi)) throw new BaseXException(bi.readString());
+    if(error != null) {
+      final String msg = error;
+      error = null;
+      init();
+      partial = false;
+      throw new BaseXException(msg);
+    }
+    if(input == null) {
+      cs.finish();
+      cs.sout.write(ServerCmd.STREAM.code);
+      cs.send(id);
+      cs.sout.flush();
+      input = new BufferInput(cs.sin);
+      cs.stream = this;
+    }
+
+    // read at least one result, and all further results that have already been received
+    init();
+    partial = true;
+    for(int s = 0, i; (i = item(input)) != -1;) {
+      s += i;
+      if(input.buffered() == 0 || cache.size() >= ITEMS || s >= BYTES) return;
+    }
+    partial = false;
+    final String msg = done();
+    if(msg != null) throw new BaseXException(msg);
+  }
+
+  /**
+   * Caches all remaining results. Called before another command is sent to the server.
+   * @throws IOException I/O exception
+   */
+  void finish() throws IOException {
+    while(item(input) != -1);
+    error = done();
+    // errors will be raised when the cached results have been retrieved
+    partial = error != null;
+  }
+
+  /**
+   * Finishes the streaming of results and returns an optional error message.
+   * @return error message or {@code null}
+   * @throws IOException I/O exception
+   */
+  private String done() throws IOException {
+    final BufferInput bi = input;
+    input = null;
+    cs.stream = null;
+    return ClientSession.ok(bi) ? null : bi.readString();
   }
 }
@@ -37,6 +37,8 @@ public class ClientSession extends Session {
   protected final PrintOutput sout;
   /** Server input. */
   protected final InputStream sin;
+  /** Query whose results are currently streamed ({@code null} if none). */
+  ClientQuery stream;
 
   /** Socket reference. */
   private final Socket socket;
@@ -157,6 +159,7 @@ public class ClientSession extends Session {
 
   @Override
   protected void execute(final String cmd, final OutputStream os) throws IOException {
+    finish();
     send(cmd);
     sout.flush();
     receive(os);
@@ -176,6 +179,7 @@ public class ClientSession extends Session {
   public void watch(final String name, final EventNotifier notifier)
       throws IOException {
 
+    finish();
     sout.write(ServerCmd.WATCH.code);
     if(esocket == null) {
       sout.flush();
@@ -204,6 +208,7 @@ public class ClientSession extends Session {
    * @throws IOException I/O exception
    */
   public void unwatch(final String name) throws IOException {
+    finish();
     sout.write(ServerCmd.UNWATCH.code);
     send(name);
     sout.flush();
@@ -279,6 +284,7 @@ public class ClientSession extends Session {
   protected void send(final ServerCmd cmd, final InputStream input,
       final String... strings) throws IOException {
 
+    finish();
     sout.write(cmd.code);
     for(final String s : strings) send(s);
     send(input);
@@ -317,6 +323,7 @@ public class ClientSession extends Session {
   protected String exec(final ServerCmd cmd, final String arg, final OutputStream os)
       throws IOException {
 
+    finish();
     final OutputStream o = os == null ? new ArrayOutput() : os;
     sout.write(cmd.code);
     send(arg);
@@ -327,6 +334,15 @@ public class ClientSession extends Session {
     return o.toString();
   }
 
+  /**
+   * Caches the remaining results of a streamed query.
+   * Called before another command is sent to the server.
+   * @throws IOException I/O exception
+   */
+  void finish() throws IOException {
+    if(stream != null) stream.finish();
+  }
+
   @Override
   public String toString() {
      return ehost + ':' + socket.getPort();
@@ -5,6 +5,9 @@ import static org.basex.util.Token.*;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
 
 import org.basex.core.*;
 import org.basex.io.*;
@@ -22,6 +25,10 @@ import org.basex.util.*;
  *   <li><b>Performance</b>: Measured time in milliseconds</li>
  * </ul>
  *
+ * By default, entries are passed on to a writer thread, which writes them in
+ * batches and flushes the output at regular intervals. If {@link MainProp#LOGSYNC}
+ * is enabled, each entry is written and flushed before the calling thread continues.
+ *
  * @author BaseX Team 2005-12, BSD License
  * @author Christian Gruen
  */
@@ -33,12 +40,21 @@ public final class Log {
   /** REQUEST string. */
   public static final String REQUEST = "REQUEST";
 
+  /** Maximum number of queued entries. */
+  private static final int CAPACITY = 1 << 12;
+  /** Size of the output buffer; it is written to disk when it is full. */
+  private static final int BUFFER = 1 << 16;
+  /** Flush interval (milliseconds). */
+  private static final long INTERVAL = 100;
+
   /** Main properties. */
   private final MainProp mprop;
   /** Start date of log. */
   private String start;
   /** Output stream. */
-  private FileOutputStream fos;
+  private OutputStream out;
+  /** Writer thread (can be {@code null}). */
+  private LogWriter writer;
 
   /**
    * Constructor.
@@ -52,7 +68,7 @@ public final class Log {
    * Writes an error to the log file.
    * @param th throwable
    */
-  public synchronized void writeError(final Throwable th) {
+  public void writeError(final Throwable th) {
     Util.errln(th);
     writeServer(ERROR, Util.bug(th));
   }
@@ -61,7 +77,7 @@ public final class Log {
    * Writes a server entry to the log file.
    * @param str strings to be written
    */
-  public synchronized void writeServer(final Object... str) {
+  public void writeServer(final Object... str) {
     final Object[] tmp = new Object[str.length + 2];
     tmp[0] = SERVER;
     tmp[1] = Text.ADMIN;
@@ -73,44 +89,63 @@ public final class Log {
    * Writes an entry to the log file.
    * @param str strings to be written
    */
-  public synchronized void write(final Object... str) {
+  public void write(final Object... str) {
     if(!mprop.is(MainProp.LOG)) {
       close();
       return;
     }
 
-    // initializes the output stream and returns the current date
+    // construct log text
     final Date date = new Date();
-    try {
-      // check if day has changed
-      final String nstart = DateTime.format(date, DateTime.DATE);
-      if(fos != null && !start.equals(nstart)) close();
-
-      // create new log file
-      if(fos == null) {
-        final IOFile dir = dir();
-        dir.md();
-        fos = new FileOutputStream(new IOFile(dir, nstart + IO.LOGSUFFIX).file(), true);
-        start = nstart;
-      }
+    final int ml = mprop.num(MainProp.LOGMSGMAXLEN);
+    final TokenBuilder tb = new TokenBuilder(DateTime.format(date, DateTime.TIME));
+    for(final Object s : str) {
+      tb.add('\t');
+      String st;
+      if(s == null) st = REQUEST;
+      else if(s instanceof Boolean) st = (Boolean) s ? OK : ERROR;
+      else if(s instanceof Throwable) st = Util.message((Throwable) s);
+      else st = s.toString();
+      tb.add(chop(token(st.replaceAll("\\s+", " ").trim()), ml));
+    }
+    tb.add(Prop.NL);
+    final Entry entry = new Entry(DateTime.format(date, DateTime.DATE), tb.finish());
 
-      // construct log text
-      final int ml = mprop.num(MainProp.LOGMSGMAXLEN);
-      final TokenBuilder tb = new TokenBuilder(DateTime.format(date, DateTime.TIME));
-      for(final Object s : str) {
-        tb.add('\t');
-        String st;
-        if(s == null) st = REQUEST;
-        else if(s instanceof Boolean) st = (Boolean) s ? OK : ERROR;
-        else if(s instanceof Throwable) st = Util.message((Throwable) s);
-        else st = s.toString();
-        tb.add(chop(token(st.replaceAll("\\s+", " ").trim()), ml));
+    if(mprop.is(MainProp.LOGSYNC)) {
+      // write pending entries, write and flush text
+      stop();
+      writeSync(entry);
+    } else {
+      final LogWriter w;
+      synchronized(this) {
+        if(writer == null) {
+          writer = new LogWriter();
+          writer.start();
+        }
+        w = writer;
       }
-      tb.add(Prop.NL);
+      w.add(entry);
+    }
+  }
 
-      // write and flush text
-      fos.write(tb.finish());
-      fos.flush();
+  /**
+   * Writes all pending entries to disk.
+   */
+  public synchronized void flush() {
+    final LogWriter w = writer;
+    if(w != null) {
+      final long q = w.queued.get();
+      while(w.isAlive() && w.written < q) {
+        try {
+          wait(INTERVAL);
+        } catch(final InterruptedException ex) {
+          Thread.currentThread().interrupt();
+          break;
+        }
+      }
+    }
+    try {
+      if(out != null) out.flush();
     } catch(final IOException ex) {
       Util.stack(ex);
     }
@@ -119,13 +154,16 @@ public final class Log {
   /**
    * Closes the log file.
    */
-  public synchronized void close() {
-    if(fos == null) return;
-    try {
-      fos.close();
-      fos = null;
-    } catch(final IOException ex) {
-      Util.stack(ex);
+  public void close() {
+    stop();
+    synchronized(this) {
+      if(out == null) return;
+      try {
+        out.close();
+        out = null;
+      } catch(final IOException ex) {
+        Util.stack(ex);
+      }
     }
   }
 
@@ -145,4 +183,177 @@ public final class Log {
   public synchronized IOFile[] files() {
     return dir().children(".*\\" + IO.LOGSUFFIX);
   }
+
+  /**
+   * Stops the writer thread after all queued entries have been written.
+   */
+  private void stop() {
+    final LogWriter w;
+    synchronized(this) {
+      w = writer;
+      writer = null;
+    }
+    if(w != null) w.finish();
+  }
+
+  /**
+   * Writes and flushes a single entry.
+   * @param entry entry
+   */
+  synchronized void writeSync(final Entry entry) {
+    try {
+      output(entry);
+      out.flush();
+    } catch(final IOException ex) {
+      Util.stack(ex);
+    }
+  }
+
+  /**
+   * Writes an entry to the output stream. Opens a new log file if the day has changed.
+   * @param entry entry
+   * @throws IOException I/O exception
+   */
+  void output(final Entry entry) throws IOException {
+    // check if day has changed
+    if(out != null && !start.equals(entry.day)) {
+      out.close();
+      out = null;
+    }
+    // create new log file
+    if(out == null) {
+      final IOFile dir = dir();
+      dir.md();
+      out = new BufferedOutputStream(new FileOutputStream(
+          new IOFile(dir, entry.day + IO.LOGSUFFIX).file(), true), BUFFER);
+      start = entry.day;
+    }
+    out.write(entry.text);
+  }
+
+  /**
+   * Single log entry.
+   */
+  private static final class Entry {
+    /** Date of the entry, which determines the log file. */
+    final String day;
+    /** Log text. */
+    final byte[] text;
+
+    /**
+     * Constructor.
+     * @param d date
+     * @param t log text
+     */
+    Entry(final String d, final byte[] t) {
+      day = d;
+      text = t;
+    }
+  }
+
+  /**
+   * Thread for writing queued entries. If the queue is full, new entries will
+   * be blocked until space is available.
+   */
+  private final class LogWriter extends Thread {
+    /** Queued entries. */
+    final BlockingQueue<Entry> queue = new ArrayBlockingQueue<Entry>(CAPACITY);
+    /** Number of queued entries. */
+    final AtomicLong queued = new AtomicLong();
+    /** Number of written entries. Guarded by the log instance. */
+    long written;
+    /** Stop flag. Set while holding the write lock. */
+    volatile boolean stop;
+    /** Lock for checking the stop flag and queueing an entry atomically. */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Constructor.
+     */
+    LogWriter() {
+      setDaemon(true);
+    }
+
+    /**
+     * Adds an entry to the queue. If the thread has been stopped, the entry will
+     * be written by the calling thread.
+     * @param entry entry
+     */
+    void add(final Entry entry) {
+      try {
+        while(true) {
+          // entries must not be queued after the final drain in finish()
+          lock.readLock().lock();
+          try {
+            if(stop) break;
+            if(queue.offer(entry, INTERVAL, TimeUnit.MILLISECONDS)) {
+              queued.incrementAndGet();
+              return;
+            }
+          } finally {
+            lock.readLock().unlock();
+          }
+        }
+      } catch(final InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      }
+      writeSync(entry);
+    }
+
+    /**
+     * Stops the thread and waits until all entries have been written.
+     */
+    void finish() {
+      // wait for pending offers; afterwards, all entries will be written synchronously
+      lock.writeLock().lock();
+      try {
+        stop = true;
+      } finally {
+        lock.writeLock().unlock();
+      }
+      interrupt();
+      try {
+        join();
+      } catch(final InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      }
+      // write entries that have been queued before the stop flag was set
+      for(Entry entry; (entry = queue.poll()) != null;) writeSync(entry);
+    }
+
+    @Override
+    public void run() {
+      long flushed = System.nanoTime();
+      while(true) {
+        Entry entry = null;
+        try {
+          entry = queue.poll(INTERVAL, TimeUnit.MILLISECONDS);
+        } catch(final InterruptedException ex) {
+          // thread is stopped
+        }
+        final boolean stopped = stop;
+
+        synchronized(Log.this) {
+          int n = 0;
+          try {
+            // write all available entries in a single batch
+            for(; entry != null; entry = queue.poll()) {
+              n++;
+              output(entry);
+            }
+            final long time = System.nanoTime();
+            if(out != null && (n == 0 || stopped || time - flushed >= INTERVAL * 1000000)) {
+              out.flush();
+              flushed = time;
+            }
+          } catch(final IOException ex) {
+            Util.stack(ex);
+          }
+          written += n;
+          Log.this.notifyAll();
+        }
+        if(stopped && queue.isEmpty()) break;
+      }
+    }
+  }
 }
@@ -26,6 +26,8 @@ public abstract class Query {
   protected ByteList types;
   /** Cache pointer. */
   protected int pos;
+  /** Indicates if the cache contains only a part of the remaining results. */
+  protected boolean partial;
 
   /**
    * Binds a value to an external variable.
@@ -71,6 +73,7 @@ public abstract class Query {
    */
   public boolean more() throws IOException {
     if(cache == null) cache();
+    while(pos == cache.size() && partial) cache();
     if(pos < cache.size()) return true;
     cache = null;
     types = null;
@@ -78,7 +81,7 @@ public abstract class Query {
   }
 
   /**
-   * Caches the query result.
+   * Caches the query result, or the next part of the result.
    * @throws IOException I/O exception
    */
   protected abstract void cache() throws IOException;
@@ -114,16 +117,34 @@ public abstract class Query {
    * @throws IOException I/O exception
    */
   protected void cache(final InputStream is) throws IOException {
+    init();
+    while(item(is) != -1);
+  }
+
+  /**
+   * Initializes the result cache.
+   */
+  protected final void init() {
     cache = new TokenList();
     types = new ByteList();
+    pos = 0;
+  }
+
+  /**
+   * Caches the next incoming item.
+   * @param is input stream
+   * @return size of the item, or {@code -1} if the end of the result has been reached
+   * @throws IOException I/O exception
+   */
+  protected final int item(final InputStream is) throws IOException {
+    final int t = is.read();
+    if(t <= 0) return -1;
     final ByteList bl = new ByteList();
-    for(int t; (t = is.read()) > 0;) {
-      final DecodingInput di = new DecodingInput(is);
-      for(int b; (b = di.read()) != -1;) bl.add(b);
-      cache.add(bl.toArray());
-      types.add(t);
-      bl.reset();
-    }
+    final DecodingInput di = new DecodingInput(is);
+    for(int b; (b = di.read()) != -1;) bl.add(b);
+    cache.add(bl.toArray());
+    types.add(t);
+    return bl.size();
   }
 
   /**
@@ -0,0 +1,328 @@
+package org.basex.server;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.basex.core.*;
+import org.basex.data.*;
+import org.basex.query.*;
+import org.basex.util.*;
+import org.basex.util.list.*;
+
+/**
+ * This class caches parsed queries of a client session.
+ *
+ * Compiled query plans cannot be reused, as expressions are rewritten during
+ * compilation, and as variables are bound during evaluation. Instead, queries that
+ * have been requested repeatedly are parsed again as soon as the session is idle.
+ * Parsing takes place in a background thread, which is shared by all sessions, so
+ * that the serving thread is released immediately. If the same query string is
+ * requested next time, the parsed instance will be returned, and only the external
+ * variables need to be bound.
+ *
+ * A parsed query will be discarded if the session state has changed in the
+ * meantime, i.e., if options or permissions have been changed, if the current
+ * database has been opened, closed or updated, or if one of the databases that
+ * are accessed by the query has been updated. Queries that import modules,
+ * declare database options, or may access arbitrary databases will never be cached.
+ *
+ * @author BaseX Team 2005-12, BSD License
+ * @author Christian Gruen
+ */
+public final class QueryCache {
+  /** Background thread for parsing queries. */
+  private static final ExecutorService PARSER =
+      Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(final Runnable r) {
+          final Thread t = new Thread(r);
+          t.setDaemon(true);
+          t.setPriority(Thread.MIN_PRIORITY);
+          return t;
+        }
+      });
+
+  /** Cached queries, ordered by their last access. */
+  private final LinkedHashMap<String, Entry> entries =
+      new LinkedHashMap<String, Entry>(16, 0.75f, true);
+  /** Database context. */
+  private final Context context;
+  /** Indicates if the cache has been closed. */
+  private boolean closed;
+  /** Number of returned parsed instances. */
+  private int hits;
+
+  /**
+   * Constructor.
+   * @param ctx database context
+   */
+  public QueryCache(final Context ctx) {
+    context = ctx;
+  }
+
+  /**
+   * Returns a query processor for the specified query. If a parsed instance is
+   * available, it will be returned. Otherwise, a new instance is created.
+   * @param query query string
+   * @return query processor
+   */
+  public synchronized QueryProcessor get(final String query) {
+    final int max = context.mprop.num(MainProp.QUERYCACHE);
+    if(max > 0) {
+      Entry e = entries.get(query);
+      if(e == null) {
+        e = new Entry();
+        entries.put(query, e);
+        // remove least recently used entries
+        final Iterator<Entry> it = entries.values().iterator();
+        for(int s = entries.size(); s > max; s--) {
+          it.next().close();
+          it.remove();
+        }
+      }
+      e.count++;
+
+      // query has not been parsed yet: parse it in the current thread
+      e.pending = false;
+      // query is currently being parsed: wait for the result
+      while(e.parsing) {
+        try {
+          wait();
+        } catch(final InterruptedException ex) {
+          Thread.currentThread().interrupt();
+          break;
+        }
+      }
+
+      final QueryProcessor qp = e.qp;
+      if(qp != null) {
+        e.qp = null;
+        if(e.state.valid(context)) {
+          context.sessions.hits.incrementAndGet();
+          hits++;
+          return qp;
+        }
+        qp.close();
+      }
+      context.sessions.misses.incrementAndGet();
+    }
+    return new QueryProcessor(query, context);
+  }
+
+  /**
+   * Schedules all queries for parsing that have been requested repeatedly and
+   * whose parsed instances have been used. Called if the session is idle.
+   */
+  public synchronized void prepare() {
+    boolean found = false;
+    for(final Entry e : entries.values()) {
+      if(e.qp != null || e.count < 2 || e.skip || e.pending || e.parsing) continue;
+      e.pending = true;
+      found = true;
+    }
+    if(!found) return;
+    try {
+      PARSER.execute(new Runnable() {
+        @Override
+        public void run() {
+          parse();
+        }
+      });
+    } catch(final RejectedExecutionException ex) {
+      Util.debug(ex);
+    }
+  }
+
+  /**
+   * Parses all queries that have been scheduled for parsing.
+   * Called by the background thread, or to parse the queries in the current thread.
+   */
+  public void parse() {
+    while(true) {
+      final String query;
+      final Entry e;
+      final State state;
+      synchronized(this) {
+        Map.Entry<String, Entry> next = null;
+        for(final Map.Entry<String, Entry> me : entries.entrySet()) {
+          if(me.getValue().pending) {
+            next = me;
+            break;
+          }
+        }
+        if(closed || next == null) return;
+        query = next.getKey();
+        e = next.getValue();
+        e.pending = false;
+        e.parsing = true;
+        state = new State(context);
+      }
+
+      QueryProcessor qp = new QueryProcessor(query, context);
+      boolean cache = false;
+      try {
+        qp.parse();
+        cache = cacheable(qp);
+        if(cache) state.databases(qp, context);
+      } catch(final QueryException ex) {
+        Util.debug(ex);
+      }
+
+      synchronized(this) {
+        e.parsing = false;
+        if(!cache) e.skip = true;
+        // skip entries that have been removed in the meantime
+        if(!e.skip && !closed) {
+          e.qp = qp;
+          e.state = state;
+          qp = null;
+        }
+        notifyAll();
+      }
+      if(qp != null) qp.close();
+    }
+  }
+
+  /**
+   * Checks if a parsed query can be cached.
+   * @param qp query processor
+   * @return result of check
+   */
+  private static boolean cacheable(final QueryProcessor qp) {
+    return qp.ctx.globalOpt.isEmpty() && !qp.ctx.imports() &&
+        qp.databases(new StringList());
+  }
+
+  /**
+   * Returns the number of parsed instances that have been returned by this cache.
+   * @return number of hits
+   */
+  public synchronized int hits() {
+    return hits;
+  }
+
+  /**
+   * Closes all parsed queries and clears the cache.
+   */
+  public synchronized void close() {
+    closed = true;
+    for(final Entry e : entries.values()) e.close();
+    entries.clear();
+  }
+
+  /**
+   * Cache entry.
+   */
+  private static final class Entry {
+    /** Parsed query ({@code null} if no instance is available). */
+    QueryProcessor qp;
+    /** Session state at parse time. */
+    State state;
+    /** Number of requests. */
+    int count;
+    /** Indicates if the query will not be cached. */
+    boolean skip;
+    /** Indicates if the query has been scheduled for parsing. */
+    boolean pending;
+    /** Indicates if the query is currently being parsed. */
+    boolean parsing;
+
+    /**
+     * Closes the parsed query. Called if the entry is removed from the cache.
+     */
+    void close() {
+      if(qp != null) qp.close();
+      qp = null;
+      pending = false;
+      skip = true;
+    }
+  }
+
+  /**
+   * Session state that is relevant for parsing queries.
+   */
+  private static final class State {
+    /** Options. */
+    private final String prop;
+    /** Permission. */
+    private final Perm perm;
+    /** Current database. */
+    private final Data data;
+    /** Timestamp of the last update of the current database. */
+    private final long time;
+    /** Current node context ({@code null} if it contains all documents). */
+    private final Nodes nodes;
+    /** Names of the databases accessed by the query. */
+    private String[] dbs = {};
+    /** Timestamps of the databases accessed by the query. */
+    private long[] times = {};
+
+    /**
+     * Constructor.
+     * @param ctx database context
+     */
+    State(final Context ctx) {
+      prop = ctx.prop.toString();
+      perm = ctx.user.perm;
+      data = ctx.data();
+      time = data != null ? data.meta.time : 0;
+      nodes = ctx.root() ? null : ctx.current();
+    }
+
+    /**
+     * Records the timestamps of the databases that are accessed by the specified query.
+     * The current database is already represented by this state.
+     * @param qp parsed query
+     * @param ctx database context
+     */
+    void databases(final QueryProcessor qp, final Context ctx) {
+      final StringList sl = new StringList();
+      qp.databases(sl);
+      final StringList names = new StringList();
+      for(final String db : sl.sort(true, true).unique()) {
+        if(!db.isEmpty()) names.add(db);
+      }
+      final int ns = names.size();
+      dbs = names.toArray();
+      times = new long[ns];
+      for(int n = 0; n < ns; n++) times[n] = time(dbs[n], ctx);
+    }
+
+    /**
+     * Checks if the session state and the accessed databases are unchanged.
+     * @param ctx database context
+     * @return result of check
+     */
+    boolean valid(final Context ctx) {
+      if(!equals(new State(ctx))) return false;
+      final int ds = dbs.length;
+      for(int d = 0; d < ds; d++) if(time(dbs[d], ctx) != times[d]) return false;
+      return true;
+    }
+
+    /**
+     * Returns the timestamp of the specified database. If the database is not opened,
+     * the timestamp of its meta data file is returned.
+     * @param db name of the database
+     * @param ctx database context
+     * @return timestamp
+     */
+    private static long time(final String db, final Context ctx) {
+      final long t = ctx.dbs.time(db);
+      return t != -1 ? t : MetaData.file(ctx.mprop.dbpath(db), DataText.DATAINF).timeStamp();
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+      if(!(obj instanceof State)) return false;
+      final State s = (State) obj;
+      return perm == s.perm && data == s.data && time == s.time && nodes == s.nodes &&
+          prop.equals(s.prop);
+    }
+
+    @Override
+    public int hashCode() {
+      return prop.hashCode();
+    }
+  }
+}
@@ -44,7 +44,7 @@ final class QueryListener extends Progress {
    * @param c database context
    */
   QueryListener(final String qu, final Context c) {
-    qp = new QueryProcessor(qu, c);
+    qp = c.listener != null ? c.listener.cache().get(qu) : new QueryProcessor(qu, c);
     ctx = c;
   }
 
@@ -152,8 +152,14 @@ final class QueryListener extends Progress {
           }
           ser.serialize(it);
           if(iter && !wrap) {
+            // pass on the serialized item, and mark its end
             po.flush();
             out.write(0);
+            // streamed results: complete the item after its terminator has been written
+            if(out instanceof BatchOutput) {
+              out.flush();
+              if(((BatchOutput) out).canceled()) break;
+            }
           }
           c++;
         }
@@ -41,6 +41,11 @@ public enum ServerCmd {
   UPDATING(30),
   /** Code for executing a query and returning all information relevant for XQJ: {id}0. */
   FULL(31),
+  /** Code for executing the query in an iterative manner and streaming the results
+   * in batches: {id}0. */
+  STREAM(32),
+  /** Code for canceling the streaming of results: {id}0. */
+  CANCEL(33),
   /** Code for running a database command: {path}0{input}0. */
   COMMAND(-1);
 
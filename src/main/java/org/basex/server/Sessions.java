@@ -3,6 +3,7 @@ package org.basex.server;
 import static org.basex.core.Text.*;
 
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
 
 import org.basex.util.*;
 import org.basex.util.list.*;
@@ -14,6 +15,11 @@ import org.basex.util.list.*;
  * @author Christian Gruen
  */
 public final class Sessions extends CopyOnWriteArrayList<ClientListener> {
+  /** Number of requests for which a parsed query was available. */
+  final AtomicLong hits = new AtomicLong();
+  /** Number of requests for which the query had to be parsed. */
+  final AtomicLong misses = new AtomicLong();
+
   /**
    * Returns information about the currently opened sessions.
    * @return data reference
@@ -29,4 +35,12 @@ public final class Sessions extends CopyOnWriteArrayList<ClientListener> {
     for(final String sp : sl.sort(true, true)) tb.add(NL).add(LI).add(sp);
     return tb.toString();
   }
+
+  /**
+   * Returns information about the query caches of all sessions.
+   * @return info string
+   */
+  public String cacheInfo() {
+    return hits.get() + " hits, " + misses.get() + " misses";
+  }
 }
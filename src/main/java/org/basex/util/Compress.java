@@ -6,7 +6,8 @@ import org.basex.util.list.*;
  * This class compresses and decompresses tokens. It is inspired by the
  * Huffman coding, but was simplified to speed up processing.
  *
- * NOTE: this class is not thread-safe.
+ * NOTE: the {@link #pack} method is not thread-safe. The static methods for
+ * decompressing and comparing texts can be called by several threads in parallel.
  *
  * @author BaseX Team 2005-12, BSD License
  * @author Christian Gruen
@@ -19,10 +20,6 @@ public final class Compress {
   private int pc;
   /** Pack offset. */
   private int po;
-  /** Current unpack position. */
-  private int uc;
-  /** Unpack offset. */
-  private int uo;
 
   /**
    * Compresses the specified text.
@@ -92,74 +89,57 @@ public final class Compress {
    * @param txt text to be unpacked
    * @return unpacked text
    */
-  public byte[] unpack(final byte[] txt) {
-    // initialize decompression
-    final byte[] tmp = bl.get();
-    bl.set(txt);
-    uc = Num.length(txt, 0);
-    uo = 0;
-
-    // read packer bit
-    pull();
-    // choose mapping
-    final byte[] unpack = pull() ? UNPACK1 : UNPACK2;
-
-    // decompress all characters
-    final int l = Num.get(txt, 0);
+  public static byte[] unpack(final byte[] txt) {
+    final Unpacker up = new Unpacker(txt);
+    final int l = up.length;
     final byte[] res = new byte[l];
-    for(int r = 0; r < l; r++) {
-      final int b;
-      if(pull()) { // 1 xxx
-        b = pull(3);
-      } else if(pull()) { // 01 xxx
-        b = pull(3) | 0x08;
-      } else if(pull()) { // 001 xxxx
-        b = pull(4) | 0x10;
-      } else if(pull()) { // 0001 xxxxx
-        b = pull(5) | 0x20;
-      } else { // 0000 xxxxxxxx
-        b = pull(8);
-      }
-      res[r] = (byte) (b >= 128 ? b : unpack[b]);
-    }
-    // make sure that the external txt byte array does not remain in this class
-    bl.set(tmp);
+    for(int r = 0; r < l; r++) res[r] = up.next();
     return res;
   }
 
   /**
-   * Pulls the specified number of bits and returns the result.
-   * @param s number of bytes
-   * @return result
+   * Compares a compressed text with the specified token, and returns the same
+   * result as {@link Token#diff}. The text will not be decompressed.
+   * @param txt compressed text
+   * @param token token to be compared
+   * @return 0 if tokens are equal, negative if first token is smaller,
+   *   positive if first token is bigger
    */
-  private int pull(final int s) {
-    int oo = uo, cc = uc, x = 0;
-    final byte[] l = bl.get();
-    for(int i = 0; i < s; i++) {
-      if((l[cc] & 1 << oo) != 0) x |= 1 << i;
-      if(++oo == 8) {
-        oo = 0;
-        ++cc;
-      }
+  public static int diff(final byte[] txt, final byte[] token) {
+    final Unpacker up = new Unpacker(txt);
+    final int tl = up.length;
+    final int cl = token.length;
+    final int l = Math.min(tl, cl);
+    for(int i = 0; i < l; ++i) {
+      final int c = (up.next() & 0xFF) - (token[i] & 0xFF);
+      if(c != 0) return c;
     }
-    uo = oo;
-    uc = cc;
-    return x;
+    return tl - cl;
   }
 
   /**
-   * Pulls a single bit.
-   * @return result
+   * Checks if a compressed text equals the specified token.
+   * The text will not be decompressed.
+   * @param txt compressed text
+   * @param token token to be compared
+   * @return result of check
    */
-  private boolean pull() {
-    int oo = uo;
-    final boolean b = (bl.get()[uc] & 1 << oo) != 0;
-    if(++oo == 8) {
-      oo = 0;
-      ++uc;
-    }
-    uo = oo;
-    return b;
+  public static boolean eq(final byte[] txt, final byte[] token) {
+    return Num.get(txt, 0) == token.length && diff(txt, token) == 0;
+  }
+
+  /**
+   * Calculates the hash code of a compressed text, which is identical to the
+   * {@link Token#hash} value of the decompressed text.
+   * @param txt compressed text
+   * @return hash code
+   */
+  public static int hash(final byte[] txt) {
+    final Unpacker up = new Unpacker(txt);
+    final int l = Math.min(up.length, Token.MAXLENGTH);
+    int h = 0;
+    for(int i = 0; i != l; ++i) h = (h << 5) - h + up.next();
+    return h;
   }
 
   /** First mapping for unpacking data. */
@@ -203,6 +183,92 @@ public final class Compress {
     }
   }
 
+  /**
+   * Sequential reader for the characters of a compressed text. As the reader state
+   * is not shared, texts can be decompressed by several threads in parallel.
+   */
+  private static final class Unpacker {
+    /** Compressed text. */
+    private final byte[] txt;
+    /** Number of decompressed characters. */
+    final int length;
+    /** Character mapping. */
+    private final byte[] unpack;
+    /** Current unpack position. */
+    private int uc;
+    /** Unpack offset. */
+    private int uo;
+
+    /**
+     * Constructor.
+     * @param t compressed text
+     */
+    Unpacker(final byte[] t) {
+      txt = t;
+      length = Num.get(t, 0);
+      uc = Num.length(t, 0);
+      // read packer bit
+      pull();
+      // choose mapping
+      unpack = pull() ? UNPACK1 : UNPACK2;
+    }
+
+    /**
+     * Decompresses the next character.
+     * @return character
+     */
+    byte next() {
+      final int b;
+      if(pull()) { // 1 xxx
+        b = pull(3);
+      } else if(pull()) { // 01 xxx
+        b = pull(3) | 0x08;
+      } else if(pull()) { // 001 xxxx
+        b = pull(4) | 0x10;
+      } else if(pull()) { // 0001 xxxxx
+        b = pull(5) | 0x20;
+      } else { // 0000 xxxxxxxx
+        b = pull(8);
+      }
+      return (byte) (b >= 128 ? b : unpack[b]);
+    }
+
+    /**
+     * Pulls the specified number of bits and returns the result.
+     * @param s number of bytes
+     * @return result
+     */
+    private int pull(final int s) {
+      int oo = uo, cc = uc, x = 0;
+      final byte[] l = txt;
+      for(int i = 0; i < s; i++) {
+        if((l[cc] & 1 << oo) != 0) x |= 1 << i;
+        if(++oo == 8) {
+          oo = 0;
+          ++cc;
+        }
+      }
+      uo = oo;
+      uc = cc;
+      return x;
+    }
+
+    /**
+     * Pulls a single bit.
+     * @return result
+     */
+    private boolean pull() {
+      int oo = uo;
+      final boolean b = (txt[uc] & 1 << oo) != 0;
+      if(++oo == 8) {
+        oo = 0;
+        ++uc;
+      }
+      uo = oo;
+      return b;
+    }
+  }
+
   /** Local ByteList implementation to make protected fields accessible. */
   static final class MyByteList extends ByteList {
     /**
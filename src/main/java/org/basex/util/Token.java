@@ -17,7 +17,7 @@ import java.util.*;
  */
 public final class Token {
   /** Maximum length for hash calculation. */
-  private static final byte MAXLENGTH = 96;
+  public static final byte MAXLENGTH = 96;
 
   /** Empty token. */
   public static final byte[] EMPTY = {};
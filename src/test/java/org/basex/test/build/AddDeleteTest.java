@@ -200,6 +200,64 @@ public final class AddDeleteTest extends SandboxTest {
     assertTrue(io.delete());
   }
 
+  /**
+   * Adds a broken input file and checks if the database is left unchanged.
+   * @throws Exception exception
+   */
+  @Test
+  public void addCorruptRollback() throws Exception {
+    new Add("a.xml", "<a xmlns='A'><b>1</b></a>").execute(context);
+    final String query = "(count(//node()), count(/), //text(), " +
+        "for $d in db:open('" + NAME + "') return document-uri($d))";
+    final String expected = new XQuery(query).execute(context);
+    final String index = new InfoIndex().execute(context);
+
+    final IOFile io = new IOFile(TEMP);
+    io.write(Token.token("<x xmlns:p='P'><p:y a='b'>text</p:y><z>"));
+    try {
+      new Add("x.xml", io.path()).execute(context);
+      fail("Broken file was added to the database.");
+    } catch(final BaseXException ex) {
+      /* expected */
+    } finally {
+      io.delete();
+    }
+    assertEquals(expected, new XQuery(query).execute(context));
+    assertEquals(index, new InfoIndex().execute(context));
+    assertEquals(1, docs());
+
+    new Add("c.xml", "<c xmlns:p='P'><p:y>2</p:y></c>").execute(context);
+    assertEquals(2, docs());
+    assertEquals("P", new XQuery("namespace-uri(//*:y)").execute(context));
+    assertEquals(NAME + "/a.xml " + NAME + "/c.xml", new XQuery("string-join(" +
+        "for $d in db:open('" + NAME + "') return base-uri($d), ' ')").execute(context));
+  }
+
+  /**
+   * Adds documents to a database with updatable indexes.
+   * @throws BaseXException exception
+   */
+  @Test
+  public void addUpdindex() throws BaseXException {
+    new Set(Prop.UPDINDEX, true).execute(context);
+    try {
+      new CreateDB(NAME, "<a>x</a>").execute(context);
+      new Add("b.xml", "<b c='y'>x</b>").execute(context);
+      new Add("c.xml", "<c><d c='y'>z</d></c>").execute(context);
+      assertEquals("2", new XQuery("count(db:text('" + NAME + "', 'x'))").execute(context));
+      assertEquals("2", new XQuery("count(db:attribute('" + NAME + "', 'y'))").
+          execute(context));
+      assertEquals("z", new XQuery("db:open-id('" + NAME + "', " +
+          "db:node-id(//d/text()))").execute(context));
+      new Delete("b.xml").execute(context);
+      assertEquals("1", new XQuery("count(db:text('" + NAME + "', 'x'))").execute(context));
+      assertEquals("1", new XQuery("count(db:attribute('" + NAME + "', 'y'))").
+          execute(context));
+    } finally {
+      new Set(Prop.UPDINDEX, false).execute(context);
+    }
+  }
+
   /**
    * Creates a database from a broken input.
    * @throws BaseXException exception
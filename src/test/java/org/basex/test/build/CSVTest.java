@@ -109,6 +109,70 @@ public final class CSVTest extends SandboxTest {
     assertEquals("0", new XQuery("count(//Name)").execute(context));
   }
 
+  /**
+   * Normalizes numeric columns.
+   * @throws Exception exception
+   */
+  @Test
+  public void normalize() throws Exception {
+    new Set(Prop.PARSEROPT, "header=true,normalize=1 3").execute(context);
+    write("A,B,C\n 007,007,-0\n-12,x,+1\n1.5,,\n");
+    new CreateDB(NAME, TEMP).execute(context);
+    assertEquals("7 -12 1.5", new XQuery("string-join(//A, ' ')").execute(context));
+    assertEquals("007 x", new XQuery("string-join(//B, ' ')").execute(context));
+    assertEquals("0 1", new XQuery("string-join(//C, ' ')").execute(context));
+
+    new Set(Prop.PARSEROPT, "normalize=0").execute(context);
+    try {
+      new CreateDB(NAME, TEMP).execute(context);
+      fail("Invalid column was accepted.");
+    } catch(final BaseXException ex) {
+      /* expected */
+    }
+  }
+
+  /**
+   * Compares documents that have been tokenized sequentially and in parallel.
+   * The input spans several blocks and contains quoted newlines.
+   * @throws Exception exception
+   */
+  @Test
+  public void threads() throws Exception {
+    final StringBuilder sb = new StringBuilder("Id;Text;Value\r\n");
+    for(int i = 0; i < 100000; i++) {
+      sb.append(i).append(';');
+      if(i % 3 == 0) sb.append("\"a;\r\n\"\"b\"\"\n\u00e4\"");
+      else sb.append("t\u20ac").append(i % 11);
+      sb.append(';').append(i % 5 == 0 ? "" : "0" + i).append(i % 2 == 0 ? "\r\n" : "\n");
+    }
+    write(sb.toString());
+    final String[] results = { "", "" };
+    for(int r = 0; r < results.length; r++) {
+      new Set(Prop.PARSETHREADS, r * 3 + 1).execute(context);
+      for(final String opt : new String[] { "header=true,separator=semicolon,normalize=3",
+          "format=simple,separator=semicolon" }) {
+        new Set(Prop.PARSEROPT, opt).execute(context);
+        new CreateDB(NAME, TEMP).execute(context);
+        results[r] += new XQuery(".").execute(context);
+      }
+    }
+    new Set(Prop.PARSETHREADS, 1).execute(context);
+    assertEquals(results[0], results[1]);
+    assertEquals("100001", new XQuery("count(//record)").execute(context));
+  }
+
+  /**
+   * Adds a CSV file with a non-UTF-8 encoding.
+   * @throws Exception exception
+   */
+  @Test
+  public void encoding() throws Exception {
+    new Set(Prop.PARSEROPT, "header=true,encoding=ISO-8859-1").execute(context);
+    new IOFile(TEMP).write(new byte[] { 'A', '\n', (byte) 0xE4, '\n' });
+    new CreateDB(NAME, TEMP).execute(context);
+    assertEquals("\u00e4", new XQuery("string(//A)").execute(context));
+  }
+
   /**
    * Writes the specified test file.
    * @param data data to write
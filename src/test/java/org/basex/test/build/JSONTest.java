@@ -0,0 +1,141 @@
+package org.basex.test.build;
+
+import static org.basex.util.Token.*;
+import static org.junit.Assert.*;
+
+import java.io.*;
+
+import org.basex.core.*;
+import org.basex.core.cmd.*;
+import org.basex.io.*;
+import org.basex.test.*;
+import org.junit.*;
+
+/**
+ * JSON Parser Test.
+ *
+ * @author BaseX Team 2005-12, BSD License
+ * @author Christian Gruen
+ */
+public final class JSONTest extends SandboxTest {
+  /** Temporary JSON file. */
+  private static final String TEMP = Prop.TMP + NAME + ".json";
+
+  /** JSON documents. */
+  private static final String[] JSON = {
+    "[]", "{}", " { } ", "{ \"\\t\" : 0 }", "{ \"a\" :0 }", "{ \"\" : 0.0e0 }",
+    "{ \"\" : null }", "{ \"\" : true, \"b\": false }", "{ \"\" : {} }",
+    "{ \"\" : 0, \"\": 1 }", "{ \"\" : [ 1 ] }", "{ \"A\" : [ 0,1 ] }",
+    "{ \"a_b\" : \"\\u00e4\\n\\\"\", \"1\": [] }", "[ 1, \"a\", null, [], {} ]",
+    "{ \"json\" : [ ], \"value\" : 1 }", "{ \"a\": { \"a\": { \"a\": \"x\" } } }",
+    "[ { \"x\": 1 }, { \"x\": \"1\" }, { \"x\": 1 } ]",
+    "{\r\n \"a\" : [ \" x \", \"\", \" \" ]\r\n}",
+    "{", "{ \"", "{ \"\\c\" : 0 }", "{ \"\" : 00 }", "{ \"\" : 0. }", "{ \"\" : 0e }",
+    "{ \"a\" : 0, }", "{ \"a\" : 0 }}", "[ 1 ", "nul", ""
+  };
+
+  /** JsonML documents. */
+  private static final String[] JSONML = {
+    "[\"a\"]", "[\"a\", { \"b\": \"c\" }]", "[\"a\", { \"b\": \"c\", \"d\": \"\" }, \"x\"]",
+    "[\"a\", \"x\", [\"b\", [\"c\"]], \"y\", [\"d\", \" z \"]]", "[\"a\", {}, [\"b\"]]",
+    "[]", "{}", "[1]", "[\"1\"]", "[\"a\", \"x\", \"y\"]", "[\"a\", [\"b\"], 1]",
+    "[\"a\", { \"b\": 1 }]", "[\"a\", [\"b\"], { \"c\": \"d\" }]", "[\"a\""
+  };
+
+  /**
+   * Removes the temporary JSON file.
+   */
+  @AfterClass
+  public static void after() {
+    new IOFile(TEMP).delete();
+  }
+
+  /**
+   * Resets the options and drops the database.
+   * @throws BaseXException exception
+   */
+  @After
+  public void finish() throws BaseXException {
+    new Set(Prop.PARSER, "xml").execute(context);
+    new Set(Prop.PARSEROPT, "").execute(context);
+    new Set(Prop.CHOP, true).execute(context);
+    new DropDB(NAME).execute(context);
+  }
+
+  /**
+   * Compares the documents created by the parser with the results of the
+   * JSON conversion functions.
+   * @throws Exception exception
+   */
+  @Test
+  public void json() throws Exception {
+    new Set(Prop.CHOP, false).execute(context);
+    compare(JSON, "jsonml=false", "json:parse");
+  }
+
+  /**
+   * Compares the documents created by the parser with the results of the
+   * JsonML conversion functions.
+   * @throws Exception exception
+   */
+  @Test
+  public void jsonml() throws Exception {
+    new Set(Prop.CHOP, false).execute(context);
+    compare(JSONML, "jsonml=true", "json:parse-ml");
+  }
+
+  /**
+   * Chops whitespaces.
+   * @throws Exception exception
+   */
+  @Test
+  public void chop() throws Exception {
+    new Set(Prop.PARSER, "json").execute(context);
+    write("{ \"a\" : [ \" x \", \" \" ] }");
+    new CreateDB(NAME, TEMP).execute(context);
+    assertEquals("x|", new XQuery("string-join(//value, '|')").execute(context));
+    assertEquals("2", new XQuery("count(//value)").execute(context));
+    assertEquals("1", new XQuery("count(//text())").execute(context));
+  }
+
+  /**
+   * Compares the documents created by the parser with the results of the
+   * specified function.
+   * @param docs documents
+   * @param options parser options
+   * @param func function
+   * @throws IOException I/O exception
+   */
+  private static void compare(final String[] docs, final String options,
+      final String func) throws IOException {
+
+    new Set(Prop.PARSER, "json").execute(context);
+    new Set(Prop.PARSEROPT, options).execute(context);
+    for(final String doc : docs) {
+      write(doc);
+      String expected;
+      try {
+        final String string = '"' + doc.replace("\"", "\"\"") + '"';
+        expected = new XQuery(func + '(' + string + ')').execute(context);
+      } catch(final BaseXException ex) {
+        expected = null;
+      }
+      try {
+        new CreateDB(NAME, TEMP).execute(context);
+        final String result = new XQuery(".").execute(context);
+        assertEquals("Input: " + doc, expected, result);
+      } catch(final BaseXException ex) {
+        if(expected != null) fail("Input: " + doc + '\n' + ex.getMessage());
+      }
+    }
+  }
+
+  /**
+   * Writes the specified test file.
+   * @param data data to write
+   * @throws IOException I/O exception
+   */
+  private static void write(final String data) throws IOException {
+    new IOFile(TEMP).write(token(data));
+  }
+}
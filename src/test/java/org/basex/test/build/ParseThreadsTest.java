@@ -0,0 +1,190 @@
+package org.basex.test.build;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+
+import org.basex.core.*;
+import org.basex.core.cmd.*;
+import org.basex.io.*;
+import org.basex.test.*;
+import org.basex.util.*;
+import org.junit.*;
+
+/**
+ * Tests the parallel parsing of directories ({@link Prop#PARSETHREADS}).
+ *
+ * @author BaseX Team 2005-12, BSD License
+ * @author Christian Gruen
+ */
+public final class ParseThreadsTest extends SandboxTest {
+  /** Test directory. */
+  private static final IOFile DIR = new IOFile(sandbox(), "input");
+  /** Test query. */
+  private static final String QUERY = "for $d in db:open('" + NAME + "') " +
+      "return (document-uri($d), $d, $d//*/in-scope-prefixes(.))";
+  /** Number of test files. */
+  private static final int FILES = 200;
+
+  /**
+   * Creates the test documents.
+   * @throws IOException I/O exception
+   */
+  @BeforeClass
+  public static void init() throws IOException {
+    final IOFile sub = new IOFile(DIR, "sub");
+    sub.md();
+    for(int f = 0; f < FILES; f++) {
+      final TokenBuilder tb = new TokenBuilder();
+      tb.add("<?xml version='1.0'?><!--c" + f + "--><?pi " + f + "?>");
+      tb.add("<a xmlns='A' xmlns:p='P' id='" + f + "'>");
+      for(int i = 0; i < f % 7; i++) {
+        tb.add("<p:b n='" + i + "' p:m='x'>t<c/><!--d--><d><?e?>" + i + "</d>u</p:b>");
+      }
+      tb.add("<e xmlns=''/></a>");
+      new IOFile(f % 3 == 0 ? sub : DIR, f + IO.XMLSUFFIX).write(tb.finish());
+    }
+  }
+
+  /**
+   * Deletes the test documents.
+   */
+  @AfterClass
+  public static void finish() {
+    DIR.delete();
+  }
+
+  /**
+   * Resets the options and drops the database.
+   * @throws BaseXException database exception
+   */
+  @After
+  public void tearDown() throws BaseXException {
+    new Set(Prop.PARSETHREADS, 1).execute(context);
+    new Set(Prop.SKIPCORRUPT, false).execute(context);
+    new Set(Prop.MAINMEM, false).execute(context);
+    new DropDB(NAME).execute(context);
+  }
+
+  /**
+   * Compares databases that have been created sequentially and in parallel.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void create() throws BaseXException {
+    final String expected = create(DIR.path(), 1);
+    assertEquals(FILES, Integer.parseInt(new XQuery("count(/)").execute(context)));
+    assertEquals(expected, create(DIR.path(), 4));
+    assertEquals(new InfoDB().execute(context).replaceAll(".*(Time|Size).*\n", ""),
+        info(DIR.path(), 1));
+  }
+
+  /**
+   * Compares main memory databases that have been created sequentially and in parallel.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void mainmem() throws BaseXException {
+    new Set(Prop.MAINMEM, true).execute(context);
+    assertEquals(create(DIR.path(), 1), create(DIR.path(), 3));
+  }
+
+  /**
+   * Adds a directory and archives to an existing database.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void add() throws BaseXException {
+    final String[] inputs = { DIR.path(), "src/test/resources/xml.zip",
+        "src/test/resources/xml.gz", "src/test/resources/dir" };
+    final String[] results = new String[2];
+    for(int r = 0; r < results.length; r++) {
+      new Set(Prop.PARSETHREADS, r * 4).execute(context);
+      new CreateDB(NAME).execute(context);
+      for(final String in : inputs) new Add("x", in).execute(context);
+      results[r] = new XQuery(QUERY).execute(context);
+    }
+    assertEquals(results[0], results[1]);
+  }
+
+  /**
+   * Skips corrupt files.
+   * @throws IOException I/O exception
+   */
+  @Test
+  public void skipCorrupt() throws IOException {
+    final IOFile corrupt = new IOFile(DIR, "corrupt.xml");
+    corrupt.write(Token.token("<a>"));
+    try {
+      new Set(Prop.SKIPCORRUPT, true).execute(context);
+      final String expected = create(DIR.path(), 1);
+      new Set(Prop.PARSETHREADS, 4).execute(context);
+      final CreateDB cmd = new CreateDB(NAME, DIR.path());
+      cmd.execute(context);
+      assertTrue(cmd.info().contains(corrupt.path()));
+      assertEquals(expected, new XQuery(QUERY).execute(context));
+
+      new Set(Prop.SKIPCORRUPT, false).execute(context);
+      try {
+        create(DIR.path(), 4);
+        fail("Corrupt file was not rejected.");
+      } catch(final BaseXException ex) {
+        /* expected */
+      }
+    } finally {
+      corrupt.delete();
+    }
+  }
+
+  /**
+   * Streams large documents in their input order.
+   * @throws IOException I/O exception
+   */
+  @Test
+  public void large() throws IOException {
+    final IOFile large = new IOFile(DIR, "large.xml");
+    final TokenBuilder tb = new TokenBuilder("<large>");
+    for(int i = 0; i < 300000; i++) tb.add("<x>").add(Token.token(i)).add("</x>");
+    large.write(tb.add("</large>").finish());
+    try {
+      final String query = "for $d in db:open('" + NAME + "') " +
+          "return (document-uri($d), count($d//node()))";
+      new Set(Prop.PARSETHREADS, 1).execute(context);
+      new CreateDB(NAME, DIR.path()).execute(context);
+      final String expected = new XQuery(query).execute(context);
+      new Set(Prop.PARSETHREADS, 4).execute(context);
+      new CreateDB(NAME, DIR.path()).execute(context);
+      assertEquals(expected, new XQuery(query).execute(context));
+    } finally {
+      large.delete();
+    }
+  }
+
+  /**
+   * Creates a database and returns the result of the test query.
+   * @param input input
+   * @param threads number of parser threads
+   * @return query result
+   * @throws BaseXException database exception
+   */
+  private static String create(final String input, final int threads)
+      throws BaseXException {
+    new Set(Prop.PARSETHREADS, threads).execute(context);
+    new CreateDB(NAME, input).execute(context);
+    return new XQuery(QUERY).execute(context);
+  }
+
+  /**
+   * Creates a database and returns the database information without
+   * timestamps and file sizes.
+   * @param input input
+   * @param threads number of parser threads
+   * @return database information
+   * @throws BaseXException database exception
+   */
+  private static String info(final String input, final int threads)
+      throws BaseXException {
+    create(input, threads);
+    return new InfoDB().execute(context).replaceAll(".*(Time|Size).*\n", "");
+  }
+}
@@ -13,6 +13,7 @@ import org.basex.io.*;
 import org.basex.server.*;
 import org.basex.test.*;
 import org.basex.util.*;
+import org.basex.util.list.*;
 import org.junit.*;
 
 /**
@@ -32,6 +33,8 @@ public class CommandTest extends SandboxTest {
   static final String NAME2 = NAME + '2';
   /** Socket reference. */
   static Session session;
+  /** Database directory. */
+  static IOFile dbpath;
 
   /** Starts the server.
    * @throws IOException I/O exception
@@ -39,6 +42,7 @@ public class CommandTest extends SandboxTest {
   @BeforeClass
   public static void start() throws IOException {
     session = new LocalSession(context);
+    dbpath = context.mprop.dbpath();
     cleanUp();
   }
 
@@ -129,6 +133,61 @@ public class CommandTest extends SandboxTest {
     ok(new DropBackup(NAME));
   }
 
+  /**
+   * Creates and restores incremental backups.
+   * @throws IOException I/O exception
+   */
+  @Test
+  public final void createIncrementalBackup() throws IOException {
+    ok(new CreateDB(NAME, FILE));
+    ok(new CreateBackup(NAME, true));
+    final IOFile full = backdate(0);
+    ok(new Add("a.xml", "<a/>"));
+    ok(new CreateBackup(NAME, true));
+    final IOFile incr = backdate(1);
+    ok(new Add("b.xml", "<b/>"));
+    ok(new CreateBackup(NAME, true));
+    ok(new Add("c.xml", "<c/>"));
+
+    // check the chain of backups
+    final IOFile last = latest();
+    assertEquals("", new Backup(full).parent());
+    assertEquals(full.dbname(), new Backup(incr).parent());
+    assertEquals(incr.dbname(), new Backup(last).parent());
+    assertTrue(incr.length() < full.length());
+
+    ok(new Restore(NAME));
+    assertEquals("3", ok(new XQuery("count(db:open('" + NAME + "'))")));
+    assertTrue(ok(new ShowBackups()).contains(NAME + '-'));
+    ok(new DropBackup(NAME));
+    no(new Restore(NAME));
+  }
+
+  /**
+   * Renames the latest backup of the test database to a timestamp in the past.
+   * As backups are named after the current second, no new backup would be created
+   * within the same second.
+   * @param sec seconds of the new timestamp
+   * @return renamed backup
+   */
+  private static IOFile backdate(final int sec) {
+    final IOFile trg = new IOFile(dbpath, NAME + "-2000-01-01-00-00-0" + sec + IO.ZIPSUFFIX);
+    assertTrue(latest().rename(trg));
+    return trg;
+  }
+
+  /**
+   * Returns the latest backup of the test database.
+   * @return backup
+   */
+  private static IOFile latest() {
+    final StringList list = new StringList();
+    for(final IOFile f : dbpath.children()) {
+      if(f.name().matches(NAME + DateTime.PATTERN + IO.ZIPSUFFIX)) list.add(f.path());
+    }
+    return new IOFile(list.sort(false, false).get(0));
+  }
+
   /** Command test. */
   @Test
   public final void createDB() {
@@ -433,6 +433,37 @@ public final class LockingTest extends SandboxTest {
     th2.release();
   }
 
+  /**
+   * Lock statistics.
+   * @throws InterruptedException Got interrupted.
+   */
+  @Test
+  public void statsTest() throws InterruptedException {
+    mprop.set(MainProp.LOCKSTATS, false);
+    final CountDownLatch sync = new CountDownLatch(1), test = new CountDownLatch(1);
+    final LockTester th1 = new LockTester(null, objects, NONE, sync);
+    th1.start();
+    assertTrue(sync.await(WAIT, TimeUnit.MILLISECONDS));
+    th1.release();
+    th1.join();
+    assertFalse("No statistics expected.", locks.info().contains(Text.LOCK_ACQUIRED));
+
+    mprop.set(MainProp.LOCKSTATS, true);
+    try {
+      final LockTester th2 = new LockTester(null, NONE, objects, test);
+      th2.start();
+      assertTrue(test.await(WAIT, TimeUnit.MILLISECONDS));
+      assertTrue(locks.info().contains(Text.LOCK_RUNNING + Text.COLS + 1));
+      th2.release();
+      th2.join();
+      final String info = locks.info();
+      assertTrue("Statistics expected.", info.contains(Text.LOCK_ACQUIRED + Text.COLS + 1));
+      assertTrue(info.contains(Text.LOCK_RUNNING + Text.COLS + 0));
+    } finally {
+      mprop.set(MainProp.LOCKSTATS, false);
+    }
+  }
+
   /**
    * Force deadlock.
    * @throws InterruptedException Got interrupted.
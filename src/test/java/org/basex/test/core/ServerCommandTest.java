@@ -31,6 +31,7 @@ public final class ServerCommandTest extends CommandTest {
   public static void start() throws IOException {
     server = createServer();
     session = createClient();
+    dbpath = server.context.mprop.dbpath();
     cleanUp();
   }
 
@@ -35,6 +35,7 @@ public class XMLCommandTest extends SandboxTest {
     ok("<copy name='X' newname='X'/>");
 
     ok("<create-backup name='X'/>");
+    ok("<create-backup name='X' incremental='true'/>");
 
     ok("<create-db name='X'/>");
     ok("<create-db name='X'>X</create-db>");
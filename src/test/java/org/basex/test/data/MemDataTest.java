@@ -108,6 +108,36 @@ public class MemDataTest extends SandboxTest {
     assertTrue("Node not deleted", r.isEmpty());
   }
 
+  /**
+   * Compares texts and attribute values without materializing them.
+   * @throws BaseXException query exception
+   */
+  @Test
+  public void textValues() throws BaseXException {
+    new XQuery("insert node <d n='123' m='an attribute value'>" +
+        "a text that is long enough to be compressed</d> into /a").execute(context);
+    final Data d = context.data();
+    final byte[][] tokens = { Token.EMPTY, Token.token("test"), Token.token("test3"),
+        Token.token("123"), Token.token("an attribute value"),
+        Token.token("a text that is long enough to be compressed"),
+        Token.token("a text that is long enough"), Token.token("zzz") };
+    for(int pre = 0; pre < d.meta.size; pre++) {
+      final int k = d.kind(pre);
+      if(k != Data.TEXT && k != Data.ATTR) continue;
+      final boolean text = k == Data.TEXT;
+      final byte[] value = d.text(pre, text);
+      assertEquals(Token.hash(value), d.textHash(pre, text));
+      for(final byte[] token : tokens) {
+        assertEquals(Token.eq(value, token), d.textEq(pre, text, token));
+        assertEquals(Integer.signum(Token.diff(value, token)),
+            Integer.signum(d.textDiff(pre, text, token)));
+      }
+    }
+    final String r = new XQuery("//d[text() = 'a text that is long enough to be " +
+        "compressed'][@n = '123'][@m > 'an']/@n/string()").execute(context);
+    assertEquals("123", r);
+  }
+
   /**
    * Try to find non-existing node.
    * @throws BaseXException query exception
@@ -0,0 +1,111 @@
+package org.basex.test.data;
+
+import static org.junit.Assert.*;
+
+import org.basex.core.*;
+import org.basex.core.cmd.*;
+import org.basex.io.random.*;
+import org.basex.test.*;
+import org.junit.*;
+
+/**
+ * Tests the shared table page cache ({@link Prop#TABLECACHE}).
+ *
+ * @author BaseX Team 2005-12, BSD License
+ * @author Christian Gruen
+ */
+public final class TableCacheTest extends SandboxTest {
+  /** Test file. */
+  private static final String FILE = "src/test/resources/xmark.xml";
+  /** Test query. */
+  private static final String QUERY =
+      "count(//*), sum(for $t in //text() return string-length($t))";
+
+  /**
+   * Drops the test database.
+   * @throws BaseXException database exception
+   */
+  @After
+  public void tearDown() throws BaseXException {
+    new DropDB(NAME).execute(context);
+    new Set(Prop.TABLECACHE, 0).execute(context);
+  }
+
+  /**
+   * Compares query results with and without the shared cache.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void read() throws BaseXException {
+    new CreateDB(NAME, FILE).execute(context);
+    final String expected = new XQuery(QUERY).execute(context);
+    new Close().execute(context);
+
+    new Set(Prop.TABLECACHE, 1).execute(context);
+    new CreateDB(NAME, FILE).execute(context);
+    assertEquals(expected, new XQuery(QUERY).execute(context));
+    assertEquals(expected, new XQuery(QUERY).execute(context));
+  }
+
+  /**
+   * Checks that cached blocks are not returned after updates.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void update() throws BaseXException {
+    new Set(Prop.TABLECACHE, 1).execute(context);
+    new CreateDB(NAME, FILE).execute(context);
+    final String count = new XQuery("count(//*)").execute(context);
+    new XQuery("insert node <new>X</new> into /*").execute(context);
+    assertEquals("X", new XQuery("string(//new)").execute(context));
+    new XQuery("delete node //new").execute(context);
+    assertEquals(count, new XQuery("count(//*)").execute(context));
+  }
+
+  /**
+   * Checks that a scan over many blocks does not evict blocks that have been
+   * requested repeatedly.
+   */
+  @Test
+  public void scan() {
+    final TableCache cache = TableCache.get(1);
+    final int hot = cache.id(), cold = cache.id();
+    final byte[] data = new byte[1];
+    for(int b = 0; b < 8; b++) {
+      cache.add(hot, b, data);
+      assertNotNull(cache.get(hot, b));
+    }
+    for(int b = 0; b < 100000; b++) cache.add(cold, b, data);
+    for(int b = 0; b < 8; b++) assertNotNull(cache.get(hot, b));
+  }
+
+  /**
+   * Runs concurrent readers on the cached table.
+   * @throws Exception exception
+   */
+  @Test
+  public void concurrent() throws Exception {
+    new Set(Prop.TABLECACHE, 1).execute(context);
+    new CreateDB(NAME, FILE).execute(context);
+    final String expected = new XQuery(QUERY).execute(context);
+
+    final String[] results = new String[8];
+    final Thread[] threads = new Thread[results.length];
+    for(int t = 0; t < results.length; t++) {
+      final int n = t;
+      threads[t] = new Thread() {
+        @Override
+        public void run() {
+          try {
+            results[n] = new XQuery(QUERY).execute(context);
+          } catch(final BaseXException ex) {
+            results[n] = ex.getMessage();
+          }
+        }
+      };
+    }
+    for(final Thread t : threads) t.start();
+    for(final Thread t : threads) t.join();
+    for(final String r : results) assertEquals(expected, r);
+  }
+}
@@ -0,0 +1,195 @@
+package org.basex.test.data;
+
+import static org.junit.Assert.*;
+
+import org.basex.core.*;
+import org.basex.core.cmd.*;
+import org.basex.data.*;
+import org.basex.test.*;
+import org.basex.util.*;
+import org.junit.*;
+
+/**
+ * Tests the compressed table format ({@link Prop#TABLECOMPRESS}).
+ *
+ * @author BaseX Team 2005-12, BSD License
+ * @author Christian Gruen
+ */
+public final class TableCompressTest extends SandboxTest {
+  /** Test file. */
+  private static final String FILE = "src/test/resources/xmark.xml";
+  /** Test query. */
+  private static final String QUERY = "count(//*), count(//@*), " +
+      "sum(for $t in //text() return string-length($t)), " +
+      "string-join(for $n in //node() return string(node-name($n)), ','), " +
+      "for $n in (//*)[position() mod 100 = 1] return count($n/ancestor::node())";
+
+  /**
+   * Drops the test database.
+   * @throws BaseXException database exception
+   */
+  @After
+  public void tearDown() throws BaseXException {
+    new DropDB(NAME).execute(context);
+    new Set(Prop.TABLECOMPRESS, false).execute(context);
+    new Set(Prop.TABLECACHE, 0).execute(context);
+    new Set(Prop.AUTOFLUSH, true).execute(context);
+  }
+
+  /**
+   * Compares query results of a compressed and an uncompressed table.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void read() throws BaseXException {
+    final String expected = create(false);
+    assertEquals(expected, create(true));
+    assertTrue(context.data().meta.compress);
+    assertTrue(context.data().meta.dbfile(DataText.DATATBZ).exists());
+    assertFalse(context.data().meta.dbfile(DataText.DATATBL).exists());
+
+    // reopen database
+    new Close().execute(context);
+    new Open(NAME).execute(context);
+    assertEquals(expected, new XQuery(QUERY).execute(context));
+
+    // use shared cache
+    new Close().execute(context);
+    new Set(Prop.TABLECACHE, 1).execute(context);
+    new Open(NAME).execute(context);
+    assertEquals(expected, new XQuery(QUERY).execute(context));
+    assertEquals(expected, new XQuery(QUERY).execute(context));
+  }
+
+  /**
+   * Converts the table to the standard format when it is updated.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void update() throws BaseXException {
+    create(true);
+    final String count = new XQuery("count(//*)").execute(context);
+    new XQuery("insert node <new>X</new> into /*").execute(context);
+    assertFalse(context.data().meta.compress);
+    assertEquals("X", new XQuery("string(//new)").execute(context));
+    new XQuery("delete node //new").execute(context);
+    assertEquals(count, new XQuery("count(//*)").execute(context));
+
+    // reopen database
+    new Close().execute(context);
+    new Open(NAME).execute(context);
+    assertFalse(context.data().meta.compress);
+    assertFalse(context.data().meta.dbfile(DataText.DATATBZ).exists());
+    assertEquals(count, new XQuery("count(//*)").execute(context));
+  }
+
+  /**
+   * Keeps the compressed table until the updated meta data has been written.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void flush() throws BaseXException {
+    create(true);
+    assertTrue(new InfoDB().execute(context).contains(Text.TABLE_COMPRESSION));
+    new Set(Prop.AUTOFLUSH, false).execute(context);
+    new XQuery("insert node <new>X</new> into /*").execute(context);
+    final MetaData meta = context.data().meta;
+    assertFalse(meta.compress);
+    assertTrue(meta.dbfile(DataText.DATATBL).exists());
+    assertTrue(meta.dbfile(DataText.DATATBZ).exists());
+
+    new Flush().execute(context);
+    assertFalse(meta.dbfile(DataText.DATATBZ).exists());
+    assertFalse(meta.dbfile(DataText.DATATBZ + 'i').exists());
+    new Close().execute(context);
+    new Open(NAME).execute(context);
+    assertFalse(context.data().meta.compress);
+    assertEquals("X", new XQuery("string(//new)").execute(context));
+  }
+
+  /**
+   * Creates empty and small databases.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void small() throws BaseXException {
+    new Set(Prop.TABLECOMPRESS, true).execute(context);
+    new CreateDB(NAME).execute(context);
+    assertEquals("0", new XQuery("count(db:open('" + NAME + "'))").execute(context));
+    new Add("a.xml", "<a b='c'>d</a>").execute(context);
+    assertEquals("<a b=\"c\">d</a>",
+        new XQuery("db:open('" + NAME + "')").execute(context));
+
+    new CreateDB(NAME, "<a b='c'>d</a>").execute(context);
+    assertEquals("<a b=\"c\">d</a>", new XQuery(".").execute(context));
+  }
+
+  /**
+   * Runs concurrent readers on the compressed table.
+   * @throws Exception exception
+   */
+  @Test
+  public void concurrent() throws Exception {
+    final String expected = create(true);
+    final String[] results = new String[8];
+    final Thread[] threads = new Thread[results.length];
+    for(int t = 0; t < results.length; t++) {
+      final int n = t;
+      threads[t] = new Thread() {
+        @Override
+        public void run() {
+          try {
+            results[n] = new XQuery(QUERY).execute(context);
+          } catch(final BaseXException ex) {
+            results[n] = ex.getMessage();
+          }
+        }
+      };
+    }
+    for(final Thread t : threads) t.start();
+    for(final Thread t : threads) t.join();
+    for(final String r : results) assertEquals(expected, r);
+  }
+
+  /**
+   * Compares the table sizes and the read throughput of both formats.
+   * @throws BaseXException database exception
+   */
+  @Test
+  @Ignore("Benchmark")
+  public void benchmark() throws BaseXException {
+    final TokenBuilder doc = new TokenBuilder("<x>");
+    for(int i = 0; i < 500000; i++) {
+      doc.add("<a id='" + i + "'><b>" + i % 100 + "</b><c/></a>");
+    }
+    final String input = doc.add("</x>").toString();
+    final String query = "sum(for $n in //node() return string-length(name($n))), " +
+        "count(//text()[. = '1'])";
+    new Set(Prop.TEXTINDEX, false).execute(context);
+    for(final boolean compress : new boolean[] { false, true, false, true }) {
+      new Set(Prop.TABLECOMPRESS, compress).execute(context);
+      new CreateDB(NAME, input).execute(context);
+      final Data data = context.data();
+      final String file = compress ? DataText.DATATBZ : DataText.DATATBL;
+      final long size = data.meta.dbfile(file).length();
+
+      final Performance perf = new Performance();
+      for(int r = 0; r < 5; r++) new XQuery(query).execute(context);
+      Util.outln((compress ? "compressed" : "standard") + ": " + data.meta.size +
+          " nodes, table: " + Performance.format(size) + ", 5 scans: " + perf);
+    }
+    new Set(Prop.TEXTINDEX, true).execute(context);
+  }
+
+  /**
+   * Creates the test database and returns the result of the test query.
+   * @param compress compress table
+   * @return query result
+   * @throws BaseXException database exception
+   */
+  private static String create(final boolean compress) throws BaseXException {
+    new Set(Prop.TABLECOMPRESS, compress).execute(context);
+    new CreateDB(NAME, FILE).execute(context);
+    return new XQuery(QUERY).execute(context);
+  }
+}
@@ -0,0 +1,136 @@
+package org.basex.test.index;
+
+import static org.basex.query.func.Function.*;
+import static org.junit.Assert.*;
+
+import org.basex.core.*;
+import org.basex.core.cmd.*;
+import org.basex.test.*;
+import org.junit.*;
+
+/**
+ * Tests the incremental updates of the full-text index ({@link Prop#UPDINDEX}).
+ *
+ * @author BaseX Team 2005-12, BSD License
+ * @author Christian Gruen
+ */
+public final class FTIndexUpdateTest extends SandboxTest {
+  /** Search terms. */
+  private static final String[] TERMS = {
+    "apple", "banana", "cherry", "kiwi", "split", "ban.* using wildcards",
+    "bananna using fuzzy", "apple ftand banana"
+  };
+
+  /**
+   * Creates the test database.
+   * @throws BaseXException database exception
+   */
+  @Before
+  public void init() throws BaseXException {
+    new Set(Prop.UPDINDEX, true).execute(context);
+    new Set(Prop.FTINDEX, true).execute(context);
+    new CreateDB(NAME, "<x><a>apple banana</a><a>cherry apple</a><b>banana</b></x>").
+      execute(context);
+  }
+
+  /**
+   * Drops the test database.
+   * @throws BaseXException database exception
+   */
+  @After
+  public void finish() throws BaseXException {
+    new DropDB(NAME).execute(context);
+    new Set(Prop.UPDINDEX, false).execute(context);
+    new Set(Prop.FTINDEX, false).execute(context);
+  }
+
+  /**
+   * Inserts, replaces and deletes texts.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void update() throws BaseXException {
+    check();
+    query("insert node <a>banana split</a> into /x");
+    query("replace value of node /x/a[1] with 'kiwi kiwi'");
+    query("replace node /x/b with <b>apple split<c>cherry</c></b>");
+    check();
+    query("delete node /x/a[. = 'cherry apple']");
+    query("insert node <a>bananas and apples</a> before /x/a[1]");
+    new Add("y.xml", "<y>cherry kiwi banana</y>").execute(context);
+    check();
+
+    // reopen database with pending updates
+    new Close().execute(context);
+    new Open(NAME).execute(context);
+    check();
+    query("delete node //text()[contains(., 'kiwi')]");
+    query("rename node /x/b as 'c'");
+    check();
+
+    // merge pending updates
+    new Optimize().execute(context);
+    check();
+    query("insert node <a>apple</a> into /y");
+    check();
+  }
+
+  /**
+   * Compares the results of full-text index requests with the results of
+   * sequential requests on a main-memory copy of the database.
+   * @throws BaseXException database exception
+   */
+  private static void check() throws BaseXException {
+    assertTrue(context.data().meta.ftxtindex);
+    for(final String term : TERMS) {
+      final String index = query(string(_DB_OPEN.args(NAME) +
+          "//text()[. contains text " + term(term) + ']'));
+      final String seq = query(string("for $d in " + _DB_OPEN.args(NAME) +
+          " return (copy $c := $d modify () return $c)//text()[. contains text " +
+          term(term) + ']'));
+      assertEquals(term, seq, index);
+      if(term.indexOf(' ') == -1) {
+        assertEquals(term, seq, query(string(_FT_SEARCH.args(_DB_OPEN.args(NAME, "") +
+            "[1]", term))));
+      }
+    }
+    // compare index entries
+    final String tokens = "for $t in " + _DB_OPEN.args(NAME) + "//text() ! " +
+      _FT_TOKENIZE.args(" .") + " let $k := $t group by $k " +
+      "order by string-length($k), $k return $k || '/' || count($t)";
+    assertEquals(query(string(tokens)), query(string("for $e in " +
+      _FT_TOKENS.args(NAME, "") + " return $e || '/' || $e/@count")));
+  }
+
+  /**
+   * Returns a full-text selection for the specified term.
+   * @param term term, optionally followed by match options
+   * @return selection
+   */
+  private static String term(final String term) {
+    final int i = term.indexOf(' ');
+    if(i == -1) return '"' + term + '"';
+    final String t = term.substring(0, i), o = term.substring(i + 1);
+    return o.startsWith("ftand") ? '"' + t + "\" ftand \"" + o.substring(6) + '"' :
+      '"' + t + "\" " + o;
+  }
+
+  /**
+   * Returns a query that joins the specified results.
+   * @param query query
+   * @return query
+   */
+  private static String string(final String query) {
+    return "string-join(" + query + ", ' ')";
+  }
+
+  /**
+   * Runs the specified query.
+   * @param query query
+   * @return result
+   * @throws BaseXException database exception
+   */
+  private static String query(final String query) throws BaseXException {
+    return new XQuery(query).execute(context);
+  }
+}
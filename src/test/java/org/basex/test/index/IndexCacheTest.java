@@ -21,7 +21,7 @@ public final class IndexCacheTest {
   /** Set up method. */
   @Before
   public void setUp() {
-    cache = new IndexCache();
+    cache = new IndexCache(1 << 10);
   }
 
   /** Test for method {@link IndexCache#get(byte[])}. */
@@ -77,6 +77,32 @@ public final class IndexCacheTest {
     assertNull(cache.get(key));
   }
 
+  /** Test for the eviction of least recently used entries. */
+  @Test
+  public void testEvict() {
+    cache = new IndexCache(16);
+    final byte[] first = token("keyEvict");
+    cache.add(first, 1, 1L);
+    for(int i = 0; i < 4000; ++i) {
+      cache.add(token("keyEvict" + i), i, i);
+      // keep first entry alive
+      assertNotNull(cache.get(first));
+    }
+    assertTrue(cache.size() < 4000);
+    assertNull(cache.get(token("keyEvict" + 0)));
+    assertCacheEntry(token("keyEvict" + 3999), 3999, 3999L);
+  }
+
+  /** Test for a disabled cache. */
+  @Test
+  public void testDisabled() {
+    cache = new IndexCache(0);
+    final IndexEntry entry = cache.add(token("keyDisabled"), 10, 12L);
+    assertEquals(10, entry.size);
+    assertNull(cache.get(token("keyDisabled")));
+    assertEquals(0, cache.size());
+  }
+
   /**
    * Test that new records can be continuously added without hitting
    * {@link OutOfMemoryError}.
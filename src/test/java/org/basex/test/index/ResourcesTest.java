@@ -0,0 +1,202 @@
+package org.basex.test.index;
+
+import static org.basex.query.func.Function.*;
+import static org.junit.Assert.*;
+
+import java.util.*;
+import java.util.List;
+import java.util.Set;
+
+import org.basex.core.*;
+import org.basex.core.cmd.*;
+import org.basex.index.resource.*;
+import org.basex.test.*;
+import org.junit.*;
+
+/**
+ * Tests the incrementally updated document paths of the {@link Resources} index.
+ *
+ * @author BaseX Team 2005-12, BSD License
+ * @author Christian Gruen
+ */
+public final class ResourcesTest extends SandboxTest {
+  /** Expected document paths. */
+  private final List<String> paths = new ArrayList<String>();
+
+  /**
+   * Creates the test database.
+   * @throws BaseXException database exception
+   */
+  @Before
+  public void init() throws BaseXException {
+    new CreateDB(NAME).execute(context);
+  }
+
+  /**
+   * Drops the test database.
+   * @throws BaseXException database exception
+   */
+  @After
+  public void finish() throws BaseXException {
+    new DropDB(NAME).execute(context);
+  }
+
+  /**
+   * Adds, deletes and renames documents after the paths have been sorted.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void update() throws BaseXException {
+    for(int i = 0; i < 40; i++) add("d" + i % 3 + "/x" + i * 7 % 40 + ".xml");
+    add("d1/x7.xml");
+    add("d1.xml");
+    add("d1-2/x.xml");
+    check();
+
+    // updates after sort
+    add("d0/x0.xml");
+    add("a.xml");
+    add("e/f/g.xml");
+    delete("d2/x9.xml");
+    delete("d1/x7.xml");
+    rename("d0/x14.xml", "c/x.xml");
+    rename("d1", "a");
+    check();
+
+    // reopen database with stored path order
+    new Close().execute(context);
+    new Open(NAME).execute(context);
+    check();
+    add("b/x.xml");
+    delete("d0");
+    check();
+
+    // rebuild path order
+    new Optimize().execute(context);
+    check();
+  }
+
+  /**
+   * Adds documents with identical paths.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void duplicates() throws BaseXException {
+    add("b.xml");
+    add("a.xml");
+    add("a.xml");
+    check();
+    try {
+      eval(DOC.args(NAME + "/a.xml"));
+      fail("Multiple documents expected.");
+    } catch(final BaseXException ex) {
+      assertTrue(ex.getMessage(), ex.getMessage().contains("BXDB0006"));
+    }
+
+    // insert duplicates after sort
+    add("c.xml");
+    add("a.xml");
+    add("c.xml");
+    check();
+    assertEquals("<x/>", eval(DOC.args(NAME + "/b.xml")));
+  }
+
+  /**
+   * Adds a document.
+   * @param path path
+   * @throws BaseXException database exception
+   */
+  private void add(final String path) throws BaseXException {
+    new Add(path, "<x/>").execute(context);
+    paths.add(path);
+  }
+
+  /**
+   * Deletes all documents starting with the specified path.
+   * @param path path
+   * @throws BaseXException database exception
+   */
+  private void delete(final String path) throws BaseXException {
+    new Delete(path).execute(context);
+    for(final Iterator<String> it = paths.iterator(); it.hasNext();) {
+      final String p = it.next();
+      if(p.equals(path) || p.startsWith(path + '/')) it.remove();
+    }
+  }
+
+  /**
+   * Renames all documents starting with the specified path.
+   * @param path path
+   * @param target new path
+   * @throws BaseXException database exception
+   */
+  private void rename(final String path, final String target) throws BaseXException {
+    new Rename(path, target).execute(context);
+    for(int i = 0; i < paths.size(); i++) {
+      final String p = paths.get(i);
+      if(p.equals(path)) paths.set(i, target);
+      else if(p.startsWith(path + '/')) paths.set(i, target + p.substring(path.length()));
+    }
+  }
+
+  /**
+   * Compares the database paths with the expected paths.
+   * @throws BaseXException database exception
+   */
+  private void check() throws BaseXException {
+    final List<String> sorted = new ArrayList<String>(paths);
+    Collections.sort(sorted);
+    assertEquals(list(sorted, ""), query(_DB_LIST.args(NAME)));
+
+    final Set<String> dirs = new TreeSet<String>();
+    for(final String p : sorted) {
+      final int i = p.indexOf('/');
+      if(i != -1) dirs.add(p.substring(0, i));
+    }
+    for(final String dir : dirs) {
+      assertEquals(list(sorted, dir + '/'), query(_DB_LIST.args(NAME, dir)));
+    }
+    for(final String p : sorted) {
+      assertEquals(String.valueOf(Collections.frequency(sorted, p)),
+          eval(COUNT.args(_DB_OPEN.args(NAME, p))));
+      assertEquals("true", eval(_DB_IS_XML.args(NAME, p)));
+    }
+    assertEquals("false", eval(_DB_IS_XML.args(NAME, "d1/x99.xml")));
+  }
+
+  /**
+   * Returns all paths with the specified prefix as string.
+   * @param sorted sorted paths
+   * @param prefix prefix
+   * @return string
+   */
+  private static String list(final List<String> sorted, final String prefix) {
+    final StringBuilder sb = new StringBuilder();
+    for(final String p : sorted) {
+      if(!p.startsWith(prefix)) continue;
+      if(sb.length() != 0) sb.append(' ');
+      sb.append(p);
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Runs the specified query, sorting the results.
+   * @param query query
+   * @return result
+   * @throws BaseXException database exception
+   */
+  private static String query(final String query) throws BaseXException {
+    return eval("string-join(for $s in " + query + " order by $s return $s, ' ')");
+  }
+
+  /**
+   * Runs the specified query.
+   * @param query query
+   * @return result
+   * @throws BaseXException database exception
+   */
+  private static String eval(final String query) throws BaseXException {
+    return new XQuery(query).execute(context);
+  }
+}
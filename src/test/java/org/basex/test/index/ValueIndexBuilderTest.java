@@ -0,0 +1,91 @@
+package org.basex.test.index;
+
+import static org.basex.query.func.Function.*;
+import static org.junit.Assert.*;
+
+import org.basex.core.*;
+import org.basex.core.cmd.*;
+import org.basex.core.parse.Commands.CmdIndex;
+import org.basex.test.*;
+import org.junit.*;
+
+/**
+ * Tests the parallel construction of value indexes ({@link Prop#INDEXTHREADS}).
+ *
+ * @author BaseX Team 2005-12, BSD License
+ * @author Christian Gruen
+ */
+public final class ValueIndexBuilderTest extends SandboxTest {
+  /** Test document with more than 16 * 4096 nodes. */
+  private static final String DOC;
+  /** Query for all index entries. */
+  private static final String ENTRIES = "string-join(for $e in " +
+      _INDEX_TEXTS.args(NAME, "") + " return $e || '/' || $e/@count, ' ')";
+  /** Query for index hits. */
+  private static final String HITS = "sum(for $i in (0 to 1009) return " +
+      "sum(" + _DB_TEXT.args(NAME, " string($i)") + "/../count(preceding::*)))";
+
+  static {
+    final StringBuilder sb = new StringBuilder("<a>");
+    for(int i = 1; i <= 25000; i++) {
+      sb.append("<b c='").append(i % 997).append("'>").append(i % 1009).append("</b>");
+    }
+    DOC = sb.append("</a>").toString();
+  }
+
+  /**
+   * Drops the test database.
+   * @throws BaseXException database exception
+   */
+  @After
+  public void tearDown() throws BaseXException {
+    new DropDB(NAME).execute(context);
+    new Set(Prop.INDEXTHREADS, 1).execute(context);
+  }
+
+  /**
+   * Compares the index structures built with one and with multiple threads.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void parallel() throws BaseXException {
+    final String[] expected = build(1);
+    assertArrayEquals(expected, build(4));
+    assertArrayEquals(expected, build(16));
+  }
+
+  /**
+   * Compares the index structures built with one and with multiple threads,
+   * with updatable indexes.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void parallelUpdindex() throws BaseXException {
+    new Set(Prop.UPDINDEX, true).execute(context);
+    try {
+      final String[] expected = build(1);
+      assertArrayEquals(expected, build(3));
+    } finally {
+      new Set(Prop.UPDINDEX, false).execute(context);
+    }
+  }
+
+  /**
+   * Creates a database with the specified number of threads and returns the
+   * query results.
+   * @param threads number of threads
+   * @return query results
+   * @throws BaseXException database exception
+   */
+  private static String[] build(final int threads) throws BaseXException {
+    new Set(Prop.INDEXTHREADS, threads).execute(context);
+    new CreateDB(NAME, DOC).execute(context);
+    new CreateIndex(CmdIndex.TEXT).execute(context);
+    new CreateIndex(CmdIndex.ATTRIBUTE).execute(context);
+    return new String[] {
+      new XQuery(ENTRIES).execute(context),
+      new XQuery(HITS).execute(context),
+      new XQuery("count(//*[@c = '5'])").execute(context)
+    };
+  }
+}
@@ -197,6 +197,25 @@ public class DataAccessTest {
     assertEquals(STR, Token.string(da.readToken(BLOCK_BOUNDARY_POS)));
   }
 
+  /** Test method for {@link DataAccess#diffToken(long, byte[])}. */
+  @Test
+  public final void testDiffToken() {
+    final byte[] str = Token.token(STR);
+    assertEquals(0, da.diffToken(0L, str));
+    assertEquals(0, da.diffToken(BLOCK_BOUNDARY_POS, str));
+    assertTrue(da.diffToken(0L, Token.token("string")) > 0);
+    assertTrue(da.diffToken(0L, Token.token("strinh")) < 0);
+    assertTrue(da.diffToken(BLOCK_BOUNDARY_POS, Token.concat(str, str)) < 0);
+  }
+
+  /** Test method for {@link DataAccess#hashToken(long)}. */
+  @Test
+  public final void testHashToken() {
+    final int hash = Token.hash(Token.token(STR));
+    assertEquals(hash, da.hashToken(0L));
+    assertEquals(hash, da.hashToken(BLOCK_BOUNDARY_POS));
+  }
+
   /** Test method for {@link DataAccess#readToken()}. */
   @Test
   public final void testReadToken() {
@@ -0,0 +1,47 @@
+package org.basex.test.io;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+
+import org.basex.io.random.*;
+import org.junit.*;
+
+/**
+ * Tests for class {@link DataAccess}, using memory mapped files.
+ *
+ * @author BaseX Team 2005-12, BSD License
+ * @author Christian Gruen
+ */
+public final class MappedDataAccessTest extends DataAccessTest {
+  @Override
+  @Before
+  public void setUp() throws IOException {
+    super.setUp();
+    da.close();
+    da = new DataAccess(file, true);
+  }
+
+  /**
+   * Modifies and truncates the mapped file, and reads it again after remapping.
+   * @throws IOException I/O exception
+   */
+  @Test
+  public void remap() throws IOException {
+    final long len = da.length();
+    for(int i = 0; i < 100; i++) {
+      da.write4(len + i * 4, i);
+      da.flush();
+      assertEquals(i, da.read4(len + i * 4));
+    }
+    da.close();
+    final RandomAccessFile f = new RandomAccessFile(file.file(), "rw");
+    try {
+      f.setLength(len);
+    } finally {
+      f.close();
+    }
+    da = new DataAccess(file, true);
+    assertEquals(len, da.length());
+  }
+}
@@ -167,6 +167,54 @@ public final class IndexOptimizeTest extends SandboxTest {
         "//text()[. contains text { $x }] }; local:x('1')", "1");
   }
 
+  /**
+   * Checks if the most selective predicate is chosen for index access.
+   * @throws Exception unexpected exception
+   */
+  @Test
+  public void costsTest() throws Exception {
+    final StringBuilder sb = new StringBuilder("<xml>");
+    for(int i = 1; i <= 100; i++) {
+      sb.append("<a x='y' n='").append(i).append("'").append(i == 50 ? " z='w'" : "");
+      sb.append("><b>").append(i % 3).append("</b></a>");
+    }
+    new CreateDB(NAME, sb.append("</xml>").toString()).execute(context);
+    check("data(//a[@x = 'y'][@z = 'w']/@n)", "50");
+    costs("//a[@x = 'y'][@z = 'w']", "ValueAccess", 1);
+    assertEquals("11", new QueryProcessor("data(//a[@x = 'y'][b = '2']" +
+        "[@n >= 10 and @n <= 12]/@n)", context).execute().toString());
+    costs("//a[@x = 'y'][b = '2'][@n >= 10 and @n <= 12]", "RangeAccess", 3);
+  }
+
+  /**
+   * Checks if the index accesses of multiple predicates are combined.
+   * @throws Exception unexpected exception
+   */
+  @Test
+  public void indexSetTest() throws Exception {
+    final StringBuilder sb = new StringBuilder("<xml>");
+    for(int i = 1; i <= 1000; i++) {
+      sb.append("<a c='").append(i % 4).append("' d='").append(i % 97).append("'><b>");
+      sb.append(i % 3).append("</b></a>");
+    }
+    new CreateDB(NAME, sb.append("</xml>").toString()).execute(context);
+
+    final String exp = "for $i in 1 to 1000 where $i mod 4 = 1 and $i mod 3 = 0 " +
+        "and $i mod 97 = 5 return $i";
+    final String res = new QueryProcessor(exp, context).execute().toString();
+    costs("//a[@c = '1'][b = '0'][@d = '5']", "IndexSet");
+    check("for $a in //a[@c = '1'][b = '0'][@d = '5'] " +
+        "return count($a/preceding-sibling::a) + 1", res);
+    check("for $a in //a[@d = '5' and @c = '1' and b = '0'] " +
+        "return count($a/preceding-sibling::a) + 1", res);
+
+    final String un = "for $i in 1 to 1000 where $i mod 97 = 5 or $i mod 97 = 6 " +
+        "return $i";
+    check("for $a in //a[@d = '5' or @d = '6'] " +
+        "return count($a/preceding-sibling::a) + 1",
+        new QueryProcessor(un, context).execute().toString());
+  }
+
   /**
    * Creates a test database.
    * @throws Exception exception
@@ -188,6 +236,36 @@ public final class IndexOptimizeTest extends SandboxTest {
     new Close().execute(context);
   }
 
+  /**
+   * Checks if the specified query is rewritten for the specified index access.
+   * @param query query to be tested
+   * @param access name of the index access expression
+   */
+  private static void costs(final String query, final String access) {
+    costs(query, access, -1);
+  }
+
+  /**
+   * Checks if the specified query is rewritten for the specified index access,
+   * and if the estimated costs are exposed in the query plan.
+   * @param query query to be tested
+   * @param access name of the index access expression
+   * @param costs estimated costs ({@code -1}: ignore costs)
+   */
+  private static void costs(final String query, final String access, final int costs) {
+    final QueryProcessor qp = new QueryProcessor(query, context);
+    try {
+      qp.compile();
+      final String plan = qp.plan().serialize().toString();
+      qp.close();
+      final String res = new QueryProcessor(plan + "//" + access +
+          (costs == -1 ? "/name()" : "/@costs/string()"), context).execute().toString();
+      assertEquals("Plan: " + plan, costs == -1 ? access : Integer.toString(costs), res);
+    } catch(final QueryException ex) {
+      fail(Util.message(ex) + "\nQuery: " + query);
+    }
+  }
+
   /**
    * Check if specified query was rewritten for index access.
    * @param query query to be tested
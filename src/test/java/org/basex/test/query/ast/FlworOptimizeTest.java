@@ -73,4 +73,56 @@ public final class FlworOptimizeTest extends QueryPlanTest {
         "every $for in //For satisfies exactly-one(//Let) << $for"
     );
   }
+
+  /** Tests the rewriting of joins on nodes. */
+  @Test public void hashJoin() {
+    final String orders = "let $o := (<o id='1'/>, <o id='2'/>, <o id='3'/>) " +
+        "let $l := (<l ref='2' n='a'/>, <l ref='1' n='b'/>, <l ref='2' n='c'/>) ";
+    check(orders + "for $a in $o for $b in $l where $a/@id = $b/@ref " +
+        "return $a/@id || $b/@n",
+        "1b 2a 2c",
+        "exists(//For[@var eq '$b']/HashJoin)"
+    );
+    check(orders + "for $a in $o for $b in $l where $b/@ref = $a/@id " +
+        "order by $b/@n descending return $b/@n/string()",
+        "c b a",
+        "exists(//HashJoin)"
+    );
+    check("let $d := document { <x><o id='2'/><o id='1'/><l ref='1' n='a'/>" +
+        "<l ref='1' n='b'/></x> } " +
+        "for $a in $d//o for $b in $d//l where $a/@id = $b/@ref " +
+        "return $a/@id || $b/@n",
+        "1a 1b",
+        "exists(//HashJoin)"
+    );
+  }
+
+  /** Tests the rewriting of joins with multiple and atomic keys. */
+  @Test public void hashJoinKeys() {
+    check("let $l := (<l n='a'/>, <l n='b'/>, <l n='c'/>) " +
+        "for $a in ('b a', 'c', 'a a') for $b in $l " +
+        "where tokenize($a, ' ') = $b/@n return $b/@n/string()",
+        "a b c a",
+        "exists(//HashJoin)"
+    );
+    check("for $i in 1 to 5 for $j in (3, 1, 4, 1, 5) where $i = $j return $i",
+        "1 1 3 4 5",
+        "exists(//HashJoin)"
+    );
+  }
+
+  /** Tests joins that will not be rewritten. */
+  @Test public void noHashJoin() {
+    // input depends on outer clause
+    check("for $a in 1 to 3 for $b in $a to 3 where $a = $b return $b",
+        "1 2 3",
+        "empty(//HashJoin)"
+    );
+    // incompatible types
+    check("for $a in (1, 2) for $b in ('1', '2') ! xs:untypedAtomic(.) " +
+        "where $a = $b return $b",
+        "1 2",
+        "empty(//HashJoin)"
+    );
+  }
 }
@@ -0,0 +1,125 @@
+package org.basex.test.query.expr;
+
+import static org.junit.Assert.*;
+
+import org.basex.core.*;
+import org.basex.core.cmd.*;
+import org.basex.test.*;
+import org.basex.util.*;
+import org.junit.*;
+
+/**
+ * Test cases for group by clauses that are partitioned on disk
+ * ({@link Prop#MAXGROUP}) and aggregated incrementally.
+ *
+ * @author BaseX Team 2005-12, BSD License
+ * @author Christian Gruen
+ */
+public final class GroupTest extends SandboxTest {
+  /** Number of tuples. */
+  private static final int SIZE = 10000;
+
+  /**
+   * Resets the options.
+   * @throws BaseXException database exception
+   */
+  @After
+  public void finish() throws BaseXException {
+    new Set(Prop.MAXGROUP, Prop.MAXGROUP[1]).execute(context);
+    new DropDB(NAME).execute(context);
+  }
+
+  /** Aggregates non-grouping variables. */
+  @Test
+  public void aggregate() {
+    final String fl = "for $i in 1 to " + SIZE + " let $k := $i mod 1000 group by $k " +
+        "order by $k ";
+    compare(fl + "return ($k, count($i), sum($i), min($i), max($i), avg($i))");
+    compare(fl + "return ($k, sum($i, 0), sum($i) + count($i))");
+    assertEquals("6 63 3 18 10.5", query("for $i in 1 to 20 let $k := $i mod 3 " +
+        "group by $k order by $k return (count($i), sum($i), min($i), max($i), " +
+        "avg($i))[$k = 0]"));
+    assertEquals("0 z 0", query("for $i in 1 to 10 let $k := $i mod 2, $e := () " +
+        "group by $k order by $k return (sum($e), sum($e, 'z'), count($e))[$k = 0]"));
+    assertEquals("10.5 2.625 1 4", query("for $i in (1, 2.5, 3e0, " +
+        "xs:untypedAtomic('4')) let $k := 1 group by $k " +
+        "return (sum($i), avg($i), min($i), max($i))"));
+  }
+
+  /**
+   * Reports errors of aggregated variables with their original names, and only if
+   * the aggregates are evaluated.
+   */
+  @Test
+  public void aggregateError() {
+    try {
+      new XQuery("for $i in ('a', 'b') let $k := 1 group by $k return sum($i)").
+        execute(context);
+      fail("Error expected.");
+    } catch(final BaseXException ex) {
+      final String msg = Util.message(ex);
+      assertTrue(msg, msg.contains("sum($i)"));
+    }
+    // errors are only raised if the aggregate is evaluated
+    assertEquals("ok", query("for $i in ('a', 'b') let $k := 1 group by $k " +
+        "return if($k = 2) then sum($i) else 'ok'"));
+  }
+
+  /** Caches the values of non-grouping variables. */
+  @Test
+  public void cache() {
+    final String fl = "for $i in 1 to " + SIZE + " let $k := $i mod 1000, " +
+        "$s := string($i) group by $k order by $k ";
+    compare(fl + "return ($k, $s)");
+    compare(fl + "return ($k, count($i), $i[last()], sum($i), string-join($s, ','))");
+  }
+
+  /**
+   * Groups database nodes.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void nodes() throws BaseXException {
+    final StringBuilder sb = new StringBuilder("<x>");
+    for(int i = 0; i < SIZE; i++) sb.append("<a v='").append(i % 1000).append("'/>");
+    new CreateDB(NAME, sb.append("</x>").toString()).execute(context);
+    compare("for $a in db:open('" + NAME + "')//a let $v := $a/@v group by $v " +
+        "order by number($v) return ($v, count($a), $a[1])");
+  }
+
+  /** Groups tuples that cannot be written to disk. */
+  @Test
+  public void fragments() {
+    compare("for $i in 1 to " + SIZE + " let $k := $i mod 1000, $e := <x>{ $i }</x> " +
+        "group by $k order by $k return ($k, $e[1])");
+  }
+
+  /**
+   * Compares the results of a query that is grouped in main memory and on disk.
+   * @param query query
+   */
+  private static void compare(final String query) {
+    try {
+      new Set(Prop.MAXGROUP, 0).execute(context);
+      final String expected = query(query);
+      new Set(Prop.MAXGROUP, 100).execute(context);
+      assertEquals(expected, query(query));
+    } catch(final BaseXException ex) {
+      fail(Util.message(ex));
+    }
+  }
+
+  /**
+   * Returns the result of a query.
+   * @param query query
+   * @return result
+   */
+  private static String query(final String query) {
+    try {
+      return new XQuery(query).execute(context);
+    } catch(final BaseXException ex) {
+      fail(Util.message(ex));
+      return null;
+    }
+  }
+}
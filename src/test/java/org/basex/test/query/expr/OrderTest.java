@@ -0,0 +1,144 @@
+package org.basex.test.query.expr;
+
+import static org.junit.Assert.*;
+
+import java.lang.management.*;
+
+import org.basex.core.*;
+import org.basex.core.cmd.*;
+import org.basex.test.*;
+import org.basex.util.*;
+import org.junit.*;
+
+import com.sun.management.UnixOperatingSystemMXBean;
+
+/**
+ * Test cases for order by clauses that are sorted on disk ({@link Prop#MAXSORT})
+ * or of which only the first results are requested.
+ *
+ * @author BaseX Team 2005-12, BSD License
+ * @author Christian Gruen
+ */
+public final class OrderTest extends SandboxTest {
+  /** Number of tuples. */
+  private static final int SIZE = 10000;
+
+  /**
+   * Resets the options.
+   * @throws BaseXException database exception
+   */
+  @After
+  public void finish() throws BaseXException {
+    new Set(Prop.MAXSORT, Prop.MAXSORT[1]).execute(context);
+    new DropDB(NAME).execute(context);
+  }
+
+  /** Sorts atomic keys and values. */
+  @Test
+  public void atomic() {
+    final String fl = "for $i in 1 to " + SIZE + ' ';
+    compare(fl + "order by $i mod 10, $i descending return $i");
+    compare(fl + "order by string($i) return $i");
+    compare(fl + "order by xs:untypedAtomic($i mod 7), $i * 1.5 descending " +
+        "return ($i, $i div 3)");
+    compare(fl + "order by $i mod 2 = 0, $i div 7e0 descending " +
+        "return (string($i), $i mod 2 = 0)");
+    compare(fl + "order by (if($i mod 3 = 0) then () else $i mod 5) empty greatest " +
+        "return $i");
+    compare(fl + "stable order by $i mod 10 return $i");
+  }
+
+  /**
+   * Sorts database nodes.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void nodes() throws BaseXException {
+    final StringBuilder sb = new StringBuilder("<x>");
+    for(int i = 0; i < SIZE; i++) sb.append("<a v='").append(i % 13).append("'/>");
+    new CreateDB(NAME, sb.append("</x>").toString()).execute(context);
+    compare("for $a in db:open('" + NAME + "')//a order by $a/@v return $a");
+  }
+
+  /** Sorts tuples that cannot be written to disk. */
+  @Test
+  public void fragments() {
+    compare("for $i in 1 to " + SIZE + " order by $i mod 10 return <x>{ $i }</x>");
+    compare("for $i in 1 to " + SIZE + " order by $i mod 10 return ($i, ())");
+  }
+
+  /** Sorts grouped tuples. */
+  @Test
+  public void group() {
+    compare("for $i in 1 to " + SIZE + " let $k := $i mod 1000 group by $k " +
+        "order by count($i), $k descending return $k");
+  }
+
+  /** Requests the first results of ordered tuples. */
+  @Test
+  public void limit() {
+    final String fl = "(for $i in 1 to " + SIZE + " order by $i mod 100, $i descending ";
+    assertEquals("10000 9900 9800", query(fl + "return $i)[position() <= 3]"));
+    assertEquals("10000", query(fl + "return $i)[1]"));
+    assertEquals("10000", query("head(" + fl + "return $i))"));
+    assertEquals("9900 9800", query("subsequence(" + fl + "return $i), 2, 2)"));
+    assertEquals("9901 9801", query(fl + "return (if($i mod 100 = 0) then () " +
+        "else $i))[position() <= 2]"));
+    compare(fl + "return $i)[position() = 2 to " + SIZE / 2 + ']');
+  }
+
+  /**
+   * Stops the iteration of tuples that have been sorted on disk.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void abandon() throws BaseXException {
+    final OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+    if(!(os instanceof UnixOperatingSystemMXBean)) return;
+
+    new Set(Prop.MAXSORT, 100).execute(context);
+    final String query = "for $j in (for $i in 1 to " + SIZE + " order by $i mod 100, $i " +
+        "return $i) return if($j = 200) then error() else $j";
+    final long files = ((UnixOperatingSystemMXBean) os).getOpenFileDescriptorCount();
+    for(int i = 0; i < 5; i++) {
+      try {
+        new XQuery(query).execute(context);
+        fail("Error expected.");
+      } catch(final BaseXException ex) {
+        // expected
+      }
+    }
+    // runs of aborted iterations must be closed with the query
+    final long open = ((UnixOperatingSystemMXBean) os).getOpenFileDescriptorCount();
+    assertTrue("Open files: " + (open - files), open - files < SIZE / 100);
+  }
+
+  /**
+   * Compares the results of a query that is sorted in main memory and on disk.
+   * @param query query
+   */
+  private static void compare(final String query) {
+    try {
+      new Set(Prop.MAXSORT, 0).execute(context);
+      final String expected = query(query);
+      new Set(Prop.MAXSORT, 100).execute(context);
+      assertEquals(expected, query(query));
+    } catch(final BaseXException ex) {
+      fail(Util.message(ex));
+    }
+  }
+
+  /**
+   * Returns the result of a query.
+   * @param query query
+   * @return result
+   */
+  private static String query(final String query) {
+    try {
+      return new XQuery(query).execute(context);
+    } catch(final BaseXException ex) {
+      fail(Util.message(ex));
+      return null;
+    }
+  }
+}
@@ -0,0 +1,151 @@
+package org.basex.test.query.expr;
+
+import static org.junit.Assert.*;
+
+import org.basex.core.*;
+import org.basex.core.cmd.*;
+import org.basex.test.*;
+import org.basex.util.*;
+import org.junit.*;
+
+/**
+ * Test cases for FLWOR expressions that are evaluated in parallel
+ * ({@link Prop#PARALLELFLWOR}).
+ *
+ * @author BaseX Team 2005-12, BSD License
+ * @author Christian Gruen
+ */
+public final class ParallelTest extends SandboxTest {
+  /** Number of iterations. */
+  private static final int SIZE = 10000;
+
+  /**
+   * Resets the options.
+   * @throws BaseXException database exception
+   */
+  @After
+  public void finish() throws BaseXException {
+    new Set(Prop.PARALLELFLWOR, Prop.PARALLELFLWOR[1]).execute(context);
+    new DropDB(NAME).execute(context);
+  }
+
+  /** Evaluates atomic values. */
+  @Test
+  public void atomic() {
+    final String fl = "for $i in 1 to " + SIZE + ' ';
+    compare(fl + "return $i * $i");
+    compare(fl + "where $i mod 3 = 0 return string($i)");
+    compare(fl + "let $j := $i * 2 for $k in 1 to $i mod 5 return $j + $k");
+    compare("let $x := 3 " + fl + "return $i mod $x");
+    compare("declare variable $x := 1 to 3; " + fl + "return sum($x) + $i");
+    compare("declare function local:f($i) { $i + 1 }; " + fl + "return local:f($i)");
+    compare(fl + "return (for $j in 1 to 3 return $i + $j)");
+    compare(fl + "order by $i mod 10 return $i");
+    compare("count(" + fl + "return $i)");
+    compare("for $i in () return $i");
+    compare("for $i in 1 return $i");
+  }
+
+  /** Calls recursive and higher-order functions. */
+  @Test
+  public void functions() {
+    final String fib = "declare function local:fib($n) { " +
+        "if($n < 2) then $n else local:fib($n - 1) + local:fib($n - 2) }; ";
+    final String fl = "for $i in 1 to " + SIZE + ' ';
+    final String sum = fib + "declare variable $g := 1; " +
+        "sum(for $i in 1 to 400 return local:fib($i mod 15) + $g)";
+    compare(sum);
+    assertEquals("26179", query(sum));
+    compare(fib + fl + "return local:fib($i mod 12)");
+    compare("let $f := function($n) { $n * 2 } " + fl + "return $f($i)");
+    compare(fl + "return fold-left(function($a, $b) { $a + $b }, 0, 1 to $i mod 20)");
+    compare(fl + "return typeswitch($i mod 3) case $t as xs:integer return $t " +
+        "default $d return $d");
+    compare(fl + "return try { error(xs:QName('X'), '', $i) } catch * { $err:value }");
+  }
+
+  /** Only consumes parts of the results. */
+  @Test
+  public void partial() {
+    final String fl = "for $i in 1 to " + SIZE * 10 + " return $i * 2";
+    compare("(" + fl + ")[position() < 3]");
+    compare("subsequence(" + fl + ", 30000, 5)");
+    compare("exists(" + fl + ")");
+  }
+
+  /**
+   * Evaluates database nodes.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void nodes() throws BaseXException {
+    final StringBuilder sb = new StringBuilder("<x>");
+    for(int i = 0; i < SIZE; i++) sb.append("<a v='").append(i % 13).append("'/>");
+    new CreateDB(NAME, sb.append("</x>").toString()).execute(context);
+    compare("for $a in db:open('" + NAME + "')//a where $a/@v = 1 return $a");
+    compare("for $a in db:open('" + NAME + "')//a return $a/@v/string()");
+    compare("for $a in //a return count($a/preceding-sibling::a)");
+  }
+
+  /** Constructs fragments. */
+  @Test
+  public void fragments() {
+    compare("for $i in 1 to " + SIZE + " return <x>{ $i }</x>");
+    compare("for $i in 1 to " + SIZE + " let $x := <x>{ $i }</x> return $x/text()");
+  }
+
+  /**
+   * Enables parallel evaluation via pragma.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void pragma() throws BaseXException {
+    final String fl = "for $i in 1 to " + SIZE + " return $i + 1";
+    assertEquals(query(fl), query("(# db:parallelflwor 4 #) { " + fl + " }"));
+  }
+
+  /**
+   * Raises errors in parallel threads.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void error() throws BaseXException {
+    new Set(Prop.PARALLELFLWOR, 4).execute(context);
+    try {
+      new XQuery("for $i in 1 to " + SIZE + " return " +
+        "if($i = 5000) then error(xs:QName('X')) else $i").execute(context);
+      fail("Error expected.");
+    } catch(final BaseXException ex) {
+      assertTrue(Util.message(ex), ex.getMessage().contains("[X]"));
+    }
+  }
+
+  /**
+   * Compares the results of a query that is evaluated sequentially and in parallel.
+   * @param query query
+   */
+  private static void compare(final String query) {
+    try {
+      new Set(Prop.PARALLELFLWOR, 0).execute(context);
+      final String expected = query(query);
+      new Set(Prop.PARALLELFLWOR, 4).execute(context);
+      assertEquals(expected, query(query));
+    } catch(final BaseXException ex) {
+      fail(Util.message(ex));
+    }
+  }
+
+  /**
+   * Returns the result of a query.
+   * @param query query
+   * @return result
+   */
+  private static String query(final String query) {
+    try {
+      return new XQuery(query).execute(context);
+    } catch(final BaseXException ex) {
+      fail(Util.message(ex));
+      return null;
+    }
+  }
+}
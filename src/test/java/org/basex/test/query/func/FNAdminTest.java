@@ -1,5 +1,6 @@
 package org.basex.test.query.func;
 
+import static org.basex.core.Text.*;
 import static org.basex.query.func.Function.*;
 import static org.basex.util.Token.*;
 
@@ -71,5 +72,12 @@ public final class FNAdminTest extends AdvancedQueryTest {
     // no loggin data exists in the sandbox
     query(_ADMIN_LOGS.args(), "");
     query(_ADMIN_LOGS.args("2001-01-01"), "");
+
+    // queued entries are written before the logs are accessed
+    for(int i = 0; i < 100; i++) context.log.writeServer(OK, NAME + i);
+    query("count(" + _ADMIN_LOGS.args() + ')', "1");
+    query("count(" + _ADMIN_LOGS.args(" " + _ADMIN_LOGS.args() + "/@date") +
+        "[contains(., '" + NAME + "')])", "100");
+    context.log.close();
   }
 }
@@ -88,6 +88,25 @@ public final class FNDbTest extends AdvancedQueryTest {
     error(_DB_OPEN_ID.args(NAME, -1), Err.BXDB_RANGE);
   }
 
+  /**
+   * Test method.
+   * @throws BaseXException database exception
+   */
+  @Test
+  public void openIdUpdated() throws BaseXException {
+    // ids and pre values differ after updates
+    query("insert node <X><Y/></X> as first into " + _DB_OPEN.args(NAME) + "/html");
+    query("delete node " + _DB_OPEN.args(NAME) + "//title");
+    final String all = "every $n in " + _DB_OPEN.args(NAME) + "//node() satisfies " +
+        _DB_OPEN_ID.args(NAME, " " + _DB_NODE_ID.args(" $n")) + " is $n";
+    query(all, "true");
+    // id->pre runs are read from disk
+    new Close().execute(context);
+    query(all, "true");
+    query("insert node <Z/> into " + _DB_OPEN.args(NAME) + "//X");
+    query(all, "true");
+  }
+
   /**
    * Test method.
    * @throws BaseXException database exception
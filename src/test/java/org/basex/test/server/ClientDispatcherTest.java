@@ -0,0 +1,108 @@
+package org.basex.test.server;
+
+import static org.basex.core.Text.*;
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.basex.*;
+import org.basex.core.*;
+import org.basex.server.*;
+import org.basex.test.*;
+import org.junit.*;
+
+/**
+ * Tests the multiplexing of client sessions ({@link MainProp#WORKERS}).
+ *
+ * @author BaseX Team 2005-12, BSD License
+ * @author Christian Gruen
+ */
+public final class ClientDispatcherTest extends SandboxTest {
+  /** Number of clients (exceeds the default number of worker threads). */
+  private static final int CLIENTS = 40;
+  /** Server reference. */
+  private static BaseXServer server;
+  /** Connections without login data (closed after the server has been stopped). */
+  private static final ArrayList<Socket> SOCKETS = new ArrayList<Socket>();
+
+  /**
+   * Starts the server.
+   * @throws IOException I/O exception
+   */
+  @BeforeClass
+  public static void start() throws IOException {
+    server = createServer();
+  }
+
+  /**
+   * Stops the server.
+   * @throws IOException I/O exception
+   */
+  @AfterClass
+  public static void stop() throws IOException {
+    stopServer(server);
+    // closing the connections earlier would delay subsequent logins from the same host
+    for(final Socket s : SOCKETS) s.close();
+  }
+
+  /**
+   * Checks that clients which do not send any login data do not block
+   * other clients.
+   * @throws Exception exception
+   */
+  @Test
+  public void unauthenticated() throws Exception {
+    for(int c = 0; c < CLIENTS; c++) SOCKETS.add(new Socket(LOCALHOST, 9999));
+    assertEquals("2", run(new Callable<String>() {
+      @Override
+      public String call() throws IOException {
+        final ClientSession cs = createClient();
+        try {
+          return cs.query("1 + 1").execute();
+        } finally {
+          cs.close();
+        }
+      }
+    }));
+  }
+
+  /**
+   * Checks that more idle sessions than worker threads can be served.
+   * @throws Exception exception
+   */
+  @Test
+  public void idle() throws Exception {
+    final ArrayList<ClientSession> sessions = new ArrayList<ClientSession>();
+    try {
+      for(int c = 0; c < CLIENTS; c++) sessions.add(createClient());
+      assertEquals(Integer.toString(CLIENTS), run(new Callable<String>() {
+        @Override
+        public String call() throws IOException {
+          int n = 0;
+          for(final ClientSession cs : sessions) n += Integer.parseInt(cs.query("1").execute());
+          return Integer.toString(n);
+        }
+      }));
+    } finally {
+      for(final ClientSession cs : sessions) cs.close();
+    }
+  }
+
+  /**
+   * Runs the specified task and waits until it has been finished.
+   * @param task task
+   * @return result
+   * @throws Exception exception
+   */
+  private static String run(final Callable<String> task) throws Exception {
+    final ExecutorService ex = Executors.newSingleThreadExecutor();
+    try {
+      return ex.submit(task).get(10, TimeUnit.SECONDS);
+    } finally {
+      ex.shutdownNow();
+    }
+  }
+}
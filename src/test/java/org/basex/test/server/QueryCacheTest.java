@@ -0,0 +1,167 @@
+package org.basex.test.server;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+
+import org.basex.core.*;
+import org.basex.core.cmd.*;
+import org.basex.io.*;
+import org.basex.query.*;
+import org.basex.server.*;
+import org.basex.test.*;
+import org.basex.util.*;
+import org.junit.*;
+
+/**
+ * Tests the caching of parsed queries in client sessions ({@link MainProp#QUERYCACHE}).
+ * Queries are parsed in the current thread instead of waiting for the background thread.
+ *
+ * @author BaseX Team 2005-12, BSD License
+ * @author Christian Gruen
+ */
+public final class QueryCacheTest extends SandboxTest {
+  /** Query cache. */
+  private QueryCache cache;
+
+  /** Creates the query cache. */
+  @Before
+  public void init() {
+    cache = new QueryCache(context);
+  }
+
+  /**
+   * Closes the query cache and drops the test database.
+   * @throws BaseXException database exception
+   */
+  @After
+  public void finish() throws BaseXException {
+    cache.close();
+    new DropDB(NAME).execute(context);
+  }
+
+  /**
+   * Evaluates prepared queries with different bindings.
+   * @throws QueryException query exception
+   */
+  @Test
+  public void bind() throws QueryException {
+    final String query = "declare variable $a external; $a * 2";
+    for(int i = 0; i < 10; i++) {
+      final QueryProcessor qp = cache.get(query);
+      try {
+        qp.bind("a", Integer.toString(i), "xs:integer");
+        assertEquals(Integer.toString(i * 2), qp.execute().toString());
+      } finally {
+        qp.close();
+      }
+      idle();
+    }
+    // the first two requests are parsed without cache
+    assertEquals(8, cache.hits());
+  }
+
+  /**
+   * Evaluates queries after the session state has changed.
+   * @throws Exception exception
+   */
+  @Test
+  public void state() throws Exception {
+    final String query = "count(//x)";
+    new CreateDB(NAME, "<a><x/></a>").execute(context);
+    for(int i = 0; i < 3; i++) assertEquals("1", query(query));
+    assertEquals(1, cache.hits());
+
+    // update current database
+    new Add("b.xml", "<b><x/><x/></b>").execute(context);
+    assertEquals("3", query(query));
+    assertEquals(1, cache.hits());
+    assertEquals("3", query(query));
+    assertEquals(2, cache.hits());
+
+    // close database
+    new Close().execute(context);
+    try {
+      query(query);
+      fail("Query was evaluated without context.");
+    } catch(final QueryException ex) {
+      // expected
+    }
+    assertEquals(2, cache.hits());
+
+    // change options
+    final String xq3 = "switch(1) case 1 return 1 default return 0";
+    assertEquals("1", query(xq3));
+    assertEquals("1", query(xq3));
+    new Set(Prop.XQUERY3, false).execute(context);
+    try {
+      query(xq3);
+      fail("XQuery 3.0 expression was accepted.");
+    } catch(final QueryException ex) {
+      // expected
+    } finally {
+      new Set(Prop.XQUERY3, true).execute(context);
+    }
+    assertEquals(2, cache.hits());
+  }
+
+  /**
+   * Checks that queries are discarded if accessed databases have been updated.
+   * @throws Exception exception
+   */
+  @Test
+  public void databases() throws Exception {
+    new CreateDB(NAME, "<a><x/></a>").execute(context);
+    new Close().execute(context);
+    final String query = "count(db:open('" + NAME + "')//x)";
+    for(int i = 0; i < 3; i++) assertEquals("1", query(query));
+    assertEquals(1, cache.hits());
+
+    query("db:add('" + NAME + "', <x/>, 'b.xml')");
+    assertEquals("2", query(query));
+    assertEquals(1, cache.hits());
+    assertEquals("2", query(query));
+    assertEquals(2, cache.hits());
+  }
+
+  /**
+   * Checks that only queries with module imports are excluded from caching.
+   * @throws Exception exception
+   */
+  @Test
+  public void imports() throws Exception {
+    final IOFile module = new IOFile(sandbox(), "module.xqm");
+    module.write(Token.token("module namespace m = 'm'; declare function m:f() { 1 };"));
+    final String query = "import module namespace m = 'm' at '" + module.path() + "'; m:f()";
+    for(int i = 0; i < 4; i++) assertEquals("1", query(query));
+    assertEquals(0, cache.hits());
+
+    final String imp = "'import'";
+    for(int i = 0; i < 4; i++) assertEquals("import", query(imp));
+    assertEquals(2, cache.hits());
+  }
+
+  /**
+   * Evaluates a query and parses the scheduled queries, as if the session was idle.
+   * @param query query
+   * @return result
+   * @throws QueryException query exception
+   */
+  private String query(final String query) throws QueryException {
+    final QueryProcessor qp = cache.get(query);
+    try {
+      return qp.execute().toString();
+    } finally {
+      qp.close();
+      idle();
+    }
+  }
+
+  /**
+   * Parses all queries that have been scheduled for parsing.
+   */
+  private void idle() {
+    cache.prepare();
+    cache.parse();
+  }
+}
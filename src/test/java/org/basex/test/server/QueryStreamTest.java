@@ -0,0 +1,162 @@
+package org.basex.test.server;
+
+import static org.basex.query.func.Function.*;
+import static org.junit.Assert.*;
+
+import java.io.*;
+
+import org.basex.*;
+import org.basex.core.*;
+import org.basex.core.cmd.*;
+import org.basex.server.*;
+import org.basex.test.*;
+import org.junit.*;
+
+/**
+ * Tests the streaming of query results in batches
+ * ({@link Prop#BATCHITEMS}, {@link Prop#BATCHSIZE}).
+ *
+ * @author BaseX Team 2005-12, BSD License
+ * @author Christian Gruen
+ */
+public final class QueryStreamTest extends SandboxTest {
+  /** Number of results. */
+  private static final int SIZE = 100000;
+  /** Server reference. */
+  private static BaseXServer server;
+  /** Client session. */
+  private ClientSession session;
+
+  /**
+   * Starts the server.
+   * @throws IOException I/O exception
+   */
+  @BeforeClass
+  public static void start() throws IOException {
+    server = createServer();
+  }
+
+  /**
+   * Stops the server.
+   * @throws IOException I/O exception
+   */
+  @AfterClass
+  public static void stop() throws IOException {
+    stopServer(server);
+  }
+
+  /**
+   * Starts a session.
+   * @throws IOException I/O exception
+   */
+  @Before
+  public void startSession() throws IOException {
+    session = createClient();
+    session.execute(new Set(Prop.BATCHITEMS, 100));
+  }
+
+  /**
+   * Closes the session.
+   * @throws IOException I/O exception
+   */
+  @After
+  public void closeSession() throws IOException {
+    session.close();
+  }
+
+  /**
+   * Iterates through a large result.
+   * @throws IOException I/O exception
+   */
+  @Test
+  public void iterate() throws IOException {
+    for(final int kb : new int[] { 1, 64 }) {
+      session.execute(new Set(Prop.BATCHSIZE, kb));
+      final ClientQuery cq = session.query("1 to " + SIZE);
+      int c = 0;
+      while(cq.more()) assertEquals(Integer.toString(++c), cq.next());
+      assertEquals(SIZE, c);
+      cq.close();
+    }
+  }
+
+  /**
+   * Sends other commands while results are streamed.
+   * @throws IOException I/O exception
+   */
+  @Test
+  public void interrupt() throws IOException {
+    final ClientQuery cq1 = session.query("1 to " + SIZE);
+    final ClientQuery cq2 = session.query("for $i in 1 to " + SIZE + " return -$i");
+    int c1 = 0, c2 = 0;
+    for(int i = 0; i < 10; i++) assertEquals(Integer.toString(++c1), cq1.next());
+    assertEquals("3", session.execute(new XQuery("1 + 2")));
+    for(int i = 0; i < 10; i++) assertEquals(Integer.toString(--c2), cq2.next());
+    while(cq1.more()) assertEquals(Integer.toString(++c1), cq1.next());
+    while(cq2.more()) assertEquals(Integer.toString(--c2), cq2.next());
+    assertEquals(SIZE, c1);
+    assertEquals(-SIZE, c2);
+    cq1.close();
+    cq2.close();
+  }
+
+  /**
+   * Closes a query before all results have been retrieved.
+   * @throws IOException I/O exception
+   */
+  @Test
+  public void close() throws IOException {
+    final ClientQuery cq = session.query("1 to " + SIZE);
+    assertEquals("1", cq.next());
+    cq.close();
+    assertEquals("3", session.execute(new XQuery("1 + 2")));
+  }
+
+  /**
+   * Closes a query whose results would never be completely sent.
+   * @throws IOException I/O exception
+   */
+  @Test
+  public void cancel() throws IOException {
+    final ClientQuery cq = session.query("1 to 1000000000000000");
+    for(int c = 1; c <= 1000; c++) assertEquals(Integer.toString(c), cq.next());
+    cq.close();
+    assertEquals("3", session.execute(new XQuery("1 + 2")));
+  }
+
+  /**
+   * Checks that each batch is sent as soon as its last result has been terminated.
+   * @throws IOException I/O exception
+   */
+  @Test
+  public void latency() throws IOException {
+    session.execute(new Set(Prop.BATCHITEMS, 1));
+    final ClientQuery cq = session.query(
+        "for $i in 1 to 2 return (" + _PROF_SLEEP.args(" $i * 1000 - 1000") + ", $i)");
+    final long time = System.nanoTime();
+    assertEquals("1", cq.next());
+    assertTrue(System.nanoTime() - time < 500000000L);
+    assertEquals("2", cq.next());
+    assertNull(cq.next());
+    cq.close();
+  }
+
+  /**
+   * Raises an error while results are streamed.
+   * @throws IOException I/O exception
+   */
+  @Test
+  public void error() throws IOException {
+    final ClientQuery cq = session.query(
+        "for $i in 1 to " + SIZE + " return if($i = 1000) then error() else $i");
+    int c = 0;
+    try {
+      while(cq.more()) assertEquals(Integer.toString(++c), cq.next());
+      fail("Error expected.");
+    } catch(final BaseXException ex) {
+      assertTrue(c < 1000);
+    }
+    assertEquals("3", session.execute(new XQuery("1 + 2")));
+    cq.close();
+  }
+}
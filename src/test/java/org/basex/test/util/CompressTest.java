@@ -110,11 +110,19 @@ public final class CompressTest extends SandboxTest {
     for(final byte[] token : tokens) {
       final byte[] cpr = comp.pack(token);
       if(token != cpr) {
-        final byte[] pln = comp.unpack(cpr);
+        final byte[] pln = Compress.unpack(cpr);
         if(!eq(token, pln)) {
           fail("\n[E] " + Arrays.toString(token) + ",\n[F] " +
               Arrays.toString(pln));
         }
+        // compare compressed tokens without decompressing them
+        assertTrue(Compress.eq(cpr, token));
+        assertEquals(0, Compress.diff(cpr, token));
+        assertEquals(hash(token), Compress.hash(cpr));
+        final byte[] cmp = concat(token, token);
+        assertEquals(Integer.signum(diff(token, cmp)),
+            Integer.signum(Compress.diff(cpr, cmp)));
+        assertFalse(Compress.eq(cpr, cmp));
       }
     }
   }